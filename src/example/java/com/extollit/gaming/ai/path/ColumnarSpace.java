@@ -1,8 +1,13 @@
 package com.extollit.gaming.ai.path;
 
 import com.extollit.gaming.ai.path.model.ColumnarOcclusionFieldList;
+import com.extollit.gaming.ai.path.model.IBlockObject;
 import com.extollit.gaming.ai.path.model.IColumnarSpace;
 import com.extollit.gaming.ai.path.model.IInstanceSpace;
+import com.extollit.gaming.ai.path.model.IOcclusionFieldCache;
+import com.extollit.gaming.ai.path.model.OcclusionStore;
+
+import java.util.concurrent.Executor;
 
 public class ColumnarSpace implements IColumnarSpace {
     private static final BlockObject air = new BlockObject();
@@ -38,22 +43,37 @@ public class ColumnarSpace implements IColumnarSpace {
     public final IInstanceSpace container;
     public final Pointer location;
 
-    private final ColumnarOcclusionFieldList columnarOcclusionFieldList = new ColumnarOcclusionFieldList(this);
-    private final BlockObject [][][] blocks = new BlockObject[16][256][16];
+    private final ColumnarOcclusionFieldList columnarOcclusionFieldList;
+    private final IBlockObject [][][] blocks = new IBlockObject[16][256][16];
     private final int [][][] metaDatas = new int[16][256][16];
 
     public ColumnarSpace(IInstanceSpace container, Pointer location) {
+        this(container, location, null);
+    }
+
+    public ColumnarSpace(IInstanceSpace container, Pointer location, Executor areaInitExecutor) {
+        this(container, location, areaInitExecutor, null);
+    }
+
+    public ColumnarSpace(IInstanceSpace container, Pointer location, Executor areaInitExecutor, OcclusionStore occlusionStore) {
+        this(container, location, areaInitExecutor, occlusionStore, null);
+    }
+
+    public ColumnarSpace(IInstanceSpace container, Pointer location, Executor areaInitExecutor, OcclusionStore occlusionStore,
+                         IOcclusionFieldCache occlusionFieldCache) {
         this.container = container;
         this.location = location;
+        this.columnarOcclusionFieldList =
+            new ColumnarOcclusionFieldList(this, areaInitExecutor, occlusionStore, occlusionFieldCache);
     }
 
     @Override
-    public BlockObject blockAt(int x, int y, int z) {
-        final BlockObject block = this.blocks[z][y][x];
+    public IBlockObject blockAt(int x, int y, int z) {
+        final IBlockObject block = this.blocks[z][y][x];
         return block == null ? air : block;
     }
 
-    public void setBlockAt(int x, int y, int z, BlockObject block) {
+    public void setBlockAt(int x, int y, int z, IBlockObject block) {
         this.blocks[z][y][x] = block;
     }
 
@@ -74,6 +94,7 @@ public class ColumnarSpace implements IColumnarSpace {
 
     public void load() {
         occlusionFields().reset();
+        occlusionFields().onLoaded(location.cx, location.cz);
     }
 
     public void unload() {
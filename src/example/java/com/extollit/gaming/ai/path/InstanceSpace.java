@@ -2,16 +2,40 @@ package com.extollit.gaming.ai.path;
 
 import com.extollit.gaming.ai.path.model.IBlockObject;
 import com.extollit.gaming.ai.path.model.IInstanceSpace;
+import com.extollit.gaming.ai.path.model.IOcclusionFieldCache;
+import com.extollit.gaming.ai.path.model.OcclusionStore;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class InstanceSpace implements IInstanceSpace {
     private final Map<ColumnarSpace.Pointer, ColumnarSpace> columnarSpaces = new HashMap<>();
+    private final Executor areaInitExecutor;
+    private final OcclusionStore occlusionStore;
+    private final IOcclusionFieldCache occlusionFieldCache;
+
+    public InstanceSpace() {
+        this(null);
+    }
+
+    public InstanceSpace(Executor areaInitExecutor) {
+        this(areaInitExecutor, null);
+    }
+
+    public InstanceSpace(Executor areaInitExecutor, OcclusionStore occlusionStore) {
+        this(areaInitExecutor, occlusionStore, null);
+    }
+
+    public InstanceSpace(Executor areaInitExecutor, OcclusionStore occlusionStore, IOcclusionFieldCache occlusionFieldCache) {
+        this.areaInitExecutor = areaInitExecutor;
+        this.occlusionStore = occlusionStore;
+        this.occlusionFieldCache = occlusionFieldCache;
+    }
 
     @Override
     public IBlockObject blockObjectAt(int x, int y, int z) {
-        final ColumnarSpace columnarSpace = columnarSpaceAt(x >> 3, z >> 3);
+        final ColumnarSpace columnarSpace = columnarSpaceAt(x >> 4, z >> 4);
 
         if (columnarSpace == null)
             return null;
@@ -28,12 +52,12 @@ public class InstanceSpace implements IInstanceSpace {
         if (columnarSpaces.containsKey(pointer))
             columnarSpace = columnarSpaces.get(pointer);
         else
-            columnarSpaces.put(pointer, columnarSpace = new ColumnarSpace(this, pointer));
+            columnarSpaces.put(pointer, columnarSpace = new ColumnarSpace(this, pointer, areaInitExecutor, occlusionStore, occlusionFieldCache));
 
         return columnarSpace;
     }
 
-    public void setBlock(int x, int y, int z, BlockObject block, int metaData) {
+    public void setBlock(int x, int y, int z, IBlockObject block, int metaData) {
         final ColumnarSpace columnarSpace = columnarSpaceAt(x >> 4, z >> 4);
 
         if (columnarSpace != null) {
@@ -0,0 +1,110 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.INodeQueue;
+import com.extollit.gaming.ai.path.model.PackedNodeQueue;
+import com.extollit.gaming.ai.path.model.SortedNodeQueue;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the primary entry-points of {@link HydrazinePathFinder} against the canned worlds of
+ * {@link SyntheticWorlds}.  Run with the GC profiler (the default for the <code>jmh</code> Gradle task) to obtain
+ * allocation rates alongside timings.
+ *
+ * - {@link #computePathTo} measures a complete (non-incremental) A* search from scratch
+ * - {@link #initiatePathTo} measures the initial triage slice of an incremental search
+ * - {@link #followPath} measures the total cost for an entity to reach its destination one tick at a time with the
+ * chosen scheduling priority, this is what should be used to size scheduling budgets
+ * - {@link #triageIteration} measures the cost of a single A* triage iteration in steady-state
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HydrazinePathFinderBenchmark {
+    private static final int MAX_TICKS = 600;
+
+    @Param({"plain", "maze", "cave", "village", "ocean"})
+    public SyntheticWorlds.Kind world;
+
+    @Param({"low", "high", "extreme"})
+    public SchedulingPriority priority;
+
+    @Param({"sorted", "packed"})
+    public String queue;
+
+    private SyntheticWorlds.World instance;
+    private Monster monster;
+    private HydrazinePathFinder pathFinder, iteratingPathFinder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.instance = SyntheticWorlds.create(this.world);
+        this.monster = this.instance.spawn();
+        this.pathFinder = new HydrazinePathFinder(this.monster, this.instance.instance, AreaOcclusionProviderFactory.INSTANCE);
+        this.pathFinder.schedulingPriority(this.priority);
+        this.pathFinder.withNodeQueue(nodeQueue());
+
+        this.iteratingPathFinder = new HydrazinePathFinder(this.monster, this.instance.instance, AreaOcclusionProviderFactory.INSTANCE);
+        this.iteratingPathFinder.schedulingPriority(1, 1);
+        this.iteratingPathFinder.withNodeQueue(nodeQueue());
+    }
+
+    private INodeQueue nodeQueue() {
+        return "packed".equals(this.queue) ? new PackedNodeQueue() : new SortedNodeQueue();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public IPath computePathTo() {
+        this.instance.respawn(this.monster);
+        this.pathFinder.reset();
+        return this.pathFinder.computePathTo(this.instance.destination);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public IPath initiatePathTo() {
+        this.instance.respawn(this.monster);
+        this.pathFinder.reset();
+        return this.pathFinder.initiatePathTo(this.instance.destination);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int followPath(Blackhole blackhole) {
+        final Monster monster = this.monster;
+        final HydrazinePathFinder pathFinder = this.pathFinder;
+
+        this.instance.respawn(monster);
+        pathFinder.reset();
+
+        IPath path = pathFinder.initiatePathTo(this.instance.destination);
+        int ticks = 0;
+        while (path != null && ticks++ < MAX_TICKS) {
+            monster.updateTick();
+            path = pathFinder.updatePathFor(monster);
+            blackhole.consume(path);
+        }
+        return ticks;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public IPath triageIteration() {
+        final HydrazinePathFinder pathFinder = this.iteratingPathFinder;
+        if (pathFinder.queue.isEmpty()) {
+            this.instance.respawn(this.monster);
+            pathFinder.reset();
+            return pathFinder.initiatePathTo(this.instance.destination);
+        }
+        return pathFinder.update();
+    }
+}
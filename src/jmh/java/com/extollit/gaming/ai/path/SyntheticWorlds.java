@@ -0,0 +1,265 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleBox;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Reproducible canned worlds for benchmarking the engine, built on the example {@link InstanceSpace} and
+ * {@link ColumnarSpace} implementations.  Every world is generated from a fixed seed so that successive benchmark runs
+ * (and runs across branches) triage exactly the same graph.
+ */
+public final class SyntheticWorlds {
+    public static final long SEED = 0x4879647261L;
+
+    public static final BlockObject
+            stone = block(true, true),
+            water = liquid(),
+            closedDoor = door(false),
+            openDoor = door(true);
+
+    /**
+     * The canned worlds, each one stresses a different part of the engine
+     */
+    public enum Kind {
+        /** Flat uniform grass-land, dominated by singleton-compressed occlusion fields */
+        plain,
+
+        /** Walled labyrinth on a flat floor, forces the triage to back-track through dead-ends */
+        maze,
+
+        /** Solid rock with winding tunnels carved through it */
+        cave,
+
+        /** Flat land dotted with houses connected by open and closed doors */
+        village,
+
+        /** Deep water over a rocky bed with pillars, path-found by an aquatic swimmer */
+        ocean
+    }
+
+    /**
+     * A generated world along with the pathing entity that lives in it and the route it is expected to take
+     */
+    public static final class World {
+        public final Kind kind;
+        public final InstanceSpace instance;
+        public final ThreeDimensionalDoubleVector source, destination;
+
+        private World(Kind kind, InstanceSpace instance, ThreeDimensionalDoubleVector source, ThreeDimensionalDoubleVector destination) {
+            this.kind = kind;
+            this.instance = instance;
+            this.source = source;
+            this.destination = destination;
+        }
+
+        /**
+         * Creates a fresh pathing entity suitable for this world positioned at the source
+         *
+         * @return a new monster positioned at the source of this world
+         */
+        public Monster spawn() {
+            final Monster monster = new Monster();
+            monster.climber = true;
+            monster.opensDoors = true;
+            monster.swimmer = true;
+            if (kind == Kind.ocean)
+                monster.aquatic = true;
+            respawn(monster);
+            return monster;
+        }
+
+        /**
+         * Moves the monster back to the source of this world
+         *
+         * @param monster monster previously spawned in this world
+         */
+        public void respawn(Monster monster) {
+            monster.moveTo(source, null, null);
+        }
+    }
+
+    private SyntheticWorlds() {}
+
+    public static World create(Kind kind) {
+        final Random random = new Random(SEED);
+        switch (kind) {
+            case plain: return plain();
+            case maze: return maze(random);
+            case cave: return cave(random);
+            case village: return village();
+            case ocean: return ocean(random);
+            default:
+                throw new IllegalArgumentException("Unsupported world kind: " + kind);
+        }
+    }
+
+    private static World plain() {
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, 0, 0, 47, 3, 47, stone);
+
+        return new World(Kind.plain, instance, vec(2, 4, 2), vec(24, 4, 20));
+    }
+
+    private static World maze(Random random) {
+        final int cells = 12, extent = cells * 2 + 1, floor = 3;
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, 0, 0, extent + 15, floor, extent + 15, stone);
+
+        final boolean [][] open = new boolean[extent][extent];
+        final boolean [][] visited = new boolean[cells][cells];
+        final Deque<int[]> stack = new ArrayDeque<>();
+        final int [][] directions = { {1, 0}, {-1, 0}, {0, 1}, {0, -1} };
+
+        visited[0][0] = true;
+        open[1][1] = true;
+        stack.push(new int[] { 0, 0 });
+        while (!stack.isEmpty()) {
+            final int [] cell = stack.peek();
+            int candidates = 0;
+            final int [][] options = new int[4][];
+            for (int [] d : directions) {
+                final int cx = cell[0] + d[0], cz = cell[1] + d[1];
+                if (cx >= 0 && cz >= 0 && cx < cells && cz < cells && !visited[cz][cx])
+                    options[candidates++] = new int[] { cx, cz };
+            }
+            if (candidates == 0) {
+                stack.pop();
+                continue;
+            }
+            final int [] next = options[random.nextInt(candidates)];
+            visited[next[1]][next[0]] = true;
+            open[cell[1] + next[1] + 1][cell[0] + next[0] + 1] = true;
+            open[next[1] * 2 + 1][next[0] * 2 + 1] = true;
+            stack.push(next);
+        }
+
+        for (int z = 0; z < extent; ++z)
+            for (int x = 0; x < extent; ++x)
+                if (!open[z][x])
+                    fill(instance, x, floor + 1, z, x, floor + 3, z, stone);
+
+        return new World(Kind.maze, instance, vec(1, floor + 1, 1), vec(extent - 2, floor + 1, extent - 2));
+    }
+
+    private static World cave(Random random) {
+        final int top = 24, floor = 8;
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, 0, 0, 63, top, 63, stone);
+
+        final int x0 = 4, z0 = 4, xN = 26, zN = 22;
+        int x = x0, z = z0, y = floor;
+        while (x != xN || z != zN) {
+            carve(instance, x, y, z);
+            if (random.nextInt(3) == 0) {
+                if (random.nextBoolean())
+                    z += random.nextBoolean() ? +1 : -1;
+                else
+                    x += random.nextBoolean() ? +1 : -1;
+            } else if (x != xN && (z == zN || random.nextBoolean()))
+                x += Integer.signum(xN - x);
+            else
+                z += Integer.signum(zN - z);
+
+            x = Math.max(2, Math.min(60, x));
+            z = Math.max(2, Math.min(60, z));
+        }
+        carve(instance, x, y, z);
+
+        for (int worm = 0; worm < 12; ++worm) {
+            x = 2 + random.nextInt(40);
+            z = 2 + random.nextInt(40);
+            y = floor;
+            for (int step = 0; step < 48; ++step) {
+                carve(instance, x, y, z);
+                switch (random.nextInt(6)) {
+                    case 0: x = Math.min(60, x + 1); break;
+                    case 1: x = Math.max(2, x - 1); break;
+                    case 2: z = Math.min(60, z + 1); break;
+                    case 3: z = Math.max(2, z - 1); break;
+                    case 4: y = Math.min(floor + 3, y + 1); break;
+                    default: y = Math.max(floor - 2, y - 1); break;
+                }
+            }
+        }
+
+        return new World(Kind.cave, instance, vec(x0, floor, z0), vec(xN, floor, zN));
+    }
+
+    private static World village() {
+        final int floor = 3, y = floor + 1;
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, 0, 0, 47, floor, 47, stone);
+
+        int houses = 0;
+        for (int hz = 2; hz < 30; hz += 9)
+            for (int hx = 2; hx < 30; hx += 9) {
+                fill(instance, hx, y, hz, hx + 6, y + 2, hz + 6, stone);
+                fill(instance, hx + 1, y, hz + 1, hx + 5, y + 2, hz + 5, null);
+                final BlockObject door = (houses++ & 1) == 0 ? closedDoor : openDoor;
+                set(instance, hx + 3, y, hz + 6, door);
+                set(instance, hx + 3, y + 1, hz + 6, door);
+                set(instance, hx + 6, y, hz + 3, door);
+                set(instance, hx + 6, y + 1, hz + 3, door);
+            }
+
+        return new World(Kind.village, instance, vec(5, y, 5), vec(23, y, 23));
+    }
+
+    private static World ocean(Random random) {
+        final int bed = 2, surface = 14;
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, 0, 0, 47, bed, 47, stone);
+        fill(instance, 0, bed + 1, 0, 47, surface, 47, water);
+
+        for (int pillar = 0; pillar < 24; ++pillar) {
+            final int x = 4 + random.nextInt(20), z = 4 + random.nextInt(16);
+            fill(instance, x, bed + 1, z, x + 1, bed + 1 + random.nextInt(surface - bed), z + 1, stone);
+        }
+
+        return new World(Kind.ocean, instance, vec(2, 6, 2), vec(24, 9, 20));
+    }
+
+    private static void carve(InstanceSpace instance, int x, int y, int z) {
+        fill(instance, x - 1, y, z - 1, x + 1, y + 2, z + 1, null);
+    }
+
+    private static void fill(InstanceSpace instance, int x0, int y0, int z0, int xN, int yN, int zN, BlockObject block) {
+        for (int z = z0; z <= zN; ++z)
+            for (int y = y0; y <= yN; ++y)
+                for (int x = x0; x <= xN; ++x)
+                    set(instance, x, y, z, block);
+    }
+
+    private static void set(InstanceSpace instance, int x, int y, int z, BlockObject block) {
+        instance.setBlock(x, y, z, block, 0);
+    }
+
+    private static ThreeDimensionalDoubleVector vec(int x, int y, int z) {
+        return new ThreeDimensionalDoubleVector(x + 0.5, y, z + 0.5);
+    }
+
+    private static BlockObject block(boolean impeding, boolean fullyBounded) {
+        final BlockObject block = new BlockObject();
+        block.impeding = impeding;
+        block.fullyBounded = fullyBounded;
+        block.bounds = new ThreeDimensionalDoubleBox(0, 0, 0, 1, 1, 1);
+        return block;
+    }
+
+    private static BlockObject liquid() {
+        final BlockObject block = block(false, false);
+        block.liquid = true;
+        return block;
+    }
+
+    private static BlockObject door(boolean open) {
+        final BlockObject block = block(!open, false);
+        block.door = true;
+        block.bounds = new ThreeDimensionalDoubleBox(0, 0, 0, 1, 1, 0.1875);
+        return block;
+    }
+}
@@ -1,11 +1,11 @@
 package com.extollit.gaming.ai.path
 
 import com.extollit.gaming.ai.path.model.*
-import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.node.IBoundedNodeCalculator
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
 import kotlin.math.floor
 
-internal abstract class AbstractNodeCalculator(protected val instanceSpace: IInstanceSpace) : INodeCalculator {
+internal abstract class AbstractNodeCalculator(protected val instanceSpace: IInstanceSpace) : IBoundedNodeCalculator {
     protected var capabilities: IPathingEntity.Capabilities? = null
     protected var discreteSize = 0
     protected var tall = 0
@@ -18,6 +18,9 @@ internal abstract class AbstractNodeCalculator(protected val instanceSpace: IIns
         capabilities = subject.capabilities()
     }
 
+    // The footprint of the entity around the block and around an origin block adjacent to it
+    override fun reachXZ(): Int = discreteSize + 1
+
     protected fun verticalClearanceAt(
         sampler: FlagSampler,
         max: Int, flags: Byte,
@@ -32,9 +35,20 @@ internal abstract class AbstractNodeCalculator(protected val instanceSpace: IIns
         val yN = y.coerceAtLeast(y - delta.y) + tall
         var yt = y
         val yNa = yN + floor(partY.toDouble()).toInt()
-        while (yt < yNa && yt < yMax) {
+        val yEnd = yNa.coerceAtMost(yMax)
+        if (yt < yEnd) {
             mutablePassibility = mutablePassibility.between(clearance(clearanceFlags))
-            clearanceFlags = sampler.flagsAt(x, ++yt, z)
+            var yy = yt + 1
+            while (yy < yEnd) {
+                // Open air all has the same clearance, so scan past it and only inspect what else lies overhead
+                val found = sampler.scanUp(x, yy, z, yEnd - 1, OBSTRUCTIONS)
+                if (found > yy) mutablePassibility = mutablePassibility.between(clearance(Element.air.mask))
+                if (found >= yEnd) break
+                mutablePassibility = mutablePassibility.between(clearance(sampler.flagsAt(x, found, z)))
+                yy = found + 1
+            }
+            yt = yEnd
+            clearanceFlags = sampler.flagsAt(x, yt, z)
         }
         if (yt < yN && yt < yMax && insufficientHeadClearance(clearanceFlags, partY, x, yt, z)) mutablePassibility =
             mutablePassibility.between(clearance(clearanceFlags))
@@ -121,6 +135,9 @@ internal abstract class AbstractNodeCalculator(protected val instanceSpace: IIns
     }
 
     companion object {
+        /** Flags having a different clearance than open air, see [PassibilityHelpers.clearance] */
+        private val OBSTRUCTIONS = FlagSampler.flagSet { !Element.air.flagsIn(it) || Logic.doorway.flagsIn(it) }
+
         @JvmStatic
         protected fun swimmingRequiredFor(flags: Byte): Boolean =
             Element.water.flagsIn(flags) || Element.fire.flagsIn(flags) && !Logic.fuzzy.flagsIn(flags)
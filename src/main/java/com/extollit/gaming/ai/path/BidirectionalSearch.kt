@@ -0,0 +1,277 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.node.IDropAwareNodeCalculator
+import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.node.Node
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ * Bidirectional A* search between two nodes of a graph, one search expands forward from the source and the other
+ * backward from the target until they meet (see [HydrazinePathFinder.computePathTo]).  Every move costs the same and
+ * the heuristic is the Manhattan distance along the x and z axes (or the distance along the y-axis if greater for
+ * omnidirectional movement), which each move changes by at most one.  The heuristic is therefore consistent and the
+ * search stops with a shortest path as soon as the shortest path through the nodes where the searches met is no longer
+ * than the least estimate in either open-set.  The backward search is only expanded while its open-set is much smaller
+ * than the forward one.
+ *
+ * Moves expanded backward are computed forward from the node being expanded and then checked forward from the
+ * neighbor found, so moves are only ever taken in the direction that they are valid.  Moves that cannot be reversed
+ * this way are drops from ledges, which the node calculator finds (see [IDropAwareNodeCalculator.ledgesAbove]) and
+ * which are checked forward as well.  The backward search therefore finds every move onto a node and proves the target
+ * unreachable once its open-set is exhausted, which for an enclosed target happens after expanding only the nodes
+ * around it.
+ *
+ * Search state is held in primitive open-addressing tables keyed by packed node coordinates and reused between
+ * searches.
+ */
+internal class BidirectionalSearch {
+    private class Frontier {
+        private var keys = LongArray(INITIAL_CAPACITY)
+        // Zero if empty, otherwise one more than the index of the record
+        private var slots = IntArray(INITIAL_CAPACITY)
+        private var mask = INITIAL_CAPACITY - 1
+        private var heap = LongArray(INITIAL_CAPACITY)
+
+        val nodes = ArrayList<Node>()
+        var costs = IntArray(INITIAL_CAPACITY)
+        var parents = IntArray(INITIAL_CAPACITY)
+        var open = 0
+            private set
+
+        val isEmpty: Boolean
+            get() = open == 0
+
+        /** The least estimate of the total cost of a path through a node in the open-set */
+        val least: Int
+            get() = if (open == 0) Int.MAX_VALUE else (heap[0] ushr 48).toInt()
+
+        fun clear() {
+            slots.fill(0)
+            nodes.clear()
+            open = 0
+        }
+
+        fun indexOf(coordinates: ThreeDimensionalIntVector): Int {
+            val key = coordinates.packed()
+            var i = slot(key, mask)
+            while (true) {
+                val index = slots[i]
+                if (index == 0) return -1
+                if (keys[i] == key) return index - 1
+                i = (i + 1) and mask
+            }
+        }
+
+        /**
+         * Records a path to a node, adding it to the open-set if it is cheaper than any path to it recorded before
+         *
+         * @return the index of the record, -1 if a path to the node at least as cheap was already recorded
+         */
+        fun offer(node: Node, cost: Int, parent: Int, estimate: Int): Int {
+            var index = indexOf(node.coordinates)
+            if (index == -1) {
+                index = nodes.size
+                if ((index + 1) * 2 > keys.size) grow()
+                var i = slot(node.coordinates.packed(), mask)
+                while (slots[i] != 0) i = (i + 1) and mask
+                keys[i] = node.coordinates.packed()
+                slots[i] = index + 1
+                if (index == costs.size) {
+                    costs = costs.copyOf(index * 2)
+                    parents = parents.copyOf(index * 2)
+                }
+                nodes.add(node)
+            } else if (costs[index] <= cost) return -1
+            costs[index] = cost
+            parents[index] = parent
+            // Estimate, then inverted cost and then the index of the record from the most significant bits
+            val estimated = (cost + estimate).coerceAtMost(MAX_ESTIMATE)
+            push(estimated.toLong() shl 48 or ((MAX_COST - cost).toLong() shl 32) or index.toLong())
+            return index
+        }
+
+        /**
+         * Removes the node with the least estimate from the open-set, preferring the deepest among equals
+         *
+         * @return the index of its record, or -1 if the entry removed was superseded by a cheaper path to the node
+         */
+        fun poll(): Int {
+            val entry = heap[0]
+            val last = heap[--open]
+            if (open > 0) siftDown(last)
+            val index = entry.toInt()
+            return if (MAX_COST - (entry ushr 32 and 0xFFFF).toInt() == costs[index]) index else -1
+        }
+
+        private fun push(entry: Long) {
+            if (open == heap.size) heap = heap.copyOf(open * 2)
+            var i = open++
+            while (i > 0) {
+                val parent = (i - 1) shr 1
+                if (heap[parent] <= entry) break
+                heap[i] = heap[parent]
+                i = parent
+            }
+            heap[i] = entry
+        }
+
+        private fun siftDown(entry: Long) {
+            var i = 0
+            while (true) {
+                var child = 2 * i + 1
+                if (child >= open) break
+                if (child + 1 < open && heap[child + 1] < heap[child]) child++
+                if (entry <= heap[child]) break
+                heap[i] = heap[child]
+                i = child
+            }
+            heap[i] = entry
+        }
+
+        private fun grow() {
+            val keys = keys
+            val slots = slots
+            this.keys = LongArray(keys.size * 2)
+            this.slots = IntArray(slots.size * 2)
+            mask = this.keys.size - 1
+            for (i in keys.indices) {
+                if (slots[i] == 0) continue
+                var j = slot(keys[i], mask)
+                while (this.slots[j] != 0) j = (j + 1) and mask
+                this.keys[j] = keys[i]
+                this.slots[j] = slots[i]
+            }
+        }
+    }
+
+    private val forward = Frontier()
+    private val backward = Frontier()
+
+    /** The number of nodes expanded by the last search in both directions */
+    var expansions = 0
+        private set
+
+    private var best = Int.MAX_VALUE
+    private var meeting: Node? = null
+
+    /**
+     * Searches for a shortest path between two nodes
+     *
+     * @param source the node to search from
+     * @param target the node to search to
+     * @param omnidirectional whether the entity also moves up and down, see [INodeCalculator.omnidirectional]
+     * @param move computes the node reached by moving from a node in one of the directions of [DX], [DY] and [DZ]
+     * (only the first four unless omnidirectional), null if the move is not allowed
+     * @param ledges finds the nodes that an entity may drop from onto a node, see [IDropAwareNodeCalculator.ledgesAbove]
+     * @return the nodes of the path from source to target, or null if the target is unreachable
+     */
+    fun search(
+        source: Node,
+        target: Node,
+        omnidirectional: Boolean,
+        move: (Node, Int) -> Node?,
+        ledges: (Node) -> Collection<Node>
+    ): Array<Node>? {
+        val forward = forward
+        val backward = backward
+        forward.clear()
+        backward.clear()
+        expansions = 0
+        best = Int.MAX_VALUE
+        meeting = null
+        if (source.coordinates == target.coordinates) return arrayOf(source)
+
+        val directions = if (omnidirectional) 6 else 4
+        val sourceCoords = source.coordinates
+        val targetCoords = target.coordinates
+        forward.offer(source, 0, -1, estimate(sourceCoords, targetCoords, omnidirectional))
+        backward.offer(target, 0, -1, estimate(targetCoords, sourceCoords, omnidirectional))
+
+        while (!forward.isEmpty && !backward.isEmpty && best > max(forward.least, backward.least)) {
+            val forwards = forward.open <= backward.open * BACKWARD_BIAS
+            val frontier = if (forwards) forward else backward
+            val opposite = if (forwards) backward else forward
+            val index = frontier.poll()
+            if (index == -1) continue
+
+            expansions++
+            val current = frontier.nodes[index]
+            val cost = frontier.costs[index] + 1
+            val goal = if (forwards) targetCoords else sourceCoords
+            for (d in 0 until directions) {
+                val next = move(current, d) ?: continue
+                if (!forwards && move(next, d xor 1) !== current) continue
+                reach(frontier, opposite, next, cost, index, estimate(next.coordinates, goal, omnidirectional))
+            }
+            if (forwards) continue
+            for (ledge in ledges(current)) {
+                val d = directionOf(ledge.coordinates, current.coordinates)
+                if (d == -1 || move(ledge, d) !== current) continue
+                reach(frontier, opposite, ledge, cost, index, estimate(ledge.coordinates, goal, omnidirectional))
+            }
+        }
+
+        val meeting = meeting
+        return if (meeting == null) null else pathThrough(meeting, best)
+    }
+
+    private fun reach(frontier: Frontier, opposite: Frontier, node: Node, cost: Int, parent: Int, estimate: Int) {
+        if (frontier.offer(node, cost, parent, estimate) == -1) return
+        val other = opposite.indexOf(node.coordinates)
+        if (other != -1 && cost + opposite.costs[other] < best) {
+            best = cost + opposite.costs[other]
+            meeting = node
+        }
+    }
+
+    private fun pathThrough(meeting: Node, length: Int): Array<Node> {
+        val nodes = ArrayList<Node>(length + 1)
+        var index = forward.indexOf(meeting.coordinates)
+        while (index != -1) {
+            nodes.add(forward.nodes[index])
+            index = forward.parents[index]
+        }
+        nodes.reverse()
+        index = backward.parents[backward.indexOf(meeting.coordinates)]
+        while (index != -1) {
+            nodes.add(backward.nodes[index])
+            index = backward.parents[index]
+        }
+        return nodes.toTypedArray()
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 256
+        private const val MAX_COST = 0xFFFF
+        private const val MAX_ESTIMATE = 0x7FFF
+        // The forward open-set may grow this many times larger than the backward one before the backward search is
+        // expanded, guided by the heuristic the forward search narrows toward the target while an enclosed target keeps
+        // the backward open-set small
+        private const val BACKWARD_BIAS = 8
+
+        /** West, east, north, south and then up and down for omnidirectional movement, opposites differ in the lowest bit */
+        val DX = intArrayOf(-1, +1, 0, 0, 0, 0)
+        val DY = intArrayOf(0, 0, 0, 0, +1, -1)
+        val DZ = intArrayOf(0, 0, -1, +1, 0, 0)
+
+        private fun directionOf(from: ThreeDimensionalIntVector, to: ThreeDimensionalIntVector): Int {
+            val dx = to.x - from.x
+            val dz = to.z - from.z
+            for (d in 0 until 4)
+                if (DX[d] == dx && DZ[d] == dz) return d
+            return -1
+        }
+
+        private fun estimate(from: ThreeDimensionalIntVector, to: ThreeDimensionalIntVector, omnidirectional: Boolean): Int {
+            val horizontal = abs(from.x - to.x) + abs(from.z - to.z)
+            return if (omnidirectional) max(horizontal, abs(from.y - to.y)) else horizontal
+        }
+
+        private fun slot(key: Long, mask: Int): Int {
+            val h = key * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and mask
+        }
+    }
+}
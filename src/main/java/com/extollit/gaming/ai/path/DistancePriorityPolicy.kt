@@ -0,0 +1,86 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector
+
+/**
+ * Prioritizes path-finders by the distance of their entities to the nearest observer (e.g. player), so that entities
+ * nobody can see cost almost nothing.  Entities within [extremeRange] of an observer are given
+ * [SchedulingPriority.extreme], within [highRange] [SchedulingPriority.high], within [lowRange]
+ * [SchedulingPriority.low] and beyond that they are degraded to coarse movement (unless [coarse] is false).
+ *
+ * Within range of an observer the priority is then refined by urgency: entities that are stuck on their paths or that
+ * are close to their destinations are promoted by one level, while entities whose recent searches mostly failed are
+ * demoted by one level (but never degraded to coarse movement) since further effort is likely to be wasted.
+ *
+ * Call [observers] with the positions of all observers whenever they move, for example once per tick.
+ *
+ * @param extremeRange the distance from an observer in blocks within which entities have extreme priority
+ * @param highRange the distance from an observer in blocks within which entities have high priority
+ * @param lowRange the distance from an observer in blocks within which entities have low priority
+ * @param coarse whether entities beyond [lowRange] of all observers are degraded to coarse movement rather than
+ * keeping low priority
+ */
+class DistancePriorityPolicy @JvmOverloads constructor(
+    private val extremeRange: Double = DEFAULT_EXTREME_RANGE,
+    private val highRange: Double = DEFAULT_HIGH_RANGE,
+    private val lowRange: Double = DEFAULT_LOW_RANGE,
+    private val coarse: Boolean = true
+) : IPriorityPolicy {
+    // Replaced by the thread calling observers and read by the threads driving path-finders
+    @Volatile
+    private var observers: Array<ThreeDimensionalDoubleVector> = emptyArray()
+
+    init {
+        require(extremeRange <= highRange && highRange <= lowRange) {
+            "Ranges must be ascending: $extremeRange, $highRange, $lowRange"
+        }
+    }
+
+    /**
+     * Replaces the positions of the observers, the positions are copied
+     *
+     * @param positions the current positions of all observers
+     */
+    fun observers(positions: Collection<ThreeDimensionalDoubleVector>) {
+        observers = positions.map { ThreeDimensionalDoubleVector(it) }.toTypedArray()
+    }
+
+    override fun priorityFor(pathFinder: HydrazinePathFinder, context: PriorityContext): SchedulingPriority? {
+        val position = pathFinder.subject.coordinates()
+        var nearest = Double.MAX_VALUE
+        for (observer in observers) {
+            val dx = observer.x - position.x
+            val dy = observer.y - position.y
+            val dz = observer.z - position.z
+            val distanceSquared = dx * dx + dy * dy + dz * dz
+            if (distanceSquared < nearest) nearest = distanceSquared
+        }
+
+        var level = when {
+            nearest <= extremeRange * extremeRange -> 0
+            nearest <= highRange * highRange -> 1
+            nearest <= lowRange * lowRange -> 2
+            coarse -> return null
+            else -> 2
+        }
+        if (context.stagnantFor > STAGNANT_LIMIT || context.distanceToDestination < URGENT_DISTANCE)
+            level--
+        else if (context.successRate < FAILING_SUCCESS_RATE)
+            level++
+        return LEVELS[level.coerceIn(0, LEVELS.size - 1)]
+    }
+
+    companion object {
+        const val DEFAULT_EXTREME_RANGE = 16.0
+        const val DEFAULT_HIGH_RANGE = 48.0
+        const val DEFAULT_LOW_RANGE = 96.0
+
+        // Stagnation beyond which an entity is considered stuck, in the same units as IPath.stagnantFor
+        private const val STAGNANT_LIMIT = 12f
+        // Distance to the destination in blocks within which an entity is about to reach it (e.g. attacking)
+        private const val URGENT_DISTANCE = 8.0
+        private const val FAILING_SUCCESS_RATE = 0.25f
+
+        private val LEVELS = arrayOf(SchedulingPriority.extreme, SchedulingPriority.high, SchedulingPriority.low)
+    }
+}
@@ -0,0 +1,152 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.model.FlagSampler
+import com.extollit.gaming.ai.path.model.IGraphNodeFilter
+import com.extollit.gaming.ai.path.model.IOcclusionProvider
+import com.extollit.gaming.ai.path.model.IPathingEntity
+import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * Distances in moves from every node within a bounded region to one target node, computed by a breadth-first
+ * (uniform-cost Dijkstra) search outward from the target.  Each move expanded by the search is computed with a node
+ * calculator exactly like the moves expanded by [HydrazinePathFinder.processNode] but in the opposite direction, moves
+ * are assumed to be reversible.  Descending this field therefore requires checking each move forward, see
+ * [HydrazinePathFinder.withFlowFields].
+ *
+ * Distances are held in a primitive open-addressing table keyed by packed node coordinates.
+ *
+ * @param radius the maximum distance along each axis from the target that nodes are searched
+ */
+internal class FlowField(private val radius: Int) {
+    private var keys = LongArray(INITIAL_CAPACITY)
+    // Zero if empty, otherwise one more than the distance
+    private var values = IntArray(INITIAL_CAPACITY)
+    private var mask = INITIAL_CAPACITY - 1
+    private var queue = LongArray(INITIAL_CAPACITY)
+
+    /** The number of nodes reached by the last computation */
+    var size = 0
+        private set
+
+    /** Generation of [FlowFields] in which this field was last computed, -1 if it never was */
+    var generation = -1L
+    /** Generation of [FlowFields] in which this field was last requested */
+    var used = -1L
+
+    /**
+     * Retrieves the distance to the target from the node at the specified coordinates
+     *
+     * @return the number of moves to the target, or -1 if the node was not reached
+     */
+    fun distanceAt(coordinates: ThreeDimensionalIntVector): Int = get(coordinates.packed())
+
+    /**
+     * Discards all distances and searches outward from the target again
+     *
+     * @param target coordinates of the target node
+     * @param calculator node calculator applied to an entity, the field is only valid for entities with the same
+     * capabilities and size
+     * @param capabilities capabilities of that entity
+     * @param filter graph node filter to map passibility of computed nodes with, may be null
+     * @param occlusionProvider occlusion data covering the region around the target
+     */
+    fun compute(
+        target: ThreeDimensionalIntVector,
+        calculator: INodeCalculator,
+        capabilities: IPathingEntity.Capabilities,
+        filter: IGraphNodeFilter?,
+        occlusionProvider: IOcclusionProvider
+    ) {
+        values.fill(0)
+        size = 0
+        val directions = if (calculator.omnidirectional()) 6 else 4
+        val origin = ThreeDimensionalIntVector(0, 0, 0)
+        val probe = ThreeDimensionalIntVector(0, 0, 0)
+
+        var head = 0
+        var tail = 0
+        put(target.packed(), 0)
+        queue[tail++] = target.packed()
+        while (head < tail) {
+            val cell = queue[head++]
+            val distance = get(cell) + 1
+            origin.set(
+                ThreeDimensionalIntVector.unpackX(cell),
+                ThreeDimensionalIntVector.unpackY(cell),
+                ThreeDimensionalIntVector.unpackZ(cell)
+            )
+            for (d in 0 until directions) {
+                probe.set(origin.x + DX[d], origin.y + DY[d], origin.z + DZ[d])
+                if (outside(target, probe)) continue
+
+                val node = calculator.passibleNodeNear(probe, origin, FlagSampler(occlusionProvider))
+                if (filter != null) {
+                    val passibility = filter.mapPassibility(node)
+                    if (passibility != null) node.passibility(passibility)
+                }
+                val coordinates = node.coordinates
+                if (node.passibility().impassible(capabilities) || outside(target, coordinates)) continue
+
+                val key = coordinates.packed()
+                if (get(key) >= 0) continue
+                put(key, distance)
+                if (tail == queue.size) queue = queue.copyOf(queue.size * 2)
+                queue[tail++] = key
+            }
+        }
+    }
+
+    private fun outside(target: ThreeDimensionalIntVector, coordinates: ThreeDimensionalIntVector): Boolean =
+        coordinates.x < target.x - radius || coordinates.x > target.x + radius ||
+        coordinates.y < target.y - radius || coordinates.y > target.y + radius ||
+        coordinates.z < target.z - radius || coordinates.z > target.z + radius
+
+    private fun get(key: Long): Int {
+        var i = slot(key, mask)
+        while (true) {
+            val value = values[i]
+            if (value == 0) return -1
+            if (keys[i] == key) return value - 1
+            i = (i + 1) and mask
+        }
+    }
+
+    private fun put(key: Long, distance: Int) {
+        if ((size + 1) * 2 > keys.size) grow()
+        var i = slot(key, mask)
+        while (values[i] != 0) i = (i + 1) and mask
+        keys[i] = key
+        values[i] = distance + 1
+        size++
+    }
+
+    private fun grow() {
+        val keys = keys
+        val values = values
+        this.keys = LongArray(keys.size * 2)
+        this.values = IntArray(values.size * 2)
+        mask = this.keys.size - 1
+        for (i in keys.indices) {
+            if (values[i] == 0) continue
+            var j = slot(keys[i], mask)
+            while (this.values[j] != 0) j = (j + 1) and mask
+            this.keys[j] = keys[i]
+            this.values[j] = values[i]
+        }
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 1024
+
+        // West, east, north, south and then up and down for omnidirectional calculators, as in processNode
+        private val DX = intArrayOf(-1, +1, 0, 0, 0, 0)
+        private val DY = intArrayOf(0, 0, 0, 0, +1, -1)
+        private val DZ = intArrayOf(0, 0, -1, +1, 0, 0)
+
+        private fun slot(key: Long, mask: Int): Int {
+            val h = key * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and mask
+        }
+    }
+}
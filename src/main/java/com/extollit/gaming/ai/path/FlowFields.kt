@@ -0,0 +1,109 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.model.IGraphNodeFilter
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionProviderFactory
+import com.extollit.gaming.ai.path.model.IPathingEntity
+import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * Flow fields shared by the path-finders of an instance space, for many entities converging on the same destination
+ * (see [HydrazinePathFinder.withFlowFields]).  Rather than each path-finder searching for its own path, a field of
+ * distances to the destination is computed once over a bounded region around it (see [FlowField]) and every entity
+ * with the same capabilities and size (see [PathCache.fingerprintOf]) derives its path by descending that field.
+ *
+ * Fields are keyed by the destination block, the entity fingerprint and the graph node filter.  A field is computed at
+ * most once per tick, the implementor must call [tick] once every tick so that fields follow terrain changes.  Fields
+ * that were not requested during the previous tick are discarded.
+ *
+ * There should be one instance of this class for each instance space, it is safe for use by multiple threads although
+ * path-finders requesting a field wait while it is being computed.
+ *
+ * @param instance the instance space that fields are computed in
+ * @param radius the maximum distance along each axis from the destination that a field covers
+ */
+class FlowFields @JvmOverloads constructor(
+    private val instance: IInstanceSpace,
+    private val radius: Int = DEFAULT_RADIUS
+) {
+    private data class Key(val target: Long, val fingerprint: Long, val filter: IGraphNodeFilter?)
+
+    private val fields: MutableMap<Key, FlowField> = HashMap()
+    private var generation = 0L
+    private var computations = 0L
+
+    init {
+        require(radius > 0) { "Flow fields must have a positive radius" }
+    }
+
+    /** The number of fields currently retained */
+    val size: Int
+        @Synchronized get() = fields.size
+
+    /** The number of times a field was computed */
+    val computationCount: Long
+        @Synchronized get() = computations
+
+    /**
+     * Advances to the next tick, fields requested after this are computed again and those that were not requested
+     * during the previous tick are discarded.
+     */
+    @Synchronized
+    fun tick() {
+        generation++
+        fields.values.removeAll { it.used < generation - 1 }
+    }
+
+    /**
+     * Discards all fields
+     */
+    @Synchronized
+    fun clear(): Unit = fields.clear()
+
+    /**
+     * Retrieves the field of distances to the specified target, computing it if it was not yet computed this tick
+     *
+     * @param target coordinates of the target node
+     * @param fingerprint fingerprint of the requesting entity, see [PathCache.fingerprintOf]
+     * @param filter graph node filter of the requesting path-finder
+     * @param capabilities capabilities of the requesting entity
+     * @param occlusionProviderFactory creates occlusion data for computing the field
+     * @param calculator creates a node calculator applied to the requesting entity for computing the field
+     * @return the field, possibly shared with other path-finders
+     */
+    @Synchronized
+    internal fun fieldTo(
+        target: ThreeDimensionalIntVector,
+        fingerprint: Long,
+        filter: IGraphNodeFilter?,
+        capabilities: IPathingEntity.Capabilities,
+        occlusionProviderFactory: IOcclusionProviderFactory,
+        calculator: () -> INodeCalculator
+    ): FlowField {
+        val field = fields.getOrPut(Key(target.packed(), fingerprint, filter)) { FlowField(radius) }
+        field.used = generation
+        if (field.generation != generation) {
+            val occlusionProvider = occlusionProviderFactory.fromInstanceSpace(
+                instance,
+                target.x - radius shr 4,
+                target.z - radius shr 4,
+                target.x + radius shr 4,
+                target.z + radius shr 4
+            )
+            try {
+                field.compute(target, calculator(), capabilities, filter, occlusionProvider)
+            } finally {
+                if (occlusionProvider is AutoCloseable) occlusionProvider.close()
+            }
+            field.generation = generation
+            computations++
+        }
+        return field
+    }
+
+    companion object {
+        /** The default maximum distance along each axis from the destination that a field covers */
+        const val DEFAULT_RADIUS = 32
+    }
+}
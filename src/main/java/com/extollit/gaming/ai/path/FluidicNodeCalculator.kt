@@ -4,13 +4,13 @@ import com.extollit.gaming.ai.path.model.FlagSampler
 import com.extollit.gaming.ai.path.model.Gravitation
 import com.extollit.gaming.ai.path.model.IInstanceSpace
 import com.extollit.gaming.ai.path.model.Passibility
-import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.node.IDropAwareNodeCalculator
 import com.extollit.gaming.ai.path.node.Node
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
 import kotlin.math.roundToInt
 
 internal class FluidicNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNodeCalculator(instanceSpace),
-    INodeCalculator {
+    IDropAwareNodeCalculator {
     override fun passibleNodeNear(coords0: ThreeDimensionalIntVector, origin: ThreeDimensionalIntVector?, flagSampler: FlagSampler): Node {
         val point: Node
         val capabilities = capabilities
@@ -69,4 +69,14 @@ internal class FluidicNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNo
     }
 
     override fun omnidirectional(): Boolean = true
+
+    // The block beneath, and the one under it whose height offsets a partial block resting upon it
+    override fun reachBelow(): Int = 2
+
+    // The clearance of the entity, moving up from the origin
+    override fun reachAbove(): Int = tall + 2
+
+    // Fluidic movement does not fall, moves in opposite directions cover the same cells
+    override fun ledgesAbove(coords: ThreeDimensionalIntVector, flagSampler: FlagSampler): Collection<ThreeDimensionalIntVector> =
+        emptyList()
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.extollit.gaming.ai.path
 
 import com.extollit.gaming.ai.path.model.*
+import com.extollit.gaming.ai.path.node.IDropAwareNodeCalculator
 import com.extollit.gaming.ai.path.node.Node
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
 import kotlin.math.roundToInt
 
-internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNodeCalculator(instanceSpace) {
+internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNodeCalculator(instanceSpace),
+    IDropAwareNodeCalculator {
 
     // TODO hmmmmmm
     override fun passibleNodeNear(coords0: ThreeDimensionalIntVector, origin: ThreeDimensionalIntVector?, flagSampler: FlagSampler): Node {
@@ -73,29 +75,29 @@ internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNod
                 passibility =
                     verticalClearanceAt(flagSampler, tall, flags, passibility, delta, x, y, z, partY)
                 var swimable = false
-                let {
-                    var condition = !impedesMovement || unstable(flags)
-                    var j = 0
-                    while (condition && !it.swimable(flags).apply { swimable = this } && j <= MAX_SURVIVE_FALL_DISTANCE) {
-                        flags = flagSampler.flagsAt(x, --y, z)
-                        j++
-                        condition = unstable(flags)
+                if (!impedesMovement || unstable(flags)) {
+                    swimable = swimable(flags)
+                    if (!swimable) {
+                        val yN = y - MAX_SURVIVE_FALL_DISTANCE - 1
+                        y = flagSampler.scanDown(x, y - 1, z, yN, FALL_STOPS[capabilityIndex()])
+                        if (y < yN) y = yN
+                        flags = flagSampler.flagsAt(x, y, z)
+                        swimable = unstable(flags) && swimable(flags)
                     }
                 }
                 if (swimable) {
                     val cesaLimit = y + CESA_LIMIT
+                    val y00 = y
                     val flags00 = flags
-                    var flags0: Byte
-                    do {
-                        flags0 = flags
-                        flags = flagSampler.flagsAt(x, ++y, z)
-                    } while (swimable(flags) && unstable(flags) && y < cesaLimit)
-                    if (y >= cesaLimit) {
-                        y -= CESA_LIMIT + 1
-                        flags = flags00
-                    } else {
+                    y = flagSampler.scanUp(x, y + 1, z, cesaLimit, SWIM_STOPS[capabilityIndex()])
+                    if (y < cesaLimit) {
+                        flagSampler.flagsAt(x, y, z)
                         y--
-                        flags = flags0
+                        flags = if (y == y00) flags00 else flagSampler.flagsAt(x, y, z)
+                    } else {
+                        if (y == cesaLimit) flagSampler.flagsAt(x, y, z)
+                        y = y00 - 1
+                        flags = flags00
                     }
                 }
                 partY = topOffsetAt(flags, x, y++, z)
@@ -148,6 +150,38 @@ internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNod
 
     override fun omnidirectional(): Boolean = false
 
+    // The deepest survivable fall, plus the blocks beneath the origin and beneath where the entity lands
+    override fun reachBelow(): Int = MAX_SURVIVE_FALL_DISTANCE + 3
+
+    // Swimming up to the surface from one block above, then the clearance of the entity over its new height
+    override fun reachAbove(): Int = CESA_LIMIT + tall + 3
+
+    /**
+     * Ledges are found beside the column above the node, from two blocks above it (lower ledges are steps that the
+     * entity climbs back up) to the greatest height the entity survives falling from or the first block obstructing the
+     * column.  Only the center column of the entity is scanned.
+     */
+    override fun ledgesAbove(coords: ThreeDimensionalIntVector, flagSampler: FlagSampler): Collection<ThreeDimensionalIntVector> {
+        var ledges: MutableList<ThreeDimensionalIntVector>? = null
+        val x = coords.x
+        val z = coords.z
+        for (y in coords.y + 1..coords.y + MAX_SURVIVE_FALL_DISTANCE + 1) {
+            if (PassibilityHelpers.impedesMovement(flagSampler.flagsAt(x, y, z), capabilities)) break
+            if (y == coords.y + 1) continue
+            for (d in LEDGE_DX.indices) {
+                val lx = x + LEDGE_DX[d]
+                val lz = z + LEDGE_DZ[d]
+                if (ledgeAt(flagSampler, lx, y, lz))
+                    (ledges ?: ArrayList<ThreeDimensionalIntVector>(4).also { ledges = it }).add(ThreeDimensionalIntVector(lx, y, lz))
+            }
+        }
+        return ledges ?: emptyList()
+    }
+
+    private fun ledgeAt(flagSampler: FlagSampler, x: Int, y: Int, z: Int): Boolean =
+        PassibilityHelpers.impedesMovement(flagSampler.flagsAt(x, y - 1, z), capabilities)
+                && !PassibilityHelpers.impedesMovement(flagSampler.flagsAt(x, y, z), capabilities)
+
     private fun fallingSafety(passibility: Passibility, y0: Int, minY: Int): Passibility {
         var mutablePassibility = passibility
         val dy = y0 - minY
@@ -157,17 +191,20 @@ internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNod
         return mutablePassibility
     }
 
-    private fun swimable(flags: Byte): Boolean {
-        return capabilities!!.swimmer() && swimmingRequiredFor(flags) && (Element.water.flagsIn(
-            flags
-        ) || capabilities!!.fireResistant())
-    }
+    private fun swimable(flags: Byte): Boolean = swimable(flags, capabilities!!.swimmer(), capabilities!!.fireResistant())
+
+    /** Index into [FALL_STOPS] and [SWIM_STOPS] for the current capabilities */
+    private fun capabilityIndex(): Int =
+        (if (capabilities!!.swimmer()) 1 else 0) or (if (capabilities!!.fireResistant()) 2 else 0)
 
     companion object {
         private var MAX_SAFE_FALL_DISTANCE = 4
         private var MAX_SURVIVE_FALL_DISTANCE = 20
         private var CESA_LIMIT = 16
 
+        private val LEDGE_DX = intArrayOf(-1, +1, 0, 0)
+        private val LEDGE_DZ = intArrayOf(0, 0, -1, +1)
+
         /**
          * Takes the configuration model passed in and uses it to configure this node calculator.
          *
@@ -180,5 +217,18 @@ internal class GroundNodeCalculator(instanceSpace: IInstanceSpace) : AbstractNod
         }
 
         private fun unstable(flags: Byte): Boolean = !Element.earth.flagsIn(flags) || Logic.ladder.flagsIn(flags)
+
+        private fun swimable(flags: Byte, swimmer: Boolean, fireResistant: Boolean): Boolean =
+            swimmer && swimmingRequiredFor(flags) && (Element.water.flagsIn(flags) || fireResistant)
+
+        /** Flags that end a fall, by [capabilityIndex] */
+        private val FALL_STOPS = IntArray(4) { c ->
+            FlagSampler.flagSet { !unstable(it) || swimable(it, c and 1 != 0, c and 2 != 0) }
+        }
+
+        /** Flags that end an ascent to the surface when swimming, by [capabilityIndex] */
+        private val SWIM_STOPS = IntArray(4) { c ->
+            FlagSampler.flagSet { !unstable(it) || !swimable(it, c and 1 != 0, c and 2 != 0) }
+        }
     }
 }
\ No newline at end of file
@@ -1,13 +1,18 @@
 package com.extollit.gaming.ai.path
 
+import com.extollit.gaming.ai.path.jfr.FlightRecorder
+import com.extollit.gaming.ai.path.jfr.TriageEvent
 import com.extollit.gaming.ai.path.model.*
 import com.extollit.gaming.ai.path.node.INodeCalculator
 import com.extollit.gaming.ai.path.node.Node
 import com.extollit.gaming.ai.path.node.NodeMap
+import com.extollit.gaming.ai.path.node.PassibilityCache
 import com.extollit.gaming.ai.path.node.path.IPath
 import com.extollit.gaming.ai.path.node.path.IPathProcessor
 import com.extollit.gaming.ai.path.num.FloatingRange
 import com.extollit.gaming.ai.path.num.range
+import com.extollit.gaming.ai.path.portal.PortalGraph
+import com.extollit.gaming.ai.path.portal.Route
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleBox
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
@@ -15,6 +20,7 @@ import java.util.*
 import kotlin.math.ceil
 import kotlin.math.floor
 import kotlin.math.max
+import kotlin.math.sqrt
 
 /**
  * This is the primary path-finding object and root instance for the library.  There is precisely one instance of this
@@ -32,13 +38,19 @@ class HydrazinePathFinder internal constructor(
     val subject: IPathingEntity,
     /** The instance space that the entity is contained within and should path-find in */
     private val instanceSpace: IInstanceSpace,
-    occlusionProviderFactory: IOcclusionProviderFactory = AreaOcclusionProviderFactory
+    private val occlusionProviderFactory: IOcclusionProviderFactory = AreaOcclusionProviderFactory
 ) {
+    /** The open-set of the A* graph, use [withNodeQueue] to change it */
     @JvmField
-    val queue: SortedNodeQueue = SortedNodeQueue()
+    var queue: INodeQueue = SortedNodeQueue()
     val nodeMap: NodeMap = NodeMap(instanceSpace, occlusionProviderFactory)
 
     private val unreachableFromSource: MutableSet<ThreeDimensionalIntVector> = HashSet(3)
+
+    // Scratch buffers for expanding nodes, see processNode
+    private val pointOptions = arrayOfNulls<Node>(8)
+    private val boundsBuffer = Array(6) { ThreeDimensionalDoubleBox(0.0, 0.0, 0.0, 0.0, 0.0, 0.0) }
+    private val unreachableProbe = ThreeDimensionalIntVector(0, 0, 0)
     private var sourcePosition: ThreeDimensionalDoubleVector? = null
     private var destinationPosition: ThreeDimensionalDoubleVector? = null
     private var destinationEntity: IDynamicMovableObject? = null
@@ -46,6 +58,31 @@ class HydrazinePathFinder internal constructor(
     private var pathProcessor: IPathProcessor? = null
     private var currentPath: IPath? = null
 
+    // Long-range routing, see withPortalGraph
+    private var portalGraph: PortalGraph? = null
+    private var pathCache: PathCache? = null
+    // Path cache epoch when the current search started, see [PathCache.epochFor]
+    private var pathCacheEpoch = PathCache.NO_EPOCH
+    private var passibilityCache: PassibilityCache? = null
+    private var flowFields: FlowFields? = null
+    private var bidirectionalSearch: BidirectionalSearch? = null
+    private var fingerprint = 0L
+    private var metrics: IPathFinderMetrics? = null
+    private val sample = TriageSample()
+    private var reportedCalculations = 0L
+    private var reportedHits = 0L
+    private var reportedCulled = 0L
+    private var schedulingPriority: SchedulingPriority? = null
+    internal var scheduler: TriageScheduler? = null
+    private var priorityPolicy: IPriorityPolicy? = null
+    private val priorityContext = PriorityContext()
+    private var coarse = false
+    private var coarsePath: IPath? = null
+    private var successRate = 1f
+    private var route: Route? = null
+    private var routeLeg = 0
+    private val routeDestination = ThreeDimensionalDoubleVector(0.0, 0.0, 0.0)
+
     // Capabilities
 
     /**
@@ -63,6 +100,7 @@ class HydrazinePathFinder internal constructor(
     private var pathPointCalculatorChanged = false
     private var trimmedToCurrent = false
     private var bestEffort = false
+    private var nodeExpansion = NodeExpansion.adjacent
 
     // Node-based pathfinding
     private var current: Node? = null
@@ -92,9 +130,11 @@ class HydrazinePathFinder internal constructor(
      */
     fun schedulingPriority(schedulingPriority: SchedulingPriority) {
         schedulingPriority(schedulingPriority.initComputeIterations, schedulingPriority.periodicComputeIterations)
+        this.schedulingPriority = schedulingPriority
     }
 
     fun schedulingPriority(initComputeIterations: Int, periodicComputeIterations: Int) {
+        this.schedulingPriority = null
         this.initComputeIterations = initComputeIterations
         this.periodicComputeIterations = periodicComputeIterations
     }
@@ -148,6 +188,17 @@ class HydrazinePathFinder internal constructor(
     fun computePathTo(coordinates: ThreeDimensionalDoubleVector): IPath? =
         computePathTo(coordinates.x, coordinates.y, coordinates.z)
 
+    /**
+     * Completely computes a path to the specified location, optionally searching from both ends at once.
+     *
+     * @param coordinates the target destination to path-find to
+     * @param bidirectional whether to search backward from the destination as well as forward from the source, see
+     * [computePathTo]
+     * @return the complete path to the destination, or null if the destination is unreachable from the current location
+     */
+    fun computePathTo(coordinates: ThreeDimensionalDoubleVector, bidirectional: Boolean): IPath? =
+        computePathTo(coordinates.x, coordinates.y, coordinates.z, bidirectional)
+
     /**
      * Completely computes a path to the specified location.  This is the traditional A* search algorithm, which
      * trades-off performance for accuracy.
@@ -155,19 +206,33 @@ class HydrazinePathFinder internal constructor(
      * NOTE: This method can be significantly more expensive than the others since it does not return until all search
      * options have been exhausted.
      *
+     * If a portal graph is applied (see [withPortalGraph]) and the destination lies beyond the entity's search range
+     * then only the path to the first leg of the route is computed, subsequent legs are computed by [updatePathFor].
+     * A portal graph also allows this to return null immediately for destinations it proves unreachable.
+     *
+     * A bidirectional search (see [BidirectionalSearch]) expands nodes forward from the source and backward from the
+     * destination until the two searches meet.  It proves an enclosed destination unreachable once the backward search
+     * runs out of nodes rather than exhausting every node reachable from the source.  It only moves along the four
+     * cardinal directions (and up and down for omnidirectional movement), the path found is the shortest by number of
+     * such moves.  Node calculators other than those of this library cannot find drops onto nodes, with those the
+     * search is unidirectional regardless.
+     *
      * @param x x-coordinate of the destination
      * @param y y-coordinate of the destination
      * @param z z-coordinate of the destination
+     * @param bidirectional whether to search backward from the destination as well as forward from the source
      * @return the complete path to the destination, or null if the destination is unreachable from the current location
      */
-    fun computePathTo(x: Double, y: Double, z: Double): IPath? {
+    @JvmOverloads
+    fun computePathTo(x: Double, y: Double, z: Double, bidirectional: Boolean = false): IPath? {
         destinationEntity = null
         bestEffort = false
         initializeOperation()
-        if (tooFarTo(x, y, z)) return null
-        updateDestination(x, y, z)
+        if (unreachable(x, y, z)) return null
+        val leg = if (tooFarTo(x, y, z)) routeTo(x, y, z) ?: return null else dropRoute()
+        if (leg == null) updateDestination(x, y, z) else updateDestination(leg)
         if (!graphTimeout()) resetTriage()
-        return triage(Int.MAX_VALUE)
+        return measured { cachedPath() ?: flowPath() ?: if (bidirectional && nodeMap.dropAware) bidirectionalPath() else triage(Int.MAX_VALUE) }
     }
 
     /**
@@ -221,11 +286,18 @@ class HydrazinePathFinder internal constructor(
     @JvmOverloads
     fun initiatePathTo(x: Double, y: Double, z: Double, bestEffort: Boolean = true): IPath? {
         this.bestEffort = bestEffort
+        val wasCoarse = coarse
+        if (adapt(x, y, z)) return coarsePathTo(x, y, z)
         initializeOperation()
-        if (!bestEffort && tooFarTo(x, y, z)) return null
-        val initiate = updateDestination(x, y, z) && queue.isEmpty
-        if (!graphTimeout() && (initiate || reachedTarget() || triageTimeout() || destinationDeviatedFromTarget())) resetTriage()
-        return triage(initComputeIterations)
+        if (!bestEffort && unreachable(x, y, z)) return null
+        val leg =
+            if (destinationEntity == null && tooFarTo(x, y, z))
+                routeTo(x, y, z) ?: if (!bestEffort) return null else null
+            else dropRoute()
+        val initiate = (if (leg == null) updateDestination(x, y, z) else updateDestination(leg)) && queue.isEmpty || wasCoarse
+        val reset = graphTimeout() ||
+            (initiate || reachedTarget() || triageTimeout() || destinationDeviatedFromTarget()).also { if (it) resetTriage() }
+        return measured { (if (reset) cachedPath() ?: flowPath() else null) ?: triage(scheduled(initComputeIterations)) }
     }
 
     private fun tooFarTo(x: Double, y: Double, z: Double): Boolean {
@@ -237,6 +309,84 @@ class HydrazinePathFinder internal constructor(
         return (sourcePos.subOf(ThreeDimensionalDoubleVector(x, y, z))).mg2() > rangeSquared
     }
 
+    /**
+     * Plans a coarse route to a destination beyond the entity's search range using the portal graph (if one was
+     * applied), a route already planned to the same destination is re-used.
+     *
+     * @return the destination of the current leg of the route, null if there is no route to the destination
+     */
+    private fun routeTo(x: Double, y: Double, z: Double): ThreeDimensionalDoubleVector? {
+        val portalGraph = portalGraph ?: return null
+        if (route == null || differs(x, y, z, routeDestination)) {
+            val source = sourcePosition!!
+            route = portalGraph.route(
+                floor(source.x).toInt(), floor(source.y).toInt(), floor(source.z).toInt(),
+                floor(x).toInt(), floor(y).toInt(), floor(z).toInt()
+            )
+            routeLeg = 0
+            routeDestination.x = x
+            routeDestination.y = y
+            routeDestination.z = z
+            if (route == null) return null
+        }
+        advanceLeg()
+        return legDestination()
+    }
+
+    /**
+     * Uses the portal graph (if one was applied) to determine whether the destination is definitely unreachable by this
+     * entity, only grounded entities are considered since the portal graph does not model flight.
+     */
+    private fun unreachable(x: Double, y: Double, z: Double): Boolean {
+        val portalGraph = portalGraph
+        if (portalGraph == null || flying || aqua) return false
+        val source = sourcePosition!!
+        return portalGraph.unreachable(
+            floor(source.x).toInt(), floor(source.y).toInt(), floor(source.z).toInt(),
+            floor(x).toInt(), floor(y).toInt(), floor(z).toInt()
+        )
+    }
+
+    private fun dropRoute(): ThreeDimensionalDoubleVector? {
+        route = null
+        return null
+    }
+
+    /**
+     * Advances the current leg of the route to the farthest waypoint that lies within the entity's search range
+     *
+     * @return true if the current leg changed
+     */
+    private fun advanceLeg(): Boolean {
+        val route = route ?: return false
+        val source = sourcePosition!!
+        for (i in route.size - 1 downTo routeLeg + 1) {
+            val waypoint = route[i]
+            val dx = waypoint.x + 0.5 - source.x
+            val dy = waypoint.y - source.y
+            val dz = waypoint.z + 0.5 - source.z
+            if (dx * dx + dy * dy + dz * dz < searchRangeSquared) {
+                routeLeg = i
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * Determines the destination of the current leg of the route, once the last leg is reached the route is no longer
+     * needed and is dropped.
+     */
+    private fun legDestination(): ThreeDimensionalDoubleVector {
+        val route = route!!
+        if (routeLeg >= route.size - 1) {
+            this.route = null
+            return ThreeDimensionalDoubleVector(routeDestination)
+        }
+        val waypoint = route[routeLeg]
+        return ThreeDimensionalDoubleVector(waypoint.x + 0.5, waypoint.y.toDouble(), waypoint.z + 0.5)
+    }
+
     private fun initializeOperation() {
         applySubject()
         updateSourcePosition()
@@ -301,6 +451,130 @@ class HydrazinePathFinder internal constructor(
         return this
     }
 
+    /**
+     * Replace the open-set used by this path-finder for A* graph triage.  By default a [SortedNodeQueue] is used which
+     * is limited to [Node.MAX_INDICES] nodes, long-range searches should consider using a [PackedNodeQueue] instead
+     * which has no such limit.  This resets the path-finder, aborting any path-finding in progress.
+     *
+     * @param queue the (empty) open-set for this path-finder to use
+     * @return this
+     */
+    fun withNodeQueue(queue: INodeQueue): HydrazinePathFinder {
+        check(queue.isEmpty) { "Queue must be empty" }
+        reset()
+        this.queue = queue
+        reportedCulled = queue.culled
+        return this
+    }
+
+    /**
+     * Select the strategy this path-finder uses to expand nodes of the A* graph, by default [NodeExpansion.adjacent].
+     * This resets the path-finder, aborting any path-finding in progress.
+     *
+     * @param nodeExpansion the node expansion strategy to use
+     * @return this
+     */
+    fun withNodeExpansion(nodeExpansion: NodeExpansion): HydrazinePathFinder {
+        reset()
+        this.nodeExpansion = nodeExpansion
+        return this
+    }
+
+    /**
+     * Apply a portal graph to this path-finder for routing to destinations beyond the entity's search range.  Without
+     * one such destinations are either refused or approached by best-effort, with one a coarse route is first planned
+     * over the portal graph and then each leg of that route is path-found conventionally as the entity progresses.
+     * The portal graph is also used to refuse destinations that are definitely unreachable (see [PortalGraph.unreachable])
+     * before any search when not using the best-effort algorithm.
+     * The same portal graph should be shared by all path-finders in the same instance space.
+     *
+     * @param portalGraph the portal graph of the instance space, null to disable long-range routing
+     * @return this
+     */
+    fun withPortalGraph(portalGraph: PortalGraph?): HydrazinePathFinder {
+        this.portalGraph = portalGraph
+        route = null
+        return this
+    }
+
+    /**
+     * Shares completed paths with other path-finders through the specified cache.  Whenever a search is started from
+     * scratch the cache is consulted first, if it holds a path toward the same target found by an entity with the same
+     * capabilities and size (see [PathCache.fingerprintOf]) and this entity stands on that path, then the remainder of
+     * that path is used immediately without any search.  Complete paths found by this path-finder are added to the
+     * cache.  The same path cache should be shared by all path-finders in the same instance space.
+     *
+     * @param pathCache the path cache of the instance space, null to disable path sharing
+     * @return this
+     */
+    fun withPathCache(pathCache: PathCache?): HydrazinePathFinder {
+        this.pathCache = pathCache
+        return this
+    }
+
+    /**
+     * Shares the results of the node calculator with other path-finders through the specified cache, so that entities
+     * with the same capabilities and size (see [PathCache.fingerprintOf]) do not each compute the passibility of the
+     * same blocks.  The same passibility cache should be shared by all path-finders in the same instance space.
+     *
+     * @param passibilityCache the passibility cache of the instance space, null to disable sharing
+     * @return this
+     */
+    fun withPassibilityCache(passibilityCache: PassibilityCache?): HydrazinePathFinder {
+        this.passibilityCache = passibilityCache
+        nodeMap.passibilityCache(passibilityCache, fingerprint)
+        return this
+    }
+
+    /**
+     * Derives paths from flow fields shared with other path-finders rather than searching for them.  Whenever a search
+     * is started from scratch and this entity is within range of the target, the field of distances to the target
+     * for entities with the same capabilities and size (see [PathCache.fingerprintOf]) is retrieved (computing it at
+     * most once per tick) and descended move by move from the source.  Each move is checked forward just like a move
+     * expanded by the search, if descending gets stuck then the path is searched for as usual.
+     * The same flow fields should be shared by all path-finders in the same instance space.
+     *
+     * @param flowFields the flow fields of the instance space, null to always search
+     * @return this
+     */
+    fun withFlowFields(flowFields: FlowFields?): HydrazinePathFinder {
+        this.flowFields = flowFields
+        return this
+    }
+
+    /**
+     * Reports measurements of each triage cycle performed by this path-finder to the specified listener, see
+     * [TriageSample].  When no listener is set the path-finder only maintains a handful of plain counters and never
+     * reads the clock.
+     *
+     * @param metrics listener to report to, such as a [PathFinderMetrics] shared by many path-finders, null to stop
+     * reporting
+     * @return this
+     */
+    fun withMetrics(metrics: IPathFinderMetrics?): HydrazinePathFinder {
+        this.metrics = metrics
+        sample.clear()
+        reportedCalculations = nodeMap.calculations
+        reportedHits = nodeMap.hits
+        reportedCulled = queue.culled
+        return this
+    }
+
+    /**
+     * Adapts the scheduling priority of this path-finder to the circumstances of its entity whenever it initiates or
+     * updates a path, see [IPriorityPolicy].  When the policy degrades this path-finder to coarse movement it performs
+     * no A* search at all, instead the entity is moved along the chunk-level waypoints of a route over the portal graph
+     * (see [withPortalGraph]) or, without one, in a straight line toward the destination.  Once the policy restores a
+     * priority the search for a fine path starts over from the entity's position.
+     *
+     * @param priorityPolicy the policy to consult, null to keep the configured scheduling priority
+     * @return this
+     */
+    fun withPriorityPolicy(priorityPolicy: IPriorityPolicy?): HydrazinePathFinder {
+        this.priorityPolicy = priorityPolicy
+        return this
+    }
+
     /**
      * Retrieve the current path processor (if one was set)
      *
@@ -310,15 +584,120 @@ class HydrazinePathFinder internal constructor(
 
     fun update(): IPath? {
         if (destinationEntity != null) updateDestination(destinationEntity!!.coordinates())
-        if (destinationPosition == null) return currentPath
+        val destinationPosition = destinationPosition ?: return currentPath
+        val wasCoarse = coarse
+        val destination = if (route != null) routeDestination else destinationPosition
+        if (adapt(destination.x, destination.y, destination.z))
+            return coarsePathTo(destination.x, destination.y, destination.z)
         updateSourcePosition()
+        if (wasCoarse) resetTriage()
         graphTimeout()
+        if (advanceLeg()) {
+            updateDestination(legDestination())
+            resetTriage()
+        }
         if (faultCount >= FAULT_LIMIT || reachedTarget()) {
             resetTriage()
             return null
         }
         if (triageTimeout() || destinationDeviatedFromTarget()) resetTriage()
-        return triage(periodicComputeIterations)
+        return measured { triage(scheduled(periodicComputeIterations)) }
+    }
+
+    /**
+     * Consults the priority policy (if one was applied) and applies the priority it determines
+     *
+     * @return true if the path-finder is degraded to coarse movement
+     */
+    private fun adapt(x: Double, y: Double, z: Double): Boolean {
+        val priorityPolicy = priorityPolicy
+        if (priorityPolicy == null) {
+            coarse = false
+            return false
+        }
+        val context = priorityContext
+        val coordinates = subject.coordinates()
+        val dx = x - coordinates.x
+        val dy = y - coordinates.y
+        val dz = z - coordinates.z
+        val currentPath = currentPath
+        context.priority = schedulingPriority
+        context.coarse = coarse
+        context.distanceToDestination = sqrt(dx * dx + dy * dy + dz * dz)
+        context.stagnantFor = if (PathObject.active(currentPath)) currentPath!!.stagnantFor(subject) else 0f
+        context.successRate = successRate
+
+        val priority = priorityPolicy.priorityFor(this, context)
+        coarse = priority == null
+        if (priority != null && priority !== schedulingPriority) schedulingPriority(priority)
+        return coarse
+    }
+
+    /**
+     * Moves the entity toward the destination without any A* search, along the waypoints of a route over the portal
+     * graph (if one was applied) or otherwise in a straight line.  A path already planned to the same destination is
+     * re-used.
+     *
+     * @return the coarse path, null once the entity has reached its end
+     */
+    private fun coarsePathTo(x: Double, y: Double, z: Double): IPath? {
+        val coarsePath = coarsePath
+        if (coarsePath != null && coarsePath === currentPath && !differs(x, y, z, routeDestination))
+            return if (coarsePath.done()) null else coarsePath
+
+        applySubject()
+        queue.clear()
+        dropRoute()
+        updateDestination(x, y, z)
+        routeDestination.x = x
+        routeDestination.y = y
+        routeDestination.z = z
+
+        val coordinates = subject.coordinates()
+        val source = ThreeDimensionalIntVector(floor(coordinates.x).toInt(), floor(coordinates.y).toInt(), floor(coordinates.z).toInt())
+        val destination = ThreeDimensionalIntVector(floor(x).toInt(), floor(y).toInt(), floor(z).toInt())
+        val route = if (flying || aqua) null else portalGraph?.route(source, destination)
+        val nodes =
+            if (route != null)
+                Array(route.size) { Node(route[it], Passibility.Passible, false) }
+            else
+                arrayOf(Node(source, Passibility.Passible, false), Node(destination, Passibility.Passible, false))
+
+        val path = PathObject.fromNodes(capabilities!!.speed(), random, nodes)
+        this.coarsePath = path
+        currentPath = path
+        return path
+    }
+
+    private fun searched(complete: Boolean) {
+        successRate += ((if (complete) 1f else 0f) - successRate) * SUCCESS_RATE_SMOOTHING
+    }
+
+    /**
+     * While registered with a [TriageScheduler] this path-finder performs no iterations of its own, the scheduler
+     * advances its search instead
+     */
+    private fun scheduled(iterations: Int): Int = if (scheduler == null) iterations else 0
+
+    /** Whether the search for a path is in progress, i.e. there are still nodes left to visit */
+    internal val triaging: Boolean
+        get() = target != null && !queue.isEmpty
+
+    /** Share of a [TriageScheduler]'s budget this path-finder receives relative to others */
+    internal val schedulingWeight: Int
+        get() = periodicComputeIterations.coerceAtLeast(1)
+
+    /**
+     * Advances the search for a path until it completes or the specified time passes, at least one iteration is
+     * performed.  This is how a [TriageScheduler] drives the path-finders registered with it.
+     *
+     * @param deadline time of the clock after which to stop iterating
+     * @param clock the clock of the scheduler
+     * @return the best path available toward the destination, see [update]
+     */
+    internal fun triageUntil(deadline: Long, clock: IClock): IPath? {
+        if (!triaging) return currentPath
+        return measured { triage(Int.MAX_VALUE, deadline, clock) }
     }
 
     private fun destinationDeviatedFromTarget(): Boolean {
@@ -345,6 +724,7 @@ class HydrazinePathFinder internal constructor(
             subject
         ) > passiblePointPathTimeLimit
         if (status) {
+            sample.faults++
             if (++faultCount == 1) nextGraphCacheReset = pathTimeAge() + PROBATIONARY_TIME_LIMIT!!.next(
                 random
             )
@@ -374,6 +754,7 @@ class HydrazinePathFinder internal constructor(
     }
 
     fun resetTriage() {
+        sample.triageResets++
         val sourcePosition = sourcePosition
         val destinationPosition = destinationPosition
         updateFieldWindow(
@@ -383,6 +764,7 @@ class HydrazinePathFinder internal constructor(
             floor(destinationPosition.z).toInt(), true
         )
         applySubject()
+        pathCacheEpoch = pathCache?.epochFor(pathPointCalculator!!) ?: PathCache.NO_EPOCH
         source = pointAtSource()
         current = source
         val source = current
@@ -455,6 +837,8 @@ class HydrazinePathFinder internal constructor(
         }
         actualSize = subject.width()
         pathPointCalculator!!.applySubject(subject)
+        fingerprint = PathCache.fingerprintOf(subject)
+        nodeMap.passibilityCache(passibilityCache, fingerprint)
         val pathSearchRange = subject.searchRange()
         searchRangeSquared = pathSearchRange * pathSearchRange
     }
@@ -489,6 +873,7 @@ class HydrazinePathFinder internal constructor(
     }
 
     private fun resetGraph() {
+        sample.graphResets++
         nodeMap.clear()
         resetTriage()
         nextGraphCacheReset = 0f
@@ -651,6 +1036,7 @@ class HydrazinePathFinder internal constructor(
         destinationPosition = null
         sourcePosition = destinationPosition
         destinationEntity = null
+        route = null
         resetFaultTimings()
     }
 
@@ -685,17 +1071,19 @@ class HydrazinePathFinder internal constructor(
         return mutableNewPath.also { this.currentPath = it }
     }
 
-    private fun triage(iterations: Int): IPath? {
+    private fun triage(iterations: Int, deadline: Long = NO_DEADLINE, clock: IClock = IClock.SYSTEM): IPath? {
         var mutableIterations = iterations
         val currentPath = currentPath
         val queue = queue
-        if (queue.isEmpty) if (currentPath == null) return null else if (!currentPath.done()) return currentPath
-
-        resetTriage()
+        if (queue.isEmpty) {
+            if (currentPath == null) return null else if (!currentPath.done()) return currentPath
+            resetTriage()
+        }
 
         if (target == null) return null
         var nextPath: IPath? = null
         var trimmedToSource = trimmedToCurrent
+        val measuring = metrics != null
         while (!queue.isEmpty && mutableIterations-- > 0) {
             val source = current
             if (!trimmedToSource && !queue.nextContains(source)) {
@@ -708,14 +1096,18 @@ class HydrazinePathFinder internal constructor(
                 continue
             }
             val current = queue.dequeue()
+            sample.iterations++
             val closest = closest
             if (closest == null || closest.orphaned()
                 || Node.squareDelta(current, target!!) < Node.squareDelta(closest, target!!)
             ) this.closest = current
             if (current === target) {
                 nextPath = createPath(current)
+                if (nextPath is PathObject)
+                    pathCache?.store(nextPath.nodes, fingerprint, nodeMap.filter(), pathCacheEpoch)
                 if (PathObject.active(nextPath)) {
                     this.queue.clear()
+                    searched(true)
                     break
                 }
                 resetTriage()
@@ -723,13 +1115,168 @@ class HydrazinePathFinder internal constructor(
                     nextPath = null
                     break
                 }
-            } else processNode(current)
+            } else {
+                processNode(current)
+                if (measuring && queue.size > sample.queueHighWater) sample.queueHighWater = queue.size
+            }
+            if (deadline != NO_DEADLINE && clock.nanoTime() - deadline >= 0) break
         }
+        if (nextPath == null && queue.isEmpty) searched(false)
         val closest = closest
         if (nextPath == null && closest != null && !queue.isEmpty) nextPath = createPath(closest)
         return updatePath(nextPath)
     }
 
+    private inline fun measured(cycle: () -> IPath?): IPath? {
+        val event = if (FlightRecorder.AVAILABLE) TriageEvent.begin() else null
+        if (metrics == null && event == null) return cycle()
+        val iterations = sample.iterations
+        val start = System.nanoTime()
+        val path = cycle()
+        report(event, System.nanoTime() - start, sample.iterations - iterations, path)
+        return path
+    }
+
+    private fun report(event: TriageEvent?, nanos: Long, iterations: Int, path: IPath?) {
+        val target = target
+        val completed = target != null && path is PathObject && path.nodes.lastOrNull()?.coordinates == target.coordinates
+        if (event != null) TriageEvent.commit(
+            event,
+            schedulingPriority?.name ?: "explicit",
+            iterations,
+            queue.size,
+            if (completed) "complete" else if (path != null) "partial" else "none"
+        )
+
+        val sample = sample
+        val metrics = metrics
+        if (metrics == null) {
+            sample.clear()
+            return
+        }
+        val nodeMap = nodeMap
+        sample.priority = schedulingPriority
+        sample.nanos = nanos
+        sample.calculations = nodeMap.calculations - reportedCalculations
+        sample.nodeMapHits = nodeMap.hits - reportedHits
+        sample.culled = queue.culled - reportedCulled
+        sample.completed = completed
+        reportedCalculations = nodeMap.calculations
+        reportedHits = nodeMap.hits
+        reportedCulled = queue.culled
+        metrics.onTriage(this, sample)
+        sample.clear()
+    }
+
+    private fun cachedPath(): IPath? {
+        val pathCache = pathCache ?: return null
+        val source = source ?: return null
+        val target = target ?: return null
+        val nodes = pathCache.lookup(
+            source.coordinates,
+            target.coordinates,
+            fingerprint,
+            nodeMap.filter()
+        ) ?: return null
+
+        val path = PathObject.fromNodes(capabilities!!.speed(), random, nodes)
+        if (pathProcessor != null) pathProcessor!!.processPath(path)
+        queue.clear()
+        searched(true)
+        return updatePath(path)
+    }
+
+    private fun flowPath(): IPath? {
+        val flowFields = flowFields ?: return null
+        val source = source ?: return null
+        val target = target ?: return null
+        val capabilities = capabilities!!
+        val field = flowFields.fieldTo(
+            target.coordinates,
+            fingerprint,
+            nodeMap.filter(),
+            capabilities,
+            occlusionProviderFactory
+        ) { createPassibilityCalculator(capabilities).also { it.applySubject(subject) } }
+
+        var distance = field.distanceAt(source.coordinates)
+        if (distance <= 0) return null
+        val directions = if (pathPointCalculator!!.omnidirectional()) 6 else 4
+        val nodes = ArrayList<Node>(distance + 1)
+        var current: Node = source
+        while (true) {
+            nodes.add(Node(current.coordinates, current.passibility(), current.volatile_(), current.gravitation()))
+            if (distance == 0) break
+
+            val coords = current.coordinates
+            var next: Node? = null
+            for (d in 0 until directions) {
+                val alternative = cachedPassiblePointNear(
+                    coords.x + FLOW_DX[d],
+                    coords.y + FLOW_DY[d],
+                    coords.z + FLOW_DZ[d],
+                    coords
+                )
+                if (impassible(alternative)) continue
+                val alternativeDistance = field.distanceAt(alternative!!.coordinates)
+                if (alternativeDistance in 0 until distance) {
+                    next = alternative
+                    distance = alternativeDistance
+                }
+            }
+            current = next ?: return null
+        }
+
+        val path = PathObject.fromNodes(capabilities.speed(), random, nodes.toTypedArray())
+        if (pathProcessor != null) pathProcessor!!.processPath(path)
+        queue.clear()
+        searched(true)
+        return updatePath(path)
+    }
+
+    private fun bidirectionalPath(): IPath? {
+        val source = source ?: return null
+        val target = target ?: return null
+        queue.clear()
+        val search = bidirectionalSearch ?: BidirectionalSearch().also { bidirectionalSearch = it }
+        val nodes =
+            if (impassible(target)) null
+            else search.search(source, target, pathPointCalculator!!.omnidirectional(), ::bidirectionalMove, ::ledgesAbove)
+        sample.iterations += search.expansions
+        sample.expansions += search.expansions
+        searched(nodes != null)
+        nodes ?: return updatePath(null)
+
+        val copies = Array(nodes.size) {
+            val node = nodes[it]
+            Node(node.coordinates, node.passibility(), node.volatile_(), node.gravitation())
+        }
+        val path = PathObject.fromNodes(capabilities!!.speed(), random, copies)
+        if (path is PathObject) pathCache?.store(path.nodes, fingerprint, nodeMap.filter(), pathCacheEpoch)
+        if (pathProcessor != null) pathProcessor!!.processPath(path)
+        return updatePath(path)
+    }
+
+    private fun bidirectionalMove(from: Node, direction: Int): Node? {
+        val coords = from.coordinates
+        val next = cachedPassiblePointNear(
+            coords.x + BidirectionalSearch.DX[direction],
+            coords.y + BidirectionalSearch.DY[direction],
+            coords.z + BidirectionalSearch.DZ[direction],
+            coords
+        )
+        return if (impassible(next) || Node.squareDelta(next, target) >= searchRangeSquared) null else next
+    }
+
+    private fun ledgesAbove(node: Node): Collection<Node> {
+        val ledges = nodeMap.ledgesAbove(node.coordinates)
+        if (ledges.isEmpty()) return emptyList()
+        return ledges.mapNotNull {
+            val ledge = cachedPassiblePointNear(it.x, it.y, it.z)
+            if (impassible(ledge) || Node.squareDelta(ledge, target) >= searchRangeSquared) null else ledge
+        }
+    }
+
     private fun createPath(head: Node): IPath {
         val capabilities = capabilities
         val path: IPath = PathObject.fromHead(capabilities!!.speed(), random, head)
@@ -737,86 +1284,162 @@ class HydrazinePathFinder internal constructor(
         return path
     }
 
-    private fun processNode(current: Node?) {
-        current!!.visited(true)
+    /**
+     * Expands the specified node by visiting it and appending its passible neighbors to the open-set.  Once the graph
+     * around the node has been cached this performs no heap allocations, all neighbor candidates and bounds are held
+     * in scratch buffers owned by this path-finder.
+     *
+     * @param current the node to expand
+     */
+    @JvmName("processNode")
+    internal fun processNode(current: Node) {
+        sample.expansions++
+        current.visited(true)
         val coords = current.coordinates
+        val x = coords.x
+        val y = coords.y
+        val z = coords.z
+        val pointOptions = pointOptions
 
-        val west = cachedPassiblePointNear(coords.x - 1, coords.y, coords.z, coords)
-        val east = cachedPassiblePointNear(coords.x + 1, coords.y, coords.z, coords)
-        val north = cachedPassiblePointNear(coords.x, coords.y, coords.z - 1, coords)
-        val south = cachedPassiblePointNear(coords.x, coords.y, coords.z + 1, coords)
+        val west = cachedPassiblePointNear(x - 1, y, z, coords)
+        val east = cachedPassiblePointNear(x + 1, y, z, coords)
+        val north = cachedPassiblePointNear(x, y, z - 1, coords)
+        val south = cachedPassiblePointNear(x, y, z + 1, coords)
 
-        val up: Node?
-        val down: Node?
+        var count = 0
         val omnidirectional = pathPointCalculator!!.omnidirectional()
         if (omnidirectional) {
-            up = cachedPassiblePointNear(coords.x, coords.y + 1, coords.z, coords)
-            down = cachedPassiblePointNear(coords.x, coords.y - 1, coords.z, coords)
+            pointOptions[count++] = cachedPassiblePointNear(x, y + 1, z, coords)
+            pointOptions[count++] = cachedPassiblePointNear(x, y - 1, z, coords)
+        }
+        if (nodeExpansion == NodeExpansion.jumpPoint) {
+            pointOptions[count++] = jump(y, west, -1, 0, omnidirectional)
+            pointOptions[count++] = jump(y, east, +1, 0, omnidirectional)
+            pointOptions[count++] = jump(y, north, 0, -1, omnidirectional)
+            pointOptions[count++] = jump(y, south, 0, +1, omnidirectional)
         } else {
-            down = null
-            up = down
+            pointOptions[count++] = west
+            pointOptions[count++] = east
+            pointOptions[count++] = north
+            pointOptions[count++] = south
         }
-        val found = applyPointOptions(current, up, down, west, east, north, south)
+
+        val found = applyPointOptions(current, pointOptions, count)
         if (!found) {
-            val southBounds = blockBounds(coords, 0, 0, +1)
-            val northBounds = blockBounds(coords, 0, 0, -1)
-            val eastBounds = blockBounds(coords, +1, 0, 0)
-            val westBounds = blockBounds(coords, -1, 0, 0)
+            val boundsBuffer = boundsBuffer
+            val southBounds = blockBounds(coords, 0, 0, +1, boundsBuffer[0])
+            val northBounds = blockBounds(coords, 0, 0, -1, boundsBuffer[1])
+            val eastBounds = blockBounds(coords, +1, 0, 0, boundsBuffer[2])
+            val westBounds = blockBounds(coords, -1, 0, 0, boundsBuffer[3])
             val actualSizeSquared = actualSize * actualSize
-            val pointOptions: Array<Node?>
             if (omnidirectional) {
-                val upBounds = blockBounds(coords, 0, +1, 0)
-                val downBounds = blockBounds(coords, 0, -1, 0)
-                pointOptions = arrayOf(
+                val upBounds = blockBounds(coords, 0, +1, 0, boundsBuffer[4])
+                val downBounds = blockBounds(coords, 0, -1, 0, boundsBuffer[5])
+                pointOptions[0] =
                     if (northBounds == null || upBounds == null || northBounds.mg2(upBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x, coords.y + 1, coords.z - 1, coords
-                    ) else null,
+                        x, y + 1, z - 1, coords
+                    ) else null
+                pointOptions[1] =
                     if (eastBounds == null || upBounds == null || eastBounds.mg2(upBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x + 1, coords.y + 1, coords.z, coords
-                    ) else null,
+                        x + 1, y + 1, z, coords
+                    ) else null
+                pointOptions[2] =
                     if (southBounds == null || upBounds == null || southBounds.mg2(upBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x, coords.y + 1, coords.z + 1, coords
-                    ) else null,
+                        x, y + 1, z + 1, coords
+                    ) else null
+                pointOptions[3] =
                     if (westBounds == null || upBounds == null || westBounds.mg2(upBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x - 1, coords.y + 1, coords.z, coords
-                    ) else null,
+                        x - 1, y + 1, z, coords
+                    ) else null
+                pointOptions[4] =
                     if (northBounds == null || downBounds == null || northBounds.mg2(downBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x, coords.y - 1, coords.z - 1, coords
-                    ) else null,
+                        x, y - 1, z - 1, coords
+                    ) else null
+                pointOptions[5] =
                     if (eastBounds == null || downBounds == null || eastBounds.mg2(downBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x + 1, coords.y - 1, coords.z, coords
-                    ) else null,
+                        x + 1, y - 1, z, coords
+                    ) else null
+                pointOptions[6] =
                     if (southBounds == null || downBounds == null || southBounds.mg2(downBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x, coords.y - 1, coords.z + 1, coords
-                    ) else null,
+                        x, y - 1, z + 1, coords
+                    ) else null
+                pointOptions[7] =
                     if (westBounds == null || downBounds == null || westBounds.mg2(downBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                        coords.x - 1, coords.y - 1, coords.z, coords
+                        x - 1, y - 1, z, coords
                     ) else null
-                )
-                applyPointOptions(current, *pointOptions)
-            } else pointOptions = arrayOfNulls(4)
+                applyPointOptions(current, pointOptions, 8)
+            }
             pointOptions[0] =
                 if (westBounds == null || northBounds == null || westBounds.mg2(northBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                    coords.x - 1, coords.y, coords.z - 1, coords
+                    x - 1, y, z - 1, coords
                 ) else null
             pointOptions[1] =
                 if (eastBounds == null || southBounds == null || eastBounds.mg2(southBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                    coords.x + 1, coords.y, coords.z + 1, coords
+                    x + 1, y, z + 1, coords
                 ) else null
             pointOptions[2] =
                 if (eastBounds == null || northBounds == null || eastBounds.mg2(northBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                    coords.x + 1, coords.y, coords.z - 1, coords
+                    x + 1, y, z - 1, coords
                 ) else null
             pointOptions[3] =
                 if (westBounds == null || southBounds == null || westBounds.mg2(southBounds) >= actualSizeSquared) cachedPassiblePointNear(
-                    coords.x - 1, coords.y, coords.z + 1, coords
+                    x - 1, y, z + 1, coords
                 ) else null
-            applyPointOptions(current, *pointOptions)
+            applyPointOptions(current, pointOptions, if (omnidirectional) 8 else 4)
         }
     }
 
-    private fun blockBounds(coords: ThreeDimensionalIntVector?, dx: Int, dy: Int, dz: Int): ThreeDimensionalDoubleBox? {
-        val x = coords!!.x + dx
+    /**
+     * Follows a run of plain nodes in one cardinal direction for jump point search, a node is plain if it is passible
+     * at the same level and so are its neighbors to either side (and above and below for omnidirectional movement).
+     * Nodes inside such a run are interchangeable with the nodes beside them so they need not be expanded.
+     *
+     * @param y level of the node being expanded
+     * @param adjacent the node adjacent to the node being expanded in the direction of the run
+     * @param dx x-component of the direction of the run
+     * @param dz z-component of the direction of the run
+     * @param omnidirectional whether the current node calculator moves vertically as well
+     * @return the node at which the run ends before any closed node, which is the adjacent node if there is no run
+     */
+    private fun jump(y: Int, adjacent: Node?, dx: Int, dz: Int, omnidirectional: Boolean): Node? {
+        if (adjacent == null || !plain(adjacent, y) || !plainSides(adjacent, dx, dz, omnidirectional)) return adjacent
+
+        val target = target!!
+        val targetCoords = target.coordinates
+        var point: Node = adjacent
+        for (distance in 1 until MAX_JUMP_DISTANCE) {
+            val coords = point.coordinates
+            if (point === target || point.visited() || point.assigned()
+                || dx != 0 && coords.x == targetCoords.x
+                || dz != 0 && coords.z == targetCoords.z
+            ) break
+
+            val next = cachedPassiblePointNear(coords.x + dx, y, coords.z + dz, coords)
+            if (next == null || next.visited() || !plain(next, y) || !plainSides(next, dx, dz, omnidirectional)
+                || Node.squareDelta(next, target) >= searchRangeSquared
+            ) break
+            point = next
+        }
+        return point
+    }
+
+    private fun plainSides(node: Node, dx: Int, dz: Int, omnidirectional: Boolean): Boolean {
+        val coords = node.coordinates
+        val x = coords.x
+        val y = coords.y
+        val z = coords.z
+        return plain(cachedPassiblePointNear(x + dz, y, z + dx, coords), y)
+                && plain(cachedPassiblePointNear(x - dz, y, z - dx, coords), y)
+                && (!omnidirectional
+                    || plain(cachedPassiblePointNear(x, y + 1, z, coords), y + 1)
+                    && plain(cachedPassiblePointNear(x, y - 1, z, coords), y - 1))
+    }
+
+    private fun plain(node: Node?, y: Int): Boolean =
+        node != null && node.coordinates.y == y && node.passibility() == Passibility.Passible && !node.volatile_()
+
+    private fun blockBounds(coords: ThreeDimensionalIntVector, dx: Int, dy: Int, dz: Int, result: ThreeDimensionalDoubleBox): ThreeDimensionalDoubleBox? {
+        val x = coords.x + dx
         val y = coords.y + dy
         val z = coords.z + dz
         val bounds: ThreeDimensionalDoubleBox
@@ -833,24 +1456,26 @@ class HydrazinePathFinder internal constructor(
             ) -> FULL_BOUNDS
             else -> return null
         }
-        val result = ThreeDimensionalDoubleBox(bounds)
+        result.set(bounds)
         result.add(dx.toDouble(), dy.toDouble(), dz.toDouble())
         return result
     }
 
-    fun applyPointOptions(current: Node, vararg pointOptions: Node?): Boolean {
+    fun applyPointOptions(current: Node, vararg pointOptions: Node?): Boolean =
+        applyPointOptions(current, pointOptions, pointOptions.size)
+
+    private fun applyPointOptions(current: Node, pointOptions: Array<out Node?>, count: Int): Boolean {
         var found = false
-        for (alternative in pointOptions) {
-            if (impassible(alternative) || alternative?.visited() == true || Node.squareDelta(
+        for (i in 0 until count) {
+            val alternative = pointOptions[i]
+            if (impassible(alternative) || alternative!!.visited() || Node.squareDelta(
                     alternative,
                     target
                 ) >= searchRangeSquared
             ) continue
             found = true
-            alternative?.sterilize()
-            if (alternative != null) {
-                queue.appendTo(alternative, current, target!!.coordinates)
-            }
+            alternative.sterilize()
+            queue.appendTo(alternative, current, target!!.coordinates)
         }
         return found
     }
@@ -859,11 +1484,10 @@ class HydrazinePathFinder internal constructor(
         alternative == null || alternative.passibility().impassible(capabilities)
 
     private fun cachedPassiblePointNear(xOrigin: Int, yOrigin: Int, zOrigin: Int, origin: ThreeDimensionalIntVector? = null): Node? {
-        val coordsFrom = ThreeDimensionalIntVector(xOrigin, yOrigin, zOrigin)
-        val result = nodeMap.cachedPassiblePointNear(coordsFrom, origin)
+        val result = nodeMap.cachedPassiblePointNear(xOrigin, yOrigin, zOrigin, origin)
         return if (Node.passible(result) && origin != null && unreachableFromSource(
                 origin,
-                coordsFrom
+                unreachableProbe.set(xOrigin, yOrigin, zOrigin)
             )
         ) null else result
     }
@@ -905,11 +1529,21 @@ class HydrazinePathFinder internal constructor(
 
     companion object {
         private val FULL_BOUNDS = ThreeDimensionalDoubleBox(0.0, 0.0, 0.0, 1.0, 1.0, 1.0)
+
+        // Moves descended in flow fields, the same as those expanded by FlowField
+        private val FLOW_DX = intArrayOf(-1, +1, 0, 0, 0, 0)
+        private val FLOW_DY = intArrayOf(0, 0, 0, 0, +1, -1)
+        private val FLOW_DZ = intArrayOf(0, 0, -1, +1, 0, 0)
         private var DOT_THRESHOLD = 0.6
         private var PROBATIONARY_TIME_LIMIT: FloatingRange? = 36f range 64f
         private var PASSIBLE_POINT_TIME_LIMIT: FloatingRange? = 24f range 48f
         private var FAULT_COUNT_THRESHOLD: Byte = 3
         private var FAULT_LIMIT = 23
+        private const val MAX_JUMP_DISTANCE = 16
+        // Weight of the latest search in the success rate reported to priority policies
+        private const val SUCCESS_RATE_SMOOTHING = 0.25f
+        // A triage bounded only by its number of iterations
+        private const val NO_DEADLINE = Long.MAX_VALUE
 
         /**
          * Configures the path-finding library.  All instances of this class derive configuration from here
@@ -0,0 +1,21 @@
+package com.extollit.gaming.ai.path
+
+/**
+ * Source of the time that a [TriageScheduler] divides among the path-finders registered with it.  Schedulers use
+ * [SYSTEM] unless constructed with another clock, which may measure something other than wall-clock time, for example
+ * a count that advances each time it is read.
+ */
+interface IClock {
+    /**
+     * The current time in nanoseconds.  Only differences between values are meaningful, values never decrease.
+     */
+    fun nanoTime(): Long
+
+    companion object {
+        /** The monotonic system clock, see [System.nanoTime] */
+        @JvmField
+        val SYSTEM: IClock = object : IClock {
+            override fun nanoTime(): Long = System.nanoTime()
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.extollit.gaming.ai.path
+
+/**
+ * Receives measurements of the work done by path-finders, attach one to a path-finder with
+ * [HydrazinePathFinder.withMetrics].  Measurements are reported once for every triage cycle (that is once for each
+ * call to a method such as [HydrazinePathFinder.computePathTo] or [HydrazinePathFinder.updatePathFor] that searches)
+ * on the thread that called the path-finder, implementations that are shared by path-finders used on different
+ * threads must be thread-safe.
+ *
+ * @see PathFinderMetrics
+ */
+interface IPathFinderMetrics {
+    /**
+     * Called after a path-finder completed a triage cycle.
+     *
+     * @param pathFinder the path-finder that performed the cycle, its subject identifies the entity
+     * @param sample measurements of the cycle, this object is reused by the path-finder and must not be retained
+     */
+    fun onTriage(pathFinder: HydrazinePathFinder, sample: TriageSample)
+}
@@ -0,0 +1,25 @@
+package com.extollit.gaming.ai.path
+
+/**
+ * Adapts the compute share of path-finders to the circumstances of their entities (AI level-of-detail), attach one to
+ * a path-finder with [HydrazinePathFinder.withPriorityPolicy].  The policy is consulted every time the path-finder
+ * initiates or updates a path, and the priority it returns replaces the path-finder's scheduling priority (and so its
+ * share of a [TriageScheduler] it is registered with).
+ *
+ * Policies are called on the thread that called the path-finder, implementations that are shared by path-finders used
+ * on different threads must be thread-safe.
+ *
+ * @see DistancePriorityPolicy
+ */
+interface IPriorityPolicy {
+    /**
+     * Determines the scheduling priority a path-finder should have right now.
+     *
+     * @param pathFinder the path-finder to prioritize, its subject identifies the entity
+     * @param context the path-finder's current priority and measures of how urgently its entity needs a path, this
+     * object is reused by the path-finder and must not be retained
+     * @return the scheduling priority to apply, or null to degrade the path-finder to coarse movement without any A*
+     * search (see [HydrazinePathFinder.withPriorityPolicy])
+     */
+    fun priorityFor(pathFinder: HydrazinePathFinder, context: PriorityContext): SchedulingPriority?
+}
@@ -0,0 +1,20 @@
+package com.extollit.gaming.ai.path
+
+/**
+ * Strategies a path-finder can use to expand nodes of the A* graph, see [HydrazinePathFinder.withNodeExpansion]
+ */
+enum class NodeExpansion {
+    /**
+     * Every passible neighbor of an expanded node is added to the open-set.  This is the default.
+     */
+    adjacent,
+
+    /**
+     * Jump point search: in each cardinal direction, runs of uniformly passible nodes at the same level (whose sides are
+     * equally unobstructed) are skipped over and only the node where the run ends is added to the open-set.  A run ends
+     * where the terrain becomes irregular, where it lines up with the target or after a bounded distance.  This greatly
+     * reduces the number of nodes expanded across open plains, oceans and open sky at the cost of paths whose points may
+     * be several blocks apart along straight unobstructed lines.
+     */
+    jumpPoint
+}
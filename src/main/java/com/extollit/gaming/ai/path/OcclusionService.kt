@@ -0,0 +1,142 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.model.AbstractAreaOcclusionProvider
+import com.extollit.gaming.ai.path.model.IColumnarSpace
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionProvider
+import com.extollit.gaming.ai.path.model.IOcclusionProviderFactory
+import com.extollit.gaming.ai.path.vector.PackedThreeDimensionalSpatialMap
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * Instance-wide occlusion provider factory that shares one grid of columnar spaces amongst all path-finders in an
+ * instance space.  Rather than building a dedicated grid of columnar spaces for every window requested by every
+ * path-finder, this service hands out cheap windowed views over a shared chunk grid.  Path-finders requesting the same
+ * window share the same view, and overlapping windows share the columnar spaces they have in common.
+ *
+ * Each columnar space in the grid is reference-counted by the views that span it, a columnar space is retrieved from
+ * the instance when it is first referenced and forgotten when the last view referencing it is released.  Views are
+ * released by closing them, a path-finder does this automatically whenever its window moves or it is reset, so
+ * path-finders using this service should be reset before being discarded.
+ *
+ * There should be precisely one instance of this class for each instance space, pass it as the occlusion provider
+ * factory when constructing each [HydrazinePathFinder] in that instance space.
+ *
+ * @param instance the instance space this service provides occlusion for
+ */
+class OcclusionService(private val instance: IInstanceSpace) : IOcclusionProviderFactory {
+    private class Chunk {
+        @Volatile
+        var columnarSpace: IColumnarSpace? = null
+        var references = 0
+    }
+
+    private data class WindowKey(val cx0: Int, val cz0: Int, val cxN: Int, val czN: Int)
+
+    private val chunks = PackedThreeDimensionalSpatialMap<Chunk>(0)
+    private val windows = HashMap<WindowKey, Window>()
+
+    /**
+     * A reference-counted view over the shared chunk grid spanning a window of columnar spaces
+     */
+    private inner class Window(private val key: WindowKey) :
+        AbstractAreaOcclusionProvider(key.cx0, key.cz0, key.cxN, key.czN), AutoCloseable {
+
+        private val width = cxN - cx0 + 1
+        private val chunks: Array<Chunk>
+        var references = 0
+
+        init {
+            val chunks = arrayOfNulls<Chunk>(width * (czN - cz0 + 1))
+            var i = 0
+            for (cz in cz0..czN)
+                for (cx in cx0..cxN)
+                    chunks[i++] = acquire(cx, cz)
+
+            @Suppress("UNCHECKED_CAST")
+            this.chunks = chunks as Array<Chunk>
+        }
+
+        override fun columnarSpaceAt(cx: Int, cz: Int): IColumnarSpace? =
+            chunks[(cz - cz0) * width + cx - cx0].columnarSpace
+
+        /**
+         * Releases this view, this must be called exactly once for each time the view was obtained from the service
+         */
+        override fun close() {
+            release(this)
+        }
+
+        fun dispose() {
+            windows.remove(key)
+            for (cz in cz0..czN)
+                for (cx in cx0..cxN) {
+                    val chunk = chunks[(cz - cz0) * width + cx - cx0]
+                    if (--chunk.references == 0) {
+                        chunk.columnarSpace = null
+                        this@OcclusionService.chunks.remove(ThreeDimensionalIntVector.packed(cx, 0, cz))
+                    }
+                }
+        }
+    }
+
+    /** The number of distinct windows currently referenced by path-finders */
+    val windowCount: Int
+        @Synchronized get() = windows.size
+
+    /** The number of distinct columnar spaces currently referenced by all windows */
+    val chunkCount: Int
+        @Synchronized get() = chunks.size
+
+    @Synchronized
+    override fun fromInstanceSpace(
+        instance: IInstanceSpace,
+        centerXFrom: Int,
+        centerZFrom: Int,
+        centerXTo: Int,
+        centerZTo: Int
+    ): IOcclusionProvider {
+        require(instance === this.instance) { "This service only provides occlusion for ${this.instance}" }
+
+        val key = WindowKey(centerXFrom, centerZFrom, centerXTo, centerZTo)
+        var window = windows[key]
+        if (window == null) {
+            window = Window(key)
+            windows[key] = window
+        }
+        window.references++
+        return window
+    }
+
+    /**
+     * Notifies this service that the columnar space at the specified chunk coordinates was loaded, unloaded or
+     * replaced.  If the columnar space is currently referenced by any window it is retrieved again from the instance.
+     *
+     * @param cx x chunk coordinate
+     * @param cz z chunk coordinate
+     */
+    @Synchronized
+    fun invalidate(cx: Int, cz: Int) {
+        val chunk = chunks[cx, 0, cz] ?: return
+        chunk.columnarSpace = instance.columnarSpaceAt(cx, cz)
+    }
+
+    private fun acquire(cx: Int, cz: Int): Chunk {
+        var chunk = chunks[cx, 0, cz]
+        if (chunk == null) {
+            chunk = Chunk()
+            chunks.put(ThreeDimensionalIntVector.packed(cx, 0, cz), chunk)
+        }
+        if (chunk.columnarSpace == null)
+            chunk.columnarSpace = instance.columnarSpaceAt(cx, cz)
+        chunk.references++
+        return chunk
+    }
+
+    @Synchronized
+    private fun release(window: Window) {
+        check(window.references > 0) { "Window has already been released" }
+        if (--window.references == 0)
+            window.dispose()
+    }
+}
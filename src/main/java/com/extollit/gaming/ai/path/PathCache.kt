@@ -0,0 +1,299 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.model.Gravitation
+import com.extollit.gaming.ai.path.model.IGraphNodeFilter
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionFieldListener
+import com.extollit.gaming.ai.path.model.IPathingEntity
+import com.extollit.gaming.ai.path.model.Passibility
+import com.extollit.gaming.ai.path.node.Node
+import com.extollit.gaming.ai.path.node.CalculatorReach
+import com.extollit.gaming.ai.path.node.IBoundedNodeCalculator
+import com.extollit.gaming.ai.path.node.INodeCalculator
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.floor
+
+/**
+ * Cache of completed paths shared by the path-finders of an instance space, so that herds of similar entities chasing
+ * the same destination do not each search for near-identical paths (see [HydrazinePathFinder.withPathCache]).
+ *
+ * Paths are keyed by the block they lead to, the fingerprint of the entity that found them (see [fingerprintOf]) and
+ * the graph node filter used, at most one path is kept per key.  A lookup from any block along a cached path hits and
+ * yields the remainder of that path as fresh nodes, so that entities following one another share the same path.  The
+ * least recently used paths are evicted once the cache is full.
+ *
+ * This cache attaches itself as a listener to the occlusion fields of every columnar space that a cached path crosses
+ * (see [com.extollit.gaming.ai.path.model.ColumnarOcclusionFieldList.addListener]), a block change discards the cached
+ * paths that cross any section within reach of it, as does [com.extollit.gaming.ai.path.node.PassibilityCache] the
+ * reach grows to that of the node calculators of the searches.  Paths crossing columnar spaces that are not loaded or
+ * found by node calculators that are not of this library are not cached.
+ *
+ * Each section also records the epoch of the last block change that affected it.  A search takes the epoch when it
+ * starts (see [epochFor]) and its path is not cached if any section the path crosses changed since, so that a path
+ * searched over several ticks is not cached after the sections dirtied along it were already discarded.
+ *
+ * There should be one instance of this class for each instance space, it is safe for use by multiple threads.
+ *
+ * @param instance the instance space that paths are found in
+ * @param capacity the maximum number of paths to retain
+ */
+class PathCache @JvmOverloads constructor(
+    private val instance: IInstanceSpace,
+    private val capacity: Int = DEFAULT_CAPACITY
+) {
+    private data class Key(val target: Long, val fingerprint: Long, val filter: IGraphNodeFilter?)
+
+    private class CachedPath(val key: Key, val cells: LongArray, val words: IntArray, val sections: LongArray)
+
+    /** Packed coordinates of sections that were affected by terrain changes, written by any thread */
+    private val dirty: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    /** The number of block changes seen */
+    private val changes = AtomicLong()
+
+    /** Epochs of the last change affecting each section by hash of section coordinates, colliding sections share one */
+    private val sectionEpochs = AtomicLongArray(SECTION_SLOTS)
+
+    private val reach = CalculatorReach()
+
+    private val listener = object : IOcclusionFieldListener {
+        override fun onOcclusionChanged(x: Int, y: Int, z: Int) {
+            val epoch = changes.incrementAndGet()
+            // A cached path holds only as long as the passibility of its nodes
+            reach.forEachSectionAffectedBy(x, y, z) { cx, cy, cz ->
+                markDirty(ThreeDimensionalIntVector.packed(cx, cy, cz), epoch)
+            }
+        }
+
+        override fun onOcclusionReset(cx: Int, cz: Int) {
+            val epoch = changes.incrementAndGet()
+            for (dz in -1..+1)
+                for (dx in -1..+1)
+                    for (cy in 0 until WORLD_SECTIONS)
+                        markDirty(ThreeDimensionalIntVector.packed(cx + dx, cy, cz + dz), epoch)
+        }
+    }
+
+    private val entries = object : LinkedHashMap<Key, CachedPath>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, CachedPath>): Boolean {
+            if (size <= capacity) return false
+            unindex(eldest.value)
+            return true
+        }
+    }
+
+    /** Cached paths by the packed coordinates of each section they cross */
+    private val sections: MutableMap<Long, MutableSet<CachedPath>> = HashMap()
+
+    private var hits = 0L
+    private var misses = 0L
+
+    init {
+        require(capacity > 0) { "Path cache must have room for at least one path" }
+    }
+
+    /** The number of paths currently retained */
+    val size: Int
+        @Synchronized get() {
+            flush()
+            return entries.size
+        }
+
+    /** The number of lookups that yielded a cached path */
+    val hitCount: Long
+        @Synchronized get() = hits
+
+    /** The number of lookups that did not yield a cached path */
+    val missCount: Long
+        @Synchronized get() = misses
+
+    /**
+     * Takes the current epoch when a search starts, to pass to [store] along with the path found
+     *
+     * @param calculator node calculator of the search with its subject applied
+     * @return the current epoch, or [NO_EPOCH] if paths found by the calculator cannot be cached
+     */
+    internal fun epochFor(calculator: INodeCalculator): Long {
+        if (calculator !is IBoundedNodeCalculator) return NO_EPOCH
+        reach.include(calculator)
+        return changes.get()
+    }
+
+    /**
+     * Looks up the remainder of a cached path from the specified source block to the specified target block
+     *
+     * @param source coordinates of the block the path must pass through
+     * @param target coordinates of the block the path must lead to
+     * @param fingerprint fingerprint of the entity that will follow the path, see [fingerprintOf]
+     * @param filter graph node filter the path must have been found with
+     * @return fresh nodes from the source to the target inclusive, or null if no such path is cached
+     */
+    @Synchronized
+    internal fun lookup(
+        source: ThreeDimensionalIntVector,
+        target: ThreeDimensionalIntVector,
+        fingerprint: Long,
+        filter: IGraphNodeFilter?
+    ): Array<Node>? {
+        flush()
+        val entry = entries[Key(target.packed(), fingerprint, filter)]
+        val start = entry?.cells?.indexOf(source.packed()) ?: -1
+        if (entry == null || start < 0 || start >= entry.cells.size - 1) {
+            misses++
+            return null
+        }
+
+        hits++
+        val cells = entry.cells
+        val words = entry.words
+        return Array(cells.size - start) {
+            val cell = cells[start + it]
+            val word = words[start + it]
+            Node(
+                ThreeDimensionalIntVector(
+                    ThreeDimensionalIntVector.unpackX(cell),
+                    ThreeDimensionalIntVector.unpackY(cell),
+                    ThreeDimensionalIntVector.unpackZ(cell)
+                ),
+                PASSIBILITIES[word and 0xFF],
+                word and VOLATILE != 0,
+                GRAVITATIONS[word shr 8 and 0xFF]
+            )
+        }
+    }
+
+    /**
+     * Caches a complete path, replacing any path cached previously for the same target, fingerprint and filter
+     *
+     * @param nodes the nodes of the path from source to target inclusive, these are copied
+     * @param fingerprint fingerprint of the entity that found the path, see [fingerprintOf]
+     * @param filter graph node filter the path was found with
+     * @param epoch the epoch when the search for the path started (see [epochFor]), the path is not cached if any
+     * section it crosses changed since
+     */
+    @Synchronized
+    internal fun store(nodes: Array<out Node>, fingerprint: Long, filter: IGraphNodeFilter?, epoch: Long) {
+        if (nodes.size < 2 || epoch == NO_EPOCH) return
+
+        val cells = LongArray(nodes.size) { nodes[it].coordinates.packed() }
+        val sections = LinkedHashSet<Long>()
+        for (node in nodes) {
+            val coordinates = node.coordinates
+            sections.add(ThreeDimensionalIntVector.packed(coordinates.x shr 4, coordinates.y shr 4, coordinates.z shr 4))
+        }
+        for (section in sections)
+            if (sectionEpochs.get(sectionSlot(section)) > epoch) return
+        val columns = HashSet<Long>()
+        for (section in sections) {
+            val cx = ThreeDimensionalIntVector.unpackX(section)
+            val cz = ThreeDimensionalIntVector.unpackZ(section)
+            if (columns.add(ThreeDimensionalIntVector.packed(cx, 0, cz)))
+                (instance.columnarSpaceAt(cx, cz) ?: return).occlusionFields().addListener(listener)
+        }
+
+        flush()
+        val key = Key(cells[cells.size - 1], fingerprint, filter)
+        val entry = CachedPath(
+            key,
+            cells,
+            IntArray(nodes.size) {
+                val node = nodes[it]
+                node.passibility().ordinal or
+                    (node.gravitation().ordinal shl 8) or
+                    (if (node.volatile_()) VOLATILE else 0)
+            },
+            sections.toLongArray()
+        )
+        entries.put(key, entry)?.let { unindex(it) }
+        for (section in entry.sections)
+            this.sections.getOrPut(section) { HashSet() }.add(entry)
+    }
+
+    /**
+     * Discards all cached paths
+     */
+    @Synchronized
+    fun clear() {
+        dirty.clear()
+        entries.clear()
+        sections.clear()
+    }
+
+    private fun markDirty(section: Long, epoch: Long) {
+        dirty.add(section)
+        sectionEpochs.accumulateAndGet(sectionSlot(section), epoch) { a, b -> maxOf(a, b) }
+    }
+
+    private fun unindex(entry: CachedPath) {
+        for (section in entry.sections) {
+            val indexed = sections[section] ?: continue
+            indexed.remove(entry)
+            if (indexed.isEmpty()) sections.remove(section)
+        }
+    }
+
+    /**
+     * Discards all cached paths that cross dirty sections
+     */
+    private fun flush() {
+        val iterator = dirty.iterator()
+        while (iterator.hasNext()) {
+            val key = iterator.next()
+            iterator.remove()
+            val indexed = sections.remove(key) ?: continue
+            for (entry in indexed) {
+                if (entries.remove(entry.key) === entry) unindex(entry)
+            }
+        }
+    }
+
+    companion object {
+        /** The default maximum number of paths retained */
+        const val DEFAULT_CAPACITY = 256
+
+        private const val WORLD_SECTIONS = 16
+        private const val SECTION_SLOTS = 4096
+
+        /** Epoch of searches whose paths are not cached */
+        internal const val NO_EPOCH = -1L
+        private const val VOLATILE = 1 shl 16
+
+        private val PASSIBILITIES = Passibility.values()
+        private val GRAVITATIONS = Gravitation.values()
+
+        private fun sectionSlot(section: Long): Int {
+            val h = section * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and SECTION_SLOTS - 1
+        }
+
+        /**
+         * Computes a fingerprint of those properties of an entity that determine which paths it can take, entities
+         * with the same fingerprint share cached paths.
+         *
+         * @param subject the entity to compute a fingerprint for
+         * @return a value that is the same for all entities with the same capabilities and discrete size
+         */
+        @JvmStatic
+        fun fingerprintOf(subject: IPathingEntity): Long {
+            val capabilities = subject.capabilities()
+            var bits = 0L
+            if (capabilities.fireResistant()) bits = bits or 0x001
+            if (capabilities.cautious()) bits = bits or 0x002
+            if (capabilities.climber()) bits = bits or 0x004
+            if (capabilities.swimmer()) bits = bits or 0x008
+            if (capabilities.aquatic()) bits = bits or 0x010
+            if (capabilities.avian()) bits = bits or 0x020
+            if (capabilities.aquaphobic()) bits = bits or 0x040
+            if (capabilities.avoidsDoorways()) bits = bits or 0x080
+            if (capabilities.opensDoors()) bits = bits or 0x100
+
+            val discreteSize = floor(subject.width() + 1).toLong()
+            val tall = floor(subject.height() + 1).toLong()
+            return bits or ((discreteSize and 0xFFFF) shl 16) or ((tall and 0xFFFF) shl 32)
+        }
+    }
+}
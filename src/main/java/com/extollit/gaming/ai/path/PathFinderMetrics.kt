@@ -0,0 +1,193 @@
+package com.extollit.gaming.ai.path
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+
+/**
+ * Aggregates measurements reported by any number of path-finders (see [HydrazinePathFinder.withMetrics]) into totals
+ * and a histogram of triage cycle latencies for each scheduling priority.  Recording never blocks, measurements are
+ * accumulated with atomic counters so that path-finders on different threads may share one instance.
+ *
+ * Call [snapshot] periodically (e.g. once per tick) to read the measurements accumulated since the previous snapshot.
+ */
+class PathFinderMetrics : IPathFinderMetrics {
+    /**
+     * Distribution of triage cycle latencies, bucket i counts cycles that took less than 2^i nanoseconds (and at
+     * least 2^(i - 1) nanoseconds).
+     */
+    class Histogram internal constructor(private val buckets: LongArray) {
+        /** The number of cycles recorded */
+        val count: Long = buckets.sum()
+
+        /**
+         * Number of cycles recorded in a bucket
+         *
+         * @param bucket index of the bucket, see [Histogram]
+         */
+        fun countAt(bucket: Int): Long = buckets[bucket]
+
+        /**
+         * Estimates a percentile of the latencies, this is the upper bound of the bucket containing it
+         *
+         * @param fraction the percentile as a fraction between zero and one (e.g. 0.99)
+         * @return an upper bound of the percentile in nanoseconds, zero if no cycles were recorded
+         */
+        fun percentile(fraction: Double): Long {
+            if (count == 0L) return 0
+            val rank = ceil(count * fraction).toLong().coerceIn(1, count)
+            var seen = 0L
+            for (i in buckets.indices) {
+                seen += buckets[i]
+                if (seen >= rank) return upperBoundOf(i)
+            }
+            return Long.MAX_VALUE
+        }
+
+        override fun toString(): String =
+            "count=$count, p50<${percentile(0.5)}ns, p99<${percentile(0.99)}ns, max<${percentile(1.0)}ns"
+    }
+
+    /**
+     * Measurements accumulated between two calls to [snapshot]
+     */
+    class Snapshot internal constructor(
+        /** The number of triage cycles recorded */
+        val triages: Long,
+        /** Total wall-clock time spent in triage cycles in nanoseconds */
+        val nanos: Long,
+        /** Total number of A* iterations */
+        val iterations: Long,
+        /** Total number of node expansions */
+        val expansions: Long,
+        /** Total number of nodes computed by node calculators */
+        val calculations: Long,
+        /** Total number of nodes answered by node maps without computing them */
+        val nodeMapHits: Long,
+        /** The greatest number of nodes held by any open-set */
+        val queueHighWater: Int,
+        /** Total number of nodes culled from full open-sets */
+        val culled: Long,
+        /** Total number of times searches were restarted from the source */
+        val triageResets: Long,
+        /** Total number of times graphs were discarded */
+        val graphResets: Long,
+        /** Total number of times entities were found stuck on their paths */
+        val faults: Long,
+        /** The number of triage cycles that produced a complete path */
+        val completions: Long,
+        private val histograms: Array<Histogram>
+    ) {
+        /**
+         * Retrieves the latencies of triage cycles performed by path-finders configured with a scheduling priority
+         *
+         * @param priority the scheduling priority, null for path-finders whose iterations were configured explicitly
+         */
+        fun latencies(priority: SchedulingPriority?): Histogram = histograms[indexOf(priority)]
+
+        /** The fraction of node map lookups that did not need the node calculator */
+        val nodeMapHitRatio: Double
+            get() = if (nodeMapHits + calculations == 0L) 0.0 else nodeMapHits.toDouble() / (nodeMapHits + calculations)
+
+        override fun toString(): String {
+            val sb = StringBuilder()
+            sb.append("triages=").append(triages)
+                .append(", nanos=").append(nanos)
+                .append(", iterations=").append(iterations)
+                .append(", expansions=").append(expansions)
+                .append(", calculations=").append(calculations)
+                .append(", nodeMapHits=").append(nodeMapHits)
+                .append(", queueHighWater=").append(queueHighWater)
+                .append(", culled=").append(culled)
+                .append(", triageResets=").append(triageResets)
+                .append(", graphResets=").append(graphResets)
+                .append(", faults=").append(faults)
+                .append(", completions=").append(completions)
+            for (priority in SchedulingPriority.values())
+                sb.append(", ").append(priority).append(": {").append(latencies(priority)).append('}')
+            sb.append(", explicit: {").append(latencies(null)).append('}')
+            return sb.toString()
+        }
+    }
+
+    private val triages = LongAdder()
+    private val nanos = LongAdder()
+    private val iterations = LongAdder()
+    private val expansions = LongAdder()
+    private val calculations = LongAdder()
+    private val nodeMapHits = LongAdder()
+    private val queueHighWater = AtomicInteger()
+    private val culled = LongAdder()
+    private val triageResets = LongAdder()
+    private val graphResets = LongAdder()
+    private val faults = LongAdder()
+    private val completions = LongAdder()
+    private val latencies = Array(PRIORITIES.size + 1) { AtomicLongArray(BUCKETS) }
+
+    override fun onTriage(pathFinder: HydrazinePathFinder, sample: TriageSample) {
+        triages.increment()
+        nanos.add(sample.nanos)
+        iterations.add(sample.iterations.toLong())
+        expansions.add(sample.expansions.toLong())
+        calculations.add(sample.calculations)
+        nodeMapHits.add(sample.nodeMapHits)
+        culled.add(sample.culled)
+        triageResets.add(sample.triageResets.toLong())
+        graphResets.add(sample.graphResets.toLong())
+        faults.add(sample.faults.toLong())
+        if (sample.completed) completions.increment()
+
+        val highWater = sample.queueHighWater
+        var current = queueHighWater.get()
+        while (highWater > current && !queueHighWater.compareAndSet(current, highWater))
+            current = queueHighWater.get()
+
+        latencies[indexOf(sample.priority)].incrementAndGet(bucketOf(sample.nanos))
+    }
+
+    /**
+     * Reads and resets the measurements accumulated since the previous snapshot.  Measurements recorded concurrently
+     * with this call are attributed to either this snapshot or the next one.
+     *
+     * @return the measurements accumulated since the previous snapshot
+     */
+    fun snapshot(): Snapshot = Snapshot(
+        triages.sumThenReset(),
+        nanos.sumThenReset(),
+        iterations.sumThenReset(),
+        expansions.sumThenReset(),
+        calculations.sumThenReset(),
+        nodeMapHits.sumThenReset(),
+        queueHighWater.getAndSet(0),
+        culled.sumThenReset(),
+        triageResets.sumThenReset(),
+        graphResets.sumThenReset(),
+        faults.sumThenReset(),
+        completions.sumThenReset(),
+        Array(latencies.size) { p ->
+            val buckets = latencies[p]
+            Histogram(LongArray(BUCKETS) { buckets.getAndSet(it, 0) })
+        }
+    )
+
+    companion object {
+        /** The number of buckets of each latency histogram */
+        const val BUCKETS = 64
+
+        private val PRIORITIES = SchedulingPriority.values()
+
+        private fun indexOf(priority: SchedulingPriority?): Int = priority?.ordinal ?: PRIORITIES.size
+
+        private fun bucketOf(nanos: Long): Int = (64 - java.lang.Long.numberOfLeadingZeros(nanos)).coerceAtMost(BUCKETS - 1)
+
+        /**
+         * The exclusive upper bound of the latencies counted by a histogram bucket
+         *
+         * @param bucket index of the bucket
+         * @return the upper bound in nanoseconds
+         */
+        @JvmStatic
+        fun upperBoundOf(bucket: Int): Long = if (bucket >= 63) Long.MAX_VALUE else 1L shl bucket
+    }
+}
@@ -0,0 +1,179 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionProviderFactory
+import com.extollit.gaming.ai.path.model.IPathingEntity
+import com.extollit.gaming.ai.path.node.path.IPath
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Batch scheduler that runs the A* triage of many path-finders in parallel.  Callers submit path-finding requests for
+ * any number of entities and then call [tick] once per game tick, each call advances every outstanding request by one
+ * triage slice (as determined by the request's [SchedulingPriority]) and returns the requests that completed.
+ *
+ * This service owns one [HydrazinePathFinder] for each entity it has seen, retained between requests so that the graph
+ * each has cached is re-used.  During a tick the triage slice of each path-finder is executed by exactly one worker,
+ * a path-finder's state is never touched by two threads at once and all of it is visible to the calling thread once
+ * [tick] returns.  The calling thread participates as one of the workers.
+ *
+ * This class is not itself thread-safe, all of its methods must be called from the same (tick) thread.  The instance
+ * space must tolerate concurrent reads from the workers (occlusion fields already do, see
+ * [com.extollit.gaming.ai.path.model.OcclusionField]), consider sharing an [OcclusionService] for the occlusion
+ * provider factory so that workers share the same columnar spaces.
+ *
+ * @param instanceSpace the instance space that all entities submitted to this service path-find in
+ * @param occlusionProviderFactory the occlusion provider factory used by all path-finders of this service
+ * @param executor executor used to run triage slices, the calling thread is also used
+ * @param parallelism the maximum number of workers (including the calling thread) used during a tick
+ */
+class PathFindingService @JvmOverloads constructor(
+    private val instanceSpace: IInstanceSpace,
+    private val occlusionProviderFactory: IOcclusionProviderFactory = AreaOcclusionProviderFactory,
+    private val executor: Executor = ForkJoinPool.commonPool(),
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors()
+) {
+    private class Request(
+        val pathFinder: HydrazinePathFinder,
+        val destination: ThreeDimensionalDoubleVector,
+        val priority: SchedulingPriority
+    ) {
+        var initiated = false
+        var completed = false
+        var path: IPath? = null
+        var fault: Throwable? = null
+    }
+
+    private val pathFinders: MutableMap<IPathingEntity, HydrazinePathFinder> = HashMap()
+    private val requests: MutableMap<IPathingEntity, Request> = LinkedHashMap()
+
+    init {
+        require(parallelism > 0) { "Parallelism must be positive: $parallelism" }
+    }
+
+    /** The number of requests that have not yet completed */
+    val pending: Int
+        get() = requests.size
+
+    /**
+     * Retrieves the path-finder this service uses for the specified entity, creating one if necessary.  The path-finder
+     * may be configured (e.g. [HydrazinePathFinder.withGraphNodeFilter]) between ticks, it must not be used to
+     * initiate path-finding directly while the entity has a request outstanding with this service.
+     *
+     * @param entity the entity to retrieve a path-finder for
+     * @return the path-finder for the entity
+     */
+    fun pathFinderFor(entity: IPathingEntity): HydrazinePathFinder =
+        pathFinders.getOrPut(entity) { HydrazinePathFinder(entity, instanceSpace, occlusionProviderFactory) }
+
+    /**
+     * Submits a request to path-find from the entity's current location to the specified destination.  This
+     * supersedes any request already outstanding for the entity.
+     *
+     * @param entity the entity to path-find for
+     * @param destination the destination to path-find to
+     * @param priority the scheduling priority determining how much work is done on the request each tick
+     */
+    fun submit(entity: IPathingEntity, destination: ThreeDimensionalDoubleVector, priority: SchedulingPriority) {
+        requests.remove(entity)
+        requests[entity] = Request(pathFinderFor(entity), ThreeDimensionalDoubleVector(destination), priority)
+    }
+
+    /**
+     * Cancels any outstanding request for the specified entity, this does not forget the entity's path-finder
+     *
+     * @param entity the entity to cancel path-finding for
+     * @return true if there was an outstanding request that was cancelled
+     */
+    fun cancel(entity: IPathingEntity): Boolean = requests.remove(entity) != null
+
+    /**
+     * Cancels any outstanding request for the specified entity and forgets its path-finder, releasing any resources it
+     * held.  Call this when an entity is removed from the instance.
+     *
+     * @param entity the entity to forget
+     */
+    fun remove(entity: IPathingEntity) {
+        requests.remove(entity)
+        pathFinders.remove(entity)?.reset()
+    }
+
+    /**
+     * Advances all outstanding requests by one triage slice in parallel and waits for all of them to finish.  Requests
+     * that completed are removed from this service and returned, the path of a completed request is null if the
+     * destination could not be reached at all.  Incomplete requests remain outstanding for the next tick.
+     *
+     * If the triage of any request fails then all other requests are still advanced, after which the failed requests
+     * are dropped and the first failure is rethrown with any others attached as suppressed exceptions.
+     *
+     * @return completed paths keyed by the entity each was computed for, in order of submission
+     */
+    fun tick(): Map<IPathingEntity, IPath?> {
+        val requests = this.requests
+        if (requests.isEmpty()) return emptyMap()
+
+        val batch = requests.values.toTypedArray()
+        val cursor = AtomicInteger()
+        val helpers = minOf(parallelism, batch.size) - 1
+        val latch = CountDownLatch(helpers)
+        val worker = Runnable {
+            try {
+                drain(batch, cursor)
+            } finally {
+                latch.countDown()
+            }
+        }
+        for (c in 0 until helpers) executor.execute(worker)
+        drain(batch, cursor)
+        latch.await()
+
+        val completed: MutableMap<IPathingEntity, IPath?> = LinkedHashMap()
+        var failure: Throwable? = null
+        val iterator = requests.entries.iterator()
+        while (iterator.hasNext()) {
+            val (entity, request) = iterator.next()
+            val fault = request.fault
+            if (fault != null) {
+                iterator.remove()
+                request.pathFinder.reset()
+                if (failure == null) failure = fault else failure.addSuppressed(fault)
+            } else if (request.completed) {
+                iterator.remove()
+                completed[entity] = request.path
+            }
+        }
+        if (failure != null) throw failure
+        return completed
+    }
+
+    private fun drain(batch: Array<Request>, cursor: AtomicInteger) {
+        while (true) {
+            val i = cursor.getAndIncrement()
+            if (i >= batch.size) return
+            val request = batch[i]
+            try {
+                advance(request)
+            } catch (e: Throwable) {
+                request.fault = e
+            }
+        }
+    }
+
+    private fun advance(request: Request) {
+        val pathFinder = request.pathFinder
+        val path: IPath?
+        if (request.initiated)
+            path = pathFinder.update()
+        else {
+            request.initiated = true
+            pathFinder.schedulingPriority(request.priority)
+            path = pathFinder.initiatePathTo(request.destination)
+        }
+        request.path = path
+        request.completed = path == null || pathFinder.queue.isEmpty
+    }
+}
@@ -0,0 +1,35 @@
+package com.extollit.gaming.ai.path
+
+import com.extollit.gaming.ai.path.node.path.IPath
+
+/**
+ * The state of a path-finder that an [IPriorityPolicy] weighs when it re-evaluates the path-finder's priority
+ */
+class PriorityContext internal constructor() {
+    /** The scheduling priority currently applied, null if the path-finder's iterations were configured explicitly */
+    var priority: SchedulingPriority? = null
+        internal set
+
+    /** Whether the path-finder is currently degraded to coarse movement */
+    var coarse = false
+        internal set
+
+    /** Straight-line distance from the entity to its final destination in blocks */
+    var distanceToDestination = 0.0
+        internal set
+
+    /** How long the entity has made no progress along its current path (see [IPath.stagnantFor]), zero if it has none */
+    var stagnantFor = 0f
+        internal set
+
+    /**
+     * Exponentially-weighted fraction of the path-finder's recent searches that produced a complete path to the
+     * target, starting at one
+     */
+    var successRate = 1f
+        internal set
+
+    override fun toString(): String =
+        "$priority, coarse=$coarse, distanceToDestination=$distanceToDestination, stagnantFor=$stagnantFor, " +
+        "successRate=$successRate"
+}
@@ -2,7 +2,9 @@ package com.extollit.gaming.ai.path
 
 /**
  * Preset scheduling priorities for the co-routine-like behavior of the engine's A* triage process.  This determines
- * how many iterations (per cycle) a path-finding engine instance for an entity dedicates to the A* algorithm.
+ * how many iterations (per cycle) a path-finding engine instance for an entity dedicates to the A* algorithm.  For
+ * path-finders registered with a [TriageScheduler] the periodic compute iterations instead weigh each path-finder's
+ * share of the scheduler's time budget.
  *
  * @see IConfigModel.Schedule
  */
@@ -0,0 +1,75 @@
+package com.extollit.gaming.ai.path
+
+/**
+ * Measurements of the work done by a path-finder during one triage cycle, see [IPathFinderMetrics].  Counts include
+ * work done since the previous cycle that prepared for this one, such as resetting the graph when a new destination
+ * was set.
+ */
+class TriageSample internal constructor() {
+    /** The scheduling priority of the path-finder, null if its iterations were configured explicitly */
+    var priority: SchedulingPriority? = null
+        internal set
+
+    /** Wall-clock time spent in the cycle in nanoseconds */
+    var nanos = 0L
+        internal set
+
+    /** The number of A* iterations performed, each dequeues one node */
+    var iterations = 0
+        internal set
+
+    /** The number of nodes expanded by visiting their neighbors */
+    var expansions = 0
+        internal set
+
+    /** The number of nodes computed by the node calculator (or answered by a shared passibility cache) */
+    var calculations = 0L
+        internal set
+
+    /** The number of nodes answered from the node map without computing them */
+    var nodeMapHits = 0L
+        internal set
+
+    /** The greatest number of nodes held by the open-set during the cycle */
+    var queueHighWater = 0
+        internal set
+
+    /** The number of nodes culled from the open-set because it was full */
+    var culled = 0L
+        internal set
+
+    /** The number of times the search was restarted from the source */
+    var triageResets = 0
+        internal set
+
+    /** The number of times the whole graph was discarded */
+    var graphResets = 0
+        internal set
+
+    /** The number of times the entity was found stuck on its path and the offending branch was culled */
+    var faults = 0
+        internal set
+
+    /** Whether the cycle produced a complete path to the target */
+    var completed = false
+        internal set
+
+    internal fun clear() {
+        nanos = 0
+        iterations = 0
+        expansions = 0
+        calculations = 0
+        nodeMapHits = 0
+        queueHighWater = 0
+        culled = 0
+        triageResets = 0
+        graphResets = 0
+        faults = 0
+        completed = false
+    }
+
+    override fun toString(): String =
+        "$priority: ${nanos}ns, iterations=$iterations, expansions=$expansions, calculations=$calculations, " +
+        "nodeMapHits=$nodeMapHits, queueHighWater=$queueHighWater, culled=$culled, triageResets=$triageResets, " +
+        "graphResets=$graphResets, faults=$faults, completed=$completed"
+}
@@ -0,0 +1,149 @@
+package com.extollit.gaming.ai.path
+
+import java.util.*
+
+/**
+ * Distributes a wall-clock budget of path-finding time per tick among any number of path-finders, in place of the
+ * fixed number of iterations each performs per call (see [SchedulingPriority]).  Path-finders registered with this
+ * scheduler still initiate and update their paths as usual but perform no A* iterations of their own, instead each
+ * call to [tick] advances their searches in slices until the tick's budget is spent.
+ *
+ * Slices are handed out by weighted fair queuing: each path-finder accrues virtual time for the wall-clock time its
+ * slices took divided by its weight, and the path-finder with the least virtual time is served next.  The weight of a
+ * path-finder is its periodic compute iterations, so [SchedulingPriority.extreme] path-finders receive about nine
+ * times the time of [SchedulingPriority.low] ones while they compete.  Searches that do not complete within a tick
+ * carry over to the next, and a path-finder that was not served keeps its virtual time so that it is served first.
+ * A path-finder that was idle (or newly registered) joins at the current virtual time rather than with banked credit.
+ *
+ * When a tick overruns its budget (a slice is only interrupted between iterations) the overrun is deducted from the
+ * next tick's budget, so that at most one tick's worth of path-finding is skipped to repay it.  When the budget is
+ * spent, or the caller passes a budget of zero because the game tick is already late, the remaining path-finders are
+ * shed until the next tick: their entities keep following the best partial paths found so far.
+ *
+ * This class is not thread-safe, it and the path-finders registered with it must only be used from the tick thread.
+ *
+ * @param budgetNanos the default amount of path-finding time per tick in nanoseconds, see [tick]
+ * @param sliceNanos the maximum length of one slice in nanoseconds before another path-finder is served
+ * @param clock source of the time that budgets and slices are measured in
+ */
+class TriageScheduler @JvmOverloads constructor(
+    var budgetNanos: Long = DEFAULT_BUDGET_NANOS,
+    private val sliceNanos: Long = DEFAULT_SLICE_NANOS,
+    private val clock: IClock = IClock.SYSTEM
+) {
+    private class Entry(val pathFinder: HydrazinePathFinder) : Comparable<Entry> {
+        var pass = 0L
+
+        override fun compareTo(other: Entry): Int = pass.compareTo(other.pass)
+    }
+
+    private val entries: MutableMap<HydrazinePathFinder, Entry> = LinkedHashMap()
+    private val runnable = PriorityQueue<Entry>()
+    private var virtualTime = 0L
+
+    init {
+        require(sliceNanos > 0) { "Slices must have a positive length: $sliceNanos" }
+    }
+
+    /** The number of path-finders registered with this scheduler */
+    val size: Int
+        get() = entries.size
+
+    /**
+     * Time owed from ticks that overran their budget in nanoseconds, deducted from the budget of the next tick.  This
+     * never exceeds one tick's budget.
+     */
+    var debtNanos = 0L
+        private set
+
+    /** Time spent in slices during the last tick in nanoseconds */
+    var spentNanos = 0L
+        private set
+
+    /** The number of path-finders that were still searching when the last tick ran out of budget */
+    var shed = 0
+        private set
+
+    /**
+     * Registers a path-finder with this scheduler, from then on its searches only advance during [tick].  A path-finder
+     * may only be registered with one scheduler at a time.
+     *
+     * @param pathFinder the path-finder to schedule
+     */
+    fun register(pathFinder: HydrazinePathFinder) {
+        val scheduler = pathFinder.scheduler
+        require(scheduler == null || scheduler === this) { "Path-finder is already registered with another scheduler" }
+        pathFinder.scheduler = this
+        entries.getOrPut(pathFinder) { Entry(pathFinder).also { it.pass = virtualTime } }
+    }
+
+    /**
+     * Unregisters a path-finder from this scheduler, from then on it iterates its searches itself again
+     *
+     * @param pathFinder the path-finder to stop scheduling
+     * @return true if the path-finder was registered with this scheduler
+     */
+    fun unregister(pathFinder: HydrazinePathFinder): Boolean {
+        if (entries.remove(pathFinder) == null) return false
+        pathFinder.scheduler = null
+        return true
+    }
+
+    /**
+     * Advances the searches of registered path-finders until the default budget is spent, see [budgetNanos]
+     */
+    fun tick(): Unit = tick(budgetNanos)
+
+    /**
+     * Advances the searches of registered path-finders until the specified budget, less any debt from previous ticks,
+     * is spent or all searches are complete.
+     *
+     * @param budgetNanos the amount of path-finding time for this tick in nanoseconds, for example the time left in the
+     * game tick.  Zero or less sheds all path-finders for this tick.
+     */
+    fun tick(budgetNanos: Long) {
+        val budget = budgetNanos.coerceAtLeast(0)
+        val allowance = budget - debtNanos
+        var spent = 0L
+        val runnable = runnable
+        for (entry in entries.values)
+            if (entry.pathFinder.triaging) {
+                if (entry.pass < virtualTime) entry.pass = virtualTime
+                runnable.add(entry)
+            }
+
+        if (allowance > 0) {
+            val end = clock.nanoTime() + allowance
+            while (!runnable.isEmpty()) {
+                val now = clock.nanoTime()
+                val remaining = end - now
+                if (remaining <= 0) break
+
+                val entry = runnable.poll()
+                val pathFinder = entry.pathFinder
+                virtualTime = entry.pass
+                pathFinder.triageUntil(now + minOf(sliceNanos, remaining), clock)
+                val elapsed = clock.nanoTime() - now
+                spent += elapsed
+                entry.pass += (elapsed shl WEIGHT_SHIFT) / pathFinder.schedulingWeight
+                if (pathFinder.triaging) runnable.add(entry)
+            }
+        }
+
+        shed = runnable.size
+        runnable.clear()
+        spentNanos = spent
+        debtNanos = (spent - allowance).coerceIn(0, budget)
+    }
+
+    companion object {
+        /** Default path-finding time per tick, a tenth of a 50 ms game tick */
+        const val DEFAULT_BUDGET_NANOS = 5_000_000L
+
+        /** Default maximum length of one slice */
+        const val DEFAULT_SLICE_NANOS = 250_000L
+
+        // Fixed-point precision of virtual time, so that short slices of heavily weighted path-finders still accrue some
+        private const val WEIGHT_SHIFT = 8
+    }
+}
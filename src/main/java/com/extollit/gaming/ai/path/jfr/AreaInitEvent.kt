@@ -0,0 +1,74 @@
+package com.extollit.gaming.ai.path.jfr
+
+import com.extollit.gaming.ai.path.model.OcclusionField
+import jdk.jfr.*
+
+/**
+ * Recorded each time an occlusion provider lazily area-initializes a boundary of an occlusion field while querying
+ * its elements, which fixes up the flags along an edge of the field from those of its neighbor.  These are frequent
+ * and usually brief, only those that take longer than 100 microseconds are recorded by default.
+ */
+@Name("com.extollit.gaming.ai.path.AreaInit")
+@Label("Occlusion Area Init")
+@Description("Lazy fix-up of the flags along a boundary of an occlusion field from its neighbor")
+@Category(FlightRecorder.CATEGORY, "Occlusion")
+@StackTrace(false)
+@Threshold("100 us")
+internal class AreaInitEvent : Event() {
+    @Label("Section X")
+    @JvmField
+    var cx = 0
+
+    @Label("Section Y")
+    @JvmField
+    var cy = 0
+
+    @Label("Section Z")
+    @JvmField
+    var cz = 0
+
+    @Label("Boundaries")
+    @Description("The boundaries of the field that were initialized, e.g. \"north up\"")
+    @JvmField
+    var boundaries: String? = null
+
+    companion object {
+        private val SWITCH = EventSwitch(AreaInitEvent::class.java)
+
+        /**
+         * Begins timing a boundary initialization, call only after checking [FlightRecorder.AVAILABLE]
+         *
+         * @return the event to commit once the boundary is initialized, null if no recording has this event enabled
+         */
+        fun begin(): AreaInitEvent? {
+            if (!SWITCH.enabled) return null
+            val event = AreaInitEvent()
+            event.begin()
+            return event
+        }
+
+        /**
+         * Commits the event if any boundary was initialized, the event is discarded otherwise
+         *
+         * @param before area initialization flags of the field before, see [OcclusionField.areaInitFlags]
+         * @param after area initialization flags of the field after
+         */
+        fun commit(event: AreaInitEvent, cx: Int, cy: Int, cz: Int, before: Short, after: Short) {
+            val initialized = after.toInt() and before.toInt().inv()
+            if (initialized == 0) return
+            event.end()
+            if (!event.shouldCommit()) return
+            val boundaries = StringBuilder()
+            for (direction in OcclusionField.AreaInit.values())
+                if (initialized and direction.mask.toInt() != 0) {
+                    if (boundaries.isNotEmpty()) boundaries.append(' ')
+                    boundaries.append(direction.name)
+                }
+            event.cx = cx
+            event.cy = cy
+            event.cz = cz
+            event.boundaries = boundaries.toString()
+            event.commit()
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.extollit.gaming.ai.path.jfr
+
+import jdk.jfr.Event
+import jdk.jfr.EventType
+
+/**
+ * Determines whether a recording has an event enabled without allocating an instance of the event, so that hot call
+ * sites allocate nothing while no recording is running.  Flight Recorder is never initialized by this check, the event
+ * type is only registered once something else (such as a recording) has initialized it.
+ *
+ * @param eventClass class of the event
+ */
+internal class EventSwitch(private val eventClass: Class<out Event>) {
+    @Volatile
+    private var type: EventType? = null
+
+    /** Whether any running recording has the event enabled */
+    val enabled: Boolean
+        get() {
+            if (!jdk.jfr.FlightRecorder.isInitialized()) return false
+            val type = type ?: EventType.getEventType(eventClass).also { type = it }
+            return type.isEnabled
+        }
+}
@@ -0,0 +1,31 @@
+package com.extollit.gaming.ai.path.jfr
+
+/**
+ * Guards the JDK Flight Recorder events emitted by this library so that it still runs on JVMs without JFR.  Each call
+ * site checks [AVAILABLE] before touching an event class, then asks the event class to begin an event which it only
+ * does while a recording has the event enabled.  Since [AVAILABLE] is a constant to the JIT and disabled events are
+ * never committed, events cost nothing unless they are being recorded.  All events are enabled by default whenever a
+ * recording is running, the frequent ones have a duration threshold that recording settings may override.
+ *
+ * Events are listed under the "Hydrazine" category of a recording:
+ *
+ * - [TriageEvent] for each triage slice of a path-finder
+ * - [OcclusionFieldLoadEvent] for each occlusion field loaded from a columnar space
+ * - [AreaInitEvent] for each lazy area initialization of an occlusion field boundary
+ * - [OcclusionWindowEvent] for each occlusion provider created for a node map's window
+ */
+internal object FlightRecorder {
+    /** Whether the running JVM provides JDK Flight Recorder events */
+    @JvmField
+    val AVAILABLE: Boolean = try {
+        Class.forName("jdk.jfr.Event", false, FlightRecorder::class.java.classLoader)
+        true
+    } catch (e: ClassNotFoundException) {
+        false
+    } catch (e: LinkageError) {
+        false
+    }
+
+    /** Category of all events emitted by this library */
+    const val CATEGORY = "Hydrazine"
+}
@@ -0,0 +1,56 @@
+package com.extollit.gaming.ai.path.jfr
+
+import jdk.jfr.*
+
+/**
+ * Recorded each time an occlusion field is computed from the blocks of a columnar space
+ */
+@Name("com.extollit.gaming.ai.path.OcclusionFieldLoad")
+@Label("Occlusion Field Load")
+@Description("Computation of the occlusion field of a 16x16x16 section from its blocks")
+@Category(FlightRecorder.CATEGORY, "Occlusion")
+@StackTrace(false)
+internal class OcclusionFieldLoadEvent : Event() {
+    @Label("Section X")
+    @JvmField
+    var cx = 0
+
+    @Label("Section Y")
+    @JvmField
+    var cy = 0
+
+    @Label("Section Z")
+    @JvmField
+    var cz = 0
+
+    @Label("Uniform")
+    @Description("Whether every element of the section has the same flags")
+    @JvmField
+    var uniform = false
+
+    companion object {
+        private val SWITCH = EventSwitch(OcclusionFieldLoadEvent::class.java)
+
+        /**
+         * Begins timing an occlusion field load, call only after checking [FlightRecorder.AVAILABLE]
+         *
+         * @return the event to commit once the field is loaded, null if no recording has this event enabled
+         */
+        fun begin(): OcclusionFieldLoadEvent? {
+            if (!SWITCH.enabled) return null
+            val event = OcclusionFieldLoadEvent()
+            event.begin()
+            return event
+        }
+
+        fun commit(event: OcclusionFieldLoadEvent, cx: Int, cy: Int, cz: Int, uniform: Boolean) {
+            event.end()
+            if (!event.shouldCommit()) return
+            event.cx = cx
+            event.cy = cy
+            event.cz = cz
+            event.uniform = uniform
+            event.commit()
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.extollit.gaming.ai.path.jfr
+
+import jdk.jfr.*
+
+/**
+ * Recorded each time a node map rebuilds its occlusion window, i.e. obtains a new occlusion provider from its
+ * occlusion provider factory because the area it searches moved or grew.
+ */
+@Name("com.extollit.gaming.ai.path.OcclusionWindow")
+@Label("Occlusion Window Rebuild")
+@Description("Creation of an occlusion provider covering the window of columnar spaces a path-finder searches")
+@Category(FlightRecorder.CATEGORY, "Occlusion")
+@StackTrace(false)
+internal class OcclusionWindowEvent : Event() {
+    @Label("Factory")
+    @Description("Class of the occlusion provider factory")
+    @JvmField
+    var factory: Class<*>? = null
+
+    @Label("Columns")
+    @Description("The number of columnar spaces covered by the window")
+    @JvmField
+    var columns = 0
+
+    @Label("Min Chunk X")
+    @JvmField
+    var cx0 = 0
+
+    @Label("Min Chunk Z")
+    @JvmField
+    var cz0 = 0
+
+    @Label("Max Chunk X")
+    @JvmField
+    var cxN = 0
+
+    @Label("Max Chunk Z")
+    @JvmField
+    var czN = 0
+
+    companion object {
+        private val SWITCH = EventSwitch(OcclusionWindowEvent::class.java)
+
+        /**
+         * Begins timing a window rebuild, call only after checking [FlightRecorder.AVAILABLE]
+         *
+         * @return the event to commit once the provider is created, null if no recording has this event enabled
+         */
+        fun begin(): OcclusionWindowEvent? {
+            if (!SWITCH.enabled) return null
+            val event = OcclusionWindowEvent()
+            event.begin()
+            return event
+        }
+
+        fun commit(event: OcclusionWindowEvent, factory: Class<*>, cx0: Int, cz0: Int, cxN: Int, czN: Int) {
+            event.end()
+            if (!event.shouldCommit()) return
+            event.factory = factory
+            event.columns = (cxN - cx0 + 1) * (czN - cz0 + 1)
+            event.cx0 = cx0
+            event.cz0 = cz0
+            event.cxN = cxN
+            event.czN = czN
+            event.commit()
+        }
+    }
+}
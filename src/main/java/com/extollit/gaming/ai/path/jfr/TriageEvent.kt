@@ -0,0 +1,62 @@
+package com.extollit.gaming.ai.path.jfr
+
+import jdk.jfr.*
+
+/**
+ * Recorded for each triage slice of a path-finder, i.e. each call that advanced (or served from a cache) the search
+ * for a path.  The duration of the event is the wall-clock time of the slice.  Since there are slices for every
+ * path-finding entity each tick only those that take longer than a millisecond are recorded by default.
+ */
+@Name("com.extollit.gaming.ai.path.Triage")
+@Label("Path-Finding Triage")
+@Description("One slice of path-finding performed by a path-finder")
+@Category(FlightRecorder.CATEGORY, "Path-Finding")
+@StackTrace(false)
+@Threshold("1 ms")
+internal class TriageEvent : Event() {
+    @Label("Scheduling Priority")
+    @Description("Scheduling priority of the path-finder, \"explicit\" if its iterations were configured explicitly")
+    @JvmField
+    var priority: String? = null
+
+    @Label("Iterations")
+    @Description("The number of A* iterations used by the slice")
+    @JvmField
+    var iterations = 0
+
+    @Label("Queue Size")
+    @Description("The number of nodes left in the open-set after the slice")
+    @JvmField
+    var queueSize = 0
+
+    @Label("Outcome")
+    @Description("\"complete\" if the slice produced a path to the target, \"partial\" for a path toward it, otherwise \"none\"")
+    @JvmField
+    var outcome: String? = null
+
+    companion object {
+        private val SWITCH = EventSwitch(TriageEvent::class.java)
+
+        /**
+         * Begins timing a triage slice, call only after checking [FlightRecorder.AVAILABLE]
+         *
+         * @return the event to commit once the slice completes, null if no recording has this event enabled
+         */
+        fun begin(): TriageEvent? {
+            if (!SWITCH.enabled) return null
+            val event = TriageEvent()
+            event.begin()
+            return event
+        }
+
+        fun commit(event: TriageEvent, priority: String, iterations: Int, queueSize: Int, outcome: String) {
+            event.end()
+            if (!event.shouldCommit()) return
+            event.priority = priority
+            event.iterations = iterations
+            event.queueSize = queueSize
+            event.outcome = outcome
+            event.commit()
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.extollit.gaming.ai.path.model
+
+import com.extollit.gaming.ai.path.jfr.AreaInitEvent
+import com.extollit.gaming.ai.path.jfr.FlightRecorder
+import com.extollit.gaming.ai.path.model.OcclusionField.AreaInit
+
+/**
+ * Base occlusion provider for a rectangular window of columnar spaces in an instance, the window spans the chunk
+ * coordinates (cx0, cz0) through (cxN, czN) inclusively.  Elements outside of this window are considered empty.
+ *
+ * Area initialization of occlusion fields (computing element flags along the boundaries of fields) is performed
+ * lazily as elements are queried.
+ *
+ * Recently queried occlusion fields are remembered in a small direct-mapped cache keyed by section coordinates, so
+ * that the columnar space and its occlusion field list need not be consulted for every element.  A [cursor] goes
+ * further for a single thread by remembering the section of its previous query.
+ *
+ * @see AreaOcclusionProvider
+ */
+abstract class AbstractAreaOcclusionProvider(
+    protected val cx0: Int,
+    protected val cz0: Int,
+    protected val cxN: Int,
+    protected val czN: Int
+) : IOcclusionProvider {
+
+    /**
+     * Retrieves the columnar space at the specified chunk coordinates, which are guaranteed to lie within this window
+     *
+     * @param cx x chunk coordinate
+     * @param cz z chunk coordinate
+     * @return the columnar space at the specified chunk coordinates, null if it is not available
+     */
+    protected abstract fun columnarSpaceAt(cx: Int, cz: Int): IColumnarSpace?
+
+    private class Section(val cx: Int, val cy: Int, val cz: Int, val field: OcclusionField)
+
+    /** Direct-mapped cache of sections, entries are immutable so that concurrent queries can safely share this */
+    private val sections = arrayOfNulls<Section>(SECTION_CACHE_SIZE)
+
+    override fun elementAt(x: Int, y: Int, z: Int): Byte {
+        val field = occlusionFieldAt(x, y, z) ?: return 0
+        if (field.areaInitLazily()) areaInit(field, x, y, z)
+        return field.elementAt(
+            x and OcclusionField.DIMENSION_MASK,
+            y and OcclusionField.DIMENSION_MASK,
+            z and OcclusionField.DIMENSION_MASK
+        )
+    }
+
+    /**
+     * Retrieves the occlusion field containing the specified coordinates, consulting the section cache first
+     *
+     * @return the occlusion field, null if the coordinates lie outside of this area (where all elements are empty)
+     */
+    private fun occlusionFieldAt(x: Int, y: Int, z: Int): OcclusionField? {
+        val cx = x shr 4
+        val cz = z shr 4
+        val cy = y shr 4
+        val index = (cx and 3) or (cz and 3 shl 2) or (cy and 1 shl 4)
+        val section = sections[index]
+        if (section != null && section.cx == cx && section.cy == cy && section.cz == cz && !section.field.retired)
+            return section.field
+
+        if (cx < cx0 || cx > cxN || cz < cz0 || cz > czN || cy < 0 || cy >= OcclusionField.DIMENSION_SIZE) return null
+        val columnarSpace = columnarSpaceAt(cx, cz) ?: return null
+        val field = columnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz)
+        sections[index] = Section(cx, cy, cz, field)
+        return field
+    }
+
+    /**
+     * Creates a cursor over this area for one thread to query elements with, for example for the duration of a node
+     * calculation.  A cursor remembers the occlusion field of its previous query so that subsequent queries in the same
+     * 16x16x16 section cost no more than a comparison.
+     *
+     * @return a new cursor, which is an occlusion provider equivalent to this one that must not be shared between threads
+     */
+    fun cursor(): IOcclusionProvider = Cursor()
+
+    private inner class Cursor : IOcclusionProvider {
+        private var field: OcclusionField? = null
+        private var x0 = 0
+        private var y0 = 0
+        private var z0 = 0
+
+        override fun elementAt(x: Int, y: Int, z: Int): Byte {
+            var field = field
+            if (field == null
+                || ((x xor x0) or (y xor y0) or (z xor z0)) and OcclusionField.DIMENSION_MASK.inv() != 0
+                || field.retired
+            ) {
+                field = occlusionFieldAt(x, y, z) ?: return 0
+                this.field = field
+                x0 = x
+                y0 = y
+                z0 = z
+            }
+            if (field.areaInitLazily()) areaInit(field, x, y, z)
+            return field.elementAt(
+                x and OcclusionField.DIMENSION_MASK,
+                y and OcclusionField.DIMENSION_MASK,
+                z and OcclusionField.DIMENSION_MASK
+            )
+        }
+
+        override fun visualizeAt(y: Int): String = this@AbstractAreaOcclusionProvider.visualizeAt(y)
+    }
+
+    /**
+     * Scans a column downward for the first element having flags in the specified set, this is equivalent to (but much
+     * cheaper than) calling [elementAt] for each element of the column in turn.  Each occlusion field the column passes
+     * through is looked-up and area-initialized once and scanned in bulk by [OcclusionField.scanDown].
+     *
+     * @param x absolute x-coordinate of the column
+     * @param y absolute y-coordinate to begin the scan at (inclusive)
+     * @param z absolute z-coordinate of the column
+     * @param yN absolute y-coordinate to end the scan at (inclusive), must not be greater than y
+     * @param stops set of flags to scan for, bit n of this is set if flags n are in the set, see [FlagSampler.flagSet]
+     * @return the absolute y-coordinate of the first element found, yN - 1 if there is none
+     */
+    fun scanDown(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int {
+        var yy = y
+        while (yy >= yN) {
+            val y0 = yy and OcclusionField.DIMENSION_MASK.inv()
+            val yLow = if (yN > y0) yN else y0
+            val field = columnFieldAt(x, yy, z, yLow)
+            if (field == null) {
+                if (stops and 1 != 0) return yy
+            } else {
+                val found = field.scanDown(
+                    x and OcclusionField.DIMENSION_MASK,
+                    yy - y0,
+                    z and OcclusionField.DIMENSION_MASK,
+                    yLow - y0,
+                    stops
+                )
+                if (found >= yLow - y0) return y0 + found
+            }
+            yy = yLow - 1
+        }
+        return yN - 1
+    }
+
+    /**
+     * Scans a column upward for the first element having flags in the specified set, the upward counterpart of
+     * [scanDown].
+     *
+     * @param x absolute x-coordinate of the column
+     * @param y absolute y-coordinate to begin the scan at (inclusive)
+     * @param z absolute z-coordinate of the column
+     * @param yN absolute y-coordinate to end the scan at (inclusive), must not be less than y
+     * @param stops set of flags to scan for, bit n of this is set if flags n are in the set, see [FlagSampler.flagSet]
+     * @return the absolute y-coordinate of the first element found, yN + 1 if there is none
+     */
+    fun scanUp(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int {
+        var yy = y
+        while (yy <= yN) {
+            val y0 = yy and OcclusionField.DIMENSION_MASK.inv()
+            val yHigh = if (yN < y0 + OcclusionField.DIMENSION_EXTENT) yN else y0 + OcclusionField.DIMENSION_EXTENT
+            val field = columnFieldAt(x, yy, z, yHigh)
+            if (field == null) {
+                if (stops and 1 != 0) return yy
+            } else {
+                val found = field.scanUp(
+                    x and OcclusionField.DIMENSION_MASK,
+                    yy - y0,
+                    z and OcclusionField.DIMENSION_MASK,
+                    yHigh - y0,
+                    stops
+                )
+                if (found <= yHigh - y0) return y0 + found
+            }
+            yy = yHigh + 1
+        }
+        return yN + 1
+    }
+
+    /**
+     * Retrieves the occlusion field containing a run of a column for a bulk scan, area-initializing it for every
+     * element of the run the same way that [elementAt] would have.
+     *
+     * @param y absolute y-coordinate of one end of the run
+     * @param yEnd absolute y-coordinate of the other end of the run, in the same occlusion field
+     * @return the occlusion field, null if the run lies outside of this area (where all elements are empty)
+     */
+    private fun columnFieldAt(x: Int, y: Int, z: Int, yEnd: Int): OcclusionField? {
+        val field = occlusionFieldAt(x, y, z) ?: return null
+        if (field.areaInitLazily()) {
+            // Each call initializes at most one horizontal boundary of the column, a corner column has three of them
+            for (i in 0 until 3) areaInit(field, x, y, z)
+            areaInit(field, x, yEnd, z)
+        }
+        return field
+    }
+
+    private fun areaInit(field: OcclusionField, x: Int, y: Int, z: Int) {
+        val event = if (FlightRecorder.AVAILABLE) AreaInitEvent.begin() else null
+        if (event == null) {
+            areaInitBoundaries(field, x, y, z)
+            return
+        }
+        val before = field.areaInitFlags
+        areaInitBoundaries(field, x, y, z)
+        AreaInitEvent.commit(event, x shr 4, y shr 4, z shr 4, before, field.areaInitFlags)
+    }
+
+    private fun areaInitBoundaries(field: OcclusionField?, x: Int, y: Int, z: Int) {
+        val cx = x shr 4
+        val cy = y shr 4
+        val cz = z shr 4
+        val xx = x and OcclusionField.DIMENSION_MASK
+        val yy = y and OcclusionField.DIMENSION_MASK
+        val zz = z and OcclusionField.DIMENSION_MASK
+        val centerColumnarSpace = columnarSpaceAt(cx, cz)
+        if (xx == 0 && zz == 0 && !field!!.areaInitAt(AreaInit.northWest) && cx > cx0 && cz > cz0) {
+            val westColumnarSpace = columnarSpaceAt(cx, cz - 1)
+            val northColumnarSpace = columnarSpaceAt(cx - 1, cz)
+            if (northColumnarSpace != null && westColumnarSpace != null) field.areaInitNorthWest(
+                northColumnarSpace.occlusionFields().occlusionFieldAt(cx - 1, cy, cz),
+                westColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz - 1)
+            )
+        } else if (xx == OcclusionField.DIMENSION_EXTENT && zz == 0 && !field!!.areaInitAt(AreaInit.northEast) && cx < cxN && cz > cz0) {
+            val westColumnarSpace = columnarSpaceAt(cx, cz - 1)
+            val eastColumnarSpace = columnarSpaceAt(cx + 1, cz)
+            if (eastColumnarSpace != null && westColumnarSpace != null) field.areaInitNorthEast(
+                eastColumnarSpace.occlusionFields().occlusionFieldAt(cx + 1, cy, cz),
+                westColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz - 1)
+            )
+        } else if (xx == 0 && zz == OcclusionField.DIMENSION_EXTENT && !field!!.areaInitAt(AreaInit.southWest) && cx > cx0 && cz < czN) {
+            val northColumnarSpace = columnarSpaceAt(cx - 1, cz)
+            val southColumnarSpace = columnarSpaceAt(cx, cz + 1)
+            if (northColumnarSpace != null && southColumnarSpace != null) field.areaInitSouthWest(
+                northColumnarSpace.occlusionFields().occlusionFieldAt(cx - 1, cy, cz),
+                southColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz + 1)
+            )
+        } else if (xx == OcclusionField.DIMENSION_EXTENT && zz == OcclusionField.DIMENSION_EXTENT && !field!!.areaInitAt(
+                AreaInit.southEast
+            ) && cx < cxN && cz < czN
+        ) {
+            val eastColumnarSpace = columnarSpaceAt(cx + 1, cz)
+            val southColumnarSpace = columnarSpaceAt(cx, cz + 1)
+            if (eastColumnarSpace != null && southColumnarSpace != null) field.areaInitSouthEast(
+                eastColumnarSpace.occlusionFields().occlusionFieldAt(cx + 1, cy, cz),
+                southColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz + 1)
+            )
+        } else if (xx == 0 && !field!!.areaInitAt(AreaInit.west) && cx > cx0) {
+            val northColumnarSpace = columnarSpaceAt(cx - 1, cz)
+            if (northColumnarSpace != null) field.areaInitWest(
+                northColumnarSpace.occlusionFields().occlusionFieldAt(cx - 1, cy, cz)
+            )
+        } else if (xx == OcclusionField.DIMENSION_EXTENT && !field!!.areaInitAt(AreaInit.east) && cx < cxN) {
+            val eastColumnarSpace = columnarSpaceAt(cx + 1, cz)
+            if (eastColumnarSpace != null) field.areaInitEast(
+                eastColumnarSpace.occlusionFields().occlusionFieldAt(cx + 1, cy, cz)
+            )
+        } else if (zz == 0 && !field!!.areaInitAt(AreaInit.north) && cz > cz0) {
+            val westColumnarSpace = columnarSpaceAt(cx, cz - 1)
+            if (westColumnarSpace != null) field.areaInitNorth(
+                westColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz - 1)
+            )
+        } else if (zz == OcclusionField.DIMENSION_EXTENT && !field!!.areaInitAt(AreaInit.south) && cz < czN) {
+            val southColumnarSpace = columnarSpaceAt(cx, cz + 1)
+            if (southColumnarSpace != null) field.areaInitSouth(
+                southColumnarSpace.occlusionFields().occlusionFieldAt(cx, cy, cz + 1)
+            )
+        }
+        if (yy == OcclusionField.DIMENSION_EXTENT && !field!!.areaInitAt(AreaInit.up)) {
+            field.areaInitUp(
+                centerColumnarSpace,
+                cy,
+                if (cy < OcclusionField.DIMENSION_EXTENT) centerColumnarSpace!!.occlusionFields()
+                    .occlusionFieldAt(cx, cy + 1, cz) else null
+            )
+        } else if (yy == 0 && !field!!.areaInitAt(AreaInit.down)) {
+            field.areaInitDown(
+                centerColumnarSpace,
+                cy,
+                if (cy > 0) centerColumnarSpace!!.occlusionFields().occlusionFieldAt(cx, cy - 1, cz) else null
+            )
+        }
+    }
+
+    override fun visualizeAt(y: Int): String =
+        OcclusionField.visualizeAt(this, y, cx0 shl 4, cz0 shl 4, cxN + 1 shl 4, czN + 1 shl 4)
+
+    private companion object {
+        const val SECTION_CACHE_SIZE = 32
+    }
+
+}
@@ -1,5 +1,8 @@
 package com.extollit.gaming.ai.path.model
 
+import com.extollit.gaming.ai.path.model.OcclusionField.AreaInit
+import java.util.concurrent.Executor
+
 /**
  * A one-dimensional store for occlusion fields aligned along the y-axis distributed according to chunk coordinates.
  * Define an object of this class as a final field member of your concrete implementation of [IColumnarSpace] then
@@ -8,6 +11,14 @@ package com.extollit.gaming.ai.path.model
  * Additionally, some members of this type must be called upon certain server events.  Methods that the implementor should
  * be aware of are documented whereas methods below that remain undocumented are for internal use.
  *
+ * By default occlusion fields are loaded and area-initialized (reconciled with the occlusion fields adjacent to them)
+ * lazily by path-finders as they are queried.  Supplying an executor enables eager mode, where this work is done in the
+ * background once a chunk has loaded instead, see [onLoaded].
+ *
+ * Supplying an [OcclusionStore] (shared by all columnar spaces of an instance) keeps the occlusion data of unloaded
+ * chunks off-heap, so that reloading a chunk restores its occlusion fields instead of recomputing them.  Supplying an
+ * [IOcclusionFieldCache] additionally persists occlusion fields across server restarts.
+ *
  * @see IColumnarSpace
  *
  * @see OcclusionField
@@ -18,22 +29,84 @@ open class ColumnarOcclusionFieldList
  * bound to in a one-to-one relationship.
  *
  * @param container columnar space that owns this object
- */(
+ * @param executor executor to eagerly load and area-initialize occlusion fields on, null to do this lazily
+ * @param store store to save occlusion fields to on reset and restore them from when they are next loaded, null to
+ * recompute occlusion fields from blocks every time
+ * @param cache persistent cache to save occlusion fields to on reset and consult before computing them, null for none
+ */@JvmOverloads constructor(
     /**
      * Containing columnar space that owns this object.  This object will typically have a final field member that points
      * to this object and returns it via [IColumnarSpace.occlusionFields]
      */
-    val container: IColumnarSpace
+    val container: IColumnarSpace,
+    private val executor: Executor? = null,
+    private val store: OcclusionStore? = null,
+    private val cache: IOcclusionFieldCache? = null
 ) {
+    @Volatile
     private var fields: Array<OcclusionField?>? = null
+    @Volatile
+    private var listeners: Array<IOcclusionFieldListener> = NO_LISTENERS
+
+    // Chunk coordinates of the container, known once the first occlusion field has been created
+    private var cx = 0
+    private var cz = 0
+
+    // Incremented by each reset so that eager loading can detect that it has been overtaken
+    @Volatile
+    private var generation = 0
 
     /**
      * Completely erases all data in this object, this must be called by the implementor prior to loading a chunk or
      * unloading a chunk to prevent stale state creep.  This effectively forces lazy-reinitialization of the occlusion
-     * field cache.
+     * field cache.  Attached listeners are notified, see [addListener].  If this object was constructed with an
+     * [OcclusionStore] or [IOcclusionFieldCache] the occlusion fields are saved to them first.
      */
     fun reset() {
-        fields = null
+        val cx: Int
+        val cz: Int
+        val fields: Array<OcclusionField?>?
+        synchronized(this) {
+            fields = this.fields
+            this.fields = null
+            generation++
+            cx = this.cx
+            cz = this.cz
+        }
+        if (fields != null) {
+            cache?.save(container, cx, cz, fields)
+            for (cy in fields.indices) {
+                val field = fields[cy] ?: continue
+                field.retire()
+                store?.save(cx, cy, cz, field)
+            }
+        }
+        for (listener in listeners) listener.onOcclusionReset(cx, cz)
+    }
+
+    /**
+     * Attaches a listener to be notified of changes to the occlusion fields of this columnar space, this has no effect
+     * if the listener is already attached.  Listeners are retained across [reset].
+     *
+     * @param listener the listener to notify of changes
+     */
+    fun addListener(listener: IOcclusionFieldListener) {
+        if (listener in listeners) return
+        synchronized(this) {
+            val listeners = listeners
+            if (listener !in listeners) this.listeners = listeners + listener
+        }
+    }
+
+    /**
+     * Detaches a listener previously attached with [addListener]
+     *
+     * @param listener the listener to stop notifying of changes
+     */
+    @Synchronized
+    fun removeListener(listener: IOcclusionFieldListener) {
+        val listeners = listeners.filter { it !== listener }
+        this.listeners = if (listeners.isEmpty()) NO_LISTENERS else listeners.toTypedArray()
     }
 
     /**
@@ -51,6 +124,8 @@ open class ColumnarOcclusionFieldList
      * @param metaData meta-data for the new block replacing what existed previously
      */
     fun onBlockChanged(x: Int, y: Int, z: Int, description: IBlockDescription?, metaData: Int) {
+        store?.discardAround(x, y, z)
+        invalidateCache(x, y, z)
         if (fields == null) return
         UNSAFE_onBlockChanged(x, y, z, description, metaData)
     }
@@ -63,7 +138,8 @@ open class ColumnarOcclusionFieldList
      * This method's coordinate parameters are exceptional because they are absolute (relative to the instance) rather
      * than relative (to the parent columnar space).
      *
-     * Does not check if fields are null.
+     * Does not check if fields are null, nor discard stale occlusion data from the [OcclusionStore] or
+     * [IOcclusionFieldCache] if there are any.
      *
      * @param x absolute (relative to the instance space, not the columnar space) x coordinate of the block that changed
      * @param y absolute (relative to the instance space, not the columnar space) y coordinate of the block that changed
@@ -74,20 +150,137 @@ open class ColumnarOcclusionFieldList
     fun UNSAFE_onBlockChanged(x: Int, y: Int, z: Int, description: IBlockDescription?, metaData: Int) {
         val field = fields!![y shr 4 and 0xF] ?: return
         field[container, x, y, z] = description
+        for (listener in listeners) listener.onOcclusionChanged(x, y, z)
+    }
+
+    /**
+     * Notifies the occlusion field cache that the containing columnar space has finished loading, the implementor should
+     * call this once the blocks of a newly loaded chunk are in place (after calling [reset]).  This has no effect unless
+     * this object was constructed with an executor, in which case all occlusion fields of the columnar space are loaded
+     * on the executor and area-initialized with the occlusion fields of neighboring columnar spaces that have already
+     * been loaded, likewise those neighbors are area-initialized with the newly loaded occlusion fields.
+     *
+     * Occlusion fields of an eager columnar space are never area-initialized lazily, path-finders that query them
+     * before the executor gets to them see their boundaries as though the neighboring columnar spaces had not yet loaded.
+     * The columnar space and its instance must tolerate being read from the executor's threads.
+     *
+     * @param cx x coordinate of the columnar space (chunk coordinate)
+     * @param cz z coordinate of the columnar space (chunk coordinate)
+     */
+    fun onLoaded(cx: Int, cz: Int) {
+        val executor = executor ?: return
+        val generation = generation
+        executor.execute { preload(cx, cz, generation) }
+    }
+
+    private fun preload(cx: Int, cz: Int, generation: Int) {
+        for (cy in 0 until OcclusionField.DIMENSION_SIZE) {
+            if (this.generation != generation) return
+            occlusionFieldAt(cx, cy, cz)
+        }
+
+        val instance = container.instance()
+        for (dz in -1..+1)
+            for (dx in -1..+1) {
+                if (this.generation != generation) return
+                val fieldList =
+                    if (dx == 0 && dz == 0) this else instance.columnarSpaceAt(cx + dx, cz + dz)?.occlusionFields()
+                fieldList?.areaInitLoaded(instance, cx + dx, cz + dz)
+            }
+    }
+
+    /**
+     * Area-initializes the loaded occlusion fields of this columnar space with all loaded neighboring occlusion fields
+     */
+    private fun areaInitLoaded(instance: IInstanceSpace, cx: Int, cz: Int) {
+        val fields = fields ?: return
+        val west = instance.columnarSpaceAt(cx - 1, cz)?.occlusionFields()
+        val east = instance.columnarSpaceAt(cx + 1, cz)?.occlusionFields()
+        val north = instance.columnarSpaceAt(cx, cz - 1)?.occlusionFields()
+        val south = instance.columnarSpaceAt(cx, cz + 1)?.occlusionFields()
+        for (cy in fields.indices) {
+            val field = fields[cy] ?: continue
+            if (field.areaInitFull()) continue
+
+            val westField = west?.optionalOcclusionFieldAt(cy)
+            val eastField = east?.optionalOcclusionFieldAt(cy)
+            val northField = north?.optionalOcclusionFieldAt(cy)
+            val southField = south?.optionalOcclusionFieldAt(cy)
+            if (westField != null && !field.areaInitAt(AreaInit.west)) field.areaInitWest(westField)
+            if (eastField != null && !field.areaInitAt(AreaInit.east)) field.areaInitEast(eastField)
+            if (northField != null && !field.areaInitAt(AreaInit.north)) field.areaInitNorth(northField)
+            if (southField != null && !field.areaInitAt(AreaInit.south)) field.areaInitSouth(southField)
+            if (westField != null && northField != null && !field.areaInitAt(AreaInit.northWest))
+                field.areaInitNorthWest(westField, northField)
+            if (eastField != null && northField != null && !field.areaInitAt(AreaInit.northEast))
+                field.areaInitNorthEast(eastField, northField)
+            if (westField != null && southField != null && !field.areaInitAt(AreaInit.southWest))
+                field.areaInitSouthWest(westField, southField)
+            if (eastField != null && southField != null && !field.areaInitAt(AreaInit.southEast))
+                field.areaInitSouthEast(eastField, southField)
+
+            val up = if (cy < OcclusionField.DIMENSION_EXTENT) fields[cy + 1] else null
+            if ((up != null || cy == OcclusionField.DIMENSION_EXTENT) && !field.areaInitAt(AreaInit.up))
+                field.areaInitUp(container, cy, up)
+            val down = if (cy > 0) fields[cy - 1] else null
+            if ((down != null || cy == 0) && !field.areaInitAt(AreaInit.down))
+                field.areaInitDown(container, cy, down)
+        }
     }
 
     fun occlusionFieldAt(cx: Int, cy: Int, cz: Int): OcclusionField {
-        if (fields == null) fields = arrayOfNulls(OcclusionField.DIMENSION_SIZE)
-        val result = fields!![cy]
-        return if (result != null) {
-            result
-        } else {
-            val occlusionField = createOcclusionField(cx, cy, cz)
-            occlusionField.apply { fields!![cy] = this }
+        val fields = fields
+        if (fields != null) {
+            val result = fields[cy]
+            if (result != null) return result
         }
+        return createOcclusionFieldAt(cx, cy, cz)
+    }
+
+    /**
+     * Occlusion fields may be lazily created concurrently by path-finding threads, the array of fields is replaced
+     * rather than modified so that a field is never visible to other threads before it has been fully loaded.
+     */
+    @Synchronized
+    private fun createOcclusionFieldAt(cx: Int, cy: Int, cz: Int): OcclusionField {
+        val fields = this.fields?.copyOf() ?: arrayOfNulls(OcclusionField.DIMENSION_SIZE)
+        val result = fields[cy]
+        if (result != null) return result
+
+        val occlusionField =
+            restoreOcclusionField(cx, cy, cz) ?: loadCachedOcclusionField(cx, cy, cz) ?: createOcclusionField(cx, cy, cz)
+        occlusionField.eager = executor != null
+        this.cx = cx
+        this.cz = cz
+        fields[cy] = occlusionField
+        this.fields = fields
+        return occlusionField
     }
 
-    fun optionalOcclusionFieldAt(cy: Int): OcclusionField? = if (fields == null) null else fields!![cy]
+    fun optionalOcclusionFieldAt(cy: Int): OcclusionField? = fields?.get(cy)
+
+    private fun restoreOcclusionField(cx: Int, cy: Int, cz: Int): OcclusionField? {
+        val store = store ?: return null
+        val occlusionField = OcclusionField()
+        return if (store.restore(cx, cy, cz, occlusionField)) occlusionField else null
+    }
+
+    private fun loadCachedOcclusionField(cx: Int, cy: Int, cz: Int): OcclusionField? {
+        val cache = cache ?: return null
+        val occlusionField = OcclusionField()
+        return if (cache.load(container, cx, cy, cz, occlusionField)) occlusionField else null
+    }
+
+    /**
+     * Invalidates cached occlusion data that may depend on the specified block.  Changes to the interior of a loaded
+     * occlusion field need not be reported since that field is saved to the cache again when this object is reset, the
+     * cache detects them by the version of the section should that never happen (see [ISectionVersions]).
+     */
+    private fun invalidateCache(x: Int, y: Int, z: Int) {
+        val cache = cache ?: return
+        val interior = (x + 1 and 0xF) > 1 && (y + 1 and 0xF) > 1 && (z + 1 and 0xF) > 1
+        if (!interior || optionalOcclusionFieldAt(y shr 4 and 0xF) == null) cache.invalidate(x, y, z)
+    }
 
     protected open fun createOcclusionField(cx: Int, cy: Int, cz: Int): OcclusionField {
         val occlusionField = OcclusionField()
@@ -96,6 +289,8 @@ open class ColumnarOcclusionFieldList
     }
 
     companion object {
+        private val NO_LISTENERS = arrayOf<IOcclusionFieldListener>()
+
         fun optionalOcclusionFieldAt(instance: IInstanceSpace, cx: Int, cy: Int, cz: Int): OcclusionField? {
             val columnarSpace = instance.columnarSpaceAt(cx, cz) ?: return null
             return columnarSpace.occlusionFields().optionalOcclusionFieldAt(cy)
@@ -0,0 +1,259 @@
+package com.extollit.gaming.ai.path.model
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.*
+import java.util.concurrent.Executor
+import java.util.zip.CRC32
+
+/**
+ * Occlusion field cache that keeps one file per columnar space in a local directory.  Each file holds a table of up to
+ * sixteen section records, every record carries the version of the section's blocks it was derived from (see
+ * [ISectionVersions]) and a CRC-32 hash of its occlusion data (see [OcclusionField.writeTo]), records that fail
+ * either check are ignored and the occlusion field is computed from blocks as usual.
+ *
+ * The records of a columnar space are read from its file once, when the first of its sections is loaded, and kept
+ * until the columnar space is saved again.  Saved records are written behind on the executor if there is one and are
+ * served from memory until then, so the implementor should let the executor finish its work before shutting down.
+ *
+ * Block changes reported through [invalidate] suppress the affected records until they are saved again.  Changes that
+ * are never saved, such as those made while the server was offline or before it crashed, are detected by the versions
+ * of sections.  I/O errors are treated as cache misses.
+ *
+ * @param directory directory to keep cache files in, created if it does not exist
+ * @param versions supplies block content versions of sections
+ * @param executor executor to write saved records on, null to write them on the thread saving them.  Records of a
+ * columnar space are written in the order they were saved however many threads the executor runs.
+ */
+class FileOcclusionFieldCache @JvmOverloads constructor(
+    private val directory: File,
+    private val versions: ISectionVersions,
+    private val executor: Executor? = null
+) : IOcclusionFieldCache {
+    /**
+     * Records of a columnar space waiting to be written, null records are merged from the file if [merge] is set
+     * because the sections they belong to were neither loaded nor read from the file
+     */
+    private class Pending(val records: Array<ByteArray?>, val merge: Boolean)
+
+    // Packed coordinates of sections whose records are out of date, guarded by this
+    private val stale: MutableSet<Long> = HashSet()
+    // Records read from the file of each columnar space keyed by packed (cx, 0, cz), a record is taken once it has
+    // been loaded, guarded by this
+    private val columns: MutableMap<Long, Array<ByteArray?>> = HashMap()
+    // Records of each columnar space waiting to be written in the order they were first saved, guarded by this
+    private val pending = LinkedHashMap<Long, Pending>()
+    private var draining = false
+    // Incremented by each save so that records read from a file concurrently are discarded
+    private var saves = 0
+
+    init {
+        directory.mkdirs()
+    }
+
+    private fun fileOf(cx: Int, cz: Int): File = File(directory, "$cx.$cz.occ")
+
+    override fun load(columnarSpace: IColumnarSpace, cx: Int, cy: Int, cz: Int, field: OcclusionField): Boolean {
+        if (cy !in 0 until OcclusionField.DIMENSION_SIZE) return false
+
+        return try {
+            val record = recordAt(cx, cy, cz) ?: return false
+            val input = DataInputStream(ByteArrayInputStream(record))
+            if (input.readLong() != versions.versionOf(columnarSpace, cx, cy, cz)) return false
+            val hash = input.readInt()
+            if (hash != hashOf(record)) return false
+            field.readFrom(input)
+            true
+        } catch (e: IOException) {
+            false
+        }
+    }
+
+    private fun recordAt(cx: Int, cy: Int, cz: Int): ByteArray? {
+        val column = ThreeDimensionalIntVector.packed(cx, 0, cz)
+        val section = ThreeDimensionalIntVector.packed(cx, cy, cz)
+        val saves: Int
+        synchronized(this) {
+            if (section in stale) return null
+            val pending = pending[column]
+            if (pending != null && (pending.records[cy] != null || !pending.merge)) return pending.records[cy]
+            val records = columns[column]
+            if (records != null) return take(records, cy)
+            saves = this.saves
+        }
+
+        val records = readColumn(fileOf(cx, cz))
+        synchronized(this) {
+            if (this.saves != saves) return null
+            if (column !in pending) columns[column] = records
+            return if (section in stale) null else take(records, cy)
+        }
+    }
+
+    override fun save(columnarSpace: IColumnarSpace, cx: Int, cz: Int, fields: Array<OcclusionField?>) {
+        val records = arrayOfNulls<ByteArray>(OcclusionField.DIMENSION_SIZE)
+        for (cy in records.indices) {
+            val field = fields.getOrNull(cy) ?: continue
+            records[cy] = recordOf(versions.versionOf(columnarSpace, cx, cy, cz), field)
+        }
+
+        val column = ThreeDimensionalIntVector.packed(cx, 0, cz)
+        val drain: Boolean
+        synchronized(this) {
+            saves++
+            val read = columns.remove(column)
+            val previous = pending[column]
+            val base = previous?.records ?: read
+            for (cy in records.indices) {
+                val section = ThreeDimensionalIntVector.packed(cx, cy, cz)
+                if (records[cy] != null)
+                    stale.remove(section)
+                else if (base != null && section !in stale)
+                    records[cy] = base[cy]
+            }
+            pending[column] = Pending(records, previous?.merge ?: (read == null))
+            drain = !draining
+            draining = true
+        }
+
+        if (drain)
+            if (executor == null) drain() else executor.execute { drain() }
+    }
+
+    /**
+     * Writes pending records until there are none left, only one thread drains at a time
+     */
+    private fun drain() {
+        while (true) {
+            val column: Long
+            val pending: Pending
+            synchronized(this) {
+                val next = this.pending.entries.firstOrNull()
+                if (next == null) {
+                    draining = false
+                    return
+                }
+                column = next.key
+                pending = next.value
+            }
+            write(ThreeDimensionalIntVector.unpackX(column), ThreeDimensionalIntVector.unpackZ(column), pending)
+            synchronized(this) {
+                if (this.pending[column] === pending) this.pending.remove(column)
+            }
+        }
+    }
+
+    private fun write(cx: Int, cz: Int, pending: Pending) {
+        val file = fileOf(cx, cz)
+        val temp = File(directory, file.name + ".tmp")
+        try {
+            val records = pending.records.copyOf()
+            if (pending.merge) {
+                val existing = readColumn(file)
+                synchronized(this) {
+                    for (cy in records.indices)
+                        if (records[cy] == null && ThreeDimensionalIntVector.packed(cx, cy, cz) !in stale)
+                            records[cy] = existing[cy]
+                }
+            }
+
+            DataOutputStream(BufferedOutputStream(FileOutputStream(temp))).use { output ->
+                output.writeInt(MAGIC)
+                output.writeInt(FORMAT_VERSION)
+                var offset = HEADER_SIZE
+                for (record in records) {
+                    output.writeInt(if (record == null) 0 else offset)
+                    output.writeInt(record?.size ?: 0)
+                    if (record != null) offset += record.size
+                }
+                for (record in records) if (record != null) output.write(record)
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: IOException) {
+            temp.delete()
+            file.delete()
+        }
+    }
+
+    @Synchronized
+    override fun invalidate(x: Int, y: Int, z: Int) {
+        for (cy in ((y - 1) shr 4)..((y + 1) shr 4))
+            for (cz in ((z - 1) shr 4)..((z + 1) shr 4))
+                for (cx in ((x - 1) shr 4)..((x + 1) shr 4))
+                    stale.add(ThreeDimensionalIntVector.packed(cx, cy, cz))
+    }
+
+    /**
+     * Reads all section records of a cache file
+     *
+     * @return the records indexed by y section coordinate, all null if the file does not exist or is not valid
+     */
+    private fun readColumn(file: File): Array<ByteArray?> {
+        val records = arrayOfNulls<ByteArray>(OcclusionField.DIMENSION_SIZE)
+        if (!file.isFile) return records
+        try {
+            RandomAccessFile(file, "r").use {
+                if (headerValid(it))
+                    for (cy in records.indices) records[cy] = readRecord(it, cy)
+            }
+        } catch (e: IOException) {
+            records.fill(null)
+        }
+        return records
+    }
+
+    private fun headerValid(file: RandomAccessFile): Boolean {
+        file.seek(0)
+        return file.length() >= HEADER_SIZE && file.readInt() == MAGIC && file.readInt() == FORMAT_VERSION
+    }
+
+    private fun readRecord(file: RandomAccessFile, cy: Int): ByteArray? {
+        file.seek(TABLE_OFFSET + cy * 8L)
+        val offset = file.readInt()
+        val length = file.readInt()
+        if (offset < HEADER_SIZE || length < RECORD_HEADER_SIZE || offset.toLong() + length > file.length())
+            return null
+
+        val record = ByteArray(length)
+        file.seek(offset.toLong())
+        file.readFully(record)
+        return record
+    }
+
+    companion object {
+        private const val MAGIC = 0x4f434346
+        /** Incremented whenever the file format or the meaning of occlusion flags changes */
+        private const val FORMAT_VERSION = 1
+
+        private const val TABLE_OFFSET = 8
+        private const val HEADER_SIZE = TABLE_OFFSET + OcclusionField.DIMENSION_SIZE * 8
+        // Block content version followed by hash of the occlusion data
+        private const val RECORD_HEADER_SIZE = 8 + 4
+
+        private fun recordOf(version: Long, field: OcclusionField): ByteArray {
+            val bytes = ByteArrayOutputStream(RECORD_HEADER_SIZE + OcclusionField.WORD_COUNT * 8 + 3)
+            val output = DataOutputStream(bytes)
+            output.writeLong(version)
+            output.writeInt(0)
+            field.writeTo(output)
+            val record = bytes.toByteArray()
+            val hash = hashOf(record)
+            for (i in 0 until 4) record[8 + i] = (hash ushr (24 - i * 8)).toByte()
+            return record
+        }
+
+        private fun take(records: Array<ByteArray?>, cy: Int): ByteArray? {
+            val record = records[cy]
+            records[cy] = null
+            return record
+        }
+
+        private fun hashOf(record: ByteArray): Int {
+            val crc = CRC32()
+            crc.update(record, RECORD_HEADER_SIZE, record.size - RECORD_HEADER_SIZE)
+            return crc.value.toInt()
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.extollit.gaming.ai.path.model
 
-class FlagSampler(private val occlusionProvider: IOcclusionProvider?) {
+class FlagSampler(occlusionProvider: IOcclusionProvider?) {
+    private val area = occlusionProvider as? AbstractAreaOcclusionProvider
+    private val occlusionProvider = area?.cursor() ?: occlusionProvider
+
     var volatility: Int = 0
         private set
 
@@ -10,5 +13,81 @@ class FlagSampler(private val occlusionProvider: IOcclusionProvider?) {
         return flags
     }
 
+    /**
+     * Samples a column downward until reaching an element having flags in the specified set.  This accounts for
+     * volatility the same as calling [flagsAt] for each element passed over, the element found is not sampled.  When
+     * the occlusion provider supports it, the column is scanned in bulk.
+     *
+     * @param x absolute x-coordinate of the column
+     * @param y absolute y-coordinate to begin sampling at (inclusive)
+     * @param z absolute z-coordinate of the column
+     * @param yN absolute y-coordinate to end sampling at (inclusive), must not be greater than y
+     * @param stops set of flags to stop at, see [flagSet]
+     * @return the absolute y-coordinate of the element found, yN - 1 if there is none
+     */
+    fun scanDown(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int {
+        val area = area
+        val scanned = stops or VOLATILE
+        var yy = y
+        while (yy >= yN) {
+            if (area != null) {
+                yy = area.scanDown(x, yy, z, yN, scanned)
+                if (yy < yN) break
+            }
+            val flags = occlusionProvider!!.elementAt(x, yy, z)
+            if (stops shr flags.toInt() and 1 != 0) return yy
+            if (volatileIn(flags)) volatility++
+            --yy
+        }
+        return yN - 1
+    }
+
+    /**
+     * Samples a column upward until reaching an element having flags in the specified set, the upward counterpart of
+     * [scanDown].
+     *
+     * @param x absolute x-coordinate of the column
+     * @param y absolute y-coordinate to begin sampling at (inclusive)
+     * @param z absolute z-coordinate of the column
+     * @param yN absolute y-coordinate to end sampling at (inclusive), must not be less than y
+     * @param stops set of flags to stop at, see [flagSet]
+     * @return the absolute y-coordinate of the element found, yN + 1 if there is none
+     */
+    fun scanUp(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int {
+        val area = area
+        val scanned = stops or VOLATILE
+        var yy = y
+        while (yy <= yN) {
+            if (area != null) {
+                yy = area.scanUp(x, yy, z, yN, scanned)
+                if (yy > yN) break
+            }
+            val flags = occlusionProvider!!.elementAt(x, yy, z)
+            if (stops shr flags.toInt() and 1 != 0) return yy
+            if (volatileIn(flags)) volatility++
+            ++yy
+        }
+        return yN + 1
+    }
+
     private fun volatileIn(flags: Byte): Boolean = Logic.doorway.flagsIn(flags)
+
+    companion object {
+        private val VOLATILE = flagSet { Logic.doorway.flagsIn(it) }
+
+        /**
+         * Computes a compact set of flags for bulk scans, since flags are nibbles a set of them fits into the low
+         * sixteen bits of an integer with bit n set if flags n are in the set.
+         *
+         * @param predicate determines whether flags are in the set
+         * @return the set of all flags satisfying the predicate
+         */
+        @JvmStatic
+        inline fun flagSet(predicate: (Byte) -> Boolean): Int {
+            var set = 0
+            for (flags in 0 until 16)
+                if (predicate(flags.toByte())) set = set or (1 shl flags)
+            return set
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.extollit.gaming.ai.path.model
+
+import com.extollit.gaming.ai.path.node.Node
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * The open-set of an A* graph, a priority queue of [Node]s where nodes having better passibility come first and
+ * nodes having equal passibility are ordered by shortest journey.  The position of each node in the queue is tracked
+ * by the node itself through [Node.index].
+ *
+ * @see SortedNodeQueue
+ * @see PackedNodeQueue
+ */
+interface INodeQueue {
+    /** Whether this queue has no nodes */
+    val isEmpty: Boolean
+
+    /** The number of nodes in this queue */
+    val size: Int
+
+    /** The number of nodes that were culled to make room for others since this queue was created */
+    val culled: Long
+
+    /** The distinct roots of all the nodes in this queue */
+    val roots: Set<Node>
+
+    /**
+     * Adds a node to this queue
+     *
+     * @param point the unassigned node to add to this queue
+     * @return true if the node was added to the queue
+     */
+    fun add(point: Node): Boolean
+
+    /**
+     * Removes all nodes from this queue and unassigns them
+     */
+    fun clear()
+
+    /**
+     * Re-roots the graph at the specified node, nodes in this queue that lead away from the new source are removed
+     *
+     * @param source the new source of the graph
+     * @return the previous root of the graph
+     */
+    fun trimFrom(source: Node): Node
+
+    /**
+     * Removes all nodes from this queue that descend from the specified ancestor
+     *
+     * @param ancestor the root of the branch to cull
+     */
+    fun cullBranch(ancestor: Node)
+
+    /**
+     * Gets an unmodifiable list of all nodes in this queue in the order they are stored
+     *
+     * @return unmodifiable list of all nodes in this queue
+     */
+    fun view(): List<Node?>
+
+    /**
+     * Gets the node at the head of this queue without removing it
+     *
+     * @return the node at the head of the queue
+     */
+    fun top(): Node
+
+    /**
+     * Removes and returns the node at the head of this queue
+     *
+     * @return the node that was at the head of the queue
+     */
+    fun dequeue(): Node
+
+    /**
+     * Determines whether the specified node is an ancestor of (or is) the head of this queue
+     *
+     * @param ancestor the node to search for
+     * @return true if the node is in the lineage of the head node
+     */
+    fun nextContains(ancestor: Node?): Boolean
+
+    /**
+     * Appends a node to a parent node in the graph, adding it to or repositioning it in this queue if the parent
+     * provides a better journey to the node
+     *
+     * @param point the node to append
+     * @param parent the new parent of the node
+     * @param targetPoint the ultimate target of the path used to compute the remaining distance of the node
+     * @return true if the node was already in the queue and was repositioned
+     */
+    fun appendTo(point: Node, parent: Node, targetPoint: ThreeDimensionalIntVector): Boolean
+
+    /**
+     * Appends a node to a parent node in the graph, adding it to or repositioning it in this queue if the parent
+     * provides a better journey to the node
+     *
+     * @param point the node to append
+     * @param parent the new parent of the node
+     * @param remaining the estimated remaining distance from the node to the target
+     * @return true if the node was already in the queue and was repositioned
+     */
+    fun appendTo(point: Node, parent: Node, remaining: Int): Boolean
+
+    /**
+     * Adjusts the length of a node and repositions it in this queue accordingly, the node is added to the queue if it
+     * is not already assigned
+     *
+     * @param point the node to adjust
+     * @param diff the amount to add to the length of the node
+     * @return true if the node was already in the queue and was repositioned
+     */
+    fun addLength(point: Node, diff: Int): Boolean
+}
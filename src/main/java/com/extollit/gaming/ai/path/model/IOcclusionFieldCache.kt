@@ -0,0 +1,46 @@
+package com.extollit.gaming.ai.path.model
+
+/**
+ * Persistent cache of occlusion fields consulted by [ColumnarOcclusionFieldList] before an occlusion field is computed
+ * from the blocks of its columnar space, this lets occlusion data survive server restarts.  Occlusion fields are saved
+ * to the cache when their columnar space is reset (see [ColumnarOcclusionFieldList.reset]).
+ *
+ * Implementations must be safe for use by multiple threads and should treat failures as cache misses rather than
+ * propagate them.
+ *
+ * @see FileOcclusionFieldCache
+ */
+interface IOcclusionFieldCache {
+    /**
+     * Loads the cached occlusion data of a section into an occlusion field
+     *
+     * @param columnarSpace the columnar space containing the section
+     * @param cx x coordinate of the section (chunk coordinate)
+     * @param cy y coordinate of the section
+     * @param cz z coordinate of the section (chunk coordinate)
+     * @param field the occlusion field to load cached data into, see [OcclusionField.readFrom]
+     * @return true if the field was loaded, false if the section is not cached or its cached data is out of date
+     */
+    fun load(columnarSpace: IColumnarSpace, cx: Int, cy: Int, cz: Int, field: OcclusionField): Boolean
+
+    /**
+     * Saves the occlusion fields of a columnar space to the cache
+     *
+     * @param columnarSpace the columnar space containing the sections
+     * @param cx x coordinate of the columnar space (chunk coordinate)
+     * @param cz z coordinate of the columnar space (chunk coordinate)
+     * @param fields occlusion fields of the columnar space indexed by y section coordinate, null for sections that
+     * were not loaded
+     */
+    fun save(columnarSpace: IColumnarSpace, cx: Int, cz: Int, fields: Array<OcclusionField?>)
+
+    /**
+     * Notifies the cache that a block changed which the cached occlusion data of the section containing it, or of
+     * sections adjacent to it, may depend on
+     *
+     * @param x absolute x coordinate of the block that changed
+     * @param y absolute y coordinate of the block that changed
+     * @param z absolute z coordinate of the block that changed
+     */
+    fun invalidate(x: Int, y: Int, z: Int)
+}
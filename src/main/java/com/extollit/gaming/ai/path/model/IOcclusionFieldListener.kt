@@ -0,0 +1,28 @@
+package com.extollit.gaming.ai.path.model
+
+/**
+ * Receives notifications about changes to the occlusion fields of a columnar space, attach one to a columnar space
+ * with [ColumnarOcclusionFieldList.addListener].  These notifications are delivered on whichever thread notified the
+ * occlusion field list of the change (typically the server thread), implementations should do as little work as
+ * possible here.
+ *
+ * @see ColumnarOcclusionFieldList
+ */
+interface IOcclusionFieldListener {
+    /**
+     * Called after the occlusion of a block changed.
+     *
+     * @param x absolute (relative to the instance space) x coordinate of the block that changed
+     * @param y absolute (relative to the instance space) y coordinate of the block that changed
+     * @param z absolute (relative to the instance space) z coordinate of the block that changed
+     */
+    fun onOcclusionChanged(x: Int, y: Int, z: Int)
+
+    /**
+     * Called after all occlusion fields of a columnar space were erased, for example because it was loaded or unloaded.
+     *
+     * @param cx x coordinate of the columnar space (chunk coordinate)
+     * @param cz z coordinate of the columnar space (chunk coordinate)
+     */
+    fun onOcclusionReset(cx: Int, cz: Int)
+}
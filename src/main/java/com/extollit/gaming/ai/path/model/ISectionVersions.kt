@@ -0,0 +1,21 @@
+package com.extollit.gaming.ai.path.model
+
+/**
+ * Supplies versions of the block content of sections so that a persistent occlusion field cache can detect that its
+ * data was derived from blocks that have since changed, for example by a world edited while the server was offline.
+ *
+ * @see FileOcclusionFieldCache
+ */
+interface ISectionVersions {
+    /**
+     * Determines the version of the blocks of a section.  The version must change whenever the blocks of the section
+     * or the blocks bordering it change, a hash of those blocks or a modification counter both serve.
+     *
+     * @param columnarSpace the columnar space containing the section
+     * @param cx x coordinate of the section (chunk coordinate)
+     * @param cy y coordinate of the section
+     * @param cz z coordinate of the section (chunk coordinate)
+     * @return version of the section's blocks
+     */
+    fun versionOf(columnarSpace: IColumnarSpace, cx: Int, cy: Int, cz: Int): Long
+}
@@ -1,10 +1,31 @@
 package com.extollit.gaming.ai.path.model
 
+import com.extollit.gaming.ai.path.jfr.FlightRecorder
+import com.extollit.gaming.ai.path.jfr.OcclusionFieldLoadEvent
 import com.extollit.gaming.ai.path.vector.VertexOffset
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+import java.nio.LongBuffer
 import java.util.*
+import java.util.concurrent.locks.ReentrantLock
+import java.util.concurrent.locks.StampedLock
 import kotlin.experimental.and
 import kotlin.experimental.or
 
+/**
+ * Occlusion data for a 16x16x16 section of a columnar space.
+ *
+ * Occlusion fields are safe for concurrent readers alongside a single writer.  All modifications (e.g. from
+ * [ColumnarOcclusionFieldList.onBlockChanged] or lazy area initialization) are serialized by one writer lock shared by
+ * all occlusion fields, and each field is guarded by a sequence lock so that [elementAt] does not block unless it
+ * races with a modification of the same field, in which case it retries under a read lock.  Each modification
+ * increments the field's [version].
+ *
+ * A field is stored in one of three forms: uniform (a single element of flags for the whole field), layered (once it
+ * has been fully area-initialized, see [compact]) or packed words.  Reads are answered from any form, modifications
+ * promote a layered field back to packed words first.
+ */
 open class OcclusionField : IOcclusionProvider {
     enum class AreaInit {
         north(0, -1), south(0, +1), west(-1, 0), east(+1, 0), northEast(+1, -1), northWest(-1, -1), southEast(
@@ -40,23 +61,77 @@ open class OcclusionField : IOcclusionProvider {
 
     private var words: LongArray? = null
     private var singleton: Byte = 0
+    // Words of each y-layer when this field is layered, uniform layers share canonical arrays and are never modified
+    private var layers: Array<LongArray>? = null
+    @Volatile
     private var areaInit: Short = 0
 
+    private val seqlock = StampedLock()
+    private var writeStamp = 0L
+
+    /**
+     * Incremented each time this field is modified, node caches may record this to later detect whether the occlusion
+     * data they were derived from has become stale.
+     */
+    @Volatile
+    var version: Int = 0
+        private set
+
+    /**
+     * Whether this field was discarded by the occlusion field list that created it (see
+     * [ColumnarOcclusionFieldList.reset]) and so no longer reflects its columnar space.  Anything that caches occlusion
+     * fields must look them up again once they are retired.
+     */
+    @Volatile
+    var retired: Boolean = false
+        private set
+
+    internal fun retire() {
+        retired = true
+    }
+
+    /**
+     * Set for fields that are area-initialized eagerly in the background rather than lazily as they are queried, see
+     * [ColumnarOcclusionFieldList.onLoaded]
+     */
+    internal var eager = false
+
     fun areaInitFull(): Boolean = areaInit == FULLY_AREA_INIT
 
+    /**
+     * Determines whether occlusion providers querying this field should area-initialize it first
+     */
+    fun areaInitLazily(): Boolean = !eager && areaInit != FULLY_AREA_INIT
+
     fun areaInitAt(direction: AreaInit): Boolean = direction.`in`(areaInit)
 
-    // TODO document what is this?
+    /** The boundaries of this field that have been area-initialized, a combination of [AreaInit.mask]s */
+    internal val areaInitFlags: Short
+        get() = areaInit
+
+    /**
+     * Computes this field from the blocks of the specified section of a columnar space, discarding previous contents
+     *
+     * @param columnarSpace the columnar space containing the section
+     * @param cx x chunk coordinate of the section
+     * @param cy y section coordinate of the section
+     * @param cz z chunk coordinate of the section
+     */
     fun loadFrom(columnarSpace: IColumnarSpace, cx: Int, cy: Int, cz: Int) {
-        singleton = 0
-        words = LongArray(DIMENSION_SQUARE_SIZE * DIMENSION_SIZE * ELEMENT_LENGTH / WORD_LENGTH)
+        val event = if (FlightRecorder.AVAILABLE) OcclusionFieldLoadEvent.begin() else null
+        val uniform = load(columnarSpace, cx, cy, cz)
+        if (event != null) OcclusionFieldLoadEvent.commit(event, cx, cy, cz, uniform)
+    }
+
+    // Computed into a new array and only published under the write lock, readers see either the old or the new data
+    private fun load(columnarSpace: IColumnarSpace, cx: Int, cy: Int, cz: Int): Boolean {
+        val words = LongArray(DIMENSION_SQUARE_SIZE * DIMENSION_SIZE * ELEMENT_LENGTH / WORD_LENGTH)
         var compress = true
-        var lastFlags = singleton
+        var lastFlags: Byte = 0
         val x0 = cx shl DIMENSION_ORDER.toInt()
         val y0 = cy shl DIMENSION_ORDER.toInt()
         val yN = y0 + DIMENSION_SIZE
         val z0 = cz shl DIMENSION_ORDER.toInt()
-        val words = words
         val yNi = yN - 1
         var y = yNi
         var i = LAST_INDEX
@@ -75,29 +150,237 @@ open class OcclusionField : IOcclusionProvider {
                         word = word or flags.toLong()
                         if (blockDescription!!.fenceLike && y < yNi) {
                             val indexUp = i + (DIMENSION_SQUARE_SIZE shr COORDINATE_TO_INDEX_SHR.toInt())
-                            words!![indexUp] = modifyWord(words[indexUp], b, flags)
+                            words[indexUp] = modifyWord(words[indexUp], b, flags)
                         }
                     }
-                    words!![i--] = word
+                    words[i--] = word
                     x -= ELEMENTS_PER_WORD.toInt()
                 }
             }
             --y
         }
-        if (compress) {
-            this.words = null
-            singleton = lastFlags
-        } else areaInit()
+        if (!compress) areaInit(words)
+        write {
+            this.layers = null
+            this.words = if (compress) null else words
+            this.singleton = if (compress) lastFlags else 0
+        }
+        return compress
+    }
+
+    /**
+     * Copies the occlusion data of this field into an off-heap buffer, see [OcclusionStore]
+     *
+     * @param buffer destination buffer with room for [WORD_COUNT] words at the specified offset
+     * @param offset index of the first word to write
+     * @return false if this field is uniform, in which case nothing is written and the data is [singletonFlags]
+     */
+    internal fun saveTo(buffer: LongBuffer, offset: Int): Boolean = read {
+        val words = packedWords()
+        if (words != null)
+            for (i in words.indices) buffer.put(offset + i, words[i])
+        words != null
+    }
+
+    internal val singletonFlags: Byte
+        get() = read { singleton }
+
+    /** Whether this field is uniform, in which case its data is [singletonFlags] */
+    internal val uniform: Boolean
+        get() = read { words == null && layers == null }
+
+    /**
+     * Replaces the occlusion data of this field with data previously copied by [saveTo].  Area initialization with
+     * neighboring fields must be repeated afterwards.
+     *
+     * @param buffer source buffer
+     * @param offset index of the first word to read
+     */
+    internal fun restoreFrom(buffer: LongBuffer, offset: Int) {
+        val words = LongArray(WORD_COUNT) { buffer[offset + it] }
+        write {
+            this.words = words
+            layers = null
+            singleton = 0
+        }
+    }
+
+    internal fun restoreFrom(singletonFlags: Byte) = write {
+        words = null
+        layers = null
+        singleton = singletonFlags
+    }
+
+    /**
+     * Writes the occlusion data of this field in the compact format understood by [readFrom].  A uniform field is
+     * written as its one byte of flags, otherwise the packed words are written, both are preceded by the mask of
+     * directions this field has been area-initialized with.
+     *
+     * @param output destination of the occlusion data
+     * @see IOcclusionFieldCache
+     */
+    fun writeTo(output: DataOutput) {
+        var words: LongArray? = null
+        var singleton: Byte = 0
+        var areaInit: Short = 0
+        read {
+            words = this.words?.copyOf() ?: packedWords()
+            singleton = this.singleton
+            areaInit = this.areaInit
+        }
+
+        output.writeShort(areaInit.toInt())
+        val packed = words
+        if (packed == null) {
+            output.writeBoolean(false)
+            output.writeByte(singleton.toInt())
+        } else {
+            output.writeBoolean(true)
+            for (word in packed) output.writeLong(word)
+        }
+    }
+
+    /**
+     * Replaces the occlusion data of this field with data written by [writeTo], including the directions it was
+     * area-initialized with.
+     *
+     * @param input source of the occlusion data
+     * @throws IOException if the data could not be read, this field is left untouched
+     */
+    @Throws(IOException::class)
+    fun readFrom(input: DataInput) {
+        val areaInit = input.readShort()
+        var words: LongArray? = null
+        var singleton: Byte = 0
+        if (input.readBoolean())
+            words = LongArray(WORD_COUNT) { input.readLong() }
+        else
+            singleton = input.readByte()
+        val packed = words
+        val layers = if (packed != null && areaInit and FULLY_AREA_INIT == FULLY_AREA_INIT) layersOf(packed) else null
+
+        write {
+            this.words = words
+            this.layers = null
+            this.singleton = singleton
+            this.areaInit = (areaInit and FULLY_AREA_INIT)
+            if (layers != null) compact(layers)
+        }
+    }
+
+    /**
+     * Performs a modification of this field, excluding all other writers and invalidating optimistic reads of this
+     * field that overlap it.  Nested modifications of the same field by the writer are folded into the outer one.
+     */
+    private inline fun <R> write(modification: () -> R): R {
+        val writer = WRITER
+        writer.lock()
+        try {
+            if (writeStamp != 0L) return modification()
+            writeStamp = seqlock.writeLock()
+            try {
+                return modification()
+            } finally {
+                version++
+                seqlock.unlockWrite(writeStamp)
+                writeStamp = 0L
+            }
+        } finally {
+            writer.unlock()
+        }
     }
 
     private fun fenceOrDoorLike(flags: Byte): Boolean =
         Element.earth.flagsIn(flags) && Logic.fuzzy.flagsIn(flags) || Logic.doorway.flagsIn(flags)
 
+    /**
+     * Packed words of this field, a new array if this field is layered
+     *
+     * @return null if this field is uniform
+     */
+    private fun packedWords(): LongArray? {
+        val words = words
+        if (words != null) return words
+        val layers = layers ?: return null
+        val packed = LongArray(WORD_COUNT)
+        for (y in layers.indices) System.arraycopy(layers[y], 0, packed, y * LAYER_WORDS, LAYER_WORDS)
+        return packed
+    }
+
+    /**
+     * Promotes a layered field to packed words prior to modifying it
+     */
+    private fun expand() {
+        if (layers == null) return
+        words = packedWords()
+        layers = null
+    }
+
+    /**
+     * Converts this field to the layered form if that saves memory.  Layers of uniform flags refer to one shared array
+     * per set of flags and a layer identical to the one beneath it refers to the same array, only the remaining layers
+     * need arrays of their own.  This is done once a field has been fully area-initialized because it is unlikely to be
+     * modified again after that except for block changes.
+     */
+    private fun compact() {
+        compact(layersOf(words ?: return) ?: return)
+    }
+
+    private fun compact(layers: Array<LongArray>) {
+        val bottom = layers[0]
+        if (bottom === UNIFORM_LAYERS[(bottom[0] and ELEMENT_MASK).toInt()] && layers.all { it === bottom }) {
+            this.words = null
+            singleton = (bottom[0] and ELEMENT_MASK).toByte()
+            return
+        }
+
+        this.layers = layers
+        this.words = null
+    }
+
+    /**
+     * Computes the layered form of the specified packed words, see [compact]
+     *
+     * @return the layers, or null if the layered form would not save memory
+     */
+    private fun layersOf(words: LongArray): Array<LongArray>? {
+        val layers = arrayOfNulls<LongArray>(DIMENSION_SIZE)
+        var distinct = 0
+        for (y in 0 until DIMENSION_SIZE) {
+            val i0 = y * LAYER_WORDS
+            val first = words[i0]
+            val uniform = UNIFORM_LAYERS[(first and ELEMENT_MASK).toInt()]
+            var layer: LongArray? = if (first == uniform[0]) uniform else null
+            val below = if (y > 0) layers[y - 1] else null
+            var same = below != null
+            for (i in 0 until LAYER_WORDS) {
+                val word = words[i0 + i]
+                if (word != first) layer = null
+                if (same && word != below!![i]) same = false
+            }
+            if (layer == null)
+                if (same) layer = below else {
+                    layer = words.copyOfRange(i0, i0 + LAYER_WORDS)
+                    distinct++
+                }
+            layers[y] = layer
+        }
+
+        if (distinct > LAYERED_MAX_DISTINCT) return null
+        @Suppress("UNCHECKED_CAST")
+        return layers as Array<LongArray>
+    }
+
+    /**
+     * Whether this field is stored in the compact layered form, see [compact]
+     */
+    val layered: Boolean
+        get() = read { layers != null }
+
     private fun decompress() {
         val word = singletonWord()
         words = LongArray(DIMENSION_SQUARE_SIZE * DIMENSION_SIZE * ELEMENT_LENGTH / WORD_LENGTH)
         words?.run { Arrays.fill(words!!, word) }
-        singleton = 0
     }
 
     private fun singletonWord(): Long {
@@ -110,8 +393,7 @@ open class OcclusionField : IOcclusionProvider {
         return word
     }
 
-    private fun areaInit() {
-        val words = words ?: return
+    private fun areaInit(words: LongArray) {
         var y = 0
         var index = DIMENSION_SIZE shr COORDINATE_TO_INDEX_SHR.toInt()
         while (y < DIMENSION_SIZE) {
@@ -138,54 +420,59 @@ open class OcclusionField : IOcclusionProvider {
         }
     }
 
-    fun areaInitNorth(other: OcclusionField?) {
+    fun areaInitNorth(other: OcclusionField?) = write {
         areaInitZPlane(other, false)
-        areaInit = AreaInit.north.to(areaInit)
+        areaInitTo(AreaInit.north)
     }
 
-    fun areaInitSouth(other: OcclusionField?) {
+    fun areaInitSouth(other: OcclusionField?) = write {
         areaInitZPlane(other, true)
-        areaInit = AreaInit.south.to(areaInit)
+        areaInitTo(AreaInit.south)
     }
 
-    fun areaInitWest(other: OcclusionField?) {
+    fun areaInitWest(other: OcclusionField?) = write {
         areaInitXPlane(other, false)
-        areaInit = AreaInit.west.to(areaInit)
+        areaInitTo(AreaInit.west)
     }
 
-    fun areaInitEast(other: OcclusionField?) {
+    fun areaInitEast(other: OcclusionField?) = write {
         areaInitXPlane(other, true)
-        areaInit = AreaInit.east.to(areaInit)
+        areaInitTo(AreaInit.east)
     }
 
-    fun areaInitNorthEast(horizontal: OcclusionField?, depth: OcclusionField?) {
+    fun areaInitNorthEast(horizontal: OcclusionField?, depth: OcclusionField?) = write {
         areaInitVerticalEdge(horizontal, depth, horizEnd = true, depthEnd = false)
-        areaInit = AreaInit.northEast.to(areaInit)
+        areaInitTo(AreaInit.northEast)
     }
 
-    fun areaInitSouthEast(horizontal: OcclusionField?, depth: OcclusionField?) {
+    fun areaInitSouthEast(horizontal: OcclusionField?, depth: OcclusionField?) = write {
         areaInitVerticalEdge(horizontal, depth, horizEnd = true, depthEnd = true)
-        areaInit = AreaInit.southEast.to(areaInit)
+        areaInitTo(AreaInit.southEast)
     }
 
-    fun areaInitNorthWest(horizontal: OcclusionField?, depth: OcclusionField?) {
+    fun areaInitNorthWest(horizontal: OcclusionField?, depth: OcclusionField?) = write {
         areaInitVerticalEdge(horizontal, depth, horizEnd = false, depthEnd = false)
-        areaInit = AreaInit.northWest.to(areaInit)
+        areaInitTo(AreaInit.northWest)
     }
 
-    fun areaInitSouthWest(horizontal: OcclusionField?, depth: OcclusionField?) {
+    fun areaInitSouthWest(horizontal: OcclusionField?, depth: OcclusionField?) = write {
         areaInitVerticalEdge(horizontal, depth, false, true)
-        areaInit = AreaInit.southWest.to(areaInit)
+        areaInitTo(AreaInit.southWest)
     }
 
-    fun areaInitUp(columnarSpace: IColumnarSpace?, cy: Int, other: OcclusionField?) {
+    fun areaInitUp(columnarSpace: IColumnarSpace?, cy: Int, other: OcclusionField?) = write {
         resolveTruncatedFencesAndDoors(columnarSpace, cy, other, true)
-        areaInit = AreaInit.up.to(areaInit)
+        areaInitTo(AreaInit.up)
     }
 
-    fun areaInitDown(columnarSpace: IColumnarSpace?, cy: Int, other: OcclusionField?) {
+    fun areaInitDown(columnarSpace: IColumnarSpace?, cy: Int, other: OcclusionField?) = write {
         resolveTruncatedFencesAndDoors(columnarSpace, cy, other, false)
-        areaInit = AreaInit.down.to(areaInit)
+        areaInitTo(AreaInit.down)
+    }
+
+    private fun areaInitTo(direction: AreaInit) {
+        areaInit = direction.to(areaInit)
+        if (areaInit == FULLY_AREA_INIT) compact()
     }
 
     private fun resolveTruncatedFencesAndDoors(
@@ -208,7 +495,7 @@ open class OcclusionField : IOcclusionProvider {
             `object` = this
         }
         val y = (cy shl DIMENSION_ORDER.toInt()) - 1
-        val words = subject.words
+        val words = subject.packedWords()
         val singleton = subject.singleton
         var word: Long = 0
         for (z in 0 until DIMENSION_SIZE) {
@@ -232,10 +519,11 @@ open class OcclusionField : IOcclusionProvider {
     }
 
     private fun areaInitZPlane(neighbor: OcclusionField?, end: Boolean) {
+        expand()
         var words = words
         val z0 = if (end) DIMENSION_EXTENT else 0
         val disposition = (z0 / DIMENSION_EXTENT shl 1) - 1
-        val neighborWords = neighbor!!.words
+        val neighborWords = neighbor!!.packedWords()
         val singletonWord = if (words == null) singletonWord() else 0
         val neighborSingletonWord = if (neighborWords == null) neighbor.singletonWord() else 0
         var y = 0
@@ -291,11 +579,12 @@ open class OcclusionField : IOcclusionProvider {
     }
 
     private fun areaInitXPlane(neighbor: OcclusionField?, end: Boolean) {
+        expand()
         var words = words
         val x0 = if (end) DIMENSION_EXTENT else 0
         val disposition = (x0 / DIMENSION_EXTENT shl 1) - 1
         val offset = (disposition + 1 shr 1) * WORD_LAST_OFFSET
-        val neighborWords = neighbor!!.words
+        val neighborWords = neighbor!!.packedWords()
         val singletonWord = if (words == null) singletonWord() else 0
         val neighborSingletonWord = if (neighborWords == null) neighbor.singletonWord() else 0
         var y = 0
@@ -349,14 +638,15 @@ open class OcclusionField : IOcclusionProvider {
         horizEnd: Boolean,
         depthEnd: Boolean
     ) {
+        expand()
         var words = words
         val x0 = if (horizEnd) DIMENSION_EXTENT else 0
         val z0 = if (depthEnd) DIMENSION_EXTENT else 0
         val xd = (x0 / DIMENSION_EXTENT shl 1) - 1
         val zd = (z0 / DIMENSION_EXTENT shl 1) - 1
         val offset = (xd + 1 shr 1) * WORD_LAST_OFFSET
-        val horizNeighborWords = horizNeighbor!!.words
-        val depthNeighborWords = depthNeighbor!!.words
+        val horizNeighborWords = horizNeighbor!!.packedWords()
+        val depthNeighborWords = depthNeighbor!!.packedWords()
         val singletonWord = if (words == null) singletonWord() else 0
         val horizNeighborSingletonWord = if (horizNeighborWords == null) horizNeighbor.singletonWord() else 0
         val depthNeighborSingletonWord = if (depthNeighborWords == null) depthNeighbor.singletonWord() else 0
@@ -510,7 +800,7 @@ open class OcclusionField : IOcclusionProvider {
         return word and (ELEMENT_MASK shl shl).inv() or (flags.toLong() shl shl)
     }
 
-    operator fun set(columnarSpace: IColumnarSpace, x: Int, y: Int, z: Int, blockDescription: IBlockDescription?) {
+    operator fun set(columnarSpace: IColumnarSpace, x: Int, y: Int, z: Int, blockDescription: IBlockDescription?) = write {
         val dx = x and DIMENSION_MASK
         val dy = y and DIMENSION_MASK
         val dz = z and DIMENSION_MASK
@@ -564,15 +854,16 @@ open class OcclusionField : IOcclusionProvider {
         }
     }
 
-    private operator fun set(dx: Int, dy: Int, dz: Int, flags: Byte): Boolean {
+    private operator fun set(dx: Int, dy: Int, dz: Int, flags: Byte): Boolean = write {
+        expand()
         if (words == null && flags != singleton) decompress()
+        val words = words
         if (words != null) {
             val index = index(dx, dy, dz)
-            val word = words!![index]
-            words!![index] = modifyWord(word, dx % ELEMENTS_PER_WORD, flags)
-            return true
-        }
-        return false
+            val word = words[index]
+            words[index] = modifyWord(word, dx % ELEMENTS_PER_WORD, flags)
+            true
+        } else false
     }
 
     private fun index(dx: Int, dy: Int, dz: Int): Int =
@@ -687,11 +978,101 @@ open class OcclusionField : IOcclusionProvider {
         center[dx, dy, dz] = flags
     }
 
-    override fun elementAt(x: Int, y: Int, z: Int): Byte {
-        return if (words != null) {
-            val word = words!![index(x, y, z)]
-            elementAt(word, x % ELEMENTS_PER_WORD)
-        } else singleton
+    override fun elementAt(x: Int, y: Int, z: Int): Byte = read { unsafeElementAt(x, y, z) }
+
+    /**
+     * Scans a column of this field downward for the first element having flags in the specified set.  Uniform
+     * (compressed) fields are answered with a single test, otherwise each element is tested directly against the packed
+     * words without the overhead of [elementAt].
+     *
+     * @param x relative x-coordinate of the column
+     * @param y relative y-coordinate to begin the scan at (inclusive)
+     * @param z relative z-coordinate of the column
+     * @param yN relative y-coordinate to end the scan at (inclusive), must not be greater than y
+     * @param stops set of flags to scan for, bit n of this is set if flags n are in the set, see [FlagSampler.flagSet]
+     * @return the relative y-coordinate of the first element found, yN - 1 if there is none
+     */
+    fun scanDown(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int = read {
+        val words = words
+        val layers = layers
+        if (layers != null) {
+            val offset = x % ELEMENTS_PER_WORD shl ELEMENT_LENGTH_SHL.toInt()
+            var yy = y
+            while (yy >= yN && stops shr (layers[yy][z] shr offset and ELEMENT_MASK).toInt() and 1 == 0) --yy
+            yy
+        } else if (words == null)
+            if (stops shr singleton.toInt() and 1 != 0) y else yN - 1
+        else {
+            val offset = x % ELEMENTS_PER_WORD shl ELEMENT_LENGTH_SHL.toInt()
+            var index = index(x, y, z)
+            var yy = y
+            while (yy >= yN && stops shr (words[index] shr offset and ELEMENT_MASK).toInt() and 1 == 0) {
+                index -= DIMENSION_SQUARE_SIZE shr COORDINATE_TO_INDEX_SHR.toInt()
+                --yy
+            }
+            yy
+        }
+    }
+
+    /**
+     * Scans a column of this field upward for the first element having flags in the specified set, the upward
+     * counterpart of [scanDown].
+     *
+     * @param x relative x-coordinate of the column
+     * @param y relative y-coordinate to begin the scan at (inclusive)
+     * @param z relative z-coordinate of the column
+     * @param yN relative y-coordinate to end the scan at (inclusive), must not be less than y
+     * @param stops set of flags to scan for, bit n of this is set if flags n are in the set, see [FlagSampler.flagSet]
+     * @return the relative y-coordinate of the first element found, yN + 1 if there is none
+     */
+    fun scanUp(x: Int, y: Int, z: Int, yN: Int, stops: Int): Int = read {
+        val words = words
+        val layers = layers
+        if (layers != null) {
+            val offset = x % ELEMENTS_PER_WORD shl ELEMENT_LENGTH_SHL.toInt()
+            var yy = y
+            while (yy <= yN && stops shr (layers[yy][z] shr offset and ELEMENT_MASK).toInt() and 1 == 0) ++yy
+            yy
+        } else if (words == null)
+            if (stops shr singleton.toInt() and 1 != 0) y else yN + 1
+        else {
+            val offset = x % ELEMENTS_PER_WORD shl ELEMENT_LENGTH_SHL.toInt()
+            var index = index(x, y, z)
+            var yy = y
+            while (yy <= yN && stops shr (words[index] shr offset and ELEMENT_MASK).toInt() and 1 == 0) {
+                index += DIMENSION_SQUARE_SIZE shr COORDINATE_TO_INDEX_SHR.toInt()
+                ++yy
+            }
+            yy
+        }
+    }
+
+    /**
+     * Performs a query of this field that is consistent with respect to concurrent modifications, optimistically
+     * without locking first.  The query may be evaluated more than once.
+     */
+    private inline fun <R> read(query: () -> R): R {
+        val seqlock = seqlock
+        val stamp = seqlock.tryOptimisticRead()
+        if (stamp != 0L) {
+            val result = query()
+            if (seqlock.validate(stamp)) return result
+        }
+        if (WRITER.isHeldByCurrentThread) return query()
+
+        val readStamp = seqlock.readLock()
+        try {
+            return query()
+        } finally {
+            seqlock.unlockRead(readStamp)
+        }
+    }
+
+    private fun unsafeElementAt(x: Int, y: Int, z: Int): Byte {
+        val words = words
+        if (words != null) return elementAt(words[index(x, y, z)], x % ELEMENTS_PER_WORD)
+        val layers = layers ?: return singleton
+        return elementAt(layers[y][z], x % ELEMENTS_PER_WORD)
     }
 
     private fun elementAt(word: Long, offset: Int) =
@@ -733,6 +1114,22 @@ open class OcclusionField : IOcclusionProvider {
         private const val LAST_INDEX = DIMENSION_SIZE * DIMENSION_SQUARE_SIZE - 1 shr COORDINATE_TO_INDEX_SHR.toInt()
         private const val ELEMENT_MASK = ((1 shl ELEMENT_LENGTH.toInt()) - 1).toLong()
         private const val FULLY_AREA_INIT: Short = 0x3FF
+
+        /** The number of 64-bit words needed to store a non-uniform occlusion field */
+        internal const val WORD_COUNT = LAST_INDEX + 1
+        private const val LAYER_WORDS = DIMENSION_SQUARE_SIZE shr COORDINATE_TO_INDEX_SHR.toInt()
+        /** Layered fields with more layers than this that need arrays of their own are left as packed words */
+        private const val LAYERED_MAX_DISTINCT = DIMENSION_SIZE * 3 / 4
+
+        /** One shared layer of words for each uniform set of flags */
+        private val UNIFORM_LAYERS = Array(1 shl ELEMENT_LENGTH.toInt()) { flags ->
+            var word = 0L
+            for (b in 0 until ELEMENTS_PER_WORD) word = word or (flags.toLong() shl (b shl ELEMENT_LENGTH_SHL.toInt()))
+            LongArray(LAYER_WORDS) { word }
+        }
+
+        /** Serializes all modifications of all occlusion fields, the single writer */
+        private val WRITER = ReentrantLock()
         fun fuzzyOpenIn(element: Byte): Boolean =
             Element.air.flagsIn(element) || Element.earth.flagsIn(element) && Logic.fuzzy.flagsIn(element)
 
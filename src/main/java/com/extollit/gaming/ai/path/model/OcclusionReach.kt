@@ -0,0 +1,33 @@
+package com.extollit.gaming.ai.path.model
+
+/**
+ * Determines which sections a block change reported to an [IOcclusionFieldListener] may affect, for listeners that
+ * track data derived from the blocks around the data's own position.
+ */
+internal object OcclusionReach {
+    /**
+     * Visits each section containing a block that lies within the specified reach of a block
+     *
+     * @param x absolute x coordinate of the block
+     * @param y absolute y coordinate of the block
+     * @param z absolute z coordinate of the block
+     * @param reachXZ horizontal distance from the block along either axis
+     * @param below vertical distance below the block
+     * @param above vertical distance above the block
+     * @param visitor receives the x, y and z coordinates of each section
+     */
+    inline fun forEachSectionNear(
+        x: Int,
+        y: Int,
+        z: Int,
+        reachXZ: Int,
+        below: Int,
+        above: Int,
+        visitor: (Int, Int, Int) -> Unit
+    ) {
+        for (cy in (y - below shr 4)..(y + above shr 4))
+            for (cz in (z - reachXZ shr 4)..(z + reachXZ shr 4))
+                for (cx in (x - reachXZ shr 4)..(x + reachXZ shr 4))
+                    visitor(cx, cy, cz)
+    }
+}
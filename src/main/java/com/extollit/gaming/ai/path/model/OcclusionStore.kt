@@ -0,0 +1,232 @@
+package com.extollit.gaming.ai.path.model
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.LongBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Off-heap store of occlusion data that outlives the occlusion fields of unloaded columnar spaces.  Share one store
+ * between all [ColumnarOcclusionFieldList]s of an instance, when a list is reset its occlusion fields are saved here
+ * and when the chunk loads again they are restored from here rather than recomputed from the blocks of the chunk.
+ *
+ * Non-uniform sections occupy one fixed-size slot of the arena buffer (which may be direct or memory-mapped) and are
+ * found through a primitive open-addressing index keyed by section coordinates, uniform sections are kept in the
+ * index alone.  Vacated slots are recycled through a free list, once the store is full entries are evicted by a hand
+ * that sweeps the index like a clock, so the entries evicted follow the order of the index rather than their age.
+ *
+ * Sections are discarded from the store as blocks in or adjacent to them change (see
+ * [ColumnarOcclusionFieldList.onBlockChanged]), the implementor must call [discard] for any chunk that is modified
+ * while it is unloaded.  This class is thread-safe.
+ *
+ * @param arena buffer to store occlusion data in, its capacity determines how many sections the store holds
+ */
+class OcclusionStore(arena: ByteBuffer) {
+    private val words: LongBuffer = arena.duplicate().order(ByteOrder.nativeOrder()).asLongBuffer()
+
+    /** The maximum number of non-uniform sections this store can hold */
+    val capacity: Int = words.capacity() / OcclusionField.WORD_COUNT
+
+    private val maxEntries: Int
+    private val keys: LongArray
+    // Zero if empty, otherwise one more than the slot of a non-uniform section or the negated uniform flags less one
+    private val values: IntArray
+    private val mask: Int
+
+    private val free: IntArray
+    private var freeCount: Int
+    private var hand = 0
+
+    /** The number of sections held by this store */
+    @Volatile
+    var size: Int = 0
+        private set
+
+    init {
+        require(capacity > 0) { "Arena must have room for at least one occlusion field" }
+        maxEntries = capacity * ENTRIES_PER_SLOT
+        var tableSize = Integer.highestOneBit(maxEntries) shl 1
+        if (tableSize < maxEntries * 2) tableSize = tableSize shl 1
+        keys = LongArray(tableSize)
+        values = IntArray(tableSize)
+        mask = tableSize - 1
+        free = IntArray(capacity) { capacity - 1 - it }
+        freeCount = capacity
+    }
+
+    /**
+     * Saves the occlusion data of a section, replacing what was saved for it previously
+     *
+     * @param field the occlusion field of the section
+     */
+    @Synchronized
+    internal fun save(cx: Int, cy: Int, cz: Int, field: OcclusionField) {
+        val key = ThreeDimensionalIntVector.packed(cx, cy, cz)
+        val existing = indexOf(key)
+        if (existing >= 0) removeAt(existing)
+        if (size == maxEntries) evict(false)
+
+        val value = if (field.uniform) -1 - field.singletonFlags else {
+            // Only non-uniform sections need a slot of the arena
+            if (freeCount == 0) evict(true)
+            val slot = free[freeCount - 1]
+            if (field.saveTo(words, slot * OcclusionField.WORD_COUNT)) {
+                freeCount--
+                slot + 1
+            } else -1 - field.singletonFlags
+        }
+
+        var i = slot(key, mask)
+        while (values[i] != 0) i = (i + 1) and mask
+        keys[i] = key
+        values[i] = value
+        size++
+    }
+
+    /**
+     * Restores the occlusion data of a section into an occlusion field, the data is removed from the store
+     *
+     * @param field occlusion field receiving the data
+     * @return true if the section was present in the store, otherwise the field is left untouched
+     */
+    @Synchronized
+    internal fun restore(cx: Int, cy: Int, cz: Int, field: OcclusionField): Boolean {
+        val i = indexOf(ThreeDimensionalIntVector.packed(cx, cy, cz))
+        if (i < 0) return false
+
+        val value = values[i]
+        if (value > 0)
+            field.restoreFrom(words, (value - 1) * OcclusionField.WORD_COUNT)
+        else
+            field.restoreFrom((-1 - value).toByte())
+        removeAt(i)
+        return true
+    }
+
+    /**
+     * Discards every section of a chunk and of the chunks adjacent to it (whose boundaries were reconciled with it),
+     * call this when a chunk is modified while it is unloaded.
+     *
+     * @param cx x coordinate of the chunk
+     * @param cz z coordinate of the chunk
+     */
+    fun discard(cx: Int, cz: Int) {
+        if (size == 0) return
+        synchronized(this) {
+            for (dz in -1..+1)
+                for (dx in -1..+1)
+                    for (cy in 0 until OcclusionField.DIMENSION_SIZE)
+                        discard(ThreeDimensionalIntVector.packed(cx + dx, cy, cz + dz))
+        }
+    }
+
+    /**
+     * Discards the sections that contain or are adjacent to the specified block
+     */
+    internal fun discardAround(x: Int, y: Int, z: Int) {
+        if (size == 0) return
+        synchronized(this) {
+            for (cy in ((y - 1) shr 4)..((y + 1) shr 4))
+                for (cz in ((z - 1) shr 4)..((z + 1) shr 4))
+                    for (cx in ((x - 1) shr 4)..((x + 1) shr 4))
+                        discard(ThreeDimensionalIntVector.packed(cx, cy, cz))
+        }
+    }
+
+    /**
+     * Discards all sections in this store
+     */
+    @Synchronized
+    fun clear() {
+        values.fill(0)
+        for (i in 0 until capacity) free[i] = capacity - 1 - i
+        freeCount = capacity
+        size = 0
+    }
+
+    private fun discard(key: Long) {
+        val i = indexOf(key)
+        if (i >= 0) removeAt(i)
+    }
+
+    private fun indexOf(key: Long): Int {
+        var i = slot(key, mask)
+        while (true) {
+            if (values[i] == 0) return -1
+            if (keys[i] == key) return i
+            i = (i + 1) and mask
+        }
+    }
+
+    private fun evict(slotted: Boolean) {
+        var i = hand
+        while (values[i] == 0 || slotted && values[i] < 0) i = (i + 1) and mask
+        hand = (i + 1) and mask
+        removeAt(i)
+    }
+
+    private fun removeAt(index: Int) {
+        val value = values[index]
+        if (value > 0) free[freeCount++] = value - 1
+        size--
+
+        var gap = index
+        var i = index
+        while (true) {
+            i = (i + 1) and mask
+            if (values[i] == 0) break
+            val home = slot(keys[i], mask)
+            if ((i - home) and mask >= (i - gap) and mask) {
+                keys[gap] = keys[i]
+                values[gap] = values[i]
+                gap = i
+            }
+        }
+        values[gap] = 0
+    }
+
+    companion object {
+        /** Bytes of arena needed to hold one non-uniform section */
+        const val SECTION_BYTES = OcclusionField.WORD_COUNT * 8
+
+        /** How many sections the index holds for each slot of the arena, accommodating uniform sections */
+        private const val ENTRIES_PER_SLOT = 4
+
+        private fun slot(key: Long, mask: Int): Int {
+            val h = key * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and mask
+        }
+
+        /**
+         * Creates a store backed by a direct (off-heap) buffer
+         *
+         * @param capacity the maximum number of non-uniform sections to hold
+         */
+        @JvmStatic
+        fun direct(capacity: Int): OcclusionStore = OcclusionStore(ByteBuffer.allocateDirect(capacity * SECTION_BYTES))
+
+        /**
+         * Creates a store backed by a memory-mapped file, this lets the operating system page occlusion data out to
+         * disk so that the store may cover far more terrain than fits in memory.  The file is only scratch space, the
+         * store does not read back occlusion data saved in it by previous processes.
+         *
+         * @param file the file to map, created or grown as necessary
+         * @param capacity the maximum number of non-uniform sections to hold
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun mapped(file: File, capacity: Int): OcclusionStore =
+            FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            ).use { channel ->
+                OcclusionStore(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity.toLong() * SECTION_BYTES))
+            }
+    }
+}
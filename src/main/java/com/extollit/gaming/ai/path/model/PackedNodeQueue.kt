@@ -0,0 +1,284 @@
+package com.extollit.gaming.ai.path.model
+
+import com.extollit.gaming.ai.path.node.Node
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+import kotlin.math.sqrt
+
+/**
+ * A binary min-heap of [Node]s backed by parallel primitive arrays: one holding the packed priority key of each
+ * entry and the other holding the node itself.  Unlike [SortedNodeQueue] this queue has no upper limit on the number
+ * of nodes it can hold, it never culls nodes and comparisons during sifting only involve the packed keys rather than
+ * the nodes themselves.  When a node already in the queue is given a better journey its key is decreased in-place.
+ *
+ * @param initialCapacity initial number of nodes this queue can hold before it must grow its arrays
+ * @see SortedNodeQueue
+ */
+class PackedNodeQueue @JvmOverloads constructor(initialCapacity: Int = 64) : INodeQueue {
+    private var keys = IntArray(initialCapacity.coerceAtLeast(1))
+    private var nodes = arrayOfNulls<Node>(keys.size)
+
+    override var size: Int = 0
+        private set
+
+    override val isEmpty: Boolean
+        get() = size == 0
+
+    /** Always zero, this queue grows rather than culling nodes */
+    override val culled: Long
+        get() = 0
+
+    override val roots: Set<Node>
+        get() {
+            val roots = HashSet<Node>(1)
+            for (i in 0 until size) roots.add(nodes[i]!!.root())
+            return roots
+        }
+
+    override fun add(point: Node): Boolean {
+        check(!point.assigned()) { "Point is already assigned" }
+        if (size == nodes.size) grow()
+
+        val index = size++
+        nodes[index] = point
+        keys[index] = keyOf(point)
+        siftUp(index)
+        return true
+    }
+
+    override fun clear() {
+        val nodes = nodes
+        for (i in 0 until size) {
+            nodes[i]!!.unassign()
+            nodes[i] = null
+        }
+        size = 0
+    }
+
+    override fun trimFrom(source: Node): Node {
+        if (source.orphaned()) return source
+        val root0 = source.root()
+        val dd = source.coordinates.subOf(root0.coordinates)
+        val nodes = nodes
+        val length0 = source.length()
+        val path = Stack<Node>()
+        val treeTransitional = TreeTransitional(source)
+        var retained = 0
+        for (i in 0 until size) {
+            val head = nodes[i]!!
+            var point = head
+
+            while (!point.orphaned()) {
+                point = point.parent!!
+                path.push(point)
+            }
+
+            if (point === source) {
+                while (!path.isEmpty()) {
+                    point = path.pop()
+                    point.length(point.length() - length0)
+                }
+                head.length(head.length() - length0)
+                retain(head, retained++)
+            } else {
+                val root: Node? = if (path.isEmpty()) head else path.pop()
+                if (head === point || head.coordinates.subOf(point.coordinates).dot(dd) <= 0) {
+                    head.dirty(true)
+                    while (!path.isEmpty()) path.pop().dirty(true)
+                    treeTransitional.queue(head, root)
+                    retain(head, retained++)
+                } else {
+                    if (!path.isEmpty()) {
+                        val branch = path.pop()
+                        branch.dirty(true)
+                        treeTransitional.queue(branch, root)
+                    }
+                    path.clear()
+                    head.unassign()
+                    head.visited(false)
+                }
+            }
+        }
+        truncate(retained)
+        heapify()
+        treeTransitional.finish(this)
+        return root0
+    }
+
+    override fun cullBranch(ancestor: Node) {
+        val nodes = nodes
+        val stack = Stack<Node>()
+        val culled: MutableList<Node> = ArrayList()
+        var retained = 0
+        for (i in 0 until size) {
+            val head = nodes[i]!!
+            var point = head
+            while (!point.orphaned() && point !== ancestor) {
+                point = point.parent!!
+                stack.push(point)
+            }
+            if (point !== ancestor)
+                retain(head, retained++)
+            else {
+                head.unassign()
+                culled.add(head)
+                culled.addAll(stack)
+            }
+            stack.clear()
+        }
+        truncate(retained)
+        heapify()
+        for (node in culled) {
+            node.reset()
+            node.visited(false)
+        }
+    }
+
+    override fun view(): List<Node?> = Collections.unmodifiableList(nodes.asList().subList(0, size))
+
+    override fun top(): Node = nodes[0] ?: throw NoSuchElementException()
+
+    override fun dequeue(): Node {
+        val nodes = nodes
+        val point = top()
+        val last = --size
+        if (last > 0) {
+            nodes[0] = nodes[last]
+            keys[0] = keys[last]
+            nodes[last] = null
+            siftDown(0)
+        } else
+            nodes[0] = null
+
+        point.unassign()
+        return point
+    }
+
+    override fun nextContains(ancestor: Node?): Boolean = top().contains(ancestor)
+
+    override fun appendTo(point: Node, parent: Node, targetPoint: ThreeDimensionalIntVector): Boolean =
+        appendTo(
+            point, parent, sqrt(Node.squareDelta(point, targetPoint).toDouble())
+                .toInt()
+        )
+
+    override fun appendTo(point: Node, parent: Node, remaining: Int): Boolean {
+        val squareDelta: Int = Node.squareDelta(parent, point)
+        val length = point.length()
+        if (!point.assigned() || parent.length() + squareDelta < length * length && !point.passibility().betterThan(
+                parent.passibility()
+            )
+        ) {
+            if (point.appendTo(parent, sqrt(squareDelta.toDouble()).toInt(), remaining))
+                return resort(point)
+
+            point.orphan()
+        }
+        return false
+    }
+
+    override fun addLength(point: Node, diff: Int): Boolean {
+        point.addLength(diff)
+        return resort(point)
+    }
+
+    private fun resort(point: Node): Boolean {
+        if (point.assigned()) {
+            val index = point.index()
+            val key0 = keys[index]
+            val key = keyOf(point)
+            keys[index] = key
+            if (key < key0) siftUp(index) else siftDown(index)
+            return true
+        }
+
+        add(point)
+        return false
+    }
+
+    private fun retain(node: Node, index: Int) {
+        nodes[index] = node
+        node.index(index)
+    }
+
+    private fun truncate(size: Int) {
+        Arrays.fill(nodes, size, this.size, null)
+        this.size = size
+    }
+
+    private fun heapify() {
+        val nodes = nodes
+        val keys = keys
+        for (i in 0 until size) keys[i] = keyOf(nodes[i]!!)
+        for (i in (size ushr 1) - 1 downTo 0) siftDown(i)
+    }
+
+    private fun grow() {
+        val capacity = nodes.size shl 1
+        keys = keys.copyOf(capacity)
+        nodes = nodes.copyOf(capacity)
+    }
+
+    private fun siftUp(index: Int) {
+        val nodes = nodes
+        val keys = keys
+        val node = nodes[index]!!
+        val key = keys[index]
+        var i = index
+        while (i > 0) {
+            val parent = (i - 1) shr 1
+            val parentKey = keys[parent]
+            if (parentKey <= key) break
+
+            val parentNode = nodes[parent]!!
+            nodes[i] = parentNode
+            keys[i] = parentKey
+            parentNode.index(i)
+            i = parent
+        }
+        nodes[i] = node
+        keys[i] = key
+        node.index(i)
+    }
+
+    private fun siftDown(index: Int) {
+        val nodes = nodes
+        val keys = keys
+        val node = nodes[index]!!
+        val key = keys[index]
+        val half = size ushr 1
+        var i = index
+        while (i < half) {
+            var child = (i shl 1) + 1
+            var childKey = keys[child]
+            val right = child + 1
+            if (right < size && keys[right] < childKey) {
+                child = right
+                childKey = keys[right]
+            }
+            if (key <= childKey) break
+
+            val childNode = nodes[child]!!
+            nodes[i] = childNode
+            keys[i] = childKey
+            childNode.index(i)
+            i = child
+        }
+        nodes[i] = node
+        keys[i] = key
+        node.index(i)
+    }
+
+    override fun toString(): String = "${view()}"
+
+    companion object {
+        private const val PASSIBILITY_BIT_OFFS = 16
+
+        /**
+         * Packs the priority of a node into a single integer, passibility occupies the high bits so that nodes with
+         * better passibility always precede those with worse passibility, followed by the journey of the node
+         */
+        private fun keyOf(node: Node): Int =
+            (node.passibility().ordinal shl PASSIBILITY_BIT_OFFS) or (node.length() + node.remaining())
+    }
+}
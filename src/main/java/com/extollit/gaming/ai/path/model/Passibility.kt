@@ -36,7 +36,7 @@ enum class Passibility {
      * @param other other passibility to compare to
      * @return the lesser of the two passibility ratings
      */
-    fun between(other: Passibility): Passibility = values()[ordinal.coerceAtLeast(other.ordinal)]
+    fun between(other: Passibility): Passibility = if (ordinal >= other.ordinal) this else other
 
     /**
      * Determines if the given passibility rating is better than this one.  For example, if this is [.dangerous]
@@ -398,6 +398,20 @@ open class PathObject @JvmOverloads protected constructor(
                 PathObject(speed, random, *result.map { it!! }.toTypedArray())
         }
 
+        /**
+         * Creates a path from a sequence of nodes, a sequence of fewer than two nodes yields an incomplete path
+         *
+         * @param speed the speed of the entity that will follow the path
+         * @param random source of randomness for the path
+         * @param nodes the nodes of the path ordered from source to destination, must not be empty
+         * @return a new path through the specified nodes
+         */
+        fun fromNodes(speed: Float, random: Random, nodes: Array<out Node>): IPath =
+            if (nodes.size <= 1)
+                IncompletePath(nodes[0])
+            else
+                PathObject(speed, random, *nodes)
+
         @JvmStatic
         fun active(path: IPath?): Boolean = path != null && !path.done()
 
@@ -7,11 +7,17 @@ import kotlin.math.ceil
 import kotlin.math.sqrt
 
 /**
- * A queue of [Node]s
+ * A queue of [Node]s backed by a list, this queue holds at most [Node.MAX_INDICES] nodes and culls the worst ten
+ * percent of them when this limit is reached
+ *
+ * @see PackedNodeQueue
  */
-class SortedNodeQueue {
+class SortedNodeQueue : INodeQueue {
     private val list = ArrayList<Node>(8)
 
+    override var culled = 0L
+        private set
+
     /**
      * Adds a node to this sorted queue without the overhead of checks.
      *
@@ -20,9 +26,9 @@ class SortedNodeQueue {
      * @return If adding this node to this sorted queue was successful
      */
     fun fastAdd(node: Node): Boolean {
-        if (!node.index(list.size)) return false
+        if (list.size >= Node.MAX_INDICES || !node.index(list.size)) return false
         list.add(node)
-        sortBack(node.index().toInt())
+        sortBack(node.index())
         return true
     }
 
@@ -35,7 +41,7 @@ class SortedNodeQueue {
      *
      * @see [fastAdd] for adding nodes without the extra conditional overhead.
      */
-    fun add(point: Node): Boolean {
+    override fun add(point: Node): Boolean {
         check(!point.assigned()) { "Point is already assigned" }
         if (fastAdd(point)) return true
         val list = list
@@ -46,6 +52,7 @@ class SortedNodeQueue {
         while (amount > 0 && i.hasPrevious()) {
             i.previous().unassign()
             i.remove()
+            culled++
             --amount
         }
 
@@ -55,7 +62,7 @@ class SortedNodeQueue {
     /**
      * Removes all elements from this queue
      */
-    fun clear() {
+    override fun clear() {
         for (node in list) node.unassign()
         list.clear()
     }
@@ -63,10 +70,10 @@ class SortedNodeQueue {
     /**
      * Checks if this queue is empty.
      */
-    val isEmpty: Boolean
+    override val isEmpty: Boolean
         get() = list.isEmpty()
 
-    fun trimFrom(source: Node): Node {
+    override fun trimFrom(source: Node): Node {
         if (source.orphaned()) return source
         val root0 = source.root()
         val dd = source.coordinates.subOf(root0.coordinates)
@@ -119,7 +126,7 @@ class SortedNodeQueue {
         return root0
     }
 
-    fun cullBranch(ancestor: Node) {
+    override fun cullBranch(ancestor: Node) {
         val list: MutableList<Node> = list
         val stack = Stack<Node>()
         val i = list.listIterator()
@@ -151,7 +158,7 @@ class SortedNodeQueue {
      *
      * @return unmodifiable list of all nodes in this sorted queue.
      */
-    fun view(): List<Node?> = Collections.unmodifiableList(list)
+    override fun view(): List<Node?> = Collections.unmodifiableList(list)
 
     /**
      * Gets the node on the top of this stack.
@@ -159,14 +166,14 @@ class SortedNodeQueue {
      *
      * @return The node at the top of the stack.
      */
-    fun top(): Node = list[0]
+    override fun top(): Node = list[0]
 
     /**
      * Removes and returns the oldest element in this stack.
      *
      * @return The oldest element (most waiting element) in this stack.
      */
-    fun dequeue(): Node {
+    override fun dequeue(): Node {
         val list = list
         val point: Node?
         if (list.size == 1) point = list.removeAt(0) else {
@@ -177,7 +184,7 @@ class SortedNodeQueue {
         return point
     }
 
-    fun nextContains(ancestor: Node?): Boolean =
+    override fun nextContains(ancestor: Node?): Boolean =
         list[0].contains(ancestor)
 
     private fun sortBack(index: Int) {
@@ -249,13 +256,13 @@ class SortedNodeQueue {
         originalPoint.index(mutableIndex)
     }
 
-    fun appendTo(point: Node, parent: Node, targetPoint: ThreeDimensionalIntVector): Boolean =
+    override fun appendTo(point: Node, parent: Node, targetPoint: ThreeDimensionalIntVector): Boolean =
         appendTo(
             point, parent, sqrt(Node.squareDelta(point, targetPoint).toDouble())
                 .toInt()
         )
 
-    fun appendTo(point: Node, parent: Node, remaining: Int): Boolean {
+    override fun appendTo(point: Node, parent: Node, remaining: Int): Boolean {
         val squareDelta: Int = Node.squareDelta(parent, point)
         val length = point.length()
         if (!point.assigned() || parent.length() + squareDelta < length * length && !point.passibility().betterThan(
@@ -274,7 +281,7 @@ class SortedNodeQueue {
         return false
     }
 
-    fun addLength(point: Node, diff: Int): Boolean {
+    override fun addLength(point: Node, diff: Int): Boolean {
         val journey0 = point.journey()
         point.addLength(diff)
         return resort(point, journey0)
@@ -284,7 +291,7 @@ class SortedNodeQueue {
         val journey = point!!.journey().toInt()
 
         if (point.assigned()) {
-            if (journey < journey0) sortBack(point.index().toInt()) else sortForward(point.index().toInt())
+            if (journey < journey0) sortBack(point.index()) else sortForward(point.index())
             return true
         }
 
@@ -293,10 +300,10 @@ class SortedNodeQueue {
     }
 
     /** The size of this [SortedNodeQueue] */
-    val size: Int
+    override val size: Int
         get() = list.size
 
-    val roots: Set<Node>
+    override val roots: Set<Node>
         get() = list.mapTo(HashSet(1), Node::root)
 
     override fun toString(): String = "$list"
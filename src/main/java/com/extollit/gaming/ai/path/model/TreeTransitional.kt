@@ -26,7 +26,7 @@ internal class TreeTransitional(nextRoot: Node) {
         return false
     }
 
-    fun finish(queue: SortedNodeQueue) {
+    fun finish(queue: INodeQueue) {
         val dq = dequeue
         var prev = nextRoot
         while (!dq.isEmpty()) {
@@ -0,0 +1,44 @@
+package com.extollit.gaming.ai.path.node
+
+import com.extollit.gaming.ai.path.model.OcclusionReach
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The greatest reach of all node calculators whose results are derived from the same blocks, it only ever grows so
+ * that a block change is reported to the sections of every result that was computed before it.
+ */
+internal class CalculatorReach {
+    private val reachXZ = AtomicInteger()
+    private val reachBelow = AtomicInteger()
+    private val reachAbove = AtomicInteger()
+
+    /**
+     * Grows this reach to cover the specified calculator, this must be done before computing any result with it
+     *
+     * @param calculator node calculator with its subject applied
+     */
+    fun include(calculator: IBoundedNodeCalculator) {
+        grow(reachXZ, calculator.reachXZ())
+        grow(reachBelow, calculator.reachBelow())
+        grow(reachAbove, calculator.reachAbove())
+    }
+
+    /**
+     * Visits each section containing a block whose computed passibility may depend on the specified block
+     *
+     * @param x absolute x coordinate of the block that changed
+     * @param y absolute y coordinate of the block that changed
+     * @param z absolute z coordinate of the block that changed
+     * @param visitor receives the x, y and z coordinates of each section
+     */
+    fun forEachSectionAffectedBy(x: Int, y: Int, z: Int, visitor: (Int, Int, Int) -> Unit) =
+        // Blocks depending on those beneath them lie above the change, and those depending on blocks above lie below
+        OcclusionReach.forEachSectionNear(x, y, z, reachXZ.get(), reachAbove.get(), reachBelow.get(), visitor)
+
+    private companion object {
+        // Reads first so that including the same reach again does not contend for the cache line
+        private fun grow(maximum: AtomicInteger, reach: Int) {
+            if (reach > maximum.get()) maximum.accumulateAndGet(reach) { a, b -> maxOf(a, b) }
+        }
+    }
+}
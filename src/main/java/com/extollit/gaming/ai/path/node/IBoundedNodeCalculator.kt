@@ -0,0 +1,17 @@
+package com.extollit.gaming.ai.path.node
+
+/**
+ * A node calculator that can also tell how far from a block lie the blocks that the passibility computed for that block
+ * depends on, for the subject last applied.  Caches of calculator results need this to discard the results a block
+ * change may affect.  Only the calculators of this library implement this, results of other calculators are not cached.
+ */
+internal interface IBoundedNodeCalculator : INodeCalculator {
+    /** Horizontal distance along either axis from a block to the farthest block its passibility depends on */
+    fun reachXZ(): Int
+
+    /** Vertical distance below a block to the lowest block its passibility depends on */
+    fun reachBelow(): Int
+
+    /** Vertical distance above a block to the highest block its passibility depends on */
+    fun reachAbove(): Int
+}
@@ -0,0 +1,21 @@
+package com.extollit.gaming.ai.path.node
+
+import com.extollit.gaming.ai.path.model.FlagSampler
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * A node calculator that can also enumerate the moves onto a node that cannot be reversed, which bidirectional
+ * searches need to find every move onto a node when searching backward from a destination.  Only the calculators of
+ * this library implement this, path-finders using other calculators search forward only.
+ */
+internal interface IDropAwareNodeCalculator : INodeCalculator {
+    /**
+     * Finds the ledges that an entity may drop from onto the node at the specified coordinates, these are the moves
+     * computed by [passibleNodeNear] onto the node that cannot be reversed by moving back off it.
+     *
+     * @param coords coordinates of a passible node computed by this calculator
+     * @param flagSampler samples the occlusion flags around the node
+     * @return coordinates at which the entity would stand on each ledge, empty if there are none
+     */
+    fun ledgesAbove(coords: ThreeDimensionalIntVector, flagSampler: FlagSampler): Collection<ThreeDimensionalIntVector>
+}
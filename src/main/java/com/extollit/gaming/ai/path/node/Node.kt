@@ -23,6 +23,9 @@ class Node {
     // TODO what is word?
     private var word = 0
 
+    /** Position of this node in the open-set that it is queued in, -1 if it is not queued */
+    private var index = -1
+
     /** The previous node of this node. If this node is a root, there won't be a parent. */
     var parent: Node? = null
         private set
@@ -46,7 +49,7 @@ class Node {
     ) {
         coordinates = key
         word =
-            Mask_512 shl Index_BitOffs.toInt() or (gravitation!!.ordinal and Mask_Gravitation.toInt() shl Gravitation_BitOffs.toInt()) or (passibility.ordinal and Mask_Passibility.toInt()) or ((if (volatility) 1 else 0) shl Volatile_BitOffs.toInt())
+            (gravitation!!.ordinal and Mask_Gravitation.toInt() shl Gravitation_BitOffs.toInt()) or (passibility.ordinal and Mask_Passibility.toInt()) or ((if (volatility) 1 else 0) shl Volatile_BitOffs.toInt())
     }
 
 
@@ -84,7 +87,7 @@ class Node {
      *
      * @return whether this entity can path to this point
      */
-    fun passibility(): Passibility = Passibility.values()[word and Mask_Passibility.toInt()]
+    fun passibility(): Passibility = PASSIBILITIES[word and Mask_Passibility.toInt()]
 
     fun passibility(passibility: Passibility?) {
         var mutablePassibility = passibility
@@ -98,7 +101,7 @@ class Node {
      *
      * @return the gravitation of the path point
      */
-    fun gravitation(): Gravitation = Gravitation.values()[word shr Gravitation_BitOffs.toInt() and Mask_Gravitation.toInt()]
+    fun gravitation(): Gravitation = GRAVITATIONS[word shr Gravitation_BitOffs.toInt() and Mask_Gravitation.toInt()]
 
     fun gravitation(gravitation: Gravitation) {
         word =
@@ -122,18 +125,16 @@ class Node {
 
     fun reset() {
         word = wordReset(this)
+        index = -1
     }
 
     fun rollback(): Unit = reset()
 
-    fun index(): Short {
-        val index = (word shr Index_BitOffs.toInt() and Mask_512).toShort()
-        return if (index.toInt() == Mask_512) -1 else index
-    }
+    fun index(): Int = index
 
     fun index(index: Int): Boolean {
-        if (index >= Mask_512 || index < -1) return false
-        word = word and (Mask_512 shl Index_BitOffs.toInt()).inv() or (index and Mask_512 shl Index_BitOffs.toInt())
+        if (index < -1) return false
+        this.index = index
         return true
     }
 
@@ -155,7 +156,7 @@ class Node {
         word = word and (1 shl Volatile_BitOffs.toInt()).inv() or if (flag) 1 shl Volatile_BitOffs.toInt() else 0
     }
 
-    fun assigned(): Boolean = index().toInt() != -1
+    fun assigned(): Boolean = index != -1
 
     fun target(targetPoint: ThreeDimensionalIntVector?): Boolean {
         val distance = sqrt(squareDelta(this, targetPoint).toDouble())
@@ -256,9 +257,9 @@ class Node {
             Gravitation.buoyant -> sb.append('~')
             else -> Unit
         }
-        if (index.toInt() == -1) sb.append(" (unassigned)") else {
+        if (index == -1) sb.append(" (unassigned)") else {
             sb.append(" @ ")
-            sb.append(index.toInt())
+            sb.append(index)
         }
         var length = "${length()}"
         if (dirty()) length += '*'
@@ -281,13 +282,14 @@ class Node {
     }
 
     companion object {
+        private val PASSIBILITIES = Passibility.values()
+        private val GRAVITATIONS = Gravitation.values()
+
         /* Magic Bytes. No idea.  */
-        private const val BitWidth_512: Byte = 9
         private const val BitWidth_128: Byte = 7
         private const val Mask_Passibility = 3.toByte()
         private const val Mask_Gravitation = 3.toByte()
-        private const val Index_BitOffs: Byte = 2
-        private const val Volatile_BitOffs = (Index_BitOffs + BitWidth_512).toByte()
+        private const val Volatile_BitOffs: Byte = 2
         private const val Length_BitOffs = (Volatile_BitOffs + 1).toByte()
         private const val Remain_BitOffs = (Length_BitOffs + BitWidth_128).toByte()
         private const val Visited_BitOffs = (Remain_BitOffs + BitWidth_128).toByte()
@@ -295,12 +297,13 @@ class Node {
         private const val LengthDirty_BitOffs = (Gravitation_BitOffs + 2).toByte()
         const val MAX_PATH_DISTANCE: Short = ((1 shl BitWidth_128.toInt()) - 1).toShort()
         private const val Mask_128 = MAX_PATH_DISTANCE.toInt()
-        private const val Mask_512 = (1 shl BitWidth_512.toInt()) - 1
-        const val MAX_INDICES: Int = (1 shl BitWidth_512.toInt()) - 1
+
+        /** Maximum number of nodes that a [com.extollit.gaming.ai.path.model.SortedNodeQueue] holds before culling */
+        const val MAX_INDICES: Int = (1 shl 9) - 1
 
 
         private fun wordReset(copy: Node): Int =
-            copy.word and ((Mask_Passibility or ((1 shl Volatile_BitOffs.toInt()).toByte()) or (Mask_Gravitation shl Gravitation_BitOffs)).toInt()) or (Mask_512 shl Index_BitOffs.toInt() or (1 shl LengthDirty_BitOffs.toInt()))
+            copy.word and (Mask_Passibility.toInt() or (1 shl Volatile_BitOffs.toInt()) or (Mask_Gravitation.toInt() shl Gravitation_BitOffs.toInt())) or (1 shl LengthDirty_BitOffs.toInt())
 
         fun squareDelta(left: Node?, right: Node?): Int = squareDelta(left, right!!.coordinates)
 
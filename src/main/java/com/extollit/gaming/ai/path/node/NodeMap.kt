@@ -1,7 +1,9 @@
 package com.extollit.gaming.ai.path.node
 
+import com.extollit.gaming.ai.path.jfr.FlightRecorder
+import com.extollit.gaming.ai.path.jfr.OcclusionWindowEvent
 import com.extollit.gaming.ai.path.model.*
-import com.extollit.gaming.ai.path.vector.SparseThreeDimensionalSpatialMap
+import com.extollit.gaming.ai.path.vector.PackedThreeDimensionalSpatialMap
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIIntBox
 import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
 
@@ -10,14 +12,24 @@ class NodeMap(
     private var calculator: INodeCalculator?,
     private val occlusionProviderFactory: IOcclusionProviderFactory
 ) {
-    private val internalMap = SparseThreeDimensionalSpatialMap<Node>(3)
+    private val internalMap = PackedThreeDimensionalSpatialMap<Node>(3)
     private var filter: IGraphNodeFilter? = null
     private var occlusionProvider: IOcclusionProvider? = null
+    private var passibilityCache: PassibilityCache? = null
+    private var fingerprint = 0L
     private var centerX0 = 0
     private var centerXN = 0
     private var centerZ0 = 0
     private var centerZN = 0
 
+    /** The number of nodes computed by the node calculator (or passibility cache) since this map was created */
+    var calculations = 0L
+        private set
+
+    /** The number of nodes answered from this map without computing them since this map was created */
+    var hits = 0L
+        private set
+
     constructor(
         instanceSpace: IInstanceSpace,
         occlusionProviderFactory: IOcclusionProviderFactory
@@ -35,12 +47,23 @@ class NodeMap(
         clear()
     }
 
-    fun reset(queue: SortedNodeQueue) {
-        for (p in internalMap.values) p!!.rollback()
+    /**
+     * Consults a shared passibility cache before the calculator, see [PassibilityCache]
+     *
+     * @param passibilityCache cache shared with other node maps, null to always use the calculator
+     * @param fingerprint fingerprint of the entity the calculator was last applied to
+     */
+    fun passibilityCache(passibilityCache: PassibilityCache?, fingerprint: Long) {
+        this.passibilityCache = passibilityCache
+        this.fingerprint = fingerprint
+    }
+
+    fun reset(queue: INodeQueue) {
+        for (p in internalMap.values) p.rollback()
         queue.clear()
     }
 
-    fun cullBranchAt(coordinates: ThreeDimensionalIntVector?, queue: SortedNodeQueue) {
+    fun cullBranchAt(coordinates: ThreeDimensionalIntVector, queue: INodeQueue) {
         val node = internalMap[coordinates] ?: return
         val parent = node.parent
         queue.cullBranch(node)
@@ -53,6 +76,7 @@ class NodeMap(
 
     fun reset() {
         clear()
+        release(occlusionProvider)
         occlusionProvider = null
     }
 
@@ -82,7 +106,11 @@ class NodeMap(
                         || czN > centerZN
 
         if (aop == null || windowTest) {
+            val event = if (FlightRecorder.AVAILABLE) OcclusionWindowEvent.begin() else null
             occlusionProvider = occlusionProviderFactory.fromInstanceSpace(instanceSpace, cx0, cz0, cxN, czN)
+            if (event != null)
+                OcclusionWindowEvent.commit(event, occlusionProviderFactory.javaClass, cx0, cz0, cxN, czN)
+            release(aop)
             centerX0 = cx0
             centerZ0 = cz0
             centerXN = cxN
@@ -91,6 +119,14 @@ class NodeMap(
         }
     }
 
+    /**
+     * Occlusion providers that hold shared resources (such as windows obtained from an
+     * [com.extollit.gaming.ai.path.OcclusionService]) are closed once they are no longer used by this map
+     */
+    private fun release(occlusionProvider: IOcclusionProvider?) {
+        if (occlusionProvider is AutoCloseable) occlusionProvider.close()
+    }
+
     fun all(): Collection<Node?> = internalMap.values
 
     fun cullOutside(x0: Int, z0: Int, xN: Int, zN: Int) {
@@ -117,13 +153,22 @@ class NodeMap(
             point = passibleNodeNear(coords, null)
             if (point.coordinates != coords) point = Node(coords, Passibility.impassible, false)
             internalMap[coords] = point
-        }
+        } else hits++
         return point
     }
 
     fun cachedPassiblePointNear(x: Int, y: Int, z: Int): Node = cachedPassiblePointNear(x, y, z, null)
 
     fun cachedPassiblePointNear(x0: Int, y0: Int, z0: Int, origin: ThreeDimensionalIntVector?): Node {
+        val point0 = internalMap[x0, y0, z0]
+        if (point0 != null && !point0.volatile_()) {
+            val coordinates = point0.coordinates
+            if (coordinates.contains(x0, y0, z0) || internalMap[coordinates] === point0) {
+                hits++
+                return point0
+            }
+        }
+
         val coords0 = ThreeDimensionalIntVector(x0, y0, z0)
         return cachedPassiblePointNear(coords0, origin)
     }
@@ -139,7 +184,7 @@ class NodeMap(
                 point0.volatile_(point.volatile_())
                 point = point0
             } else point0.isolate()
-        }
+        } else hits++
         if (coords != point.coordinates) {
             val existing = nodeMap[point.coordinates]
             if (existing == null) nodeMap[point.coordinates] = point else point = existing
@@ -149,7 +194,13 @@ class NodeMap(
     }
 
     private fun passibleNodeNear(coordinates: ThreeDimensionalIntVector, origin: ThreeDimensionalIntVector?): Node {
-        val node = calculator!!.passibleNodeNear(coordinates, origin, FlagSampler(occlusionProvider))
+        val passibilityCache = passibilityCache
+        calculations++
+        val node =
+            if (passibilityCache == null)
+                calculator!!.passibleNodeNear(coordinates, origin, FlagSampler(occlusionProvider))
+            else
+                passibilityCache.passibleNodeNear(fingerprint, coordinates, origin, calculator!!, occlusionProvider)
         val filter = filter
         if (filter != null) {
             val newPassibility = filter.mapPassibility(node)
@@ -158,6 +209,17 @@ class NodeMap(
         return node
     }
 
+    /** Whether the calculator can find the drops onto nodes, see [IDropAwareNodeCalculator] */
+    internal val dropAware: Boolean
+        get() = calculator is IDropAwareNodeCalculator
+
+    /**
+     * Finds the ledges that an entity may drop from onto the node at the specified coordinates, only valid if
+     * [dropAware], see [IDropAwareNodeCalculator.ledgesAbove]
+     */
+    internal fun ledgesAbove(coordinates: ThreeDimensionalIntVector): Collection<ThreeDimensionalIntVector> =
+        (calculator as IDropAwareNodeCalculator).ledgesAbove(coordinates, FlagSampler(occlusionProvider))
+
     fun remove(x: Int, y: Int, z: Int): Boolean = remove(ThreeDimensionalIntVector(x, y, z))
 
     fun remove(coordinates: ThreeDimensionalIntVector): Boolean {
@@ -0,0 +1,230 @@
+package com.extollit.gaming.ai.path.node
+
+import com.extollit.gaming.ai.path.model.FlagSampler
+import com.extollit.gaming.ai.path.model.Gravitation
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionFieldListener
+import com.extollit.gaming.ai.path.model.IOcclusionProvider
+import com.extollit.gaming.ai.path.model.Passibility
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Bounded cache of node calculator results shared by the node maps of all path-finders in an instance space, so that
+ * entities with the same capabilities and size do not each re-derive the passibility of the same blocks (see
+ * [com.extollit.gaming.ai.path.HydrazinePathFinder.withPassibilityCache]).
+ *
+ * Results are keyed by the fingerprint of the entity (see [com.extollit.gaming.ai.path.PathCache.fingerprintOf]), the
+ * coordinates of the block and the delta from the origin block when it is adjacent, they are held in a direct-mapped
+ * table where colliding results replace one another.  Results that are volatile, that were computed from a
+ * non-adjacent origin or by a calculator that is not of this library are never cached.
+ *
+ * Each section has a version that is incremented whenever a block changes that lies within reach of any block in the
+ * section, cached results recorded under an older version of their section are ignored.  The reach grows to that of
+ * the calculators computing results (see [IBoundedNodeCalculator]), so that it follows the size of the entities and the
+ * fall and swimming limits configured.  This cache attaches itself as a listener to the occlusion fields of the
+ * columnar spaces it caches results for and their neighbors (see
+ * [com.extollit.gaming.ai.path.model.ColumnarOcclusionFieldList.addListener]), results are not cached for blocks
+ * bordering columnar spaces that are not loaded.
+ *
+ * There should be one instance of this class for each instance space, it is safe for use by multiple threads.
+ *
+ * @param instance the instance space that the results are computed from
+ * @param capacity the number of results to retain, rounded up to a power of two
+ */
+class PassibilityCache @JvmOverloads constructor(
+    private val instance: IInstanceSpace,
+    capacity: Int = DEFAULT_CAPACITY
+) {
+    private val mask: Int
+    private val fingerprints: LongArray
+    private val cells: LongArray
+    private val results: LongArray
+    // Zero if empty, otherwise the origin delta, passibility, gravitation and a validity bit (see [wordOf])
+    private val words: IntArray
+    private val versions: IntArray
+
+    private val locks = Array(STRIPES) { Any() }
+
+    /** Section versions by hash of section coordinates, colliding sections share a version */
+    private val sectionVersions = AtomicIntegerArray(SECTION_SLOTS)
+
+    /** Packed (cx, 0, cz) coordinates of columnar spaces for which this and all neighbors are being listened to */
+    private val attached: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+
+    private val reach = CalculatorReach()
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    private val listener = object : IOcclusionFieldListener {
+        override fun onOcclusionChanged(x: Int, y: Int, z: Int) {
+            reach.forEachSectionAffectedBy(x, y, z) { cx, cy, cz ->
+                sectionVersions.incrementAndGet(sectionSlot(cx, cy, cz))
+            }
+        }
+
+        override fun onOcclusionReset(cx: Int, cz: Int) {
+            for (dz in -1..+1)
+                for (dx in -1..+1) {
+                    attached.remove(ThreeDimensionalIntVector.packed(cx + dx, 0, cz + dz))
+                    for (cy in 0 until WORLD_SECTIONS)
+                        sectionVersions.incrementAndGet(sectionSlot(cx + dx, cy, cz + dz))
+                }
+        }
+    }
+
+    init {
+        require(capacity > 0) { "Passibility cache must have room for at least one result" }
+        val size = if (capacity == 1) 1 else Integer.highestOneBit(capacity - 1) shl 1
+        mask = size - 1
+        fingerprints = LongArray(size)
+        cells = LongArray(size)
+        results = LongArray(size)
+        words = IntArray(size)
+        versions = IntArray(size)
+    }
+
+    /** The number of calculations answered from this cache */
+    val hitCount: Long
+        get() = hits.sum()
+
+    /** The number of calculations that were not answered from this cache */
+    val missCount: Long
+        get() = misses.sum()
+
+    /**
+     * Answers the passible node near the specified coordinates from this cache, or computes it with the specified
+     * calculator and caches the result.
+     *
+     * @param fingerprint fingerprint of the entity the calculator was applied to
+     * @param coordinates coordinates of the block to compute passibility of
+     * @param origin coordinates of the block moved from, null if there is none
+     * @param calculator node calculator to compute the node with when it is not cached
+     * @param occlusionProvider occlusion data to compute the node from when it is not cached
+     * @return a node owned by the caller
+     */
+    internal fun passibleNodeNear(
+        fingerprint: Long,
+        coordinates: ThreeDimensionalIntVector,
+        origin: ThreeDimensionalIntVector?,
+        calculator: INodeCalculator,
+        occlusionProvider: IOcclusionProvider?
+    ): Node {
+        val delta = deltaOf(coordinates, origin)
+        if (delta < 0 || calculator !is IBoundedNodeCalculator)
+            return calculator.passibleNodeNear(coordinates, origin, FlagSampler(occlusionProvider))
+
+        reach.include(calculator)
+        val cell = coordinates.packed()
+        val version = sectionVersions.get(sectionSlot(coordinates.x shr 4, coordinates.y shr 4, coordinates.z shr 4))
+        val i = slot(fingerprint, cell, delta)
+        synchronized(locks[i and STRIPES - 1]) {
+            val word = words[i]
+            if (word != 0 && word and DELTA_MASK == delta && cells[i] == cell && fingerprints[i] == fingerprint
+                && versions[i] == version) {
+                val result = results[i]
+                hits.increment()
+                return Node(
+                    if (result == cell) coordinates else ThreeDimensionalIntVector(
+                        ThreeDimensionalIntVector.unpackX(result),
+                        ThreeDimensionalIntVector.unpackY(result),
+                        ThreeDimensionalIntVector.unpackZ(result)
+                    ),
+                    PASSIBILITIES[word shr PASSIBILITY_OFFSET and 0xFF],
+                    false,
+                    GRAVITATIONS[word shr GRAVITATION_OFFSET and 0xFF]
+                )
+            }
+        }
+
+        misses.increment()
+        val node = calculator.passibleNodeNear(coordinates, origin, FlagSampler(occlusionProvider))
+        if (!node.volatile_() && attachedAround(coordinates.x shr 4, coordinates.z shr 4)) {
+            val word = delta or
+                (node.passibility().ordinal shl PASSIBILITY_OFFSET) or
+                (node.gravitation().ordinal shl GRAVITATION_OFFSET)
+            synchronized(locks[i and STRIPES - 1]) {
+                fingerprints[i] = fingerprint
+                cells[i] = cell
+                results[i] = node.coordinates.packed()
+                words[i] = word
+                versions[i] = version
+            }
+        }
+        return node
+    }
+
+    /**
+     * Discards all cached results
+     */
+    fun clear() {
+        for (stripe in 0 until STRIPES)
+            synchronized(locks[stripe]) {
+                var i = stripe
+                while (i < words.size) {
+                    words[i] = 0
+                    i += STRIPES
+                }
+            }
+    }
+
+    /**
+     * Attaches the listener to a columnar space and all of its neighbors unless this was already done
+     *
+     * @return false if the columnar space or any of its neighbors is not loaded
+     */
+    private fun attachedAround(cx: Int, cz: Int): Boolean {
+        val key = ThreeDimensionalIntVector.packed(cx, 0, cz)
+        if (key in attached) return true
+        for (dz in -1..+1)
+            for (dx in -1..+1) {
+                val columnarSpace = instance.columnarSpaceAt(cx + dx, cz + dz) ?: return false
+                columnarSpace.occlusionFields().addListener(listener)
+            }
+        attached.add(key)
+        return true
+    }
+
+    private fun slot(fingerprint: Long, cell: Long, delta: Int): Int {
+        val h = (cell * 31 + fingerprint) * -0x61c8864680b583ebL + delta
+        return (h xor (h ushr 29)).toInt() and mask
+    }
+
+    companion object {
+        /** The default number of results retained */
+        const val DEFAULT_CAPACITY = 1 shl 16
+
+        private const val STRIPES = 64
+        private const val SECTION_SLOTS = 4096
+        private const val WORLD_SECTIONS = 16
+
+        private const val DELTA_MASK = 0xFF
+        private const val PASSIBILITY_OFFSET = 8
+        private const val GRAVITATION_OFFSET = 16
+
+        private val PASSIBILITIES = Passibility.values()
+        private val GRAVITATIONS = Gravitation.values()
+
+        private fun sectionSlot(cx: Int, cy: Int, cz: Int): Int {
+            val h = ThreeDimensionalIntVector.packed(cx, cy, cz) * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and SECTION_SLOTS - 1
+        }
+
+        /**
+         * Encodes the delta from the origin block to a block, zero is never returned
+         *
+         * @return the encoded delta, or -1 if the origin is not adjacent and so the result should not be cached
+         */
+        private fun deltaOf(coordinates: ThreeDimensionalIntVector, origin: ThreeDimensionalIntVector?): Int {
+            if (origin == null) return 1
+            val dx = coordinates.x - origin.x
+            val dy = coordinates.y - origin.y
+            val dz = coordinates.z - origin.z
+            if (dx < -1 || dx > 1 || dy < -1 || dy > 1 || dz < -1 || dz > 1) return -1
+            return 2 + (dx + 1) + (dy + 1) * 3 + (dz + 1) * 9
+        }
+    }
+}
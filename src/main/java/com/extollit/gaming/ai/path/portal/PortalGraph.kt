@@ -0,0 +1,325 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionFieldListener
+import com.extollit.gaming.ai.path.model.OcclusionReach
+import com.extollit.gaming.ai.path.vector.PackedThreeDimensionalSpatialMap
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.math.abs
+
+/**
+ * Hierarchical (HPA*-style) abstract graph over an instance space for long-range searches.  The instance is divided
+ * into 16x16x16 sections (the same extent as an occlusion field), the nodes of the abstract graph are portals on the
+ * boundaries between neighboring sections and its edges are the travel costs between the portals of each section.
+ * Searching this graph is far cheaper than searching the block graph so it can span hundreds of blocks, the resulting
+ * [Route] is then refined leg by leg with conventional path-finding (see [com.extollit.gaming.ai.path.HydrazinePathFinder.withPortalGraph]).
+ *
+ * Sections are computed lazily as searches reach them and are retained until the terrain they depend on changes.  This
+ * graph attaches itself as a listener to the occlusion fields of every columnar space it reads (see
+ * [com.extollit.gaming.ai.path.model.ColumnarOcclusionFieldList.addListener]), a block change only marks the few
+ * sections whose connectivity it can affect as dirty.  Dirty sections are discarded before the next search and are
+ * recomputed either on demand by a search or ahead of time by [repair], which should be called periodically (e.g. once
+ * per tick) with a time budget so that recomputation keeps up with frequent block changes without causing spikes.
+ *
+ * This also answers whether a destination is definitely unreachable (see [unreachable]) using a relaxed movement model
+ * labelled into connected regions per section, so that hopeless path-finding requests can be refused before any search.
+ *
+ * The walkability model of this graph is a coarse approximation intended for grounded entities roughly one block wide
+ * and two blocks tall, routes are guidance and are not guaranteed to be traversable by every entity.
+ *
+ * There should be one instance of this class for each instance space, it is safe for use by multiple threads.
+ *
+ * @param instance the instance space to compute routes in
+ * @param searchLimit the maximum number of abstract nodes a single search will expand before giving up
+ * @param reachLimit the maximum number of sections explored when determining whether a destination is unreachable
+ */
+class PortalGraph @JvmOverloads constructor(
+    private val instance: IInstanceSpace,
+    private val searchLimit: Int = DEFAULT_SEARCH_LIMIT,
+    reachLimit: Int = DEFAULT_REACH_LIMIT
+) {
+    private class Entry(val cell: Long, val cost: Int, val estimate: Int, val parent: Entry?)
+
+    /** Packed coordinates of sections that were affected by terrain changes, written by any thread */
+    private val dirty: MutableSet<Long> = ConcurrentHashMap.newKeySet()
+    /** Packed coordinates of sections that were discarded as dirty and should be recomputed by [repair] */
+    private val repairs: MutableSet<Long> = LinkedHashSet()
+
+    private val listener = object : IOcclusionFieldListener {
+        override fun onOcclusionChanged(x: Int, y: Int, z: Int) {
+            // A block affects whether the cells up to three below and two above it can be stood in or moved through,
+            // as well as the crossings from horizontally adjacent cells
+            OcclusionReach.forEachSectionNear(x, y, z, 1, 3, 2) { cx, cy, cz ->
+                dirty.add(ThreeDimensionalIntVector.packed(cx, cy, cz))
+            }
+        }
+
+        override fun onOcclusionReset(cx: Int, cz: Int) = markColumnsDirty(cx, cz)
+    }
+
+    private val terrain = Terrain(instance, listener)
+    private val sections = PackedThreeDimensionalSpatialMap<Section>(0)
+    private val reachability = Reachability(terrain, reachLimit)
+
+    /** The number of sections whose abstract graph data is currently retained */
+    val sectionCount: Int
+        @Synchronized get() = sections.size
+
+    /** The number of discarded sections awaiting recomputation by [repair] */
+    val pendingRepairs: Int
+        @Synchronized get() {
+            flush()
+            return repairs.size
+        }
+
+    fun route(source: ThreeDimensionalIntVector, destination: ThreeDimensionalIntVector): Route? =
+        route(source.x, source.y, source.z, destination.x, destination.y, destination.z)
+
+    /**
+     * Computes a coarse route between two locations by searching the abstract graph.  The source and destination are
+     * snapped to a nearby cell that can be stood in.
+     *
+     * @return a route from the source to the destination, null if the destination is unreachable from the source or
+     * if the search limit was exceeded
+     */
+    @Synchronized
+    fun route(sx: Int, sy: Int, sz: Int, tx: Int, ty: Int, tz: Int): Route? {
+        val terrain = terrain
+        flush()
+        try {
+            val source = terrain.snap(sx, sy, sz) ?: return null
+            val destination = terrain.snap(tx, ty, tz) ?: return null
+            return search(source, destination)
+        } finally {
+            terrain.clear()
+        }
+    }
+
+    fun unreachable(source: ThreeDimensionalIntVector, destination: ThreeDimensionalIntVector): Boolean =
+        unreachable(source.x, source.y, source.z, destination.x, destination.y, destination.z)
+
+    /**
+     * Determines whether a destination is definitely unreachable from a source by any grounded or swimming entity.  The
+     * first query involving an area explores it to a bounded extent, subsequent queries involving the same areas are
+     * answered in constant time until the terrain there changes.  This is conservative: a false result does not mean
+     * that the destination is reachable, only that it could not be proven unreachable (for example because the
+     * exploration limit was reached or a columnar space was not loaded).
+     *
+     * @return true if the destination is definitely unreachable from the source
+     */
+    @Synchronized
+    fun unreachable(sx: Int, sy: Int, sz: Int, tx: Int, ty: Int, tz: Int): Boolean {
+        flush()
+        try {
+            return reachability.unreachable(sx, sy, sz, tx, ty, tz)
+        } finally {
+            terrain.clear()
+        }
+    }
+
+    private fun search(source: Long, destination: Long): Route? {
+        val terrain = terrain
+        val tx = ThreeDimensionalIntVector.unpackX(destination)
+        val tz = ThreeDimensionalIntVector.unpackZ(destination)
+        val sourceSection = sectionOf(source)
+        val destinationSection = sectionOf(destination)
+        val destinationCosts = destinationSection.costsFrom(terrain, destination)
+
+        val best = PackedThreeDimensionalSpatialMap<Entry>(0)
+        val open = PriorityQueue<Entry>(64) { a, b -> a.estimate.compareTo(b.estimate) }
+        fun relax(cell: Long, cost: Int, parent: Entry) {
+            val existing = best[cell]
+            if (existing != null && existing.cost <= cost) return
+            val estimate = cost +
+                    abs(ThreeDimensionalIntVector.unpackX(cell) - tx) +
+                    abs(ThreeDimensionalIntVector.unpackZ(cell) - tz)
+            val entry = Entry(cell, cost, estimate, parent)
+            best.put(cell, entry)
+            open.add(entry)
+        }
+
+        val origin = Entry(source, 0, 0, null)
+        if (sourceSection === destinationSection) {
+            val cost = sourceSection.costBetween(terrain, source, destination)
+            if (cost >= 0) relax(destination, cost, origin)
+        }
+        val sourceCosts = sourceSection.costsFrom(terrain, source)
+        for (i in sourceCosts.indices)
+            if (sourceCosts[i] >= 0) relax(sourceSection.nodes[i], sourceCosts[i], origin)
+
+        var expansions = 0
+        while (!open.isEmpty()) {
+            val entry = open.poll()
+            if (best[entry.cell] !== entry) continue
+            if (entry.cell == destination) return routeOf(entry)
+            if (++expansions > searchLimit) return null
+
+            val section = sectionOf(entry.cell)
+            val i = section.nodeIndexOf(entry.cell)
+            if (i < 0) continue
+
+            val nodes = section.nodes
+            val costs = section.costs
+            val n = nodes.size
+            for (j in 0 until n) {
+                val cost = costs[i * n + j]
+                if (cost > 0) relax(nodes[j], entry.cost + cost, entry)
+            }
+            val portalNodes = section.portalNodes
+            val portalExits = section.portalExits
+            for (p in portalNodes.indices)
+                if (portalNodes[p] == i) relax(portalExits[p], entry.cost + 1, entry)
+            if (section === destinationSection && destinationCosts[i] >= 0)
+                relax(destination, entry.cost + destinationCosts[i], entry)
+        }
+        return null
+    }
+
+    private fun routeOf(head: Entry): Route {
+        val cells = ArrayList<Long>()
+        var entry: Entry? = head
+        while (entry != null) {
+            if (cells.isEmpty() || cells[cells.size - 1] != entry.cell) cells.add(entry.cell)
+            entry = entry.parent
+        }
+        if (cells.size == 1) cells.add(head.cell)
+        cells.reverse()
+        return Route(
+            Array(cells.size) {
+                val cell = cells[it]
+                ThreeDimensionalIntVector(
+                    ThreeDimensionalIntVector.unpackX(cell),
+                    ThreeDimensionalIntVector.unpackY(cell),
+                    ThreeDimensionalIntVector.unpackZ(cell)
+                )
+            },
+            head.cost
+        )
+    }
+
+    private fun sectionOf(cell: Long): Section = sectionAt(
+        ThreeDimensionalIntVector.unpackX(cell) shr 4,
+        ThreeDimensionalIntVector.unpackY(cell) shr 4,
+        ThreeDimensionalIntVector.unpackZ(cell) shr 4
+    )
+
+    private fun sectionAt(cx: Int, cy: Int, cz: Int): Section {
+        val key = ThreeDimensionalIntVector.packed(cx, cy, cz)
+        var section = sections[key]
+        if (section == null) {
+            section = Section.build(terrain, cx, cy, cz)
+            sections.put(key, section)
+        }
+        return section
+    }
+
+    private fun markColumnsDirty(cx: Int, cz: Int) {
+        for (dz in -1..+1)
+            for (dx in -1..+1)
+                for (cy in 0 until (Terrain.WORLD_HEIGHT shr 4))
+                    dirty.add(ThreeDimensionalIntVector.packed(cx + dx, cy, cz + dz))
+    }
+
+    /**
+     * Discards all dirty sections, those that were retained are scheduled for recomputation
+     */
+    private fun flush() {
+        val iterator = dirty.iterator()
+        while (iterator.hasNext()) {
+            val key = iterator.next()
+            iterator.remove()
+            if (sections.remove(key) != null) repairs.add(key)
+            reachability.discard(key)
+        }
+    }
+
+    /**
+     * Recomputes sections that were discarded because their terrain changed until either there are none left or the
+     * time budget is exhausted, at least one section is recomputed if any are pending.  Columnar spaces that were not
+     * loaded when last read are also checked, sections bordering those that have since loaded are discarded.
+     *
+     * This may be called from any thread but blocks searches for its duration.
+     *
+     * @param budgetNanos the maximum amount of time to spend recomputing sections in nanoseconds
+     * @return the number of sections recomputed
+     */
+    @Synchronized
+    fun repair(budgetNanos: Long): Int {
+        val deadline = System.nanoTime() + budgetNanos
+        val terrain = terrain
+        val missingColumns = terrain.missingColumns
+        if (!missingColumns.isEmpty()) {
+            val iterator = missingColumns.iterator()
+            while (iterator.hasNext()) {
+                val key = iterator.next()
+                val cx = ThreeDimensionalIntVector.unpackX(key)
+                val cz = ThreeDimensionalIntVector.unpackZ(key)
+                if (instance.columnarSpaceAt(cx, cz) != null) {
+                    iterator.remove()
+                    markColumnsDirty(cx, cz)
+                }
+            }
+        }
+        flush()
+
+        var repaired = 0
+        try {
+            val iterator = repairs.iterator()
+            while (iterator.hasNext() && (repaired == 0 || System.nanoTime() < deadline)) {
+                val key = iterator.next()
+                iterator.remove()
+                if (sections[key] == null) {
+                    sections.put(
+                        key,
+                        Section.build(
+                            terrain,
+                            ThreeDimensionalIntVector.unpackX(key),
+                            ThreeDimensionalIntVector.unpackY(key),
+                            ThreeDimensionalIntVector.unpackZ(key)
+                        )
+                    )
+                    repaired++
+                }
+            }
+        } finally {
+            terrain.clear()
+        }
+        return repaired
+    }
+
+    /**
+     * Discards the abstract graph data of the specified section and its neighbors immediately.  This is not necessary
+     * for changes notified to the occlusion fields of a columnar space, those are tracked automatically.
+     *
+     * @param cx x section (chunk) coordinate
+     * @param cy y section coordinate
+     * @param cz z section (chunk) coordinate
+     */
+    @Synchronized
+    fun invalidate(cx: Int, cy: Int, cz: Int) {
+        for (dy in -1..+1)
+            for (dz in -1..+1)
+                for (dx in -1..+1)
+                    dirty.add(ThreeDimensionalIntVector.packed(cx + dx, cy + dy, cz + dz))
+        flush()
+    }
+
+    /**
+     * Discards all abstract graph data
+     */
+    @Synchronized
+    fun clear() {
+        dirty.clear()
+        repairs.clear()
+        terrain.missingColumns.clear()
+        sections.clear()
+        reachability.clear()
+    }
+
+    companion object {
+        const val DEFAULT_SEARCH_LIMIT = 16384
+        const val DEFAULT_REACH_LIMIT = 16
+    }
+}
@@ -0,0 +1,139 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.model.Element
+import com.extollit.gaming.ai.path.model.Logic
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * Relaxed movement model used to prove that a destination is unreachable.  Unlike [Terrain] this deliberately
+ * over-approximates what any grounded or swimming entity can do, so that if a cell cannot be reached under this model
+ * then no such entity can reach it with the ground node calculator either.
+ *
+ * A cell is occupiable if it is not a plain solid block (partial blocks, doors, ladders and fluids are all occupiable)
+ * and an entity can rest in an occupiable cell if it is supported from below, is a fluid or is climbable.  From a
+ * resting cell an entity can jump up onto any horizontally adjacent resting cell one block higher, walk into any
+ * horizontally adjacent occupiable cell and fall any distance, climb to the resting cell directly above it or descend
+ * into the occupiable cell directly below it.  Head-room and entity size are ignored.  Falls are one-way, so
+ * reachability under this model is directed.
+ */
+internal class Reach(private val terrain: Terrain) {
+    fun occupiable(x: Int, y: Int, z: Int): Boolean {
+        if (y < 0) return false
+        val flags = terrain.elementAt(x, y, z)
+        return !Element.earth.flagsIn(flags) || !Logic.nothing.flagsIn(flags)
+    }
+
+    fun rest(x: Int, y: Int, z: Int): Boolean {
+        if (!occupiable(x, y, z)) return false
+        if (y == 0) return true
+        val flags = terrain.elementAt(x, y, z)
+        if (Element.water.flagsIn(flags) || Element.fire.flagsIn(flags) || Logic.climbable(flags)) return true
+        val below = terrain.elementAt(x, y - 1, z)
+        return !Element.air.flagsIn(below)
+    }
+
+    /**
+     * Determines where an entity that enters the specified occupiable cell comes to rest
+     *
+     * @param maxDrop the maximum number of blocks to fall
+     * @return packed coordinates of the resting cell, null if the entity falls farther than permitted
+     */
+    private fun fall(x: Int, y: Int, z: Int, maxDrop: Int): Long? {
+        var yy = y
+        while (!rest(x, yy, z)) {
+            if (y - --yy > maxDrop) return null
+        }
+        return ThreeDimensionalIntVector.packed(x, yy, z)
+    }
+
+    /**
+     * Computes all cells directly reachable from the specified resting cell
+     *
+     * @param cell packed coordinates of a resting cell
+     * @param maxDrop the maximum number of blocks to fall, moves that fall farther are omitted
+     * @param out buffer receiving packed coordinates of reachable cells, must have room for [MAX_MOVES] entries
+     * @return the number of reachable cells written to the buffer, these may contain duplicates
+     */
+    fun moves(cell: Long, maxDrop: Int, out: LongArray): Int {
+        val x = ThreeDimensionalIntVector.unpackX(cell)
+        val y = ThreeDimensionalIntVector.unpackY(cell)
+        val z = ThreeDimensionalIntVector.unpackZ(cell)
+        var n = 0
+        val directions = Terrain.DIRECTIONS
+        var d = 0
+        while (d < directions.size) {
+            val nx = x + directions[d]
+            val nz = z + directions[d + 1]
+            d += 2
+            if (rest(nx, y + 1, nz)) out[n++] = ThreeDimensionalIntVector.packed(nx, y + 1, nz)
+            if (occupiable(nx, y, nz)) {
+                val landing = fall(nx, y, nz, maxDrop)
+                if (landing != null) out[n++] = landing
+            }
+        }
+        if (rest(x, y + 1, z)) out[n++] = ThreeDimensionalIntVector.packed(x, y + 1, z)
+        if (occupiable(x, y - 1, z)) {
+            val landing = fall(x, y - 1, z, maxDrop - 1)
+            if (landing != null) out[n++] = landing
+        }
+        return n
+    }
+
+    /**
+     * Computes all resting cells from which the specified resting cell is directly reachable, the inverse of [moves]
+     * with no limit on falls.
+     *
+     * @param cell packed coordinates of a resting cell
+     * @param visitor receives the packed coordinates of each predecessor, possibly more than once
+     */
+    inline fun predecessors(cell: Long, visitor: (Long) -> Unit) {
+        val x = ThreeDimensionalIntVector.unpackX(cell)
+        val y = ThreeDimensionalIntVector.unpackY(cell)
+        val z = ThreeDimensionalIntVector.unpackZ(cell)
+        val directions = Terrain.DIRECTIONS
+
+        // Jumped up from a horizontally adjacent cell below, or climbed up from directly below
+        var d = 0
+        while (d < directions.size) {
+            val px = x + directions[d]
+            val pz = z + directions[d + 1]
+            d += 2
+            if (rest(px, y - 1, pz)) visitor(ThreeDimensionalIntVector.packed(px, y - 1, pz))
+            if (rest(px, y, pz)) visitor(ThreeDimensionalIntVector.packed(px, y, pz))
+        }
+        if (rest(x, y - 1, z)) visitor(ThreeDimensionalIntVector.packed(x, y - 1, z))
+
+        // Walked off a horizontally adjacent cell above and fell, or descended from directly above
+        var yy = y + 1
+        while (yy < Terrain.WORLD_HEIGHT && occupiable(x, yy, z)) {
+            if (rest(x, yy, z)) {
+                visitor(ThreeDimensionalIntVector.packed(x, yy, z))
+                break
+            }
+            d = 0
+            while (d < directions.size) {
+                val px = x + directions[d]
+                val pz = z + directions[d + 1]
+                d += 2
+                if (rest(px, yy, pz)) visitor(ThreeDimensionalIntVector.packed(px, yy, pz))
+            }
+            yy++
+        }
+    }
+
+    /**
+     * Finds the cell an entity at the specified location rests in
+     *
+     * @return packed coordinates of the resting cell, null if there is none
+     */
+    fun snap(x: Int, y: Int, z: Int): Long? {
+        if (y < 0 || y >= Terrain.WORLD_HEIGHT) return null
+        for (yy in y..y + 1)
+            if (occupiable(x, yy, z)) return fall(x, yy, z, Terrain.WORLD_HEIGHT)
+        return null
+    }
+
+    companion object {
+        const val MAX_MOVES = 10
+    }
+}
@@ -0,0 +1,183 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.vector.PackedThreeDimensionalSpatialMap
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+
+/**
+ * The set of regions reachable from (forward) or that can reach (backward) some origin region under the [Reach]
+ * model.  A closure is closed if it was computed completely, otherwise it was abandoned after reaching the limit and
+ * only proves reachability of the regions it did visit.
+ */
+internal class Closure {
+    val regions = PackedThreeDimensionalSpatialMap<BitSet>(0)
+    /** Packed coordinates of every section this closure depends on */
+    val dependencies: MutableSet<Long> = HashSet()
+    var closed = false
+    var valid = true
+
+    fun contains(section: Long, region: Int): Boolean = regions[section]?.get(region) == true
+
+    fun add(section: Long, region: Int): Boolean {
+        var bits = regions[section]
+        if (bits == null) {
+            bits = BitSet()
+            regions.put(section, bits)
+        }
+        if (bits[region]) return false
+        bits.set(region)
+        return true
+    }
+}
+
+/**
+ * Answers whether a destination is definitely unreachable from a source in constant time once the relevant closures
+ * have been computed.  Each section is labelled with [Regions], then closures over those regions are computed lazily
+ * (bounded to a number of sections) and cached with the region they originate from until a section they depend on
+ * changes.  Not thread-safe, this is guarded by the owning [PortalGraph].
+ *
+ * A section labelled while its columnar space was not loaded has no regions at all, those labels are stale once it
+ * loads.  A resting cell found without a region is therefore never taken as proof of anything, its section is
+ * discarded and labelled afresh when next read.
+ */
+internal class Reachability(private val terrain: Terrain, private val limit: Int) {
+    private val reach = Reach(terrain)
+    private val sections = PackedThreeDimensionalSpatialMap<Regions>(0)
+    private val closures: MutableList<Closure> = ArrayList()
+    private val moves = LongArray(Reach.MAX_MOVES)
+
+    /**
+     * Determines whether a destination is definitely unreachable from a source
+     *
+     * @return true if no grounded or swimming entity can reach the destination from the source, false if it may be
+     * reachable or this could not be determined
+     */
+    fun unreachable(sx: Int, sy: Int, sz: Int, tx: Int, ty: Int, tz: Int): Boolean {
+        val source = reach.snap(sx, sy, sz) ?: return false
+        val destination = reach.snap(tx, ty, tz) ?: return false
+        val sourceRegions = regionsOf(source)
+        val destinationRegions = regionsOf(destination)
+        val sourceRegion = sourceRegions.regionOf(source)
+        val destinationRegion = destinationRegions.regionOf(destination)
+        if (sourceRegion < 0 || destinationRegion < 0) {
+            if (sourceRegion < 0) discard(sourceRegions.key)
+            if (destinationRegion < 0) discard(destinationRegions.key)
+            return false
+        }
+        if (sourceRegions === destinationRegions && sourceRegion == destinationRegion) return false
+
+        val forward = closureOf(sourceRegions, sourceRegion, true)
+        if (forward.contains(destinationRegions.key, destinationRegion)) return false
+        if (forward.closed) return true
+
+        val backward = closureOf(destinationRegions, destinationRegion, false)
+        return backward.closed && !backward.contains(sourceRegions.key, sourceRegion)
+    }
+
+    private fun regionsOf(cell: Long): Regions = regionsAt(
+        ThreeDimensionalIntVector.unpackX(cell) shr 4,
+        ThreeDimensionalIntVector.unpackY(cell) shr 4,
+        ThreeDimensionalIntVector.unpackZ(cell) shr 4
+    )
+
+    private fun regionsAt(cx: Int, cy: Int, cz: Int): Regions {
+        val key = ThreeDimensionalIntVector.packed(cx, cy, cz)
+        var regions = sections[key]
+        if (regions == null) {
+            regions = Regions.build(reach, cx, cy, cz)
+            sections.put(key, regions)
+        }
+        return regions
+    }
+
+    private fun closureOf(origin: Regions, region: Int, forward: Boolean): Closure {
+        val cache = if (forward) origin.forward else origin.backward
+        var closure = cache[region]
+        if (closure == null || !closure.valid) {
+            closure = compute(origin, region, forward)
+            cache[region] = closure
+            closures.add(closure)
+        }
+        return closure
+    }
+
+    private fun compute(origin: Regions, region: Int, forward: Boolean): Closure {
+        val closure = Closure()
+        val terrain = terrain
+        val missingReads = terrain.missingReads
+        var stale: MutableSet<Long>? = null
+        terrain.clear()
+        terrain.reads = closure.dependencies
+        try {
+            val pending = ArrayDeque<Regions>()
+            val pendingRegions = ArrayDeque<Int>()
+            closure.add(origin.key, region)
+            pending.add(origin)
+            pendingRegions.add(region)
+            var exceeded = false
+            fun visit(cell: Long) {
+                if (exceeded) return
+                val regions = regionsOf(cell)
+                val target = regions.regionOf(cell)
+                if (target < 0) {
+                    // Every cell visited is a resting cell, so the labels of its section are stale
+                    if (stale == null) stale = HashSet()
+                    stale!!.add(regions.key)
+                    return
+                }
+                if (!closure.add(regions.key, target)) return
+                if (closure.regions.size > limit)
+                    exceeded = true
+                else {
+                    pending.add(regions)
+                    pendingRegions.add(target)
+                }
+            }
+
+            while (!exceeded && !pending.isEmpty()) {
+                val regions = pending.poll()
+                val r = pendingRegions.poll()
+                closure.dependencies.add(regions.key)
+                regions.forEachCell(r) { cell ->
+                    if (forward) {
+                        val n = reach.moves(cell, Terrain.WORLD_HEIGHT, moves)
+                        for (m in 0 until n) visit(moves[m])
+                    } else
+                        reach.predecessors(cell) { visit(it) }
+                }
+            }
+            closure.closed = !exceeded && stale == null && terrain.missingReads == missingReads
+        } finally {
+            terrain.reads = null
+            terrain.clear()
+        }
+        stale?.let {
+            for (key in it) discard(key)
+            closure.valid = false
+        }
+        return closure
+    }
+
+    /**
+     * Discards the region labels of a section and every closure that depends on it
+     *
+     * @param key packed coordinates of the section that changed
+     */
+    fun discard(key: Long) {
+        sections.remove(key)
+        val iterator = closures.iterator()
+        while (iterator.hasNext()) {
+            val closure = iterator.next()
+            if (key in closure.dependencies) {
+                closure.valid = false
+                iterator.remove()
+            }
+        }
+    }
+
+    fun clear() {
+        sections.clear()
+        for (closure in closures) closure.valid = false
+        closures.clear()
+    }
+}
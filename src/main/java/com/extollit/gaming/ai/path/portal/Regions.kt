@@ -0,0 +1,142 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+import kotlin.math.abs
+
+/**
+ * Connected-component labels of the resting cells of one 16x16x16 section under the [Reach] model.  Two cells share a
+ * label (are in the same region) if they are connected by moves within the section that can be made in both
+ * directions, so every cell of a region can reach every other cell of the same region.  One-way moves (falls) and moves
+ * that leave the section are not considered here, they are followed when computing [Closure]s.
+ */
+internal class Regions private constructor(
+    val cx: Int,
+    val cy: Int,
+    val cz: Int,
+    /** Region of each cell in the section by local index, negative for cells that cannot be rested in */
+    private val labels: ShortArray,
+    /** Local indices of the resting cells of this section grouped by region */
+    private val members: ShortArray,
+    /** Offsets into [members] of each region, the cells of region r are at members[offsets[r] until offsets[r + 1]] */
+    private val offsets: IntArray
+) {
+    val key: Long
+        get() = ThreeDimensionalIntVector.packed(cx, cy, cz)
+
+    /** The number of regions in this section */
+    val count: Int
+        get() = offsets.size - 1
+
+    /** Closures computed from each region of this section, see [Reachability] */
+    val forward = arrayOfNulls<Closure>(count)
+    val backward = arrayOfNulls<Closure>(count)
+
+    /**
+     * Retrieves the region of the specified cell
+     *
+     * @param cell packed coordinates of a cell in this section
+     * @return the region containing the cell, negative if it cannot be rested in
+     */
+    fun regionOf(cell: Long): Int = labels[localIndexOf(cell)].toInt()
+
+    /**
+     * Visits the packed coordinates of every cell in the specified region
+     */
+    inline fun forEachCell(region: Int, visitor: (Long) -> Unit) {
+        val x0 = cx shl 4
+        val y0 = cy shl 4
+        val z0 = cz shl 4
+        for (i in memberOffset(region) until memberOffset(region + 1)) {
+            val li = memberAt(i)
+            visitor(ThreeDimensionalIntVector.packed(x0 + (li and 0xF), y0 + (li shr 8), z0 + (li shr 4 and 0xF)))
+        }
+    }
+
+    fun memberOffset(region: Int): Int = offsets[region]
+
+    fun memberAt(i: Int): Int = members[i].toInt()
+
+    companion object {
+        private const val VOLUME = 16 * 16 * 16
+
+        private fun localIndexOf(cell: Long): Int =
+            (ThreeDimensionalIntVector.unpackY(cell) and 0xF shl 8) or
+                    (ThreeDimensionalIntVector.unpackZ(cell) and 0xF shl 4) or
+                    (ThreeDimensionalIntVector.unpackX(cell) and 0xF)
+
+        /**
+         * Computes the region labels for the section at the specified section coordinates
+         */
+        fun build(reach: Reach, cx: Int, cy: Int, cz: Int): Regions {
+            val x0 = cx shl 4
+            val y0 = cy shl 4
+            val z0 = cz shl 4
+            val rest = BitSet(VOLUME)
+            for (li in 0 until VOLUME)
+                if (reach.rest(x0 + (li and 0xF), y0 + (li shr 8), z0 + (li shr 4 and 0xF)))
+                    rest.set(li)
+
+            val roots = IntArray(VOLUME) { it }
+            val moves = LongArray(Reach.MAX_MOVES)
+            val reverse = LongArray(Reach.MAX_MOVES)
+            var li = rest.nextSetBit(0)
+            while (li >= 0) {
+                val cell = ThreeDimensionalIntVector.packed(x0 + (li and 0xF), y0 + (li shr 8), z0 + (li shr 4 and 0xF))
+                val n = reach.moves(cell, 1, moves)
+                for (m in 0 until n) {
+                    val target = moves[m]
+                    if (ThreeDimensionalIntVector.unpackX(target) shr 4 != cx
+                        || ThreeDimensionalIntVector.unpackY(target) shr 4 != cy
+                        || ThreeDimensionalIntVector.unpackZ(target) shr 4 != cz
+                        || abs(ThreeDimensionalIntVector.unpackY(target) - (y0 + (li shr 8))) > 1
+                    ) continue
+
+                    val ti = localIndexOf(target)
+                    if (rootOf(roots, ti) == rootOf(roots, li)) continue
+                    val rn = reach.moves(target, 1, reverse)
+                    for (r in 0 until rn)
+                        if (reverse[r] == cell) {
+                            roots[rootOf(roots, ti)] = rootOf(roots, li)
+                            break
+                        }
+                }
+                li = rest.nextSetBit(li + 1)
+            }
+
+            val labels = ShortArray(VOLUME)
+            Arrays.fill(labels, -1)
+            val sizes = IntArray(VOLUME + 1)
+            var count = 0
+            li = rest.nextSetBit(0)
+            while (li >= 0) {
+                val root = rootOf(roots, li)
+                if (labels[root] < 0) labels[root] = (count++).toShort()
+                val label = labels[root].toInt()
+                labels[li] = label.toShort()
+                sizes[label + 1]++
+                li = rest.nextSetBit(li + 1)
+            }
+
+            val offsets = IntArray(count + 1)
+            for (r in 1..count) offsets[r] = offsets[r - 1] + sizes[r]
+            val members = ShortArray(offsets[count])
+            val cursors = offsets.copyOf()
+            li = rest.nextSetBit(0)
+            while (li >= 0) {
+                members[cursors[labels[li].toInt()]++] = li.toShort()
+                li = rest.nextSetBit(li + 1)
+            }
+            return Regions(cx, cy, cz, labels, members, offsets)
+        }
+
+        private fun rootOf(roots: IntArray, i: Int): Int {
+            var r = i
+            while (roots[r] != r) {
+                roots[r] = roots[roots[r]]
+                r = roots[r]
+            }
+            return r
+        }
+    }
+}
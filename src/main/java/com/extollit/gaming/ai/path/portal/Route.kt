@@ -0,0 +1,34 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * A coarse route computed by searching a [PortalGraph], this is a sequence of waypoints from the source to the
+ * destination where each consecutive pair of waypoints is either within the same section or straddles the boundary
+ * between two neighboring sections.  Callers refine each leg of the route with conventional path-finding.
+ *
+ * @param waypoints the waypoints of this route from source to destination inclusive
+ * @param cost the estimated number of moves required to traverse this route
+ */
+class Route internal constructor(
+    private val waypoints: Array<ThreeDimensionalIntVector>,
+    val cost: Int
+) {
+    /** The number of waypoints in this route including the source and destination */
+    val size: Int
+        get() = waypoints.size
+
+    /**
+     * Retrieves a waypoint of this route
+     *
+     * @param i index of the waypoint, zero being the source
+     * @return a waypoint along this route
+     */
+    operator fun get(i: Int): ThreeDimensionalIntVector = waypoints[i]
+
+    fun source(): ThreeDimensionalIntVector = waypoints[0]
+
+    fun destination(): ThreeDimensionalIntVector = waypoints[waypoints.size - 1]
+
+    override fun toString(): String = waypoints.joinToString(" -> ", "Route(cost=$cost: ", ")")
+}
@@ -0,0 +1,248 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+import java.util.*
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ * Abstract graph data for one 16x16x16 section (the extent of an occlusion field).  The portal nodes of a section are
+ * standable cells on its boundary from which a neighboring section can be entered, each contiguous run of such
+ * crossings between two sections is represented by a single portal at its middle.  Portals are chosen identically
+ * regardless of which of the two sections computes them, so the outer cell of every portal is also a portal node of
+ * the neighboring section.
+ */
+internal class Section private constructor(
+    val cx: Int,
+    val cy: Int,
+    val cz: Int,
+    private val standable: BitSet,
+    /** Packed coordinates of the portal nodes of this section */
+    val nodes: LongArray,
+    /** For each portal the index of its inner cell in [nodes] */
+    val portalNodes: IntArray,
+    /** For each portal the packed coordinates of its outer cell, a portal node of the neighboring section */
+    val portalExits: LongArray,
+    /** Travel costs between each pair of nodes within this section, row-major, negative where unreachable */
+    val costs: IntArray
+) {
+    val key: Long
+        get() = ThreeDimensionalIntVector.packed(cx, cy, cz)
+
+    fun nodeIndexOf(cell: Long): Int {
+        val nodes = nodes
+        for (i in nodes.indices)
+            if (nodes[i] == cell) return i
+        return -1
+    }
+
+    fun contains(cell: Long): Boolean =
+        ThreeDimensionalIntVector.unpackX(cell) shr 4 == cx
+                && ThreeDimensionalIntVector.unpackY(cell) shr 4 == cy
+                && ThreeDimensionalIntVector.unpackZ(cell) shr 4 == cz
+
+    /**
+     * Computes the travel cost from the specified cell to every portal node of this section without leaving it
+     *
+     * @param terrain walkability model to use
+     * @param cell packed coordinates of a standable cell in this section
+     * @return costs indexed like [nodes], negative for nodes that cannot be reached
+     */
+    fun costsFrom(terrain: Terrain, cell: Long): IntArray {
+        val distances = distancesFrom(terrain, cx, cy, cz, standable, cell)
+        return IntArray(nodes.size) { distances[localIndexOf(nodes[it])] }
+    }
+
+    /**
+     * Computes the travel cost between two cells of this section without leaving it
+     *
+     * @return the cost, negative if one cannot be reached from the other within this section
+     */
+    fun costBetween(terrain: Terrain, from: Long, to: Long): Int =
+        distancesFrom(terrain, cx, cy, cz, standable, from)[localIndexOf(to)]
+
+    private class Crossing(val inner: Long, val outer: Long, canonical: Boolean) {
+        val first = if (canonical) inner else outer
+        val second = if (canonical) outer else inner
+    }
+
+    companion object {
+        private const val SIZE = 16
+        private const val VOLUME = SIZE * SIZE * SIZE
+
+        private val CROSSING_ORDER = Comparator<Crossing> { a, b ->
+            val c = a.first.compareTo(b.first)
+            if (c != 0) c else a.second.compareTo(b.second)
+        }
+
+        private fun localIndexOf(cell: Long): Int =
+            (ThreeDimensionalIntVector.unpackY(cell) and 0xF shl 8) or
+                    (ThreeDimensionalIntVector.unpackZ(cell) and 0xF shl 4) or
+                    (ThreeDimensionalIntVector.unpackX(cell) and 0xF)
+
+        private fun chebyshev(a: Long, b: Long): Int = max(
+            abs(ThreeDimensionalIntVector.unpackX(a) - ThreeDimensionalIntVector.unpackX(b)),
+            max(
+                abs(ThreeDimensionalIntVector.unpackY(a) - ThreeDimensionalIntVector.unpackY(b)),
+                abs(ThreeDimensionalIntVector.unpackZ(a) - ThreeDimensionalIntVector.unpackZ(b))
+            )
+        )
+
+        /**
+         * Computes the abstract graph data for the section at the specified section coordinates
+         */
+        fun build(terrain: Terrain, cx: Int, cy: Int, cz: Int): Section {
+            val x0 = cx shl 4
+            val y0 = cy shl 4
+            val z0 = cz shl 4
+            val standable = BitSet(VOLUME)
+            for (dy in 0 until SIZE)
+                for (dz in 0 until SIZE)
+                    for (dx in 0 until SIZE)
+                        if (terrain.standable(x0 + dx, y0 + dy, z0 + dz))
+                            standable.set(dy shl 8 or (dz shl 4) or dx)
+
+            val key = ThreeDimensionalIntVector.packed(cx, cy, cz)
+            val groups = TreeMap<Long, MutableList<Crossing>>()
+            val directions = Terrain.DIRECTIONS
+            var li = standable.nextSetBit(0)
+            while (li >= 0) {
+                val x = x0 + (li and 0xF)
+                val y = y0 + (li shr 8)
+                val z = z0 + (li shr 4 and 0xF)
+                var d = 0
+                while (d < directions.size) {
+                    val nx = x + directions[d]
+                    val nz = z + directions[d + 1]
+                    for (ny in y - 1..y + 1) {
+                        val ncx = nx shr 4
+                        val ncy = ny shr 4
+                        val ncz = nz shr 4
+                        if (ncx == cx && ncy == cy && ncz == cz) continue
+                        if (!terrain.canMove(x, y, z, nx, ny, nz)) continue
+
+                        val neighbor = ThreeDimensionalIntVector.packed(ncx, ncy, ncz)
+                        var group = groups[neighbor]
+                        if (group == null) {
+                            group = ArrayList()
+                            groups[neighbor] = group
+                        }
+                        group.add(
+                            Crossing(
+                                ThreeDimensionalIntVector.packed(x, y, z),
+                                ThreeDimensionalIntVector.packed(nx, ny, nz),
+                                key < neighbor
+                            )
+                        )
+                    }
+                    d += 2
+                }
+                li = standable.nextSetBit(li + 1)
+            }
+
+            val portals: MutableList<Crossing> = ArrayList()
+            for (group in groups.values) {
+                Collections.sort(group, CROSSING_ORDER)
+                val n = group.size
+                val roots = IntArray(n) { it }
+                for (i in 0 until n)
+                    for (j in i + 1 until n) {
+                        val a = group[i]
+                        val b = group[j]
+                        if (chebyshev(a.inner, b.inner) <= 1 && chebyshev(a.outer, b.outer) <= 1)
+                            roots[rootOf(roots, j)] = rootOf(roots, i)
+                    }
+
+                val clusters = LinkedHashMap<Int, MutableList<Crossing>>()
+                for (i in 0 until n) {
+                    val root = rootOf(roots, i)
+                    var cluster = clusters[root]
+                    if (cluster == null) {
+                        cluster = ArrayList()
+                        clusters[root] = cluster
+                    }
+                    cluster.add(group[i])
+                }
+                for (cluster in clusters.values)
+                    portals.add(cluster[cluster.size / 2])
+            }
+
+            val nodeList: MutableList<Long> = ArrayList()
+            val portalNodes = IntArray(portals.size)
+            val portalExits = LongArray(portals.size)
+            for (p in portals.indices) {
+                val portal = portals[p]
+                var index = nodeList.indexOf(portal.inner)
+                if (index < 0) {
+                    index = nodeList.size
+                    nodeList.add(portal.inner)
+                }
+                portalNodes[p] = index
+                portalExits[p] = portal.outer
+            }
+
+            val nodes = LongArray(nodeList.size) { nodeList[it] }
+            val n = nodes.size
+            val costs = IntArray(n * n)
+            for (i in 0 until n) {
+                val distances = distancesFrom(terrain, cx, cy, cz, standable, nodes[i])
+                for (j in 0 until n)
+                    costs[i * n + j] = distances[localIndexOf(nodes[j])]
+            }
+
+            return Section(cx, cy, cz, standable, nodes, portalNodes, portalExits, costs)
+        }
+
+        private fun rootOf(roots: IntArray, i: Int): Int {
+            var r = i
+            while (roots[r] != r) {
+                roots[r] = roots[roots[r]]
+                r = roots[r]
+            }
+            return r
+        }
+
+        /**
+         * Breadth-first search over the standable cells of a section from the specified cell, moves that leave the
+         * section are not considered.
+         */
+        private fun distancesFrom(terrain: Terrain, cx: Int, cy: Int, cz: Int, standable: BitSet, cell: Long): IntArray {
+            val distances = IntArray(VOLUME)
+            Arrays.fill(distances, -1)
+            val start = localIndexOf(cell)
+            if (!standable[start]) return distances
+
+            val x0 = cx shl 4
+            val y0 = cy shl 4
+            val z0 = cz shl 4
+            val queue = IntArray(VOLUME)
+            var head = 0
+            var tail = 0
+            val directions = Terrain.DIRECTIONS
+            distances[start] = 0
+            queue[tail++] = start
+            while (head < tail) {
+                val li = queue[head++]
+                val dx = li and 0xF
+                val dy = li shr 8
+                val dz = li shr 4 and 0xF
+                val distance = distances[li] + 1
+                var d = 0
+                while (d < directions.size) {
+                    val ndx = dx + directions[d]
+                    val ndz = dz + directions[d + 1]
+                    d += 2
+                    if (ndx < 0 || ndz < 0 || ndx >= SIZE || ndz >= SIZE) continue
+                    for (ndy in max(dy - 1, 0)..minOf(dy + 1, SIZE - 1)) {
+                        val ni = ndy shl 8 or (ndz shl 4) or ndx
+                        if (distances[ni] >= 0 || !standable[ni]) continue
+                        if (!terrain.canMove(x0 + dx, y0 + dy, z0 + dz, x0 + ndx, y0 + ndy, z0 + ndz)) continue
+                        distances[ni] = distance
+                        queue[tail++] = ni
+                    }
+                }
+            }
+            return distances
+        }
+    }
+}
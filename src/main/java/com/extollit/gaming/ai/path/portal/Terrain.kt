@@ -0,0 +1,108 @@
+package com.extollit.gaming.ai.path.portal
+
+import com.extollit.gaming.ai.path.model.Element
+import com.extollit.gaming.ai.path.model.IInstanceSpace
+import com.extollit.gaming.ai.path.model.IOcclusionFieldListener
+import com.extollit.gaming.ai.path.model.OcclusionField
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector
+
+/**
+ * Coarse walkability model used by the abstract graph.  This deliberately approximates the ground node calculator for
+ * a one-by-two block entity: a cell can be stood in if it and the cell above it are passible (air or water) and it is
+ * either supported by an earth element or is itself water.  Moves are to one of the four horizontally adjacent cells
+ * either at the same level or stepping up or down by one block given enough head-room, moves are always symmetric.
+ *
+ * Cells in columnar spaces that are not loaded are treated as impassible, there is nothing to stand on below the world.
+ * The listener is attached to every columnar space this reads from so that it is notified when the terrain changes.
+ */
+internal class Terrain(private val instance: IInstanceSpace, private val listener: IOcclusionFieldListener) {
+    /** Packed (cx, 0, cz) coordinates of columnar spaces that were not loaded when they were read */
+    val missingColumns: MutableSet<Long> = HashSet()
+    /** The number of times a columnar space that was not loaded has been read from */
+    var missingReads = 0
+        private set
+    /** When set, receives the packed coordinates of every section read from */
+    var reads: MutableSet<Long>? = null
+
+    private var lastFieldKey = Long.MIN_VALUE
+    private var lastField: OcclusionField? = null
+
+    fun elementAt(x: Int, y: Int, z: Int): Byte {
+        if (y < 0) return Element.air.mask
+        if (y >= WORLD_HEIGHT) return Element.air.mask
+
+        val cx = x shr 4
+        val cy = y shr 4
+        val cz = z shr 4
+        val key = ThreeDimensionalIntVector.packed(cx, cy, cz)
+        var field = lastField
+        if (key != lastFieldKey || field == null) {
+            reads?.add(key)
+            val columnarSpace = instance.columnarSpaceAt(cx, cz)
+            if (columnarSpace == null) {
+                missingReads++
+                missingColumns.add(ThreeDimensionalIntVector.packed(cx, 0, cz))
+                return Element.earth.mask
+            }
+            val fields = columnarSpace.occlusionFields()
+            field = fields.occlusionFieldAt(cx, cy, cz)
+            fields.addListener(listener)
+            lastField = field
+            lastFieldKey = key
+        }
+        return field.elementAt(x and 0xF, y and 0xF, z and 0xF)
+    }
+
+    fun passible(x: Int, y: Int, z: Int): Boolean {
+        val flags = elementAt(x, y, z)
+        return Element.air.flagsIn(flags) || Element.water.flagsIn(flags)
+    }
+
+    fun standable(x: Int, y: Int, z: Int): Boolean {
+        val flags = elementAt(x, y, z)
+        val water = Element.water.flagsIn(flags)
+        return (water || Element.air.flagsIn(flags))
+                && passible(x, y + 1, z)
+                && (water || Element.earth.flagsIn(elementAt(x, y - 1, z)))
+    }
+
+    /**
+     * Determines whether a move from one standable cell to a horizontally adjacent cell is possible, the source cell is
+     * assumed to be standable.
+     */
+    fun canMove(x: Int, y: Int, z: Int, nx: Int, ny: Int, nz: Int): Boolean =
+        standable(nx, ny, nz) && when (ny - y) {
+            0 -> true
+            +1 -> passible(x, y + 2, z)
+            -1 -> passible(nx, ny + 2, nz)
+            else -> false
+        }
+
+    /**
+     * Finds a standable cell at or near the specified cell, searching a couple of blocks vertically
+     *
+     * @return the packed coordinates of the nearest standable cell, null if there is none
+     */
+    fun snap(x: Int, y: Int, z: Int): Long? {
+        for (dy in SNAP_OFFSETS) {
+            val yy = y + dy
+            if (standable(x, yy, z)) return ThreeDimensionalIntVector.packed(x, yy, z)
+        }
+        return null
+    }
+
+    fun clear() {
+        lastField = null
+        lastFieldKey = Long.MIN_VALUE
+    }
+
+    companion object {
+        const val WORLD_HEIGHT = 256
+
+        private val SNAP_OFFSETS = intArrayOf(0, -1, +1, -2)
+
+        /** Horizontal move directions as (dx, dz) pairs */
+        @JvmField
+        val DIRECTIONS = intArrayOf(-1, 0, +1, 0, 0, -1, 0, +1)
+    }
+}
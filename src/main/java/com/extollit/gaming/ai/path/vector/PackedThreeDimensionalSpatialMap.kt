@@ -0,0 +1,306 @@
+package com.extollit.gaming.ai.path.vector
+
+import java.util.*
+
+/**
+ * Open-addressing hash map keyed by three-dimensional integer coordinates, each key is packed into a single 64-bit
+ * primitive (see [ThreeDimensionalIntVector.packed]) and stored in a parallel array alongside the values.  Lookups
+ * neither allocate nor dereference key objects, collisions are resolved by linear probing and removal uses backward
+ * shift deletion so that no tombstones accumulate.
+ *
+ * Like [SparseThreeDimensionalSpatialMap] this map groups coordinates into cells of 2^order voxels along each axis
+ * for the purposes of [cullOutside].
+ *
+ * @param order the number of bits to shift coordinates by to derive the cell they belong to
+ * @param initialCapacity the number of entries this map can hold before it must grow
+ * @param <T> the value type, values may not be null
+ */
+class PackedThreeDimensionalSpatialMap<T : Any> @JvmOverloads constructor(
+    private val order: Int,
+    initialCapacity: Int = 64
+) {
+    private var keys: LongArray
+    private var entries: Array<Any?>
+    private var mask: Int
+
+    /** The number of entries in this map */
+    var size: Int = 0
+        private set
+
+    val isEmpty: Boolean
+        get() = size == 0
+
+    init {
+        var capacity = MIN_CAPACITY
+        while (capacity * MAX_LOAD_FACTOR < initialCapacity) capacity = capacity shl 1
+        keys = LongArray(capacity)
+        entries = arrayOfNulls(capacity)
+        mask = capacity - 1
+    }
+
+    operator fun get(coordinates: ThreeDimensionalIntVector): T? = get(coordinates.packed())
+
+    operator fun get(x: Int, y: Int, z: Int): T? = get(ThreeDimensionalIntVector.packed(x, y, z))
+
+    /**
+     * Retrieves the value mapped to the specified packed coordinates
+     *
+     * @param key packed coordinates, see [ThreeDimensionalIntVector.packed]
+     * @return the value mapped to the coordinates, null if there is none
+     */
+    operator fun get(key: Long): T? {
+        val keys = keys
+        val entries = entries
+        val mask = mask
+        var i = slot(key, mask)
+        while (true) {
+            val entry = entries[i] ?: return null
+            if (keys[i] == key) {
+                @Suppress("UNCHECKED_CAST")
+                return entry as T
+            }
+            i = (i + 1) and mask
+        }
+    }
+
+    fun containsKey(coordinates: ThreeDimensionalIntVector): Boolean = get(coordinates) != null
+
+    operator fun set(coordinates: ThreeDimensionalIntVector, value: T) {
+        put(coordinates.packed(), value)
+    }
+
+    fun put(coordinates: ThreeDimensionalIntVector, value: T): T? = put(coordinates.packed(), value)
+
+    /**
+     * Maps a value to the specified packed coordinates
+     *
+     * @param key packed coordinates, see [ThreeDimensionalIntVector.packed]
+     * @param value the value to map to the coordinates
+     * @return the value previously mapped to the coordinates, null if there was none
+     */
+    fun put(key: Long, value: T): T? {
+        val keys = keys
+        val entries = entries
+        val mask = mask
+        var i = slot(key, mask)
+        while (true) {
+            val entry = entries[i]
+            if (entry == null) {
+                keys[i] = key
+                entries[i] = value
+                if (++size > entries.size * MAX_LOAD_FACTOR) rehash(entries.size shl 1)
+                return null
+            }
+            if (keys[i] == key) {
+                entries[i] = value
+                @Suppress("UNCHECKED_CAST")
+                return entry as T
+            }
+            i = (i + 1) and mask
+        }
+    }
+
+    fun remove(coordinates: ThreeDimensionalIntVector): T? = remove(coordinates.packed())
+
+    /**
+     * Removes the value mapped to the specified packed coordinates
+     *
+     * @param key packed coordinates, see [ThreeDimensionalIntVector.packed]
+     * @return the value that was mapped to the coordinates, null if there was none
+     */
+    fun remove(key: Long): T? {
+        val keys = keys
+        val entries = entries
+        val mask = mask
+        var i = slot(key, mask)
+        while (true) {
+            val entry = entries[i] ?: return null
+            if (keys[i] == key) {
+                shiftBack(i)
+                size--
+                @Suppress("UNCHECKED_CAST")
+                return entry as T
+            }
+            i = (i + 1) and mask
+        }
+    }
+
+    fun clear() {
+        Arrays.fill(entries, null)
+        size = 0
+    }
+
+    /**
+     * Removes all entries whose cell lies outside the cells spanned by the specified bounds.  Cells partially covered
+     * by the bounds are retained in their entirety.
+     *
+     * @param bounds the bounds to retain entries within
+     * @return the values that were removed
+     */
+    fun cullOutside(bounds: ThreeDimensionalIIntBox): Iterable<T> {
+        val order = order
+        val min = bounds.min
+        val max = bounds.max
+        val x0 = min.x shr order
+        val y0 = min.y shr order
+        val z0 = min.z shr order
+        val xN = max.x shr order
+        val yN = max.y shr order
+        val zN = max.z shr order
+
+        val keys = keys
+        val entries = entries
+        val cullees: MutableList<T> = ArrayList()
+        for (i in entries.indices) {
+            val entry = entries[i] ?: continue
+            val key = keys[i]
+            val x = ThreeDimensionalIntVector.unpackX(key) shr order
+            val y = ThreeDimensionalIntVector.unpackY(key) shr order
+            val z = ThreeDimensionalIntVector.unpackZ(key) shr order
+            if (x < x0 || y < y0 || z < z0 || x > xN || y > yN || z > zN) {
+                @Suppress("UNCHECKED_CAST")
+                cullees.add(entry as T)
+                entries[i] = null
+                size--
+            }
+        }
+        if (cullees.isNotEmpty()) rehash(entries.size)
+        return cullees
+    }
+
+    private fun shiftBack(index: Int) {
+        val keys = keys
+        val entries = entries
+        val mask = mask
+        var gap = index
+        var i = index
+        while (true) {
+            i = (i + 1) and mask
+            entries[i] ?: break
+            val home = slot(keys[i], mask)
+            if ((i - home) and mask >= (i - gap) and mask) {
+                keys[gap] = keys[i]
+                entries[gap] = entries[i]
+                gap = i
+            }
+        }
+        entries[gap] = null
+    }
+
+    private fun rehash(capacity: Int) {
+        val keys0 = keys
+        val entries0 = entries
+        val keys = LongArray(capacity)
+        val entries = arrayOfNulls<Any>(capacity)
+        val mask = capacity - 1
+        for (i in entries0.indices) {
+            val entry = entries0[i] ?: continue
+            val key = keys0[i]
+            var j = slot(key, mask)
+            while (entries[j] != null) j = (j + 1) and mask
+            keys[j] = key
+            entries[j] = entry
+        }
+        this.keys = keys
+        this.entries = entries
+        this.mask = mask
+    }
+
+    private abstract inner class AbstractIterator<out V> : MutableIterator<V> {
+        private var index = advance(0)
+
+        private fun advance(from: Int): Int {
+            val entries = entries
+            var i = from
+            while (i < entries.size && entries[i] == null) i++
+            return i
+        }
+
+        override fun hasNext(): Boolean = index < entries.size
+
+        override fun next(): V {
+            if (!hasNext()) throw NoSuchElementException(
+                "No more elements exist in this iterator $this"
+            )
+            val i = index
+            index = advance(i + 1)
+            @Suppress("UNCHECKED_CAST")
+            return map(keys[i], entries[i] as T)
+        }
+
+        override fun remove() {
+            throw UnsupportedOperationException()
+        }
+
+        protected abstract fun map(key: Long, value: T): V
+    }
+
+    private inner class ValueCollection : AbstractCollection<T>() {
+        private inner class Iter : AbstractIterator<T>() {
+            override fun map(key: Long, value: T): T = value
+        }
+
+        override fun iterator(): MutableIterator<T> = Iter()
+
+        override val size: Int
+            get() = this@PackedThreeDimensionalSpatialMap.size
+    }
+
+    /** Read-only view of the values of all entries in this map */
+    val values: Collection<T>
+        get() = ValueCollection()
+
+    override fun toString(): String {
+        val sb = StringBuilder("{")
+        val keys = keys
+        val entries = entries
+        for (i in entries.indices) {
+            val entry = entries[i] ?: continue
+            if (sb.length > 1) sb.append(", ")
+            sb.append(coords(keys[i])).append('=').append(entry)
+        }
+        return sb.append('}').toString()
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other == null || javaClass != other.javaClass) return false
+        val that = other as PackedThreeDimensionalSpatialMap<*>
+        if (size != that.size) return false
+        val keys = keys
+        val entries = entries
+        for (i in entries.indices) {
+            val entry = entries[i] ?: continue
+            if (entry != that[keys[i]]) return false
+        }
+        return true
+    }
+
+    override fun hashCode(): Int {
+        var result = 0
+        val keys = keys
+        val entries = entries
+        for (i in entries.indices) {
+            val entry = entries[i] ?: continue
+            result += java.lang.Long.hashCode(keys[i]) xor entry.hashCode()
+        }
+        return result
+    }
+
+    companion object {
+        private const val MIN_CAPACITY = 16
+        private const val MAX_LOAD_FACTOR = 0.5f
+
+        private fun slot(key: Long, mask: Int): Int {
+            val h = key * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt() and mask
+        }
+
+        private fun coords(key: Long): ThreeDimensionalIntVector =
+            ThreeDimensionalIntVector(
+                ThreeDimensionalIntVector.unpackX(key),
+                ThreeDimensionalIntVector.unpackY(key),
+                ThreeDimensionalIntVector.unpackZ(key)
+            )
+    }
+}
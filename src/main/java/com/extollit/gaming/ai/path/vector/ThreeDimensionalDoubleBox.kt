@@ -85,6 +85,11 @@ class ThreeDimensionalDoubleBox {
         return dx * dx + dy * dy + dz * dz
     }
 
+    fun set(other: ThreeDimensionalDoubleBox) {
+        min.set(other.min)
+        max.set(other.max)
+    }
+
     fun add(dx: Double, dy: Double, dz: Double) {
         min.add(dx, dy, dz)
         max.add(dx, dy, dz)
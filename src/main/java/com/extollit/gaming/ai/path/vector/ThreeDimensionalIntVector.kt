@@ -49,9 +49,51 @@ class ThreeDimensionalIntVector(
     fun contains(x: Double, y: Double, z: Double): Boolean =
         this.x.toDouble() == x && this.y.toDouble() == y && this.z.toDouble() == z
 
+    fun contains(x: Int, y: Int, z: Int): Boolean = this.x == x && this.y == y && this.z == z
+
+    fun set(x: Int, y: Int, z: Int): ThreeDimensionalIntVector {
+        this.x = x
+        this.y = y
+        this.z = z
+        return this
+    }
+
+    /**
+     * Packs the coordinates of this vector into a single 64-bit key
+     *
+     * @see packed
+     */
+    fun packed(): Long = packed(x, y, z)
+
     companion object {
         @JvmField
         /** Represents a [ThreeDimensionalIntVector] with all positions set to 0. */
         val ZERO: ThreeDimensionalIntVector = ThreeDimensionalIntVector(0, 0, 0)
+
+        private const val XZ_BITS = 26
+        private const val Y_BITS = 12
+        private const val XZ_MASK = (1L shl XZ_BITS) - 1
+        private const val Y_MASK = (1L shl Y_BITS) - 1
+        private const val Z_BIT_OFFS = Y_BITS
+        private const val X_BIT_OFFS = Z_BIT_OFFS + XZ_BITS
+
+        /**
+         * Packs coordinates into a single 64-bit key, the x and z coordinates occupy 26 bits each and the y coordinate
+         * occupies 12 bits, coordinates outside of these ranges are truncated.
+         *
+         * @return a key that uniquely identifies the coordinates
+         */
+        @JvmStatic
+        fun packed(x: Int, y: Int, z: Int): Long =
+            (x.toLong() and XZ_MASK shl X_BIT_OFFS) or (z.toLong() and XZ_MASK shl Z_BIT_OFFS) or (y.toLong() and Y_MASK)
+
+        @JvmStatic
+        fun unpackX(key: Long): Int = (key shr X_BIT_OFFS).toInt()
+
+        @JvmStatic
+        fun unpackY(key: Long): Int = (key shl (64 - Y_BITS) shr (64 - Y_BITS)).toInt()
+
+        @JvmStatic
+        fun unpackZ(key: Long): Int = (key shl (64 - X_BIT_OFFS) shr (64 - XZ_BITS)).toInt()
     }
 }
@@ -0,0 +1,60 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.AreaOcclusionProvider;
+import com.extollit.gaming.ai.path.model.Element;
+import com.extollit.gaming.ai.path.model.IOcclusionProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AreaOcclusionProviderTests {
+    private InstanceSpace instance;
+    private AreaOcclusionProvider provider;
+
+    @Before
+    public void setup() {
+        this.instance = new InstanceSpace();
+        for (int z = 0; z < 48; z += 3)
+            for (int x = 0; x < 48; x += 2)
+                instance.setBlock(x, (x + z) % 40, z, stone, 0);
+
+        this.provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 2, 2);
+    }
+
+    @Test
+    public void cursorEquivalent() {
+        final IOcclusionProvider cursor = provider.cursor();
+        for (int y = -1; y < 42; ++y)
+            for (int z = -1; z < 50; ++z)
+                for (int x = -1; x < 50; ++x)
+                    assertEquals(provider.elementAt(x, y, z), cursor.elementAt(x, y, z));
+    }
+
+    @Test
+    public void blockChanged() {
+        final IOcclusionProvider cursor = provider.cursor();
+        assertTrue(Element.air.flagsIn(provider.elementAt(21, 5, 21)));
+        assertTrue(Element.air.flagsIn(cursor.elementAt(21, 5, 21)));
+
+        instance.setBlock(21, 5, 21, stone, 0);
+
+        assertTrue(Element.earth.flagsIn(provider.elementAt(21, 5, 21)));
+        assertTrue(Element.earth.flagsIn(cursor.elementAt(21, 5, 21)));
+    }
+
+    @Test
+    public void reset() {
+        final IOcclusionProvider cursor = provider.cursor();
+        assertTrue(Element.air.flagsIn(provider.elementAt(21, 5, 21)));
+        assertTrue(Element.air.flagsIn(cursor.elementAt(21, 5, 21)));
+
+        instance.columnarSpaceAt(1, 1).occlusionFields().reset();
+        instance.setBlock(21, 5, 21, stone, 0);
+
+        assertTrue(Element.earth.flagsIn(provider.elementAt(21, 5, 21)));
+        assertTrue(Element.earth.flagsIn(cursor.elementAt(21, 5, 21)));
+    }
+}
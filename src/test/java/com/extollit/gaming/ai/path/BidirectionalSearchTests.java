@@ -0,0 +1,107 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class BidirectionalSearchTests {
+    private InstanceSpace instance;
+    private PathFinderMetrics metrics;
+
+    @Before
+    public void setup() {
+        this.instance = new InstanceSpace();
+        TestingWorlds.fill(instance, 0, 0, 0, 47, FLOOR, 47, stone);
+
+        this.metrics = new PathFinderMetrics();
+    }
+
+    private void wall(int x, int z0, int zN) {
+        TestingWorlds.wall(instance, x, z0, zN);
+    }
+
+    private void row(int z, int x0, int xN) {
+        TestingWorlds.fill(instance, x0, FLOOR + 1, z, xN, FLOOR + 3, z, stone);
+    }
+
+    private IPath pathTo(boolean bidirectional, int x, int y, int z) {
+        return TestingWorlds.pathFinder(instance, 2.5, 2.5)
+            .withMetrics(metrics)
+            .computePathTo(new ThreeDimensionalDoubleVector(x + 0.5, y, z + 0.5), bidirectional);
+    }
+
+    private static void assertPath(IPath path, int x, int y, int z) {
+        assertNotNull(path);
+        assertEquals(new ThreeDimensionalIntVector(2, FLOOR + 1, 2), path.at(0).getCoordinates());
+        assertEquals(new ThreeDimensionalIntVector(x, y, z), path.last().getCoordinates());
+        for (int i = 1; i < path.length(); ++i) {
+            final ThreeDimensionalIntVector
+                a = path.at(i - 1).getCoordinates(),
+                b = path.at(i).getCoordinates();
+            assertEquals(1, Math.abs(a.x - b.x) + Math.abs(a.z - b.z));
+        }
+    }
+
+    private void assertFewerExpansions(int x, int y, int z) {
+        final IPath unidirectional = pathTo(false, x, y, z);
+        final long unidirectionalExpansions = metrics.snapshot().getExpansions();
+        final IPath path = pathTo(true, x, y, z);
+        final long expansions = metrics.snapshot().getExpansions();
+
+        assertPath(unidirectional, x, y, z);
+        assertPath(path, x, y, z);
+        assertTrue(path.length() <= unidirectional.length());
+        assertTrue(expansions < unidirectionalExpansions);
+    }
+
+    @Test
+    public void aroundWalls() {
+        wall(6, 0, 17);
+        wall(12, 4, 21);
+        wall(18, 0, 17);
+        assertFewerExpansions(22, FLOOR + 1, 2);
+    }
+
+    @Test
+    public void throughMaze() {
+        wall(0, 0, 20);
+        wall(20, 0, 20);
+        row(0, 0, 20);
+        row(20, 0, 20);
+        wall(5, 1, 15);
+        wall(10, 5, 19);
+        wall(15, 1, 15);
+        assertFewerExpansions(18, FLOOR + 1, 2);
+    }
+
+    @Test
+    public void enclosed() {
+        wall(19, 19, 25);
+        wall(25, 19, 25);
+        row(19, 19, 25);
+        row(25, 19, 25);
+        TestingWorlds.fill(instance, 19, FLOOR + 4, 19, 25, FLOOR + 4, 25, stone);
+
+        assertNull(pathTo(false, 22, FLOOR + 1, 22));
+        final long unidirectionalExpansions = metrics.snapshot().getExpansions();
+        assertNull(pathTo(true, 22, FLOOR + 1, 22));
+        final long expansions = metrics.snapshot().getExpansions();
+
+        assertTrue(expansions > 0);
+        assertTrue(expansions * 10 < unidirectionalExpansions);
+    }
+
+    @Test
+    public void dropIntoPit() {
+        TestingWorlds.fill(instance, 20, FLOOR - 2, 20, 22, FLOOR, 22, null);
+
+        final IPath path = pathTo(true, 21, FLOOR - 2, 21);
+        assertPath(path, 21, FLOOR - 2, 21);
+    }
+}
@@ -0,0 +1,104 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.IOcclusionProvider;
+import com.extollit.gaming.ai.path.model.Logic;
+import com.extollit.gaming.ai.path.model.OcclusionField;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EagerAreaInitTests {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    private BlockObject lava;
+
+    @Before
+    public void setup() {
+        this.lava = new BlockObject();
+        lava.liquid = lava.incinerating = true;
+        lava.bounds = new ThreeDimensionalDoubleBox(0, 0, 0, 1, 1, 1);
+    }
+
+    private InstanceSpace instance(Executor executor) {
+        final InstanceSpace instance = new InstanceSpace(executor);
+        instance.setBlock(15, 5, 5, lava, 0);
+        return instance;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+            task.run();
+    }
+
+    @Test
+    public void lazyControl() {
+        final InstanceSpace instance = instance(null);
+        instance.columnarSpaceAt(0, 0).load();
+        instance.columnarSpaceAt(1, 0).load();
+        assertTrue(tasks.isEmpty());
+
+        final IOcclusionProvider provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 0);
+        assertTrue(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+    }
+
+    @Test
+    public void eager() {
+        final InstanceSpace instance = instance(executor);
+        instance.columnarSpaceAt(0, 0).load();
+        instance.columnarSpaceAt(1, 0).load();
+        assertEquals(2, tasks.size());
+
+        final IOcclusionProvider provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 0);
+        assertTrue(Logic.fuzzy.flagsIn(provider.elementAt(14, 5, 5)));
+        assertFalse(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+
+        runTasks();
+
+        assertTrue(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+        final OcclusionField top = instance.columnarSpaceAt(1, 0).occlusionFields().optionalOcclusionFieldAt(15);
+        assertTrue(top.areaInitAt(OcclusionField.AreaInit.west));
+        assertTrue(top.areaInitAt(OcclusionField.AreaInit.up));
+        assertFalse(top.areaInitAt(OcclusionField.AreaInit.east));
+    }
+
+    @Test
+    public void neighborLoadedLater() {
+        final InstanceSpace instance = instance(executor);
+        instance.columnarSpaceAt(1, 0).load();
+        runTasks();
+
+        final IOcclusionProvider provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 0);
+        assertFalse(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+
+        instance.columnarSpaceAt(0, 0).load();
+        runTasks();
+
+        assertTrue(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+    }
+
+    @Test
+    public void overtakenByReset() {
+        final InstanceSpace instance = instance(executor);
+        instance.columnarSpaceAt(0, 0).load();
+        instance.columnarSpaceAt(0, 0).unload();
+        runTasks();
+
+        assertNull(instance.columnarSpaceAt(0, 0).occlusionFields().optionalOcclusionFieldAt(0));
+    }
+}
@@ -0,0 +1,191 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.Element;
+import com.extollit.gaming.ai.path.model.FileOcclusionFieldCache;
+import com.extollit.gaming.ai.path.model.IColumnarSpace;
+import com.extollit.gaming.ai.path.model.ISectionVersions;
+import com.extollit.gaming.ai.path.model.OcclusionField;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.lava;
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileOcclusionFieldCacheTests {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private long version;
+
+    @Before
+    public void setup() throws IOException {
+        this.directory = folder.newFolder("occlusion");
+    }
+
+    private final ISectionVersions versions = new ISectionVersions() {
+        @Override
+        public long versionOf(IColumnarSpace columnarSpace, int cx, int cy, int cz) {
+            return version;
+        }
+    };
+
+    private InstanceSpace start() {
+        return start(new FileOcclusionFieldCache(directory, versions));
+    }
+
+    private InstanceSpace start(FileOcclusionFieldCache cache) {
+        final InstanceSpace instance = new InstanceSpace(null, null, cache);
+        instance.columnarSpaceAt(0, 0).setBlockAt(15, 5, 5, lava);
+        return instance;
+    }
+
+    private OcclusionField fieldAt(InstanceSpace instance, int cx, int cy, int cz) {
+        return instance.columnarSpaceAt(cx, cz).occlusionFields().occlusionFieldAt(cx, cy, cz);
+    }
+
+    private void shutdown(InstanceSpace instance) {
+        fieldAt(instance, 0, 0, 0);
+        fieldAt(instance, 0, 1, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+    }
+
+    private InstanceSpace restartWithEdit() {
+        final InstanceSpace restarted = start();
+        restarted.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        return restarted;
+    }
+
+    @Test
+    public void warmRestart() {
+        shutdown(start());
+        assertTrue(new File(directory, "0.0.occ").isFile());
+
+        final InstanceSpace restarted = restartWithEdit();
+        final OcclusionField field = fieldAt(restarted, 0, 0, 0);
+        assertTrue(Element.fire.flagsIn(field.elementAt(15, 5, 5)));
+        assertTrue(Element.air.flagsIn(field.elementAt(3, 5, 3)));
+        assertTrue(Element.air.flagsIn(fieldAt(restarted, 0, 1, 0).elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void versionChanged() {
+        shutdown(start());
+        version++;
+
+        final OcclusionField field = fieldAt(restartWithEdit(), 0, 0, 0);
+        assertTrue(Element.earth.flagsIn(field.elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void corrupted() throws IOException {
+        final InstanceSpace instance = start();
+        fieldAt(instance, 0, 0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+
+        final RandomAccessFile file = new RandomAccessFile(new File(directory, "0.0.occ"), "rw");
+        try {
+            file.seek(file.length() - 1);
+            final int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        final OcclusionField field = fieldAt(restartWithEdit(), 0, 0, 0);
+        assertTrue(Element.earth.flagsIn(field.elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void invalidatedByNeighborChange() {
+        final InstanceSpace instance = start();
+        shutdown(instance);
+
+        instance.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        instance.setBlock(16, 5, 5, stone, 0);
+        assertTrue(Element.earth.flagsIn(fieldAt(instance, 0, 0, 0).elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void interiorChangeSaved() {
+        final InstanceSpace instance = start();
+        fieldAt(instance, 0, 0, 0);
+        instance.setBlock(3, 5, 3, stone, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+
+        assertTrue(Element.earth.flagsIn(fieldAt(start(), 0, 0, 0).elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void writeBehind() {
+        final List<Runnable> writes = new ArrayList<Runnable>();
+        final InstanceSpace instance = start(new FileOcclusionFieldCache(directory, versions, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                writes.add(command);
+            }
+        }));
+        shutdown(instance);
+        shutdown(instance);
+
+        final File file = new File(directory, "0.0.occ");
+        assertFalse(file.isFile());
+        assertEquals(1, writes.size());
+
+        instance.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        assertTrue(Element.air.flagsIn(fieldAt(instance, 0, 0, 0).elementAt(3, 5, 3)));
+
+        writes.get(0).run();
+        assertTrue(file.isFile());
+        assertTrue(Element.air.flagsIn(fieldAt(restartWithEdit(), 0, 1, 0).elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void compactUniform() throws IOException {
+        final InstanceSpace instance = start();
+        final OcclusionField field = fieldAt(instance, 0, 2, 0);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        field.writeTo(new DataOutputStream(bytes));
+        assertEquals(4, bytes.size());
+
+        final OcclusionField copy = new OcclusionField();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(field.elementAt(7, 7, 7), copy.elementAt(7, 7, 7));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final InstanceSpace instance = start();
+        final OcclusionField field = fieldAt(instance, 0, 0, 0);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        field.writeTo(new DataOutputStream(bytes));
+
+        final OcclusionField copy = new OcclusionField();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (int y = 0; y < 16; ++y)
+            for (int z = 0; z < 16; ++z)
+                for (int x = 0; x < 16; ++x)
+                    assertEquals(field.elementAt(x, y, z), copy.elementAt(x, y, z));
+        for (OcclusionField.AreaInit direction : OcclusionField.AreaInit.values())
+            assertEquals(field.areaInitAt(direction), copy.areaInitAt(direction));
+    }
+}
@@ -0,0 +1,87 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.Element;
+import com.extollit.gaming.ai.path.model.FlagSampler;
+import com.extollit.gaming.ai.path.model.IOcclusionProvider;
+import com.extollit.gaming.ai.path.model.Logic;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.assertEquals;
+
+public class FlagSamplerTests {
+    private static final int
+        EARTH = 1 << Element.earth.mask,
+        ANYTHING = 0xFFFF;
+
+    private InstanceSpace instance;
+    private IOcclusionProvider provider;
+
+    @Before
+    public void setup() {
+        final BlockObject door = new BlockObject();
+        door.door = true;
+        door.bounds = new ThreeDimensionalDoubleBox(0, 0, 0, 1, 1, 1);
+
+        this.instance = new InstanceSpace();
+        for (int z = 0; z < 32; ++z)
+            for (int x = 0; x < 32; ++x)
+                instance.setBlock(x, 3, z, stone, 0);
+        instance.setBlock(16, 40, 16, stone, 0);
+        instance.setBlock(16, 20, 16, door, 0);
+        instance.setBlock(16, 21, 16, door, 0);
+
+        this.provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 1);
+    }
+
+    @Test
+    public void scanDownAcrossSections() {
+        final FlagSampler sampler = new FlagSampler(provider);
+
+        assertEquals(3, sampler.scanDown(16, 39, 16, 0, EARTH));
+        assertEquals(2, sampler.getVolatility());
+        assertEquals(-1, sampler.scanDown(40, 39, 16, 0, EARTH));
+        assertEquals(39, sampler.scanDown(16, 39, 16, 30, ANYTHING));
+    }
+
+    @Test
+    public void scanUpAcrossSections() {
+        final FlagSampler sampler = new FlagSampler(provider);
+
+        assertEquals(40, sampler.scanUp(16, 4, 16, 255, EARTH));
+        assertEquals(2, sampler.getVolatility());
+        assertEquals(256, sampler.scanUp(17, 4, 16, 255, EARTH));
+        assertEquals(31, sampler.scanUp(16, 4, 16, 30, EARTH));
+    }
+
+    @Test
+    public void equivalentToSampling() {
+        final FlagSampler sampler = new FlagSampler(provider);
+        final int doorway = 1 << Logic.doorway.to(Element.air.mask);
+
+        assertEquals(20, sampler.scanUp(16, 4, 16, 255, doorway));
+        assertEquals(21, sampler.scanDown(16, 255, 16, 0, doorway));
+        assertEquals(0, sampler.getVolatility());
+        for (int y = 0; y < 64; ++y)
+            assertEquals(
+                new FlagSampler(unoptimized(provider)).scanDown(16, 63, 16, y, EARTH),
+                new FlagSampler(provider).scanDown(16, 63, 16, y, EARTH)
+            );
+    }
+
+    private static IOcclusionProvider unoptimized(final IOcclusionProvider delegate) {
+        return new IOcclusionProvider() {
+            @Override
+            public byte elementAt(int x, int y, int z) {
+                return delegate.elementAt(x, y, z);
+            }
+
+            @Override
+            public String visualizeAt(int y) {
+                return delegate.visualizeAt(y);
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class FlightRecorderEventsTests {
+    private static final String
+        TRIAGE = "com.extollit.gaming.ai.path.Triage",
+        OCCLUSION_FIELD_LOAD = "com.extollit.gaming.ai.path.OcclusionFieldLoad",
+        AREA_INIT = "com.extollit.gaming.ai.path.AreaInit",
+        OCCLUSION_WINDOW = "com.extollit.gaming.ai.path.OcclusionWindow";
+
+    private Recording recording;
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        this.file = Files.createTempFile("hydrazine", ".jfr");
+        this.recording = new Recording();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        recording.close();
+        Files.deleteIfExists(file);
+    }
+
+    private static InstanceSpace world() {
+        return TestingWorlds.flat(32);
+    }
+
+    private static void pathAcross(InstanceSpace instance) {
+        final IPath path = TestingWorlds.pathFinder(instance, 2.5, 2.5)
+            .computePathTo(new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 24.5));
+        assertNotNull(path);
+    }
+
+    private List<RecordedEvent> eventsNamed(String name) throws IOException {
+        recording.stop();
+        recording.dump(file);
+        final List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file))
+            if (event.getEventType().getName().equals(name))
+                events.add(event);
+        return events;
+    }
+
+    @Test
+    public void triage() throws IOException {
+        final InstanceSpace instance = world();
+        recording.enable(TRIAGE).withThreshold(Duration.ZERO);
+        recording.start();
+        pathAcross(instance);
+
+        final List<RecordedEvent> events = eventsNamed(TRIAGE);
+        assertEquals(1, events.size());
+        final RecordedEvent event = events.get(0);
+        assertEquals("extreme", event.getString("priority"));
+        assertEquals("complete", event.getString("outcome"));
+        assertTrue(event.getInt("iterations") > 0);
+    }
+
+    @Test
+    public void occlusion() throws IOException {
+        recording.enable(OCCLUSION_FIELD_LOAD);
+        recording.enable(AREA_INIT).withThreshold(Duration.ZERO);
+        recording.enable(OCCLUSION_WINDOW);
+        recording.start();
+        pathAcross(world());
+        recording.stop();
+        recording.dump(file);
+
+        final List<String> names = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file))
+            names.add(event.getEventType().getName());
+        assertTrue(names.contains(OCCLUSION_FIELD_LOAD));
+        assertTrue(names.contains(AREA_INIT));
+        assertTrue(names.contains(OCCLUSION_WINDOW));
+    }
+
+    @Test
+    public void disabled() throws IOException {
+        final InstanceSpace instance = world();
+        recording.enable(OCCLUSION_WINDOW);
+        recording.disable(TRIAGE);
+        recording.start();
+        pathAcross(instance);
+
+        assertTrue(eventsNamed(TRIAGE).isEmpty());
+    }
+}
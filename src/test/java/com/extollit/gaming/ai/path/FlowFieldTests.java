@@ -0,0 +1,95 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class FlowFieldTests {
+    private InstanceSpace instance;
+    private FlowFields flowFields;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(48);
+
+        this.flowFields = new FlowFields(instance, 24);
+    }
+
+    private HydrazinePathFinder pathFinder(Monster monster, double x, double z) {
+        return TestingWorlds.pathFinder(instance, monster, x, z).withFlowFields(flowFields);
+    }
+
+    private static IPath pathTo(HydrazinePathFinder pathFinder, int x, int z) {
+        final IPath path = pathFinder.computePathTo(new ThreeDimensionalDoubleVector(x + 0.5, FLOOR + 1, z + 0.5));
+        assertNotNull(path);
+        assertEquals(new ThreeDimensionalIntVector(x, FLOOR + 1, z), path.last().getCoordinates());
+        return path;
+    }
+
+    private static void assertContiguous(IPath path) {
+        for (int i = 1; i < path.length(); ++i) {
+            final ThreeDimensionalIntVector
+                a = path.at(i - 1).getCoordinates(),
+                b = path.at(i).getCoordinates();
+            assertEquals(1, Math.abs(a.x - b.x) + Math.abs(a.z - b.z));
+        }
+    }
+
+    @Test
+    public void oneFieldForMany() {
+        final double[][] positions = {{2.5, 2.5}, {4.5, 10.5}, {8.5, 16.5}, {2.5, 30.5}, {30.5, 30.5}};
+        for (double[] position : positions) {
+            final IPath path = pathTo(pathFinder(new Monster(), position[0], position[1]), 20, 4);
+            assertContiguous(path);
+            assertEquals(new ThreeDimensionalIntVector((int) position[0], FLOOR + 1, (int) position[1]), path.at(0).getCoordinates());
+        }
+        assertEquals(1, flowFields.getSize());
+        assertEquals(1, flowFields.getComputationCount());
+    }
+
+    @Test
+    public void shortestAroundWall() {
+        final HydrazinePathFinder pathFinder = pathFinder(new Monster(), 2.5, 2.5);
+        final IPath path = pathTo(pathFinder, 20, 4);
+        for (Node node : pathFinder.getNodeMap().all())
+            assertFalse(node.visited());
+        assertEquals((20 - 2) + (20 - 2) + (20 - 4) + 1, path.length());
+    }
+
+    @Test
+    public void recomputedEachTick() {
+        final IPath first = pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 4);
+        final ThreeDimensionalIntVector midway = first.at(first.length() / 2).getCoordinates();
+        TestingWorlds.wall(instance, midway.x, midway.z, midway.z);
+
+        flowFields.tick();
+        final IPath second = pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 4);
+        assertEquals(2, flowFields.getComputationCount());
+        assertContiguous(second);
+        for (int i = 0; i < second.length(); ++i)
+            assertNotEquals(midway, second.at(i).getCoordinates());
+    }
+
+    @Test
+    public void outOfRange() {
+        this.flowFields = new FlowFields(instance, 4);
+        final IPath path = pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 4);
+        assertEquals(1, flowFields.getComputationCount());
+        assertEquals(new ThreeDimensionalIntVector(2, FLOOR + 1, 2), path.at(0).getCoordinates());
+    }
+
+    @Test
+    public void discardedWhenUnused() {
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 4);
+        flowFields.tick();
+        assertEquals(1, flowFields.getSize());
+        flowFields.tick();
+        assertEquals(0, flowFields.getSize());
+    }
+}
@@ -0,0 +1,98 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.node.NodeMap;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class JumpPointSearchTests {
+    private InstanceSpace instance;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.flat(48);
+    }
+
+    private HydrazinePathFinder pathFinder(NodeExpansion expansion) {
+        return TestingWorlds.pathFinder(instance, 2.5, 2.5).withNodeExpansion(expansion);
+    }
+
+    private static int visited(HydrazinePathFinder pathFinder) {
+        int count = 0;
+        for (Node node : pathFinder.getNodeMap().all())
+            if (node != null && node.visited())
+                ++count;
+        return count;
+    }
+
+    private static void assertReaches(IPath path, int x, int y, int z) {
+        assertNotNull(path);
+        assertEquals(new ThreeDimensionalIntVector(x, y, z), path.last().getCoordinates());
+    }
+
+    @Test
+    public void fewerExpansionsInTheOpen() {
+        final HydrazinePathFinder
+            adjacent = pathFinder(NodeExpansion.adjacent),
+            jumpPoint = pathFinder(NodeExpansion.jumpPoint);
+
+        final ThreeDimensionalDoubleVector destination = new ThreeDimensionalDoubleVector(22.5, FLOOR + 1, 20.5);
+        assertReaches(adjacent.computePathTo(destination), 22, FLOOR + 1, 20);
+        assertReaches(jumpPoint.computePathTo(destination), 22, FLOOR + 1, 20);
+
+        final int expected = visited(adjacent);
+        final int actual = visited(jumpPoint);
+        assertTrue(actual + " expansions with jump points versus " + expected + " without", actual * 4 < expected);
+    }
+
+    @Test
+    public void aroundWall() {
+        TestingWorlds.wall(instance, 12, 0, 19);
+
+        final HydrazinePathFinder pathFinder = pathFinder(NodeExpansion.jumpPoint);
+        final IPath path = pathFinder.computePathTo(new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5));
+        assertReaches(path, 24, FLOOR + 1, 2);
+
+        boolean detoured = false;
+        for (int i = 0; i < path.length(); ++i)
+            detoured |= path.at(i).getCoordinates().z >= 20;
+        assertTrue(detoured);
+    }
+
+    @Test
+    public void jumpsStayAligned() {
+        final IPath path = pathFinder(NodeExpansion.jumpPoint)
+            .computePathTo(new ThreeDimensionalDoubleVector(20.5, FLOOR + 1, 14.5));
+        assertReaches(path, 20, FLOOR + 1, 14);
+
+        for (int i = 1; i < path.length(); ++i) {
+            final ThreeDimensionalIntVector
+                a = path.at(i - 1).getCoordinates(),
+                b = path.at(i).getCoordinates();
+            assertTrue(a.x == b.x || a.z == b.z || Math.abs(a.x - b.x) + Math.abs(a.z - b.z) == 2);
+        }
+    }
+
+    @Test
+    public void runStopsBeforeClosedNode() {
+        final HydrazinePathFinder pathFinder = pathFinder(NodeExpansion.jumpPoint);
+        assertReaches(pathFinder.computePathTo(new ThreeDimensionalDoubleVector(22.5, FLOOR + 1, 24.5)), 22, FLOOR + 1, 24);
+
+        final NodeMap graph = pathFinder.getNodeMap();
+        pathFinder.queue.clear();
+        for (Node node : graph.all())
+            if (node != null)
+                node.visited(false);
+
+        graph.cachedPointAt(16, FLOOR + 1, 20).visited(true);
+        pathFinder.processNode(graph.cachedPointAt(10, FLOOR + 1, 20));
+
+        assertTrue(graph.cachedPointAt(15, FLOOR + 1, 20).assigned());
+    }
+}
@@ -0,0 +1,103 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.Element;
+import com.extollit.gaming.ai.path.model.Logic;
+import com.extollit.gaming.ai.path.model.OcclusionField;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.lava;
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredOcclusionFieldTests {
+    private InstanceSpace instance;
+
+    @Before
+    public void setup() {
+        this.instance = new InstanceSpace(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        for (int z = 0; z < 48; ++z)
+            for (int x = 0; x < 48; ++x)
+                instance.setBlock(x, 0, z, stone, 0);
+        instance.setBlock(24, 20, 24, lava, 0);
+
+        for (int cz = 0; cz < 3; ++cz)
+            for (int cx = 0; cx < 3; ++cx)
+                instance.columnarSpaceAt(cx, cz).load();
+    }
+
+    private OcclusionField centerField(int cy) {
+        return instance.columnarSpaceAt(1, 1).occlusionFields().occlusionFieldAt(1, cy, 1);
+    }
+
+    private static int earthStops() {
+        int stops = 0;
+        for (int flags = 0; flags < 16; ++flags)
+            if (Element.earth.flagsIn((byte) flags))
+                stops |= 1 << flags;
+        return stops;
+    }
+
+    @Test
+    public void uniformLayers() {
+        final OcclusionField field = centerField(0);
+        assertTrue(field.areaInitFull());
+        assertTrue(field.getLayered());
+
+        assertTrue(Element.earth.flagsIn(field.elementAt(3, 0, 7)));
+        assertTrue(Element.air.flagsIn(field.elementAt(3, 1, 7)));
+        assertEquals(0, field.scanDown(3, 15, 7, 0, earthStops()));
+        assertEquals(16, field.scanUp(3, 1, 7, 15, earthStops()));
+    }
+
+    @Test
+    public void distinctLayer() {
+        final OcclusionField field = centerField(1);
+        assertTrue(field.getLayered());
+
+        assertTrue(Element.fire.flagsIn(field.elementAt(8, 4, 8)));
+        assertTrue(Logic.fuzzy.flagsIn(field.elementAt(9, 4, 8)));
+        assertFalse(Logic.fuzzy.flagsIn(field.elementAt(10, 4, 8)));
+        assertFalse(Logic.fuzzy.flagsIn(field.elementAt(9, 5, 8)));
+    }
+
+    @Test
+    public void promotedOnWrite() {
+        final OcclusionField field = centerField(1);
+        instance.setBlock(20, 21, 20, stone, 0);
+
+        assertFalse(field.getLayered());
+        assertTrue(Element.earth.flagsIn(field.elementAt(4, 5, 4)));
+        assertTrue(Element.fire.flagsIn(field.elementAt(8, 4, 8)));
+        assertTrue(Logic.fuzzy.flagsIn(field.elementAt(9, 4, 8)));
+    }
+
+    @Test
+    public void serialized() throws IOException {
+        final OcclusionField field = centerField(1);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        field.writeTo(new DataOutputStream(bytes));
+
+        final OcclusionField copy = new OcclusionField();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertTrue(copy.getLayered());
+        for (int y = 0; y < 16; ++y)
+            for (int z = 0; z < 16; ++z)
+                for (int x = 0; x < 16; ++x)
+                    assertEquals(field.elementAt(x, y, z), copy.elementAt(x, y, z));
+    }
+}
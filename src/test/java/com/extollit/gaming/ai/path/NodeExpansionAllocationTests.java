@@ -0,0 +1,75 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.node.NodeMap;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+public class NodeExpansionAllocationTests {
+    private static final int
+        WARM_UP = 20000,
+        ITERATIONS = 10000;
+
+    private HydrazinePathFinder pathFinder;
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setup() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        this.threads = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(this.threads.isThreadAllocatedMemorySupported());
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+
+        final InstanceSpace instance = new InstanceSpace();
+        TestingWorlds.fill(instance, 0, 0, 0, 31, FLOOR, 31, stone);
+
+        this.pathFinder = TestingWorlds.pathFinder(instance, 2.5, 2.5);
+        assertNotNull(this.pathFinder.computePathTo(new ThreeDimensionalDoubleVector(20.5, FLOOR + 1, 20.5)));
+    }
+
+    @Test
+    public void steadyStateExpansion() {
+        final NodeMap graph = this.pathFinder.getNodeMap();
+        final Node
+            center = graph.cachedPointAt(10, FLOOR + 1, 10),
+            west = graph.cachedPointAt(9, FLOOR + 1, 10),
+            east = graph.cachedPointAt(11, FLOOR + 1, 10),
+            north = graph.cachedPointAt(10, FLOOR + 1, 9),
+            south = graph.cachedPointAt(10, FLOOR + 1, 11);
+
+        expand(center, west, east, north, south, WARM_UP);
+
+        final long allocated0 = allocatedBytes();
+        final long overhead = allocatedBytes() - allocated0;
+        final long allocated1 = allocatedBytes();
+        expand(center, west, east, north, south, ITERATIONS);
+        final long allocated = allocatedBytes() - allocated1 - overhead;
+
+        assertEquals("Bytes allocated expanding " + ITERATIONS * 5 + " cached nodes", 0, allocated);
+    }
+
+    private void expand(Node center, Node west, Node east, Node north, Node south, int iterations) {
+        final HydrazinePathFinder pathFinder = this.pathFinder;
+        for (int c = 0; c < iterations; ++c) {
+            pathFinder.processNode(west);
+            pathFinder.processNode(east);
+            pathFinder.processNode(north);
+            pathFinder.processNode(south);
+            pathFinder.processNode(center);
+        }
+    }
+
+    private long allocatedBytes() {
+        return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,104 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.IOcclusionProvider;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class OcclusionServiceTests {
+    private InstanceSpace instance;
+    private OcclusionService service;
+
+    @Before
+    public void setup() {
+        final InstanceSpace instance = new InstanceSpace();
+        for (int z = 0; z < 48; ++z)
+            for (int x = 0; x < 48; ++x) {
+                instance.setBlock(x, 0, z, stone, 0);
+                if ((x * 7 + z * 3) % 5 == 0)
+                    instance.setBlock(x, 1, z, stone, 0);
+            }
+
+        this.instance = spy(instance);
+        this.service = new OcclusionService(this.instance);
+    }
+
+    @Test
+    public void sameWindowShared() {
+        final IOcclusionProvider
+            alpha = service.fromInstanceSpace(instance, 0, 0, 1, 1),
+            beta = service.fromInstanceSpace(instance, 0, 0, 1, 1);
+
+        assertSame(alpha, beta);
+        assertEquals(1, service.getWindowCount());
+        assertEquals(4, service.getChunkCount());
+        verify(instance, times(1)).columnarSpaceAt(0, 0);
+        verify(instance, times(1)).columnarSpaceAt(1, 1);
+    }
+
+    @Test
+    public void overlappingWindowsShareChunks() {
+        service.fromInstanceSpace(instance, 0, 0, 1, 1);
+        service.fromInstanceSpace(instance, 1, 1, 2, 2);
+
+        assertEquals(2, service.getWindowCount());
+        assertEquals(7, service.getChunkCount());
+        verify(instance, times(1)).columnarSpaceAt(1, 1);
+    }
+
+    @Test
+    public void release() throws Exception {
+        final IOcclusionProvider
+            alpha = service.fromInstanceSpace(instance, 0, 0, 1, 1),
+            beta = service.fromInstanceSpace(instance, 0, 0, 1, 1),
+            gamma = service.fromInstanceSpace(instance, 1, 0, 2, 0);
+
+        ((AutoCloseable) alpha).close();
+        assertEquals(2, service.getWindowCount());
+
+        ((AutoCloseable) beta).close();
+        assertEquals(1, service.getWindowCount());
+        assertEquals(2, service.getChunkCount());
+
+        ((AutoCloseable) gamma).close();
+        assertEquals(0, service.getWindowCount());
+        assertEquals(0, service.getChunkCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease() throws Exception {
+        final IOcclusionProvider provider = service.fromInstanceSpace(instance, 0, 0, 0, 0);
+        ((AutoCloseable) provider).close();
+        ((AutoCloseable) provider).close();
+    }
+
+    @Test
+    public void matchesAreaOcclusionProvider() {
+        final IOcclusionProvider
+            expected = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 2, 2),
+            actual = service.fromInstanceSpace(instance, 0, 0, 2, 2);
+
+        for (int z = -2; z < 50; ++z)
+            for (int y = 0; y < 3; ++y)
+                for (int x = -2; x < 50; ++x)
+                    assertEquals(expected.elementAt(x, y, z), actual.elementAt(x, y, z));
+    }
+
+    @Test
+    public void pathFinderReleasesWindow() {
+        final Monster monster = new Monster();
+        monster.moveTo(new ThreeDimensionalDoubleVector(2.5, 1, 2.5), null, null);
+
+        final HydrazinePathFinder pathFinder = new HydrazinePathFinder(monster, instance, service);
+        pathFinder.computePathTo(new ThreeDimensionalDoubleVector(20.5, 1, 4.5));
+        assertEquals(1, service.getWindowCount());
+
+        pathFinder.reset();
+        assertEquals(0, service.getWindowCount());
+        assertEquals(0, service.getChunkCount());
+    }
+}
@@ -0,0 +1,184 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.ColumnarOcclusionFieldList;
+import com.extollit.gaming.ai.path.model.Element;
+import com.extollit.gaming.ai.path.model.IOcclusionProvider;
+import com.extollit.gaming.ai.path.model.Logic;
+import com.extollit.gaming.ai.path.model.OcclusionField;
+import com.extollit.gaming.ai.path.model.OcclusionStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.lava;
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OcclusionStoreTests {
+    private OcclusionStore store;
+    private InstanceSpace instance;
+
+    @Before
+    public void setup() {
+        this.store = OcclusionStore.direct(16);
+        this.instance = new InstanceSpace(null, store);
+        instance.setBlock(15, 5, 5, lava, 0);
+    }
+
+    private ColumnarOcclusionFieldList fields(int cx, int cz) {
+        return instance.columnarSpaceAt(cx, cz).occlusionFields();
+    }
+
+    private void loadAll(int cx, int cz) {
+        for (int cy = 0; cy < OcclusionField.DIMENSION_SIZE; ++cy)
+            fields(cx, cz).occlusionFieldAt(cx, cy, cz);
+    }
+
+    @Test
+    public void savedOnUnload() {
+        loadAll(0, 0);
+        assertEquals(0, store.getSize());
+
+        instance.columnarSpaceAt(0, 0).unload();
+        assertEquals(OcclusionField.DIMENSION_SIZE, store.getSize());
+
+        instance.columnarSpaceAt(0, 0).load();
+        loadAll(0, 0);
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void restoredRatherThanRecomputed() {
+        loadAll(0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+
+        instance.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        instance.columnarSpaceAt(0, 0).load();
+
+        final OcclusionField field = fields(0, 0).occlusionFieldAt(0, 0, 0);
+        assertTrue(Element.fire.flagsIn(field.elementAt(15, 5, 5)));
+        assertTrue(Element.air.flagsIn(field.elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void discardedOnBlockChange() {
+        loadAll(0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+
+        instance.setBlock(3, 5, 3, stone, 0);
+        instance.columnarSpaceAt(0, 0).load();
+
+        final OcclusionField field = fields(0, 0).occlusionFieldAt(0, 0, 0);
+        assertTrue(Element.earth.flagsIn(field.elementAt(3, 5, 3)));
+        assertTrue(Element.fire.flagsIn(field.elementAt(15, 5, 5)));
+    }
+
+    @Test
+    public void discardedOnNeighborChange() {
+        loadAll(0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+        final int size = store.getSize();
+
+        instance.setBlock(20, 5, 5, stone, 0);
+        assertEquals(size, store.getSize());
+        instance.setBlock(16, 32, 5, stone, 0);
+        assertEquals(size - 2, store.getSize());
+    }
+
+    @Test
+    public void discardColumn() {
+        loadAll(0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+
+        store.discard(1, 1);
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void areaInitRepeated() {
+        final IOcclusionProvider provider = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 0);
+        assertTrue(Logic.fuzzy.flagsIn(provider.elementAt(16, 5, 5)));
+
+        instance.columnarSpaceAt(0, 0).unload();
+        instance.columnarSpaceAt(1, 0).unload();
+        instance.columnarSpaceAt(1, 0).load();
+        instance.columnarSpaceAt(0, 0).load();
+
+        final OcclusionField field = fields(0, 0).occlusionFieldAt(0, 0, 0);
+        assertFalse(field.areaInitAt(OcclusionField.AreaInit.east));
+
+        final IOcclusionProvider reloaded = AreaOcclusionProviderFactory.INSTANCE.fromInstanceSpace(instance, 0, 0, 1, 0);
+        assertTrue(Logic.fuzzy.flagsIn(reloaded.elementAt(16, 5, 5)));
+        assertTrue(Element.fire.flagsIn(reloaded.elementAt(15, 5, 5)));
+    }
+
+    @Test
+    public void evictsWhenFull() {
+        this.store = OcclusionStore.direct(4);
+        this.instance = new InstanceSpace(null, store);
+
+        for (int cx = 0; cx < 6; ++cx) {
+            instance.setBlock((cx << 4) + 1, 5, 5, stone, 0);
+            fields(cx, 0).occlusionFieldAt(cx, 0, 0);
+            instance.columnarSpaceAt(cx, 0).unload();
+        }
+        assertEquals(4, store.getSize());
+
+        for (int cx = 0; cx < 6; ++cx) {
+            instance.columnarSpaceAt(cx, 0).load();
+            final OcclusionField field = fields(cx, 0).occlusionFieldAt(cx, 0, 0);
+            assertTrue(Element.earth.flagsIn(field.elementAt(1, 5, 5)));
+            assertTrue(Element.air.flagsIn(field.elementAt(2, 5, 5)));
+        }
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void uniformSectionsTakeNoSlot() {
+        this.store = OcclusionStore.direct(1);
+        this.instance = new InstanceSpace(null, store);
+        instance.setBlock(1, 5, 5, stone, 0);
+
+        loadAll(0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+        assertEquals(4, store.getSize());
+    }
+
+    @Test
+    public void uniformSectionsEvictNothingWhenFull() {
+        this.store = OcclusionStore.direct(1);
+        this.instance = new InstanceSpace(null, store);
+        instance.setBlock(1, 5, 5, stone, 0);
+
+        fields(0, 0).occlusionFieldAt(0, 0, 0);
+        fields(0, 0).occlusionFieldAt(0, 1, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+        assertEquals(2, store.getSize());
+
+        instance.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        instance.columnarSpaceAt(0, 0).load();
+        assertTrue(Element.air.flagsIn(fields(0, 0).occlusionFieldAt(0, 0, 0).elementAt(3, 5, 3)));
+    }
+
+    @Test
+    public void mapped() throws IOException {
+        final File file = File.createTempFile("occlusion", ".bin");
+        file.deleteOnExit();
+        this.store = OcclusionStore.mapped(file, 2);
+        this.instance = new InstanceSpace(null, store);
+        instance.setBlock(15, 5, 5, lava, 0);
+
+        fields(0, 0).occlusionFieldAt(0, 0, 0);
+        instance.columnarSpaceAt(0, 0).unload();
+        assertEquals(2L * OcclusionStore.SECTION_BYTES, file.length());
+
+        instance.columnarSpaceAt(0, 0).setBlockAt(3, 5, 3, stone);
+        final OcclusionField field = fields(0, 0).occlusionFieldAt(0, 0, 0);
+        assertTrue(Element.fire.flagsIn(field.elementAt(15, 5, 5)));
+        assertTrue(Element.air.flagsIn(field.elementAt(3, 5, 3)));
+    }
+}
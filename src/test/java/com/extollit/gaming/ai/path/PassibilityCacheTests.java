@@ -0,0 +1,110 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.Passibility;
+import com.extollit.gaming.ai.path.node.PassibilityCache;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import kotlin.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class PassibilityCacheTests {
+    private InstanceSpace instance;
+    private PassibilityCache cache;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(48);
+
+        this.cache = new PassibilityCache(instance);
+    }
+
+    private HydrazinePathFinder pathFinder(Monster monster) {
+        return TestingWorlds.pathFinder(instance, monster, 2.5, 2.5).withPassibilityCache(cache);
+    }
+
+    private Pair<Passibility, ThreeDimensionalIntVector> passibilityNear(int x, int y, int z) {
+        return pathFinder(new Monster()).passibilityNear(x, y, z);
+    }
+
+    @Test
+    public void sharedBetweenPathFinders() {
+        final ThreeDimensionalDoubleVector destination = new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5);
+        final IPath first = pathFinder(new Monster()).computePathTo(destination);
+        assertNotNull(first);
+        final long misses = cache.getMissCount();
+        assertEquals(0, cache.getHitCount());
+
+        final IPath second = pathFinder(new Monster()).computePathTo(destination);
+        assertNotNull(second);
+        assertTrue(first.sameAs(second));
+        assertTrue(cache.getHitCount() >= misses);
+        assertEquals(misses, cache.getMissCount());
+    }
+
+    @Test
+    public void differentCapabilities() {
+        passibilityNear(5, FLOOR + 1, 5);
+        final long misses = cache.getMissCount();
+
+        final Monster cautious = new Monster();
+        cautious.cautious = true;
+        pathFinder(cautious).passibilityNear(5, FLOOR + 1, 5);
+        assertEquals(2 * misses, cache.getMissCount());
+
+        passibilityNear(5, FLOOR + 1, 5);
+        assertEquals(misses, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidatedByBlockChange() {
+        assertEquals(new ThreeDimensionalIntVector(5, FLOOR + 1, 5), passibilityNear(5, FLOOR + 1, 5).getSecond());
+
+        instance.setBlock(5, FLOOR + 1, 5, stone, 0);
+        instance.setBlock(5, FLOOR + 2, 5, stone, 0);
+        final Pair<Passibility, ThreeDimensionalIntVector> result = passibilityNear(5, FLOOR + 1, 5);
+        assertEquals(new ThreeDimensionalIntVector(5, FLOOR + 1, 5), result.getSecond());
+        assertEquals(Passibility.impassible, result.getFirst());
+    }
+
+    @Test
+    public void invalidatedByBlockChangeFarBelow() {
+        assertEquals(new ThreeDimensionalIntVector(30, FLOOR + 1, 30), passibilityNear(30, FLOOR + 12, 30).getSecond());
+        final long misses = cache.getMissCount();
+        assertEquals(new ThreeDimensionalIntVector(30, FLOOR + 1, 30), passibilityNear(30, FLOOR + 12, 30).getSecond());
+        assertEquals(misses, cache.getMissCount());
+
+        instance.setBlock(30, FLOOR + 6, 30, stone, 0);
+        assertEquals(new ThreeDimensionalIntVector(30, FLOOR + 7, 30), passibilityNear(30, FLOOR + 12, 30).getSecond());
+    }
+
+    @Test
+    public void invalidatedByBlockChangeUnderWideEntity() {
+        final Monster wide = new Monster() {
+            @Override
+            public float width() {
+                return 12;
+            }
+        };
+        assertEquals(Passibility.Passible, pathFinder(wide).passibilityNear(30, FLOOR + 1, 30).getFirst());
+
+        instance.setBlock(36, FLOOR + 1, 30, stone, 0);
+        instance.setBlock(36, FLOOR + 2, 30, stone, 0);
+        assertEquals(Passibility.impassible, pathFinder(wide).passibilityNear(30, FLOOR + 1, 30).getFirst());
+    }
+
+    @Test
+    public void unrelatedBlockChange() {
+        passibilityNear(5, FLOOR + 1, 5);
+        final long misses = cache.getMissCount();
+
+        instance.setBlock(40, FLOOR + 1, 40, stone, 0);
+        passibilityNear(5, FLOOR + 1, 5);
+        assertEquals(misses, cache.getMissCount());
+    }
+}
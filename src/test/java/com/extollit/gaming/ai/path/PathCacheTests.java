@@ -0,0 +1,128 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class PathCacheTests {
+    private InstanceSpace instance;
+    private PathCache cache;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(48);
+
+        this.cache = new PathCache(instance);
+    }
+
+    private HydrazinePathFinder pathFinder(Monster monster, double x, double z) {
+        return TestingWorlds.pathFinder(instance, monster, x, z).withPathCache(cache);
+    }
+
+    private static IPath pathTo(HydrazinePathFinder pathFinder, int x, int z) {
+        final IPath path = pathFinder.computePathTo(new ThreeDimensionalDoubleVector(x + 0.5, FLOOR + 1, z + 0.5));
+        assertNotNull(path);
+        assertEquals(new ThreeDimensionalIntVector(x, FLOOR + 1, z), path.last().getCoordinates());
+        return path;
+    }
+
+    @Test
+    public void sharedWithoutSearch() {
+        final IPath first = pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        assertEquals(1, cache.getSize());
+
+        final IPath second = pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        assertEquals(1, cache.getHitCount());
+        assertTrue(first.sameAs(second));
+        assertNotSame(first.at(1), second.at(1));
+    }
+
+    @Test
+    public void followerTakesRemainder() {
+        final IPath first = pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        final ThreeDimensionalIntVector midway = first.at(first.length() / 2).getCoordinates();
+
+        final IPath second = pathTo(pathFinder(new Monster(), midway.x + 0.5, midway.z + 0.5), 24, 2);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(midway, second.at(0).getCoordinates());
+        assertEquals(first.length() - first.length() / 2, second.length());
+    }
+
+    @Test
+    public void differentCapabilities() {
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+
+        final Monster cautious = new Monster();
+        cautious.cautious = true;
+        pathTo(pathFinder(cautious, 2.5, 2.5), 24, 2);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void invalidatedByBlockChange() {
+        final IPath first = pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        final ThreeDimensionalIntVector midway = first.at(first.length() / 2).getCoordinates();
+
+        instance.setBlock(midway.x, midway.y, midway.z, stone, 0);
+        assertEquals(0, cache.getSize());
+
+        final IPath second = pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        assertEquals(0, cache.getHitCount());
+        for (int i = 0; i < second.length(); ++i)
+            assertNotEquals(midway, second.at(i).getCoordinates());
+    }
+
+    @Test
+    public void changedDuringSearch() {
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 2, 24);
+
+        final HydrazinePathFinder pathFinder = pathFinder(new Monster(), 2.5, 2.5);
+        pathFinder.schedulingPriority(SchedulingPriority.low);
+        pathFinder.initiatePathTo(new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5));
+        assertFalse(pathFinder.queue.isEmpty());
+
+        instance.setBlock(8, FLOOR + 3, 8, stone, 0);
+        assertEquals(0, cache.getSize());
+
+        int updates = 0;
+        while (!pathFinder.queue.isEmpty()) {
+            pathFinder.update();
+            assertTrue(++updates < 10000);
+        }
+        assertEquals(0, cache.getSize());
+
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void unrelatedBlockChange() {
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+
+        instance.setBlock(40, FLOOR + 1, 40, stone, 0);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvicted() {
+        this.cache = new PathCache(instance, 2);
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 24);
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 2, 24);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 24, 2);
+        assertEquals(2, cache.getHitCount());
+        pathTo(pathFinder(new Monster(), 2.5, 2.5), 20, 24);
+        assertEquals(2, cache.getHitCount());
+    }
+}
@@ -0,0 +1,92 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class PathFinderMetricsTests {
+    private InstanceSpace instance;
+    private PathFinderMetrics metrics;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(32);
+
+        this.metrics = new PathFinderMetrics();
+    }
+
+    private HydrazinePathFinder pathFinder(IPathFinderMetrics metrics) {
+        return TestingWorlds.pathFinder(instance, 2.5, 2.5).withMetrics(metrics);
+    }
+
+    private static IPath pathAroundWall(HydrazinePathFinder pathFinder) {
+        final IPath path = pathFinder.computePathTo(new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5));
+        assertNotNull(path);
+        return path;
+    }
+
+    @Test
+    public void aggregated() {
+        pathAroundWall(pathFinder(metrics));
+        pathAroundWall(pathFinder(metrics));
+
+        final PathFinderMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.getTriages());
+        assertEquals(2, snapshot.getCompletions());
+        assertTrue(snapshot.getIterations() > 0);
+        assertTrue(snapshot.getExpansions() > 0);
+        assertTrue(snapshot.getCalculations() > 0);
+        assertTrue(snapshot.getNodeMapHits() > 0);
+        assertTrue(snapshot.getQueueHighWater() > 0);
+        assertTrue(snapshot.getTriageResets() >= 2);
+        assertEquals(0, snapshot.getFaults());
+        assertEquals(2, snapshot.latencies(SchedulingPriority.extreme).getCount());
+        assertEquals(0, snapshot.latencies(SchedulingPriority.low).getCount());
+        assertEquals(0, snapshot.latencies(null).getCount());
+        assertTrue(snapshot.latencies(SchedulingPriority.extreme).percentile(0.99) > 0);
+    }
+
+    @Test
+    public void snapshotResets() {
+        pathAroundWall(pathFinder(metrics));
+        metrics.snapshot();
+
+        final PathFinderMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getTriages());
+        assertEquals(0, snapshot.getIterations());
+        assertEquals(0, snapshot.getQueueHighWater());
+        assertEquals(0, snapshot.latencies(SchedulingPriority.extreme).getCount());
+    }
+
+    @Test
+    public void samplePerCycle() {
+        final List<Integer> iterations = new ArrayList<>();
+        final HydrazinePathFinder pathFinder = pathFinder(new IPathFinderMetrics() {
+            @Override
+            public void onTriage(HydrazinePathFinder pathFinder, TriageSample sample) {
+                assertEquals(SchedulingPriority.extreme, sample.getPriority());
+                assertTrue(sample.getIterations() >= sample.getExpansions());
+                iterations.add(sample.getIterations());
+            }
+        });
+        pathAroundWall(pathFinder);
+        pathAroundWall(pathFinder);
+
+        assertEquals(2, iterations.size());
+        assertTrue(iterations.get(0) > 0);
+    }
+
+    @Test
+    public void histogramBuckets() {
+        assertEquals(1, PathFinderMetrics.upperBoundOf(0));
+        assertEquals(1024, PathFinderMetrics.upperBoundOf(10));
+        assertEquals(Long.MAX_VALUE, PathFinderMetrics.upperBoundOf(PathFinderMetrics.BUCKETS - 1));
+    }
+}
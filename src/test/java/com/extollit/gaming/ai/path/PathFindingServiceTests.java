@@ -0,0 +1,152 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.IPathingEntity;
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.*;
+
+public class PathFindingServiceTests {
+    private static final int
+        FLOOR = 0,
+        ENTITIES = 24;
+
+    private InstanceSpace instance;
+    private ExecutorService executor;
+    private PathFindingService service;
+    private List<Monster> monsters;
+    private List<ThreeDimensionalDoubleVector> destinations;
+
+    @Before
+    public void setup() {
+        this.instance = new InstanceSpace();
+        for (int z = 0; z < 64; ++z)
+            for (int x = 0; x < 64; ++x) {
+                instance.setBlock(x, FLOOR, z, stone, 0);
+                if (x % 8 == 4 && z % 16 != 0)
+                    instance.setBlock(x, FLOOR + 1, z, stone, 0);
+            }
+
+        this.monsters = new ArrayList<>();
+        this.destinations = new ArrayList<>();
+        for (int c = 0; c < ENTITIES; ++c) {
+            final Monster monster = new Monster();
+            monster.moveTo(new ThreeDimensionalDoubleVector(1.5 + (c % 6) * 2, FLOOR + 1, 1.5 + c), null, null);
+            this.monsters.add(monster);
+            this.destinations.add(new ThreeDimensionalDoubleVector(15.5 + (c % 5) * 2, FLOOR + 1, 20.5 - c % 7));
+        }
+
+        this.executor = Executors.newFixedThreadPool(3);
+        this.service = new PathFindingService(instance, AreaOcclusionProviderFactory.INSTANCE, executor, 4);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    @Test
+    public void matchesSerial() {
+        final List<IPath> expected = new ArrayList<>();
+        for (int c = 0; c < ENTITIES; ++c)
+            expected.add(serial(monsters.get(c), destinations.get(c)));
+
+        for (int c = 0; c < ENTITIES; ++c)
+            service.submit(monsters.get(c), destinations.get(c), SchedulingPriority.extreme);
+        assertEquals(ENTITIES, service.getPending());
+
+        final Map<IPathingEntity, IPath> actual = drain();
+        assertEquals(0, service.getPending());
+        assertEquals(ENTITIES, actual.size());
+        int found = 0;
+        for (int c = 0; c < ENTITIES; ++c) {
+            assertSamePath(expected.get(c), actual.get(monsters.get(c)));
+            if (expected.get(c) != null)
+                found++;
+        }
+        assertTrue(found > ENTITIES / 2);
+    }
+
+    @Test
+    public void supersede() {
+        final Monster monster = monsters.get(0);
+        service.submit(monster, destinations.get(0), SchedulingPriority.low);
+        service.submit(monster, destinations.get(1), SchedulingPriority.extreme);
+        assertEquals(1, service.getPending());
+
+        final IPath path = drain().get(monster);
+        assertNotNull(path);
+        final Node last = path.last();
+        assertEquals(Math.floor(destinations.get(1).getX()), last.getCoordinates().x, 0);
+        assertEquals(Math.floor(destinations.get(1).getZ()), last.getCoordinates().z, 0);
+    }
+
+    @Test
+    public void cancel() {
+        final Monster monster = monsters.get(0);
+        service.submit(monster, destinations.get(0), SchedulingPriority.low);
+        assertTrue(service.cancel(monster));
+        assertFalse(service.cancel(monster));
+        assertTrue(service.tick().isEmpty());
+        assertSame(service.pathFinderFor(monster), service.pathFinderFor(monster));
+    }
+
+    @Test
+    public void failure() {
+        final Monster monster = monsters.get(0);
+        service.submit(monster, destinations.get(0), SchedulingPriority.low);
+        service.submit(monsters.get(1), destinations.get(1), SchedulingPriority.low);
+        service.pathFinderFor(monster).withPathProcessor(new com.extollit.gaming.ai.path.node.path.IPathProcessor() {
+            @Override
+            public void processPath(IPath path) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        try {
+            drain();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertFalse(service.cancel(monster));
+        }
+        assertNotNull(drain().get(monsters.get(1)));
+    }
+
+    private IPath serial(Monster monster, ThreeDimensionalDoubleVector destination) {
+        final HydrazinePathFinder pathFinder = new HydrazinePathFinder(monster, instance, AreaOcclusionProviderFactory.INSTANCE);
+        pathFinder.schedulingPriority(SchedulingPriority.extreme);
+        IPath path = pathFinder.initiatePathTo(destination);
+        while (path != null && !pathFinder.queue.isEmpty())
+            path = pathFinder.update();
+        return path;
+    }
+
+    private Map<IPathingEntity, IPath> drain() {
+        final Map<IPathingEntity, IPath> results = new java.util.HashMap<>();
+        for (int tick = 0; tick < 1000 && service.getPending() > 0; ++tick)
+            results.putAll(service.tick());
+        return results;
+    }
+
+    private static void assertSamePath(IPath expected, IPath actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); ++i)
+            assertEquals(expected.at(i).getCoordinates(), actual.at(i).getCoordinates());
+    }
+}
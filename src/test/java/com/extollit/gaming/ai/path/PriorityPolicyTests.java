@@ -0,0 +1,129 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class PriorityPolicyTests {
+    private static final ThreeDimensionalDoubleVector DESTINATION = new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5);
+
+    private InstanceSpace instance;
+    private DistancePriorityPolicy policy;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(48);
+
+        this.policy = new DistancePriorityPolicy();
+    }
+
+    private HydrazinePathFinder pathFinder(IPriorityPolicy policy) {
+        final HydrazinePathFinder pathFinder = TestingWorlds.pathFinder(instance, 2.5, 2.5).withPriorityPolicy(policy);
+        pathFinder.schedulingPriority(SchedulingPriority.low);
+        return pathFinder;
+    }
+
+    private void observerAt(double x, double z) {
+        policy.observers(Collections.singletonList(new ThreeDimensionalDoubleVector(x, FLOOR + 1, z)));
+    }
+
+    private static boolean searched(HydrazinePathFinder pathFinder) {
+        for (Node node : pathFinder.getNodeMap().all())
+            if (node != null && node.visited())
+                return true;
+        return false;
+    }
+
+    @Test
+    public void distantEntityMovesCoarsely() {
+        observerAt(400, 400);
+        final HydrazinePathFinder pathFinder = pathFinder(policy);
+        final IPath path = pathFinder.initiatePathTo(DESTINATION);
+
+        assertNotNull(path);
+        assertEquals(2, path.length());
+        assertEquals(new ThreeDimensionalIntVector(2, FLOOR + 1, 2), path.at(0).getCoordinates());
+        assertEquals(new ThreeDimensionalIntVector(24, FLOOR + 1, 2), path.at(1).getCoordinates());
+        assertSame(path, pathFinder.update());
+        assertFalse(searched(pathFinder));
+        assertTrue(pathFinder.queue.isEmpty());
+    }
+
+    @Test
+    public void nearbyEntitySearches() {
+        final List<SchedulingPriority> priorities = new ArrayList<>();
+        observerAt(4, 4);
+        final HydrazinePathFinder pathFinder = pathFinder(policy).withMetrics(new IPathFinderMetrics() {
+            @Override
+            public void onTriage(HydrazinePathFinder pathFinder, TriageSample sample) {
+                priorities.add(sample.getPriority());
+            }
+        });
+        pathFinder.initiatePathTo(DESTINATION);
+
+        assertTrue(searched(pathFinder));
+        assertEquals(Collections.singletonList(SchedulingPriority.extreme), priorities);
+    }
+
+    @Test
+    public void resumesSearchWhenObserved() {
+        observerAt(400, 400);
+        final HydrazinePathFinder pathFinder = pathFinder(policy);
+        pathFinder.initiatePathTo(DESTINATION);
+        assertFalse(searched(pathFinder));
+
+        observerAt(4, 4);
+        IPath path = null;
+        for (int i = 0; i < 100 && !pathFinder.queue.isEmpty() || path == null; ++i)
+            path = pathFinder.update();
+        assertTrue(searched(pathFinder));
+        assertEquals(new ThreeDimensionalIntVector(24, FLOOR + 1, 2), path.last().getCoordinates());
+        assertTrue(path.length() > 2);
+    }
+
+    @Test
+    public void urgencyPromotes() {
+        observerAt(40, 2.5);
+        final List<SchedulingPriority> priorities = new ArrayList<>();
+        final HydrazinePathFinder pathFinder = pathFinder(policy).withMetrics(new IPathFinderMetrics() {
+            @Override
+            public void onTriage(HydrazinePathFinder pathFinder, TriageSample sample) {
+                priorities.add(sample.getPriority());
+            }
+        });
+        pathFinder.initiatePathTo(DESTINATION);
+        pathFinder.reset();
+        pathFinder.initiatePathTo(new ThreeDimensionalDoubleVector(6.5, FLOOR + 1, 2.5));
+        assertEquals(Arrays.asList(SchedulingPriority.high, SchedulingPriority.extreme), priorities);
+    }
+
+    @Test
+    public void context() {
+        final List<String> contexts = new ArrayList<>();
+        final HydrazinePathFinder pathFinder = pathFinder(new IPriorityPolicy() {
+            @Override
+            public SchedulingPriority priorityFor(HydrazinePathFinder pathFinder, PriorityContext context) {
+                assertEquals(SchedulingPriority.low, context.getPriority());
+                assertFalse(context.getCoarse());
+                assertEquals(0, context.getStagnantFor(), 0);
+                assertEquals(1, context.getSuccessRate(), 0);
+                assertEquals(22, context.getDistanceToDestination(), 0.001);
+                contexts.add(context.toString());
+                return SchedulingPriority.low;
+            }
+        });
+        pathFinder.initiatePathTo(DESTINATION);
+        assertEquals(1, contexts.size());
+    }
+}
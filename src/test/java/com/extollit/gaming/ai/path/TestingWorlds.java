@@ -0,0 +1,63 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.model.IBlockObject;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+
+public class TestingWorlds {
+    /** Level of the stone floor of flat worlds, entities stand one block above it */
+    public static final int FLOOR = 3;
+
+    /**
+     * Fills a box of blocks in an instance space, all bounds are inclusive
+     */
+    public static void fill(InstanceSpace instance, int x0, int y0, int z0, int xN, int yN, int zN, IBlockObject block) {
+        for (int z = z0; z <= zN; ++z)
+            for (int y = y0; y <= yN; ++y)
+                for (int x = x0; x <= xN; ++x)
+                    instance.setBlock(x, y, z, block, 0);
+    }
+
+    /**
+     * Creates an instance space with a square stone floor at {@link #FLOOR} extending from the origin
+     */
+    public static InstanceSpace flat(int size) {
+        final InstanceSpace instance = new InstanceSpace();
+        fill(instance, 0, FLOOR, 0, size - 1, FLOOR, size - 1, stone);
+        return instance;
+    }
+
+    /**
+     * Creates a flat instance space with a wall along the z-axis at x = 12 from z = 0 to z = 19, paths from near the
+     * origin to the far side of the wall must detour around its end
+     */
+    public static InstanceSpace walled(int size) {
+        final InstanceSpace instance = flat(size);
+        wall(instance, 12, 0, 19);
+        return instance;
+    }
+
+    /**
+     * Builds a wall three blocks high on the floor of a flat instance space along the z-axis
+     */
+    public static void wall(InstanceSpace instance, int x, int z0, int zN) {
+        fill(instance, x, FLOOR + 1, z0, x, FLOOR + 3, zN, stone);
+    }
+
+    /**
+     * Places a monster on the floor of a flat instance space and creates a path-finder for it scheduled at extreme
+     * priority, so that each path is computed in one pass
+     */
+    public static HydrazinePathFinder pathFinder(InstanceSpace instance, Monster monster, double x, double z) {
+        monster.moveTo(new ThreeDimensionalDoubleVector(x, FLOOR + 1, z), null, null);
+        final HydrazinePathFinder pathFinder =
+            new HydrazinePathFinder(monster, instance, AreaOcclusionProviderFactory.INSTANCE);
+        pathFinder.schedulingPriority(SchedulingPriority.extreme);
+        return pathFinder;
+    }
+
+    public static HydrazinePathFinder pathFinder(InstanceSpace instance, double x, double z) {
+        return pathFinder(instance, new Monster(), x, z);
+    }
+}
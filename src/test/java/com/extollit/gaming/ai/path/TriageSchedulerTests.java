@@ -0,0 +1,152 @@
+package com.extollit.gaming.ai.path;
+
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.extollit.gaming.ai.path.TestingWorlds.FLOOR;
+import static org.junit.Assert.*;
+
+public class TriageSchedulerTests {
+    private static final ThreeDimensionalDoubleVector DESTINATION = new ThreeDimensionalDoubleVector(24.5, FLOOR + 1, 2.5);
+    private static final long STEP = 1_000L;
+
+    private InstanceSpace instance;
+    private TriageScheduler scheduler;
+    private long time;
+
+    @Before
+    public void setup() {
+        this.instance = TestingWorlds.walled(48);
+
+        // Advances by one step each time it is read, which path-finders do once per iteration
+        final IClock clock = new IClock() {
+            @Override
+            public long nanoTime() {
+                return time += STEP;
+            }
+        };
+        this.scheduler = new TriageScheduler(1_000_000_000L, 50 * STEP, clock);
+    }
+
+    private HydrazinePathFinder pathFinder(SchedulingPriority priority) {
+        final HydrazinePathFinder pathFinder = TestingWorlds.pathFinder(instance, 2.5, 2.5);
+        pathFinder.schedulingPriority(priority);
+        scheduler.register(pathFinder);
+        return pathFinder;
+    }
+
+    private static void assertReachedDestination(HydrazinePathFinder pathFinder) {
+        final IPath path = pathFinder.update();
+        assertNotNull(path);
+        assertEquals(new ThreeDimensionalIntVector(24, FLOOR + 1, 2), path.last().getCoordinates());
+    }
+
+    @Test
+    public void noIterationsOutsideTick() {
+        final HydrazinePathFinder pathFinder = pathFinder(SchedulingPriority.extreme);
+        pathFinder.initiatePathTo(DESTINATION);
+        pathFinder.update();
+        assertFalse(pathFinder.queue.isEmpty());
+        for (com.extollit.gaming.ai.path.node.Node node : pathFinder.getNodeMap().all())
+            assertFalse(node.visited());
+    }
+
+    @Test
+    public void completesDuringTick() {
+        final HydrazinePathFinder
+            first = pathFinder(SchedulingPriority.extreme),
+            second = pathFinder(SchedulingPriority.high),
+            third = pathFinder(SchedulingPriority.low);
+        first.initiatePathTo(DESTINATION);
+        second.initiatePathTo(DESTINATION);
+        third.initiatePathTo(DESTINATION);
+
+        scheduler.tick();
+        assertEquals(0, scheduler.getShed());
+        assertReachedDestination(first);
+        assertReachedDestination(second);
+        assertReachedDestination(third);
+    }
+
+    @Test
+    public void carriesOver() {
+        final HydrazinePathFinder pathFinder = pathFinder(SchedulingPriority.low);
+        pathFinder.initiatePathTo(DESTINATION);
+
+        int ticks = 0;
+        while (!pathFinder.queue.isEmpty()) {
+            scheduler.tick(20 * STEP);
+            pathFinder.update();
+            assertTrue(++ticks < 10000);
+        }
+        assertTrue(ticks > 1);
+        assertReachedDestination(pathFinder);
+    }
+
+    @Test
+    public void shedWhenOverBudget() {
+        final HydrazinePathFinder
+            first = pathFinder(SchedulingPriority.extreme),
+            second = pathFinder(SchedulingPriority.low);
+        first.initiatePathTo(DESTINATION);
+        second.initiatePathTo(DESTINATION);
+
+        scheduler.tick(0);
+        assertEquals(2, scheduler.getShed());
+        assertFalse(first.queue.isEmpty());
+        assertFalse(second.queue.isEmpty());
+    }
+
+    @Test
+    public void weightedByPriority() {
+        final Map<HydrazinePathFinder, Integer> iterations = new HashMap<>();
+        final IPathFinderMetrics metrics = new IPathFinderMetrics() {
+            @Override
+            public void onTriage(HydrazinePathFinder pathFinder, TriageSample sample) {
+                final Integer sum = iterations.get(pathFinder);
+                iterations.put(pathFinder, (sum == null ? 0 : sum) + sample.getIterations());
+            }
+        };
+        final HydrazinePathFinder
+            extreme = pathFinder(SchedulingPriority.extreme).withMetrics(metrics),
+            low = pathFinder(SchedulingPriority.low).withMetrics(metrics);
+        extreme.initiatePathTo(DESTINATION);
+        low.initiatePathTo(DESTINATION);
+
+        // Room for almost ten slices, too few for either search to complete, of which the low priority path-finder with
+        // a ninth of the weight receives one
+        scheduler.tick(500 * STEP);
+        assertFalse(extreme.queue.isEmpty());
+        assertFalse(low.queue.isEmpty());
+
+        assertEquals(50, (int) iterations.get(low));
+        assertTrue(iterations.get(extreme) > 8 * 50);
+    }
+
+    @Test
+    public void unregistered() {
+        final HydrazinePathFinder pathFinder = pathFinder(SchedulingPriority.extreme);
+        assertEquals(1, scheduler.getSize());
+        assertTrue(scheduler.unregister(pathFinder));
+        assertEquals(0, scheduler.getSize());
+
+        final IPath path = pathFinder.computePathTo(DESTINATION);
+        assertNotNull(path);
+        pathFinder.initiatePathTo(new ThreeDimensionalDoubleVector(2.5, FLOOR + 1, 24.5));
+        boolean visited = false;
+        for (com.extollit.gaming.ai.path.node.Node node : pathFinder.getNodeMap().all())
+            visited |= node != null && node.visited();
+        assertTrue(visited);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oneSchedulerAtATime() {
+        new TriageScheduler().register(pathFinder(SchedulingPriority.high));
+    }
+}
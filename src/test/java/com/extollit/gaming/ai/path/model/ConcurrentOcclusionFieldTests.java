@@ -0,0 +1,76 @@
+package com.extollit.gaming.ai.path.model;
+
+import com.extollit.gaming.ai.path.BlockObject;
+import com.extollit.gaming.ai.path.ColumnarSpace;
+import com.extollit.gaming.ai.path.InstanceSpace;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.*;
+
+public class ConcurrentOcclusionFieldTests {
+    private static final int TOGGLES = 20000;
+
+    private final BlockObject air = new BlockObject();
+    private InstanceSpace instance;
+    private OcclusionField field;
+
+    @Before
+    public void setup() {
+        air.fullyBounded = true;
+
+        this.instance = new InstanceSpace();
+        for (int z = 0; z < 16; ++z)
+            for (int x = 0; x < 16; ++x)
+                instance.setBlock(x, 16, z, stone, 0);
+
+        final ColumnarSpace columnarSpace = instance.columnarSpaceAt(0, 0);
+        this.field = columnarSpace.occlusionFields().occlusionFieldAt(0, 1, 0);
+    }
+
+    @Test
+    public void version() {
+        final int version = field.getVersion();
+        instance.setBlock(5, 20, 5, stone, 0);
+        assertTrue(field.getVersion() != version);
+        assertTrue(Element.earth.flagsIn(field.elementAt(5, 4, 5)));
+    }
+
+    @Test
+    public void readersDuringWrites() throws InterruptedException {
+        final byte floor = field.elementAt(12, 0, 12);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        final Thread[] readers = new Thread[3];
+        for (int c = 0; c < readers.length; ++c) {
+            readers[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!done.get()) {
+                        final byte toggled = field.elementAt(5, 4, 5);
+                        if (!Element.earth.flagsIn(toggled) && !Element.air.flagsIn(toggled))
+                            failure.set("Toggled block read as " + toggled);
+                        if (field.elementAt(12, 0, 12) != floor)
+                            failure.set("Unchanged block read as " + field.elementAt(12, 0, 12));
+                    }
+                }
+            });
+            readers[c].start();
+        }
+
+        for (int c = 0; c < TOGGLES; ++c)
+            instance.setBlock(5, 20, 5, (c & 1) == 0 ? stone : air, 0);
+
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+
+        assertNull(failure.get());
+        assertTrue(Element.air.flagsIn(field.elementAt(5, 4, 5)));
+    }
+}
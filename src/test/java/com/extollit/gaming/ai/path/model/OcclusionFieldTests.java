@@ -6,6 +6,7 @@ import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static com.extollit.gaming.ai.path.TestingBlocks.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalMatchers.leq;
@@ -568,4 +569,28 @@ public class OcclusionFieldTests extends AbstractOcclusionFieldTesting {
         final byte element = occlusionField.elementAt(2, 9, 6);
         assertTrue(Element.fire.flagsIn(element));
     }
+
+    @Test
+    public void scanUniform() {
+        occlusionField.loadFrom(centerSpace,  0, 0, 0);
+
+        final int earth = 1 << Element.earth.mask;
+        assertEquals(-1, occlusionField.scanDown(3, 15, 4, 0, earth));
+        assertEquals(16, occlusionField.scanUp(3, 0, 4, 15, earth));
+        assertEquals(9, occlusionField.scanDown(3, 9, 4, 2, earth | 1 << Element.air.mask));
+    }
+
+    @Test
+    public void scanColumn() {
+        when(centerSpace.blockAt(anyInt(), leq(7), anyInt())).thenReturn(stone);
+        occlusionField.loadFrom(centerSpace,  0, 0, 0);
+        occlusionField.set(centerSpace, 3, 12, 4, stone);
+
+        final int earth = 1 << Element.earth.mask;
+        assertEquals(7, occlusionField.scanDown(3, 11, 4, 0, earth));
+        assertEquals(12, occlusionField.scanUp(3, 8, 4, 15, earth));
+        assertEquals(16, occlusionField.scanUp(3, 13, 4, 15, earth));
+        assertEquals(7, occlusionField.scanDown(2, 15, 4, 0, earth));
+        assertEquals(8, occlusionField.scanDown(2, 15, 4, 9, earth));
+    }
 }
@@ -0,0 +1,131 @@
+package com.extollit.gaming.ai.path.model;
+
+import com.extollit.gaming.ai.path.node.Node;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PackedNodeQueueTests {
+    private PackedNodeQueue q;
+
+    @Before
+    public void setup() {
+        this.q = new PackedNodeQueue(4);
+    }
+
+    @Test
+    public void ordering() {
+        final Node
+            far = node(0, 0, 1, 9),
+            near = node(0, 0, 2, 3),
+            middle = node(0, 0, 3, 5),
+            risky = node(0, 0, 4, 1);
+
+        risky.passibility(Passibility.Risky);
+
+        q.add(far);
+        q.add(risky);
+        q.add(near);
+        q.add(middle);
+        assertQueueIndices();
+
+        assertSame(near, q.dequeue());
+        assertSame(middle, q.dequeue());
+        assertSame(far, q.dequeue());
+        assertSame(risky, q.dequeue());
+        assertTrue(q.isEmpty());
+        assertFalse(far.assigned());
+    }
+
+    @Test
+    public void noLimit() {
+        final int count = Node.MAX_INDICES * 4;
+        for (int c = 0; c < count; ++c)
+            q.add(node(0, 0, c, count - c));
+
+        assertEquals(count, q.getSize());
+        assertQueueIndices();
+
+        int previous = -1;
+        while (!q.isEmpty()) {
+            final int remaining = q.dequeue().remaining();
+            assertTrue(remaining >= previous);
+            previous = remaining;
+        }
+    }
+
+    @Test
+    public void decreaseKey() {
+        final Node
+            root = node(0, 0, 0, 0),
+            detour = node(5, 0, 0, 1),
+            alpha = node(0, 0, 1, 2),
+            beta = node(0, 0, 2, 3);
+
+        detour.length(10);
+        alpha.appendTo(root, 1, 2);
+        beta.appendTo(alpha, 1, 3);
+        q.add(alpha);
+        q.add(beta);
+
+        final Node subject = node(1, 0, 0, 0);
+        q.appendTo(subject, detour, 8);
+        assertSame(alpha, q.top());
+        assertSame(detour, subject.getParent());
+
+        assertTrue(q.appendTo(subject, root, 0));
+        assertSame(root, subject.getParent());
+        assertSame(subject, q.top());
+        assertQueueIndices();
+    }
+
+    @Test
+    public void cullBranch() {
+        final Node
+            root = node(0, 0, 0, 0),
+            left = node(-1, 0, 0, 1),
+            right = node(1, 0, 0, 1),
+            leftHead = node(-2, 0, 0, 1),
+            rightHead = node(2, 0, 0, 1);
+
+        left.appendTo(root, 1, 1);
+        right.appendTo(root, 1, 1);
+        leftHead.appendTo(left, 1, 1);
+        rightHead.appendTo(right, 1, 1);
+        q.add(leftHead);
+        q.add(rightHead);
+
+        q.cullBranch(left);
+
+        assertEquals(1, q.getSize());
+        assertSame(rightHead, q.top());
+        assertFalse(leftHead.assigned());
+        assertQueueIndices();
+    }
+
+    @Test
+    public void clear() {
+        final Node node = node(0, 0, 0, 1);
+        q.add(node);
+        q.clear();
+
+        assertTrue(q.isEmpty());
+        assertFalse(node.assigned());
+    }
+
+    private static Node node(int x, int y, int z, int remaining) {
+        final Node node = new Node(new ThreeDimensionalIntVector(x, y, z));
+        node.remaining(remaining);
+        return node;
+    }
+
+    private void assertQueueIndices() {
+        final List<Node> view = q.view();
+        for (int c = 0; c < view.size(); ++c)
+            assertEquals(c, view.get(c).index());
+    }
+}
@@ -0,0 +1,269 @@
+package com.extollit.gaming.ai.path.portal;
+
+import com.extollit.gaming.ai.path.AreaOcclusionProviderFactory;
+import com.extollit.gaming.ai.path.BlockObject;
+import com.extollit.gaming.ai.path.HydrazinePathFinder;
+import com.extollit.gaming.ai.path.InstanceSpace;
+import com.extollit.gaming.ai.path.Monster;
+import com.extollit.gaming.ai.path.node.path.IPath;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleBox;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalDoubleVector;
+import com.extollit.gaming.ai.path.vector.ThreeDimensionalIntVector;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.extollit.gaming.ai.path.TestingBlocks.stone;
+import static org.junit.Assert.*;
+
+public class PortalGraphTests {
+    private static final int
+        FLOOR = 0,
+        LENGTH = 160,
+        WIDTH = 48,
+        WALL_X = 40,
+        GAP_Z = 40;
+
+    private InstanceSpace instance;
+    private PortalGraph graph;
+
+    @Before
+    public void setup() {
+        this.instance = new InstanceSpace();
+        for (int z = 0; z < WIDTH; ++z)
+            for (int x = 0; x < LENGTH; ++x)
+                instance.setBlock(x, FLOOR, z, stone, 0);
+
+        for (int z = 0; z < GAP_Z; ++z)
+            wall(WALL_X, z);
+
+        this.graph = new PortalGraph(instance);
+    }
+
+    private void wall(int x, int z) {
+        for (int y = FLOOR + 1; y <= FLOOR + 3; ++y)
+            instance.setBlock(x, y, z, stone, 0);
+    }
+
+    @Test
+    public void routeAroundWall() {
+        final Route route = graph.route(
+            new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            new ThreeDimensionalIntVector(150, FLOOR + 1, 2)
+        );
+
+        assertNotNull(route);
+        assertEquals(new ThreeDimensionalIntVector(2, FLOOR + 1, 2), route.source());
+        assertEquals(new ThreeDimensionalIntVector(150, FLOOR + 1, 2), route.destination());
+        assertTrue(route.getCost() >= 148 + 2 * (GAP_Z - 2));
+
+        boolean detoured = false;
+        for (int i = 1; i < route.getSize(); ++i) {
+            final ThreeDimensionalIntVector
+                a = route.get(i - 1),
+                b = route.get(i);
+
+            assertTrue(Math.abs((a.x >> 4) - (b.x >> 4)) <= 1);
+            assertTrue(Math.abs((a.y >> 4) - (b.y >> 4)) <= 1);
+            assertTrue(Math.abs((a.z >> 4) - (b.z >> 4)) <= 1);
+            detoured |= b.z >= GAP_Z;
+        }
+        assertTrue(detoured);
+    }
+
+    @Test
+    public void sameSection() {
+        final Route route = graph.route(
+            new ThreeDimensionalIntVector(1, FLOOR + 1, 1),
+            new ThreeDimensionalIntVector(5, FLOOR + 1, 7)
+        );
+
+        assertNotNull(route);
+        assertEquals(10, route.getCost());
+    }
+
+    @Test
+    public void enclosed() {
+        for (int i = 0; i <= 8; ++i) {
+            wall(96 + i, 16);
+            wall(96 + i, 24);
+            wall(96, 16 + i);
+            wall(104, 16 + i);
+        }
+
+        assertNull(graph.route(
+            new ThreeDimensionalIntVector(100, FLOOR + 1, 20),
+            new ThreeDimensionalIntVector(2, FLOOR + 1, 2)
+        ));
+        assertNull(graph.route(
+            new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            new ThreeDimensionalIntVector(100, FLOOR + 1, 20)
+        ));
+    }
+
+    @Test
+    public void invalidate() {
+        final ThreeDimensionalIntVector
+            source = new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            destination = new ThreeDimensionalIntVector(150, FLOOR + 1, 2);
+
+        assertNotNull(graph.route(source, destination));
+        assertTrue(graph.getSectionCount() > 0);
+
+        for (int z = GAP_Z; z < WIDTH; ++z)
+            wall(WALL_X, z);
+        graph.invalidate(WALL_X >> 4, FLOOR >> 4, GAP_Z >> 4);
+
+        assertNull(graph.route(source, destination));
+    }
+
+    @Test
+    public void blockChangesTracked() {
+        final ThreeDimensionalIntVector
+            source = new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            destination = new ThreeDimensionalIntVector(150, FLOOR + 1, 2);
+
+        assertNotNull(graph.route(source, destination));
+
+        for (int z = GAP_Z; z < WIDTH; ++z)
+            wall(WALL_X, z);
+
+        assertNull(graph.route(source, destination));
+    }
+
+    @Test
+    public void repair() {
+        assertNotNull(graph.route(
+            new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            new ThreeDimensionalIntVector(150, FLOOR + 1, 2)
+        ));
+        final int sections = graph.getSectionCount();
+        assertEquals(0, graph.getPendingRepairs());
+
+        instance.setBlock(72, FLOOR + 1, 44, stone, 0);
+        instance.setBlock(8, FLOOR + 1, 8, stone, 0);
+
+        assertEquals(2, graph.getPendingRepairs());
+        assertEquals(sections - 2, graph.getSectionCount());
+        assertEquals(1, graph.repair(0));
+        assertEquals(1, graph.getPendingRepairs());
+        assertEquals(1, graph.repair(Long.MAX_VALUE));
+        assertEquals(0, graph.getPendingRepairs());
+        assertEquals(sections, graph.getSectionCount());
+    }
+
+    private void pillar(int x, int z, int height) {
+        for (int y = FLOOR + 1; y <= FLOOR + height; ++y)
+            instance.setBlock(x, y, z, stone, 0);
+    }
+
+    @Test
+    public void ledgeUnreachable() {
+        pillar(20, 20, 4);
+
+        final ThreeDimensionalIntVector
+            ground = new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            ledge = new ThreeDimensionalIntVector(20, FLOOR + 5, 20);
+
+        assertTrue(graph.unreachable(ground, ledge));
+        assertFalse(graph.unreachable(ledge, ground));
+        assertFalse(graph.unreachable(ground, new ThreeDimensionalIntVector(150, FLOOR + 1, 2)));
+    }
+
+    @Test
+    public void pitUnreachable() {
+        for (int i = 0; i <= 8; ++i) {
+            wall(96 + i, 16);
+            wall(96 + i, 24);
+            wall(96, 16 + i);
+            wall(104, 16 + i);
+        }
+
+        final ThreeDimensionalIntVector
+            inside = new ThreeDimensionalIntVector(100, FLOOR + 1, 20),
+            outside = new ThreeDimensionalIntVector(2, FLOOR + 1, 2);
+
+        assertTrue(graph.unreachable(inside, outside));
+        assertTrue(graph.unreachable(outside, inside));
+        assertFalse(graph.unreachable(inside, new ThreeDimensionalIntVector(101, FLOOR + 1, 22)));
+    }
+
+    @Test
+    public void ladderReachable() {
+        pillar(20, 20, 4);
+        final BlockObject ladder = new BlockObject();
+        ladder.climbable = true;
+        ladder.bounds = new ThreeDimensionalDoubleBox(0, 0, 0, 1, 1, 0.1);
+        for (int y = FLOOR + 1; y <= FLOOR + 4; ++y)
+            instance.setBlock(20, y, 19, ladder, 0);
+
+        assertFalse(graph.unreachable(
+            new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            new ThreeDimensionalIntVector(20, FLOOR + 5, 20)
+        ));
+    }
+
+    @Test
+    public void unreachableInvalidated() {
+        pillar(20, 20, 4);
+
+        final ThreeDimensionalIntVector
+            ground = new ThreeDimensionalIntVector(2, FLOOR + 1, 2),
+            ledge = new ThreeDimensionalIntVector(20, FLOOR + 5, 20);
+
+        assertTrue(graph.unreachable(ground, ledge));
+
+        pillar(21, 20, 3);
+        pillar(22, 20, 2);
+        pillar(23, 20, 1);
+
+        assertFalse(graph.unreachable(ground, ledge));
+    }
+
+    @Test
+    public void pathFinderRefusesUnreachable() {
+        pillar(20, 20, 4);
+
+        final Monster monster = new Monster();
+        monster.moveTo(new ThreeDimensionalDoubleVector(14.5, FLOOR + 1, 14.5), null, null);
+        final HydrazinePathFinder pathFinder =
+            new HydrazinePathFinder(monster, instance, AreaOcclusionProviderFactory.INSTANCE)
+                .withPortalGraph(graph);
+
+        assertNull(pathFinder.computePathTo(new ThreeDimensionalDoubleVector(20.5, FLOOR + 5, 20.5)));
+        assertNull(pathFinder.initiatePathTo(new ThreeDimensionalDoubleVector(20.5, FLOOR + 5, 20.5), false));
+        assertNotNull(pathFinder.computePathTo(new ThreeDimensionalDoubleVector(20.5, FLOOR + 1, 17.5)));
+    }
+
+    @Test
+    public void pathFinderFollowsRoute() {
+        final Monster monster = new Monster();
+        monster.moveTo(new ThreeDimensionalDoubleVector(2.5, FLOOR + 1, 2.5), null, null);
+        final HydrazinePathFinder pathFinder =
+            new HydrazinePathFinder(monster, instance, AreaOcclusionProviderFactory.INSTANCE)
+                .withPortalGraph(graph);
+
+        final ThreeDimensionalDoubleVector destination = new ThreeDimensionalDoubleVector(150.5, FLOOR + 1, 2.5);
+        assertNotNull(pathFinder.initiatePathTo(destination, false));
+
+        IPath path = null;
+        for (int i = 0; i < 2000; ++i) {
+            path = pathFinder.updatePathFor(monster);
+            if (path == null)
+                break;
+        }
+
+        final ThreeDimensionalDoubleVector delta = monster.coordinates();
+        delta.subtract(destination);
+        assertTrue(delta.mg2() < 2);
+    }
+
+    @Test
+    public void noPortalGraph() {
+        final Monster monster = new Monster();
+        monster.moveTo(new ThreeDimensionalDoubleVector(2.5, FLOOR + 1, 2.5), null, null);
+        final HydrazinePathFinder pathFinder =
+            new HydrazinePathFinder(monster, instance, AreaOcclusionProviderFactory.INSTANCE);
+
+        assertNull(pathFinder.initiatePathTo(new ThreeDimensionalDoubleVector(150.5, FLOOR + 1, 2.5), false));
+    }
+}
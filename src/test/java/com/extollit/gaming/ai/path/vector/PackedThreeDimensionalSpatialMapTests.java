@@ -0,0 +1,104 @@
+package com.extollit.gaming.ai.path.vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PackedThreeDimensionalSpatialMapTests {
+    private PackedThreeDimensionalSpatialMap<String> map;
+
+    @Before
+    public void setup() {
+        this.map = new PackedThreeDimensionalSpatialMap<>(3, 4);
+    }
+
+    @Test
+    public void packing() {
+        final int[][] coordinates = {
+            {0, 0, 0}, {-1, -1, -1}, {1, 2, 3}, {-30000000, 255, 30000000}, {12345, -2048, -54321}, {33554431, 2047, -33554432}
+        };
+        for (int[] c : coordinates) {
+            final long key = ThreeDimensionalIntVector.packed(c[0], c[1], c[2]);
+            assertEquals(c[0], ThreeDimensionalIntVector.unpackX(key));
+            assertEquals(c[1], ThreeDimensionalIntVector.unpackY(key));
+            assertEquals(c[2], ThreeDimensionalIntVector.unpackZ(key));
+        }
+    }
+
+    @Test
+    public void putGet() {
+        map.put(new ThreeDimensionalIntVector(1, 2, 3), "alpha");
+        map.put(new ThreeDimensionalIntVector(-1, 2, -3), "beta");
+
+        assertEquals("alpha", map.get(1, 2, 3));
+        assertEquals("beta", map.get(new ThreeDimensionalIntVector(-1, 2, -3)));
+        assertNull(map.get(3, 2, 1));
+        assertEquals(2, map.getSize());
+
+        assertEquals("alpha", map.put(new ThreeDimensionalIntVector(1, 2, 3), "gamma"));
+        assertEquals("gamma", map.get(1, 2, 3));
+        assertEquals(2, map.getSize());
+    }
+
+    @Test
+    public void growRemove() {
+        final Random random = new Random(42);
+        final List<ThreeDimensionalIntVector> keys = new ArrayList<>();
+        final Set<ThreeDimensionalIntVector> unique = new HashSet<>();
+        while (keys.size() < 2000) {
+            final ThreeDimensionalIntVector key = new ThreeDimensionalIntVector(random.nextInt(64) - 32, random.nextInt(16), random.nextInt(64) - 32);
+            if (unique.add(key)) {
+                keys.add(key);
+                map.put(key, key.toString());
+            }
+        }
+        assertEquals(keys.size(), map.getSize());
+
+        for (int c = 0; c < keys.size(); c += 2)
+            assertEquals(keys.get(c).toString(), map.remove(keys.get(c)));
+
+        assertEquals(keys.size() / 2, map.getSize());
+        for (int c = 0; c < keys.size(); ++c) {
+            final String expected = (c & 1) == 0 ? null : keys.get(c).toString();
+            assertEquals(expected, map.get(keys.get(c)));
+        }
+        assertEquals(keys.size() / 2, map.getValues().size());
+    }
+
+    @Test
+    public void cullOutside() {
+        map.put(new ThreeDimensionalIntVector(0, 0, 0), "origin");
+        map.put(new ThreeDimensionalIntVector(7, 0, 7), "edge");
+        map.put(new ThreeDimensionalIntVector(8, 0, 0), "outside");
+        map.put(new ThreeDimensionalIntVector(-1, 0, 0), "behind");
+
+        final List<String> culled = new ArrayList<>();
+        for (String value : map.cullOutside(new ThreeDimensionalIIntBox(0, Integer.MIN_VALUE, 0, 3, Integer.MAX_VALUE, 3)))
+            culled.add(value);
+
+        assertEquals(2, culled.size());
+        assertTrue(culled.contains("outside"));
+        assertTrue(culled.contains("behind"));
+        assertEquals(2, map.getSize());
+        assertEquals("origin", map.get(0, 0, 0));
+        assertEquals("edge", map.get(7, 0, 7));
+        assertNull(map.get(8, 0, 0));
+    }
+
+    @Test
+    public void clear() {
+        map.put(new ThreeDimensionalIntVector(1, 2, 3), "alpha");
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1, 2, 3));
+        assertFalse(map.getValues().iterator().hasNext());
+    }
+}